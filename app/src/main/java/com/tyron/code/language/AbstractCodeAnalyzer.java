@@ -10,12 +10,18 @@ import com.tyron.editor.Editor;
 
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
 import org.apache.commons.io.input.CharSequenceReader;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +42,16 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
     private Styles mLastStyles;
     protected List<DiagnosticWrapper> mDiagnostics = new ArrayList<>();
 
+    /**
+     * The edits made since the last incremental analysis, guarded by itself
+     */
+    private final List<Edit> mPendingEdits = new ArrayList<>();
+    private volatile LineModel mLineModel;
+    /**
+     * Incremented on each reset, a line model lexed before a reset is not kept
+     */
+    private int mGeneration;
+
     public AbstractCodeAnalyzer() {
         setup();
     }
@@ -49,16 +65,33 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
 
     @Override
     public void insert(CharPosition start, CharPosition end, CharSequence insertedContent) {
+        if (isIncremental()) {
+            synchronized (mPendingEdits) {
+                mPendingEdits.add(new Edit(start.line, end.line - start.line,
+                        end.index - start.index));
+            }
+        }
         rerunWithBg();
     }
 
     @Override
     public void delete(CharPosition start, CharPosition end, CharSequence deletedContent) {
+        if (isIncremental()) {
+            synchronized (mPendingEdits) {
+                mPendingEdits.add(new Edit(start.line, start.line - end.line,
+                        start.index - end.index));
+            }
+        }
         rerunWithBg();
     }
 
     @Override
     public void reset(@NonNull ContentReference content, @NonNull Bundle extraArguments) {
+        synchronized (mPendingEdits) {
+            mPendingEdits.clear();
+            mLineModel = null;
+            mGeneration++;
+        }
         super.reset(content, extraArguments);
     }
 
@@ -102,6 +135,20 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
         return mColorMap.get(tokenType);
     }
 
+    /**
+     * Whether the document should be lexed incrementally. The state of the lexer and the tokens
+     * are saved on each line, after an edit only the lines from the first edited line are
+     * lexed again until the state of the lexer matches the saved state of an unchanged line.
+     *
+     * The saved tokens of the whole document are then passed to
+     * {@link #onNextToken(Token, Styles, MappedSpans.Builder)} as in a full analysis, but they
+     * only have a type, a line and a column, not a text. The lexer must not keep any state
+     * other than its mode and mode stack between tokens.
+     */
+    protected boolean isIncremental() {
+        return false;
+    }
+
     /**
      * Called before {@link #analyze(StringBuilder, Delegate)}
      * is called, commonly used to clear object caches before starting the analysis
@@ -117,9 +164,13 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
         if (!loaded) {
             return styles;
         }
+        if (isIncremental()) {
+            return analyzeIncrementally(text, delegate, styles);
+        }
         beforeAnalyze();
 
         MappedSpans.Builder result = new MappedSpans.Builder(1024);
+        mPreviousToken = null;
 
         try {
             Lexer lexer = getLexer(CharStreams.fromReader(new CharSequenceReader(text)));
@@ -132,19 +183,7 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
                     break;
                 }
 
-                boolean skip = onNextToken(token, styles, result);
-                if (skip) {
-                    mPreviousToken = token;
-                    continue;
-                }
-
-                Integer id = getColor(token.getType());
-                if (id == null) {
-                    id = EditorColorScheme.TEXT_NORMAL;
-                }
-                result.addIfNeeded(token.getLine() - 1, token.getCharPositionInLine(), id);
-
-                mPreviousToken = token;
+                addToken(token, styles, result);
             }
 
             if (mPreviousToken != null) {
@@ -166,6 +205,198 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
         return styles;
     }
 
+    private void addToken(Token token, Styles styles, MappedSpans.Builder result) {
+        boolean skip = onNextToken(token, styles, result);
+        if (!skip) {
+            Integer id = getColor(token.getType());
+            if (id == null) {
+                id = EditorColorScheme.TEXT_NORMAL;
+            }
+            result.addIfNeeded(token.getLine() - 1, token.getCharPositionInLine(), id);
+        }
+        mPreviousToken = token;
+    }
+
+    private Styles analyzeIncrementally(StringBuilder text, Delegate<T> delegate, Styles styles) {
+        List<Edit> edits;
+        int generation;
+        synchronized (mPendingEdits) {
+            edits = new ArrayList<>(mPendingEdits);
+            generation = mGeneration;
+        }
+
+        LineModel model = mLineModel;
+        List<LineState> lines = null;
+        BitSet dirty = new BitSet();
+        if (model != null) {
+            lines = new ArrayList<>(model.lines);
+            int length = model.length;
+            for (Edit edit : edits) {
+                length += edit.charDelta;
+                if (!edit.apply(lines, dirty)) {
+                    lines = null;
+                    break;
+                }
+            }
+            if (length != text.length()) {
+                // the edits do not describe this text, it can't be patched
+                lines = null;
+            }
+        }
+        if (lines == null) {
+            lines = new ArrayList<>();
+            dirty.clear();
+        }
+
+        List<LineState> lexed = lex(text, lines, dirty, delegate);
+        if (lexed == null) {
+            // cancelled, the edits are applied again on the next run
+            return styles;
+        }
+
+        synchronized (mPendingEdits) {
+            if (generation == mGeneration) {
+                mPendingEdits.subList(0, Math.min(edits.size(), mPendingEdits.size())).clear();
+                mLineModel = new LineModel(lexed, text.length());
+            }
+        }
+
+        // the saved tokens are colored like the tokens of a full analysis, without lexing
+        beforeAnalyze();
+        MappedSpans.Builder result = new MappedSpans.Builder(1024);
+        mPreviousToken = null;
+        for (int line = 0; line < lexed.size(); line++) {
+            if (delegate.isCancelled()) {
+                return styles;
+            }
+            int[] tokens = lexed.get(line).tokens;
+            for (int i = 0; i < tokens.length; i += 2) {
+                CommonToken token = new CommonToken(tokens[i + 1]);
+                token.setLine(line + 1);
+                token.setCharPositionInLine(tokens[i]);
+                addToken(token, styles, result);
+            }
+        }
+        if (mPreviousToken != null) {
+            result.determine(mPreviousToken.getLine() - 1);
+        }
+        styles.spans = result.build();
+        styles.finishBuilding();
+        afterAnalyze(text, styles, result);
+
+        if (mShouldAnalyzeInBg) {
+            analyzeInBackground(text);
+        }
+        mLastStyles = styles;
+        return styles;
+    }
+
+    /**
+     * Lexes the text starting from the last clean line before the first dirty line, until the
+     * lexer reaches a clean line after the last dirty line in the same state as before.
+     *
+     * @param lines the states of the previous analysis, adjusted to the current text. Empty if
+     *              the whole text should be lexed.
+     * @param dirty the lines whose contents have changed since the previous analysis
+     * @return the states of every line of the text, or null if the analysis was cancelled
+     */
+    @Nullable
+    private List<LineState> lex(CharSequence text, List<LineState> lines, BitSet dirty,
+                                Delegate<T> delegate) {
+        int firstDirty = lines.isEmpty() ? 0 : dirty.nextSetBit(0);
+        if (firstDirty == -1) {
+            return lines;
+        }
+        int lastDirty = dirty.length() - 1;
+
+        int startLine = firstDirty - 1;
+        while (startLine >= 0 && lines.get(startLine).column == -1) {
+            startLine--;
+        }
+        LineState start = startLine >= 0 ? lines.get(startLine) : null;
+        if (start == null) {
+            startLine = 0;
+        }
+
+        int offset = 0;
+        for (int line = 0; line < startLine; offset++) {
+            if (text.charAt(offset) == '\n') {
+                line++;
+            }
+        }
+
+        CharSequenceCharStream input = new CharSequenceCharStream(text);
+        Lexer lexer = getLexer(input);
+        if (start != null) {
+            input.seek(offset + start.column);
+            lexer.setLine(startLine + 1);
+            lexer.setCharPositionInLine(start.column);
+            lexer._mode = start.mode;
+            for (int mode : start.modeStack) {
+                lexer._modeStack.push(mode);
+            }
+        }
+
+        List<LineState> result = new ArrayList<>(lines.subList(0, startLine));
+        LineState.Builder current = null;
+        if (start != null) {
+            // the tokens before the saved state are not lexed again
+            current = new LineState.Builder(startLine);
+            current.addTokens(start, start.column);
+            current.setState(start.column, start.mode, start.modeStack);
+        }
+        while (true) {
+            if (delegate.isCancelled()) {
+                return null;
+            }
+
+            int line = lexer.getLine() - 1;
+            if (current == null || line > current.line) {
+                addLines(result, current, line);
+                current = new LineState.Builder(line);
+            }
+            if (!current.hasState()) {
+                int column = lexer.getCharPositionInLine();
+                int[] modeStack = lexer._modeStack.toArray();
+                if (line > lastDirty && line < lines.size() && !dirty.get(line)
+                        && lines.get(line).matches(column, lexer._mode, modeStack, current)) {
+                    // the rest of the lines are lexed the same way as before
+                    result.addAll(lines.subList(line, lines.size()));
+                    return result;
+                }
+                current.setState(column, lexer._mode, modeStack);
+            }
+
+            Token token = lexer.nextToken();
+            if (token == null || token.getType() == Token.EOF) {
+                break;
+            }
+            int tokenLine = token.getLine() - 1;
+            if (tokenLine > current.line) {
+                addLines(result, current, tokenLine);
+                current = new LineState.Builder(tokenLine);
+            }
+            current.addToken(token.getCharPositionInLine(), token.getType());
+        }
+        addLines(result, current, lexer.getLine());
+        return result;
+    }
+
+    /**
+     * Adds the line being built and empty states for the lines between it and the given line,
+     * which are covered by a token that spans multiple lines
+     */
+    private static void addLines(List<LineState> result, @Nullable LineState.Builder current,
+                                 int nextLine) {
+        if (current == null) {
+            return;
+        }
+        result.add(current.build());
+        for (int line = current.line + 1; line < nextLine; line++) {
+            result.add(LineState.EMPTY);
+        }
+    }
+
     @Nullable
     protected Styles getLastStyles() {
         return mLastStyles;
@@ -197,4 +428,221 @@ public abstract class AbstractCodeAnalyzer<T> extends DiagnosticAnalyzeManager<T
     public void update(Styles styles) {
         mReceiver.setStyles(this, styles);
     }
+
+    private static class Edit {
+        final int line;
+        final int lineDelta;
+        final int charDelta;
+
+        Edit(int line, int lineDelta, int charDelta) {
+            this.line = line;
+            this.lineDelta = lineDelta;
+            this.charDelta = charDelta;
+        }
+
+        /**
+         * Moves the states of the lines after this edit and marks the edited lines as dirty
+         *
+         * @return false if the edit is outside of the lines
+         */
+        boolean apply(List<LineState> lines, BitSet dirty) {
+            if (line >= lines.size() || line - lineDelta >= lines.size()) {
+                return false;
+            }
+            if (lineDelta > 0) {
+                lines.addAll(line + 1, Collections.nCopies(lineDelta, LineState.EMPTY));
+                shift(dirty, line + 1, lineDelta);
+                dirty.set(line, line + lineDelta + 1);
+            } else {
+                lines.subList(line + 1, line + 1 - lineDelta).clear();
+                shift(dirty, line + 1 - lineDelta, lineDelta);
+                dirty.set(line);
+            }
+            return true;
+        }
+
+        private static void shift(BitSet dirty, int from, int delta) {
+            BitSet tail = dirty.get(from, Math.max(from, dirty.length()));
+            dirty.clear(Math.min(from, from + delta), Math.max(from, dirty.length()));
+            for (int i = tail.nextSetBit(0); i >= 0; i = tail.nextSetBit(i + 1)) {
+                dirty.set(from + delta + i);
+            }
+        }
+    }
+
+    private static class LineModel {
+        final List<LineState> lines;
+        final int length;
+
+        LineModel(List<LineState> lines, int length) {
+            this.lines = lines;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The state of the lexer at the first position of a line between two tokens, and the tokens
+     * that start on the line as pairs of column and token type
+     */
+    private static class LineState {
+
+        static final LineState EMPTY = new LineState(-1, 0, new int[0], new int[0]);
+
+        /**
+         * The column of the saved state, or -1 if the line has no position between two tokens
+         */
+        final int column;
+        final int mode;
+        final int[] modeStack;
+        final int[] tokens;
+
+        LineState(int column, int mode, int[] modeStack, int[] tokens) {
+            this.column = column;
+            this.mode = mode;
+            this.modeStack = modeStack;
+            this.tokens = tokens;
+        }
+
+        /**
+         * @return whether the lexer continues from this line the same way as before, the state
+         * and the tokens that start before it on this line must be equal
+         */
+        boolean matches(int column, int mode, int[] modeStack, Builder builder) {
+            if (this.column != column || this.mode != mode
+                    || !Arrays.equals(this.modeStack, modeStack)) {
+                return false;
+            }
+            int size = 0;
+            while (size < tokens.length && tokens[size] < column) {
+                size += 2;
+            }
+            if (size != builder.size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (tokens[i] != builder.tokens[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static class Builder {
+            final int line;
+            private int column = -1;
+            private int mode;
+            private int[] modeStack = new int[0];
+            private int[] tokens = new int[8];
+            private int size;
+
+            Builder(int line) {
+                this.line = line;
+            }
+
+            boolean hasState() {
+                return column != -1;
+            }
+
+            void setState(int column, int mode, int[] modeStack) {
+                this.column = column;
+                this.mode = mode;
+                this.modeStack = modeStack;
+            }
+
+            void addToken(int column, int type) {
+                if (size + 2 > tokens.length) {
+                    tokens = Arrays.copyOf(tokens, tokens.length * 2);
+                }
+                tokens[size++] = column;
+                tokens[size++] = type;
+            }
+
+            /**
+             * Copies the tokens of the given line that start before the given column
+             */
+            void addTokens(LineState state, int column) {
+                for (int i = 0; i < state.tokens.length && state.tokens[i] < column; i += 2) {
+                    addToken(state.tokens[i], state.tokens[i + 1]);
+                }
+            }
+
+            LineState build() {
+                return new LineState(column, mode, modeStack, Arrays.copyOf(tokens, size));
+            }
+        }
+    }
+
+    /**
+     * A {@link CharStream} over the text of the editor, so the lexer can
+     * start at any offset without copying the text
+     */
+    private static class CharSequenceCharStream implements CharStream {
+
+        private final CharSequence mText;
+        private int mIndex;
+
+        CharSequenceCharStream(CharSequence text) {
+            mText = text;
+        }
+
+        @Override
+        public String getText(Interval interval) {
+            int start = Math.max(0, interval.a);
+            int stop = Math.min(mText.length() - 1, interval.b);
+            if (start > stop) {
+                return "";
+            }
+            return mText.subSequence(start, stop + 1).toString();
+        }
+
+        @Override
+        public void consume() {
+            if (mIndex >= mText.length()) {
+                throw new IllegalStateException("cannot consume EOF");
+            }
+            mIndex++;
+        }
+
+        @Override
+        public int LA(int i) {
+            if (i == 0) {
+                return 0;
+            }
+            int index = i < 0 ? mIndex + i : mIndex + i - 1;
+            if (index < 0 || index >= mText.length()) {
+                return IntStream.EOF;
+            }
+            return mText.charAt(index);
+        }
+
+        @Override
+        public int mark() {
+            return -1;
+        }
+
+        @Override
+        public void release(int marker) {
+
+        }
+
+        @Override
+        public int index() {
+            return mIndex;
+        }
+
+        @Override
+        public void seek(int index) {
+            mIndex = Math.min(index, mText.length());
+        }
+
+        @Override
+        public int size() {
+            return mText.length();
+        }
+
+        @Override
+        public String getSourceName() {
+            return IntStream.UNKNOWN_SOURCE_NAME;
+        }
+    }
 }
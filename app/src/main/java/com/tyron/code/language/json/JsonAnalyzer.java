@@ -36,6 +36,11 @@ public class JsonAnalyzer extends AbstractCodeAnalyzer<Object> {
         putColor(EditorColorScheme.ATTRIBUTE_NAME, JSONLexer.STRING);
     }
 
+    @Override
+    protected boolean isIncremental() {
+        return true;
+    }
+
     @Override
     public void analyzeInBackground(CharSequence contents) {
 
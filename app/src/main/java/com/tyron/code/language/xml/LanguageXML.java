@@ -206,7 +206,8 @@ public class LanguageXML implements Language, CodeAssistLanguage {
             return;
         }
         EventManager eventManager = mEditor.getProject().getEventManager();
-        eventManager.dispatchEvent(new XmlResourceChangeEvent(mEditor.getCurrentFile(), mEditor.getContent()));
+        eventManager.dispatchEvent(new XmlResourceChangeEvent(mEditor.getCurrentFile(),
+                mEditor.getContent().toString()));
     }
 
     private class EndTagHandler implements NewlineHandler {
@@ -49,6 +49,7 @@ import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.listener.FileListener;
 import com.tyron.code.R;
 import com.tyron.code.ui.layoutEditor.attributeEditor.AttributeEditorDialogFragment;
 import com.tyron.code.ui.layoutEditor.model.ViewPalette;
@@ -63,6 +64,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -89,6 +91,7 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
     private LayoutEditorViewModel mEditorViewModel;
 
     private File mCurrentFile;
+    private AndroidModule mModule;
     private PreviewLayoutInflater mInflater;
     private BoundaryDrawingFrameLayout mEditorRoot;
     private EditorDragListener mDragListener;
@@ -98,6 +101,27 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
 
     private boolean isDumb;
 
+    /**
+     * Compiles a layout again when it is changed in an editor, the current layout is inflated
+     * again if it is the changed layout or one that includes it.
+     */
+    private final FileListener mLayoutListener = (file, contents) -> {
+        if (mInflater == null || mModule == null || !isLayoutFile(file)) {
+            return;
+        }
+        PreviewLayoutInflater inflater = mInflater;
+        mService.execute(() -> {
+            Set<String> names = inflater.refreshLayout(file);
+            if (names.contains(getLayoutName(mCurrentFile)) && getActivity() != null) {
+                requireActivity().runOnUiThread(() -> {
+                    if (mInflater == inflater && getView() != null) {
+                        inflateFile(mCurrentFile);
+                    }
+                });
+            }
+        });
+    };
+
     private final View.OnLongClickListener mOnLongClickListener = v -> {
         ClipData clipData = ClipData.newPlainText("", "");
         View.DragShadowBuilder shadowBuilder = new View.DragShadowBuilder(v);
@@ -294,6 +318,9 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         super.onDestroyView();
 
         ProjectManager.getInstance().removeOnProjectOpenListener(this);
+        if (mModule != null) {
+            mModule.getFileManager().removeSnapshotListener(mLayoutListener);
+        }
     }
 
     private Dialog exit(String title, String message) {
@@ -322,7 +349,9 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         // need to wrap the context to a default theme so
         // material widgets wont use CodeAssist's theme
         ContextThemeWrapper wrapper = new ContextThemeWrapper(requireContext(), R.style.Theme_MaterialComponents_DayNight);
-        mInflater = new PreviewLayoutInflater(wrapper, (AndroidModule) module);
+        mModule = (AndroidModule) module;
+        mInflater = new PreviewLayoutInflater(wrapper, mModule);
+        mModule.getFileManager().addSnapshotListener(mLayoutListener);
         mInflater.parseResources(mService).whenComplete((inflater, exception) ->
                 requireActivity().runOnUiThread(() -> {
                     if (inflater == null) {
@@ -344,8 +373,7 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         Optional<ProteusView> optionalView;
 
         try {
-            optionalView = mInflater.inflateLayout(file.getName()
-                    .replace(".xml", ""));
+            optionalView = mInflater.inflateLayout(getLayoutName(file));
         } catch (ProteusInflateException e) {
             optionalView = Optional.empty();
         }
@@ -363,6 +391,15 @@ public class LayoutEditorFragment extends Fragment implements ProjectManager.OnP
         }
     }
 
+    private boolean isLayoutFile(File file) {
+        File layoutDirectory = new File(mModule.getAndroidResourcesDirectory(), "layout");
+        return layoutDirectory.equals(file.getParentFile()) && file.getName().endsWith(".xml");
+    }
+
+    private static String getLayoutName(File file) {
+        return file.getName().replace(".xml", "");
+    }
+
     private void resizeLayoutEditor(View root) {
         final Point point = new Point();
         ((WindowManager)requireActivity().getSystemService(Context.WINDOW_SERVICE))
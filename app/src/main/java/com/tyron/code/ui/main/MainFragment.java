@@ -47,6 +47,7 @@ import com.tyron.code.ui.file.FileViewModel;
 import com.tyron.code.ui.file.event.RefreshRootEvent;
 import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.code.util.UiUtilsKt;
+import com.tyron.common.SharedPreferenceKeys;
 import com.tyron.common.logging.IdeLog;
 import com.tyron.common.util.AndroidUtilities;
 import com.tyron.completion.java.provider.CompletionEngine;
@@ -454,6 +455,10 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
                     GradleLaunchUtil.addCodeAssistInitScript(buildLauncher);
 
                     buildLauncher.addArguments("--build-cache");
+                    if (ApplicationLoader.getDefaultPreferences().getBoolean(
+                            SharedPreferenceKeys.GRADLE_CONFIGURATION_CACHE, false)) {
+                        buildLauncher.addArguments("--configuration-cache");
+                    }
                     buildLauncher.forTasks(task);
                     buildLauncher.run();
                 }
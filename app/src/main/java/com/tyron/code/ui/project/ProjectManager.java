@@ -375,6 +375,9 @@ public class ProjectManager {
         }
 
         KotlinEnvironment kotlinEnvironment = KotlinEnvironment.Companion.get(module);
+
+        // completion can use this module while the rest of the project is indexed
+        module.getProject().commitModule(module);
     }
 
     public void closeProject(@NonNull Project project) {
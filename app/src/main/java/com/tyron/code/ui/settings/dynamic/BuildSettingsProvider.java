@@ -60,6 +60,14 @@ public class BuildSettingsProvider implements SettingsProvider {
             verboseVfsLogging.setIconSpaceReserved(false);
             gradle.addPreference(verboseVfsLogging);
 
+            SwitchPreference configurationCache = new SwitchPreference(context);
+            configurationCache.setDefaultValue(false);
+            configurationCache.setTitle(R.string.gradle_configuration_cache);
+            configurationCache.setSummary(R.string.gradle_configuration_cache_summary);
+            configurationCache.setKey(SharedPreferenceKeys.GRADLE_CONFIGURATION_CACHE);
+            configurationCache.setIconSpaceReserved(false);
+            gradle.addPreference(configurationCache);
+
 
         });
         return preferenceScreen;
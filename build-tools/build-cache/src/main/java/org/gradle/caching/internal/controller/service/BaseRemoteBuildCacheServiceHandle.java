@@ -0,0 +1,112 @@
+package org.gradle.caching.internal.controller.service;
+
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.function.Function;
+
+public class BaseRemoteBuildCacheServiceHandle implements RemoteBuildCacheServiceHandle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BaseRemoteBuildCacheServiceHandle.class);
+
+    protected final BuildCacheService service;
+    protected final BuildCacheServiceRole role;
+
+    private final boolean pushEnabled;
+    private final boolean logStackTraces;
+    private final boolean disableOnError;
+
+    private boolean disabled;
+
+    public BaseRemoteBuildCacheServiceHandle(BuildCacheService service, boolean push, BuildCacheServiceRole role, boolean logStackTraces, boolean disableOnError) {
+        this.service = service;
+        this.role = role;
+        this.pushEnabled = push;
+        this.logStackTraces = logStackTraces;
+        this.disableOnError = disableOnError;
+    }
+
+    @Nullable
+    @Override
+    public BuildCacheService getService() {
+        return service;
+    }
+
+    @Override
+    public boolean canLoad() {
+        return !disabled;
+    }
+
+    @Override
+    public final Optional<BuildCacheLoadResult> maybeLoad(BuildCacheKey key, File toFile, Function<File, BuildCacheLoadResult> unpackFunction) {
+        if (!canLoad()) {
+            return Optional.empty();
+        }
+        LOGGER.debug("Load entry {} from {} build cache", key.getHashCode(), role.getDisplayName());
+        LoadTarget loadTarget = new LoadTarget(toFile);
+        try {
+            service.load(key, loadTarget);
+        } catch (Exception e) {
+            failure("load", "from", key, e);
+        }
+        if (loadTarget.isLoaded()) {
+            return Optional.ofNullable(unpackFunction.apply(toFile));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean canStore() {
+        return pushEnabled && !disabled;
+    }
+
+    @Override
+    public final boolean maybeStore(BuildCacheKey key, File file) {
+        if (!canStore()) {
+            return false;
+        }
+        LOGGER.debug("Store entry {} in {} build cache", key.getHashCode(), role.getDisplayName());
+        try {
+            service.store(key, new StoreTarget(file));
+            return true;
+        } catch (Exception e) {
+            failure("store", "in", key, e);
+            return false;
+        }
+    }
+
+    private void failure(String verb, String preposition, BuildCacheKey key, Throwable e) {
+        if (disableOnError) {
+            disabled = true;
+        }
+        String description = "Could not " + verb + " entry " + key.getHashCode() + " " + preposition + " " + role.getDisplayName() + " build cache";
+        if (logStackTraces) {
+            LOGGER.warn(description, e);
+        } else {
+            LOGGER.warn(description + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {} build cache", role.getDisplayName());
+        if (disabled) {
+            LOGGER.warn("The {} build cache was disabled during the build due to errors.", role.getDisplayName());
+        }
+        try {
+            service.close();
+        } catch (Exception e) {
+            if (logStackTraces) {
+                LOGGER.warn("Error closing " + role.getDisplayName() + " build cache: ", e);
+            } else {
+                LOGGER.warn("Error closing " + role.getDisplayName() + " build cache: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -13,6 +13,13 @@ import java.io.OutputStream;
 import java.util.Map;
 
 public interface BuildCacheEntryPacker {
+    /**
+     * The version of the format of the entries written by this packer, it is part of every build cache key.
+     * Entries of another format are stored under other keys, so a cache shared with builds that use
+     * another format misses them instead of failing to unpack them.
+     */
+    int getFormatVersion();
+
     PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException;
 
     class PackResult {
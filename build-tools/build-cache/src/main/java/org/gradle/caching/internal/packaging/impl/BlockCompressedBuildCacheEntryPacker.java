@@ -0,0 +1,316 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses build cache entries as a sequence of independently deflated blocks.
+ *
+ * Since no block depends on the ones before it, the blocks are compressed and decompressed
+ * on the {@link PackerExecutor} while the next ones are produced or read, instead of a single
+ * gzip stream that keeps one core busy for the whole entry.
+ *
+ * The format is a magic number followed by blocks of
+ * {@code <uncompressed length> <stored length> <data>}, and a zero length block at the end.
+ * Blocks that do not get smaller are stored as they are.
+ */
+public class BlockCompressedBuildCacheEntryPacker implements BuildCacheEntryPacker {
+
+    /**
+     * Entries of the gzip compressed format are version 1.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int MAGIC = 0x47424331; // GBC1
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final BuildCacheEntryPacker delegate;
+    private final PackerExecutor executor;
+
+    public BlockCompressedBuildCacheEntryPacker(BuildCacheEntryPacker delegate, PackerExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public int getFormatVersion() {
+        return FORMAT_VERSION;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        try (BlockCompressingOutputStream blockOutput = new BlockCompressingOutputStream(output)) {
+            return delegate.pack(entity, snapshots, blockOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        try (BlockDecompressingInputStream blockInput = new BlockDecompressingInputStream(new BufferedInputStream(input))) {
+            return delegate.unpack(entity, blockInput, readOrigin);
+        }
+    }
+
+    /**
+     * The number of blocks that are compressed or decompressed ahead of the one that is
+     * currently written or read, this bounds the memory used to a few blocks per thread.
+     */
+    private int getMaxBlocksInFlight() {
+        return executor.getParallelism() * 2;
+    }
+
+    private static byte[] compress(byte[] block, int length) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+
+        // Compressing into a buffer of the same size tells whether the block gets smaller
+        byte[] compressed = new byte[length];
+        int compressedLength = 0;
+        while (!deflater.finished() && compressedLength < length) {
+            compressedLength += deflater.deflate(compressed, compressedLength, length - compressedLength);
+        }
+        if (!deflater.finished() || compressedLength == length) {
+            // A stored length equal to the uncompressed length marks a block that is stored as is
+            return Arrays.copyOf(block, length);
+        }
+        return Arrays.copyOf(compressed, compressedLength);
+    }
+
+    private static byte[] decompress(byte[] stored, int length) {
+        if (stored.length == length) {
+            return stored;
+        }
+        Inflater inflater = INFLATERS.get();
+        inflater.reset();
+        inflater.setInput(stored);
+        byte[] block = new byte[length];
+        try {
+            int read = 0;
+            while (read < length) {
+                int count = inflater.inflate(block, read, length - read);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += count;
+            }
+            if (read != length) {
+                throw new UncheckedIOException(new EOFException("Cached entry format error, truncated block"));
+            }
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Cached entry format error, corrupt block", e));
+        }
+        return block;
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private static IOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new IOException("Interrupted while waiting for a build cache block", e);
+    }
+
+    private class BlockCompressingOutputStream extends OutputStream {
+        private final DataOutputStream output;
+        private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        private final ArrayDeque<Integer> pendingLengths = new ArrayDeque<>();
+        private byte[] block = new byte[BLOCK_SIZE];
+        private int length;
+        private boolean closed;
+
+        BlockCompressingOutputStream(OutputStream output) throws IOException {
+            this.output = new DataOutputStream(new BufferedOutputStream(output));
+            this.output.writeInt(MAGIC);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == BLOCK_SIZE) {
+                submitBlock();
+            }
+            block[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == BLOCK_SIZE) {
+                    submitBlock();
+                }
+                int count = Math.min(len, BLOCK_SIZE - length);
+                System.arraycopy(b, off, block, length, count);
+                length += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void submitBlock() throws IOException {
+            byte[] full = block;
+            int fullLength = length;
+            pending.add(CompletableFuture.supplyAsync(() -> compress(full, fullLength), executor));
+            pendingLengths.add(fullLength);
+            block = new byte[BLOCK_SIZE];
+            length = 0;
+
+            while (pending.size() > getMaxBlocksInFlight()) {
+                writeOldestBlock();
+            }
+        }
+
+        private void writeOldestBlock() throws IOException {
+            CompletableFuture<byte[]> future = pending.remove();
+            int uncompressedLength = pendingLengths.remove();
+            byte[] stored;
+            try {
+                stored = future.get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+            output.writeInt(uncompressedLength);
+            output.writeInt(stored.length);
+            output.write(stored);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (length > 0) {
+                    submitBlock();
+                }
+                while (!pending.isEmpty()) {
+                    writeOldestBlock();
+                }
+                output.writeInt(0);
+                output.writeInt(0);
+            } finally {
+                pending.forEach(future -> future.cancel(false));
+                output.close();
+            }
+        }
+    }
+
+    private class BlockDecompressingInputStream extends InputStream {
+        private final DataInputStream input;
+        private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        private boolean endOfInput;
+        private byte[] block = new byte[0];
+        private int position;
+
+        BlockDecompressingInputStream(InputStream input) throws IOException {
+            this.input = new DataInputStream(input);
+            if (this.input.readInt() != MAGIC) {
+                throw new IOException("Cached entry format error, unknown compression");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int count = Math.min(len, block.length - position);
+            System.arraycopy(block, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return block.length - position;
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            while (position == block.length) {
+                readAhead();
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                try {
+                    block = pending.remove().get();
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                } catch (InterruptedException e) {
+                    throw interrupted(e);
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        private void readAhead() throws IOException {
+            while (!endOfInput && pending.size() < getMaxBlocksInFlight()) {
+                int length = input.readInt();
+                int storedLength = input.readInt();
+                if (length == 0) {
+                    endOfInput = true;
+                    break;
+                }
+                if (length < 0 || length > BLOCK_SIZE || storedLength < 0 || storedLength > length) {
+                    throw new IOException("Cached entry format error, invalid block header");
+                }
+                byte[] stored = new byte[storedLength];
+                input.readFully(stored);
+                pending.add(CompletableFuture.supplyAsync(() -> decompress(stored, length), executor));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            input.close();
+        }
+    }
+}
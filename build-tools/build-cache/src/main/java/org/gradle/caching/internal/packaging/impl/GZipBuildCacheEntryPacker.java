@@ -20,6 +20,11 @@ public class GZipBuildCacheEntryPacker implements BuildCacheEntryPacker {
         this.delegate = delegate;
     }
 
+    @Override
+    public int getFormatVersion() {
+        return delegate.getFormatVersion();
+    }
+
     @Override
     public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
         try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
@@ -0,0 +1,42 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+
+import java.io.Closeable;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the parts of packing and unpacking build cache entries that are independent of each
+ * other, like compressing blocks and writing unpacked files.
+ *
+ * Compressing and decompressing blocks is CPU bound, so the executor has one thread per core,
+ * between 2 and 4 so that the other cores are left to the rest of the build.
+ */
+public class PackerExecutor implements Executor, Closeable {
+
+    private final ManagedExecutor executor;
+    private final int parallelism;
+
+    public PackerExecutor(ExecutorFactory executorFactory) {
+        this.parallelism = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.executor = executorFactory.create("Build cache entry packer", parallelism);
+    }
+
+    /**
+     * @return The number of tasks that run at the same time
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    @Override
+    public void close() {
+        executor.stop();
+    }
+}
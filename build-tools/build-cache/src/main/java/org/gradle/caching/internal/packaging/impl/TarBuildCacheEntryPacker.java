@@ -30,12 +30,14 @@ import org.gradle.caching.internal.origin.OriginWriter;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
@@ -43,9 +45,19 @@ import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -77,21 +89,46 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
 
+    /**
+     * PAX header holding the content hash of a file, so unpacking can tell whether the file on
+     * disk is already up-to-date without reading the entry.
+     */
+    private static final String CONTENT_HASH_HEADER = "GRADLE.content-hash";
+
+    /**
+     * Files up to this size are read into memory and written on the executor while the next
+     * entries are read, larger files are streamed to disk on the unpacking thread.
+     */
+    private static final int MAX_PARALLEL_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * The amount of file contents that may be waiting in memory to be written
+     */
+    private static final int MAX_PENDING_BYTES = 16 * 1024 * 1024;
+
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    private final Executor executor;
 
     public TarBuildCacheEntryPacker(
             TarPackerFileSystemSupport fileSystemSupport,
             FilePermissionAccess filePermissionAccess,
             StreamHasher streamHasher,
-            Interner<String> stringInterner
+            Interner<String> stringInterner,
+            Executor executor
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.executor = executor;
+    }
+
+    @Override
+    public int getFormatVersion() {
+        return 1;
     }
 
     @Override
@@ -141,9 +178,16 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     }
 
     private static void createTarEntry(String path, long size, int mode, TarArchiveOutputStream tarOutput) throws IOException {
+        createTarEntry(path, size, mode, null, tarOutput);
+    }
+
+    private static void createTarEntry(String path, long size, int mode, @Nullable HashCode contentHash, TarArchiveOutputStream tarOutput) throws IOException {
         TarArchiveEntry entry = new TarArchiveEntry(path, true);
         entry.setSize(size);
         entry.setMode(mode);
+        if (contentHash != null) {
+            entry.addPaxHeader(CONTENT_HASH_HEADER, contentHash.toString());
+        }
         tarOutput.putArchiveEntry(entry);
     }
 
@@ -229,12 +273,15 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             return input.getNextTarEntry();
         }
 
-        fileSystemSupport.ensureDirectoryForTree(treeType, treeRoot);
         if (treeType == TreeType.FILE) {
             if (isDirEntry) {
                 throw new IllegalStateException("Should be a file: " + treeName);
             }
-            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName());
+            RegularFileSnapshot fileSnapshot = reuseFile(rootEntry, treeRoot, treeRoot.getName());
+            if (fileSnapshot == null) {
+                fileSystemSupport.ensureDirectoryForTree(treeType, treeRoot);
+                fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName());
+            }
             snapshots.put(treeName, fileSnapshot);
             return input.getNextTarEntry();
         }
@@ -242,54 +289,176 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         if (!isDirEntry) {
             throw new IllegalStateException("Should be a directory: " + treeName);
         }
+        // An existing directory is kept so the files in it that are up-to-date are not rewritten
+        boolean reuseContents = treeRoot.isDirectory();
+        if (!reuseContents) {
+            fileSystemSupport.ensureDirectoryForTree(treeType, treeRoot);
+        }
         chmodUnpackedFile(rootEntry, treeRoot);
 
-        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
+        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName, reuseContents);
     }
 
     private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
-            String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-            String internedFileName = stringInterner.intern(fileName);
-            return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, DefaultFileMetadata
-                    .file(output.getCount(), file.lastModified(), DIRECT));
+            return createFileSnapshot(file, fileName, hash, output.getCount());
         }
     }
 
+    /**
+     * Returns the snapshot of the file on disk if it already has the contents of the entry,
+     * as told by the content hash the entry was packed with.
+     */
     @Nullable
-    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
+    private RegularFileSnapshot reuseFile(TarArchiveEntry entry, File file, String fileName) throws IOException {
+        String contentHash = entry.getExtraPaxHeader(CONTENT_HASH_HEADER);
+        if (contentHash == null) {
+            return null;
+        }
+        HashCode hash = HashCode.fromString(contentHash);
+        if (!isUpToDate(file, hash, entry.getSize())) {
+            return null;
+        }
+        chmodUnpackedFile(entry, file);
+        return createFileSnapshot(file, fileName, hash, entry.getSize());
+    }
+
+    private boolean isUpToDate(File file, HashCode hash, long size) throws IOException {
+        if (!file.isFile() || file.length() != size) {
+            return false;
+        }
+        try (InputStream input = new FileInputStream(file)) {
+            return streamHasher.hash(input).equals(hash);
+        }
+    }
+
+    private RegularFileSnapshot createFileSnapshot(File file, String fileName, HashCode hash, long size) {
+        String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+        String internedFileName = stringInterner.intern(fileName);
+        return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, DefaultFileMetadata
+                .file(size, file.lastModified(), DIRECT));
+    }
+
+    /**
+     * Unpacks a file of a directory tree. Small files are read into memory and written on the
+     * executor, so writing them overlaps with decompressing the entries after them.
+     */
+    private CompletableFuture<RegularFileSnapshot> unpackFileAsync(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName, Semaphore pendingBytes) throws IOException {
+        if (entry.getSize() > MAX_PARALLEL_FILE_SIZE) {
+            RegularFileSnapshot fileSnapshot = reuseFile(entry, file, fileName);
+            if (fileSnapshot == null) {
+                fileSnapshot = unpackFile(input, entry, file, fileName);
+            }
+            return CompletableFuture.completedFuture(fileSnapshot);
+        }
+
+        int size = (int) entry.getSize();
+        try {
+            pendingBytes.acquire(size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while unpacking " + file);
+        }
+        byte[] content;
+        try {
+            content = IOUtils.toByteArray(input, size);
+        } catch (IOException | RuntimeException e) {
+            pendingBytes.release(size);
+            throw e;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                HashCode hash = streamHasher.hash(new ByteArrayInputStream(content));
+                if (!isUpToDate(file, hash, size)) {
+                    Files.write(file.toPath(), content);
+                }
+                chmodUnpackedFile(entry, file);
+                return createFileSnapshot(file, fileName, hash, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                pendingBytes.release(size);
+            }
+        }, executor);
+    }
+
+    @Nullable
+    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName, boolean reuseContents) throws IOException {
         RelativePathParser parser = new RelativePathParser(rootEntry.getName());
 
-        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
-        builder.enterDirectory(DIRECT, stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()), INCLUDE_EMPTY_DIRS);
+        // Files are written asynchronously, so the visits of the snapshot builder are recorded
+        // in order and replayed once every file has been written
+        List<Consumer<DirectorySnapshotBuilder>> visits = new ArrayList<>();
+        List<CompletableFuture<RegularFileSnapshot>> pendingFiles = new ArrayList<>();
+        Semaphore pendingBytes = new Semaphore(MAX_PENDING_BYTES);
+        Set<File> unpackedFiles = new HashSet<>();
+
+        String internedRootPath = stringInterner.intern(treeRoot.getAbsolutePath());
+        String internedRootName = stringInterner.intern(treeRoot.getName());
+        visits.add(builder -> builder.enterDirectory(DIRECT, internedRootPath, internedRootName, INCLUDE_EMPTY_DIRS));
 
         TarArchiveEntry entry;
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, () -> visits.add(DirectorySnapshotBuilder::leaveDirectory));
+                if (outsideOfRoot) {
+                    break;
+                }
+                entries.incrementAndGet();
 
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, builder::leaveDirectory);
-            if (outsideOfRoot) {
-                break;
+                File file = new File(treeRoot, parser.getRelativePath());
+                unpackedFiles.add(file);
+                if (isDir) {
+                    if (file.isFile()) {
+                        fileSystemSupport.ensureFileIsMissing(file);
+                    }
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedName = stringInterner.intern(parser.getName());
+                    visits.add(builder -> builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS));
+                } else {
+                    if (file.isDirectory()) {
+                        fileSystemSupport.ensureFileIsMissing(file);
+                    }
+                    CompletableFuture<RegularFileSnapshot> fileSnapshot = unpackFileAsync(input, entry, file, parser.getName(), pendingBytes);
+                    pendingFiles.add(fileSnapshot);
+                    visits.add(builder -> builder.visitLeafElement(fileSnapshot.join()));
+                }
             }
-            entries.incrementAndGet();
+        } finally {
+            // Nothing may be written to the tree once unpacking it is over, even if it failed
+            for (CompletableFuture<RegularFileSnapshot> pendingFile : pendingFiles) {
+                try {
+                    pendingFile.join();
+                } catch (CompletionException ignored) {
+                    // Reported when the snapshot is built
+                }
+            }
+        }
 
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedName = stringInterner.intern(parser.getName());
-                builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitLeafElement(fileSnapshot);
+        parser.exitToRoot(() -> visits.add(DirectorySnapshotBuilder::leaveDirectory));
+        visits.add(DirectorySnapshotBuilder::leaveDirectory);
+
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        try {
+            for (Consumer<DirectorySnapshotBuilder> visit : visits) {
+                visit.accept(builder);
+            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
             }
+            throw e;
         }
 
-        parser.exitToRoot(builder::leaveDirectory);
-        builder.leaveDirectory();
+        if (reuseContents) {
+            fileSystemSupport.removeUnexpectedFiles(treeRoot, unpackedFiles);
+        }
 
         snapshots.put(treeName, builder.getResult());
         return entry;
@@ -350,7 +519,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
                     assertCorrectType(isRoot, snapshot);
                     File file = new File(snapshot.getAbsolutePath());
                     int fileMode = filePermissionAccess.getUnixMode(file);
-                    storeFileEntry(file, targetPath, file.length(), fileMode, tarOutput);
+                    storeFileEntry(file, targetPath, file.length(), fileMode, fileSnapshot.getHash(), tarOutput);
                 }
 
                 @Override
@@ -412,9 +581,9 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             }
         }
 
-        private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
+        private void storeFileEntry(File inputFile, String path, long size, int mode, HashCode contentHash, TarArchiveOutputStream tarOutput) {
             try {
-                createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
+                createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, contentHash, tarOutput);
                 try (FileInputStream input = new FileInputStream(inputFile)) {
                     IOUtils.copyLarge(input, tarOutput, COPY_BUFFERS.get());
                 }
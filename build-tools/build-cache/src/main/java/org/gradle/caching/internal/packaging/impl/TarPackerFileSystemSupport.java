@@ -4,6 +4,7 @@ import org.gradle.internal.file.TreeType;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Set;
 
 public interface TarPackerFileSystemSupport {
     /**
@@ -15,4 +16,9 @@ public interface TarPackerFileSystemSupport {
      * Make sure directory exists.
      */
     void ensureDirectoryForTree(TreeType type, File root) throws IOException;
+
+    /**
+     * Remove everything below the root that is not one of the given files or directories.
+     */
+    void removeUnexpectedFiles(File root, Set<File> expected) throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package org.gradle.caching.local.internal;
+
+import org.gradle.internal.file.FileAccessTimeJournal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the size, last access time and number of hits of every entry of a directory build
+ * cache in memory, so the cache can be kept below its size limit after every store without
+ * listing the directory again.
+ *
+ * The directory is listed once, when the index is first used. Entries added or removed by
+ * other processes are picked up as they are accessed, the cleanup that runs when the cache
+ * is closed takes care of the rest.
+ */
+class DirectoryBuildCacheEntryIndex {
+
+    private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]+");
+
+    /**
+     * How much later an entry is considered to have been used for every time it was loaded,
+     * so that entries that are hit often survive a burst of entries that are used only once.
+     */
+    private static final long HIT_WEIGHT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_COUNTED_HITS = 24;
+
+    /**
+     * Stale entries are looked for at most this often, unless the cache is over its size limit.
+     */
+    private static final long AGE_SWEEP_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final File baseDir;
+    private final FileAccessTimeJournal fileAccessTimeJournal;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long totalSize;
+    private boolean loaded;
+    private long lastAgeSweep;
+
+    DirectoryBuildCacheEntryIndex(File baseDir, FileAccessTimeJournal fileAccessTimeJournal) {
+        this.baseDir = baseDir;
+        this.fileAccessTimeJournal = fileAccessTimeJournal;
+    }
+
+    /**
+     * Records that an entry was loaded from the cache, or that it was found to be missing
+     * if the size is negative.
+     */
+    synchronized void accessed(String key, long size, long now) {
+        ensureLoaded();
+        if (size < 0) {
+            remove(key);
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = add(key, size);
+        }
+        entry.lastAccess = now;
+        entry.hits++;
+    }
+
+    synchronized void stored(String key, long size, long now) {
+        ensureLoaded();
+        remove(key);
+        add(key, size).lastAccess = now;
+    }
+
+    synchronized void removed(String key) {
+        ensureLoaded();
+        remove(key);
+    }
+
+    /**
+     * @return The size of the entries in the index, without listing the directory if the index was not used yet
+     */
+    synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Removes the entries that should be evicted from the index and returns their keys.
+     *
+     * Entries that were not used within the maximum age are always evicted. If the cache is
+     * still larger than the maximum size, the entries that were used least recently and least
+     * often are evicted until the cache fits in the target size.
+     */
+    synchronized List<String> evict(long maxSize, long targetSize, long maxAgeMillis, long now) {
+        ensureLoaded();
+        List<String> evicted = new ArrayList<>();
+        boolean overSize = totalSize > maxSize;
+        if (!overSize && now - lastAgeSweep < AGE_SWEEP_INTERVAL_MILLIS) {
+            return evicted;
+        }
+        lastAgeSweep = now;
+
+        long oldestAccess = now - maxAgeMillis;
+        List<Entry> candidates = new ArrayList<>(entries.values());
+        for (Entry entry : candidates) {
+            if (entry.lastAccess < oldestAccess) {
+                evicted.add(entry.key);
+                remove(entry.key);
+            }
+        }
+
+        if (totalSize > maxSize) {
+            candidates = new ArrayList<>(entries.values());
+            candidates.sort(Comparator.comparingLong(Entry::getPriority));
+            for (Entry entry : candidates) {
+                if (totalSize <= targetSize) {
+                    break;
+                }
+                evicted.add(entry.key);
+                remove(entry.key);
+            }
+        }
+        return evicted;
+    }
+
+    private Entry add(String key, long size) {
+        Entry entry = new Entry(key, size);
+        entries.put(key, entry);
+        totalSize += size;
+        return entry;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalSize -= entry.size;
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        File[] files = baseDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (ENTRY_NAME.matcher(name).matches() && file.isFile()) {
+                add(name, file.length()).lastAccess = fileAccessTimeJournal.getLastAccessTime(file);
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final long size;
+        private long lastAccess;
+        private int hits;
+
+        Entry(String key, long size) {
+            this.key = key;
+            this.size = size;
+        }
+
+        long getPriority() {
+            return lastAccess + Math.min(hits, MAX_COUNTED_HITS) * HIT_WEIGHT_MILLIS;
+        }
+    }
+}
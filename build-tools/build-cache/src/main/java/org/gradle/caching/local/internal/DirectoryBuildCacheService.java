@@ -4,7 +4,12 @@ import com.google.common.io.Closer;
 import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.util.internal.GFileUtils;
@@ -16,29 +21,74 @@ import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * A build cache that keeps its entries as files of a directory.
+ *
+ * Every store evicts entries until the cache fits in its maximum size again, picking the
+ * entries that were used least recently and least often from an in-memory index, so the
+ * directory does not have to be listed. Entries that were not used for the configured number
+ * of days are evicted too. The cleanup of the persistent cache still runs when the cache is
+ * closed, for the entries that other processes stopped using.
+ */
 public class DirectoryBuildCacheService implements LocalBuildCacheService, BuildCacheService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryBuildCacheService.class);
+
+    /**
+     * Evicting down to a bit below the maximum size means that the following stores do not
+     * have to evict again right away.
+     */
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    private final File baseDir;
     private final PathKeyFileStore fileStore;
     private final PersistentCache persistentCache;
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
+    private final FileAccessTimeJournal fileAccessTimeJournal;
+    private final BuildOperationExecutor buildOperationExecutor;
     private final String failedFileSuffix;
+    private final long maxSize;
+    private final long maxAgeMillis;
+    private final DirectoryBuildCacheEntryIndex index;
+    private final DirectoryBuildCacheStatistics statistics = new DirectoryBuildCacheStatistics();
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+    public DirectoryBuildCacheService(
+        File baseDir,
+        PathKeyFileStore fileStore,
+        PersistentCache persistentCache,
+        BuildCacheTempFileStore tempFileStore,
+        FileAccessTracker fileAccessTracker,
+        FileAccessTimeJournal fileAccessTimeJournal,
+        BuildOperationExecutor buildOperationExecutor,
+        String failedFileSuffix,
+        long maxSize,
+        int removeUnusedEntriesAfterDays
+    ) {
+        this.baseDir = baseDir;
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
+        this.fileAccessTimeJournal = fileAccessTimeJournal;
+        this.buildOperationExecutor = buildOperationExecutor;
         this.failedFileSuffix = failedFileSuffix;
+        this.maxSize = maxSize;
+        this.maxAgeMillis = TimeUnit.DAYS.toMillis(removeUnusedEntriesAfterDays);
+        this.index = new DirectoryBuildCacheEntryIndex(baseDir, fileAccessTimeJournal);
     }
 
     private static class LoadAction implements Action<File> {
@@ -89,15 +139,23 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         LocallyAvailableResource resource = fileStore.get(key.getHashCode());
         if (resource == null) {
+            statistics.miss();
+            index.accessed(key.getHashCode(), -1, System.currentTimeMillis());
             return;
         }
 
         File file = resource.getFile();
+        long size = file.length();
         fileAccessTracker.markAccessed(file);
+        index.accessed(key.getHashCode(), size, System.currentTimeMillis());
 
         try {
             reader.execute(file);
+            statistics.hit(size);
         } catch (Exception e) {
+            statistics.miss();
+            index.removed(key.getHashCode());
+
             // Try to move the file out of the way in case its permanently corrupt
             // Don't delete, so that it can be potentially used for debugging
             File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
@@ -146,7 +204,30 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
 
     private void storeInsideLock(BuildCacheKey key, File file) {
         LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
-        fileAccessTracker.markAccessed(resource.getFile());
+        File entry = resource.getFile();
+        long size = entry.length();
+        fileAccessTracker.markAccessed(entry);
+        statistics.stored(size);
+
+        long now = System.currentTimeMillis();
+        index.stored(key.getHashCode(), size, now);
+        evictInsideLock(now);
+    }
+
+    private void evictInsideLock(long now) {
+        long targetSize = (long) (maxSize * EVICTION_TARGET_RATIO);
+        List<String> evicted = index.evict(maxSize, targetSize, maxAgeMillis, now);
+        for (String evictedKey : evicted) {
+            File entry = new File(baseDir, evictedKey);
+            long size = entry.length();
+            if (entry.delete()) {
+                fileAccessTimeJournal.deleteLastAccessTime(entry);
+                statistics.evicted(size);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            LOGGER.debug("Evicted {} entries from build cache in {}", evicted.size(), baseDir);
+        }
     }
 
     @Override
@@ -161,6 +242,47 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
 
     @Override
     public void close() {
-        persistentCache.close();
+        try {
+            reportStatistics();
+        } finally {
+            persistentCache.close();
+        }
+    }
+
+    private void reportStatistics() {
+        statistics.setTotalSize(index.getTotalSize());
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                context.setResult(statistics);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Build cache statistics for " + baseDir)
+                    .details(new StatisticsDetails(baseDir.getAbsolutePath(), maxSize));
+            }
+        });
+        LOGGER.info("Build cache in {}: {}", baseDir, statistics);
+    }
+
+    private static class StatisticsDetails implements DirectoryBuildCacheStatisticsBuildOperationType.Details {
+        private final String cacheDirectory;
+        private final long maxSize;
+
+        StatisticsDetails(String cacheDirectory, long maxSize) {
+            this.cacheDirectory = cacheDirectory;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public String getCacheDirectory() {
+            return cacheDirectory;
+        }
+
+        @Override
+        public long getMaxSize() {
+            return maxSize;
+        }
     }
 }
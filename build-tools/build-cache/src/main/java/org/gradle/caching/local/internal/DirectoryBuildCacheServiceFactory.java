@@ -16,6 +16,7 @@ import org.gradle.internal.file.FileAccessTimeJournal;
 import org.gradle.internal.file.FileAccessTracker;
 import org.gradle.internal.file.PathToFileResolver;
 import org.gradle.internal.file.impl.SingleDepthFileAccessTracker;
+import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.resource.local.PathKeyFileStore;
 
 import javax.inject.Inject;
@@ -39,10 +40,12 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
     private final CleanupActionFactory cleanupActionFactory;
     private final FileAccessTimeJournal fileAccessTimeJournal;
     private final TemporaryFileProvider temporaryFileProvider;
+    private final BuildOperationExecutor buildOperationExecutor;
 
     @Inject
     public DirectoryBuildCacheServiceFactory(CacheRepository cacheRepository, GlobalScopedCache globalScopedCache, PathToFileResolver resolver, DirectoryBuildCacheFileStoreFactory fileStoreFactory,
-                                             CleanupActionFactory cleanupActionFactory, FileAccessTimeJournal fileAccessTimeJournal, TemporaryFileProvider temporaryFileProvider) {
+                                             CleanupActionFactory cleanupActionFactory, FileAccessTimeJournal fileAccessTimeJournal, TemporaryFileProvider temporaryFileProvider,
+                                             BuildOperationExecutor buildOperationExecutor) {
         this.cacheRepository = cacheRepository;
         this.globalScopedCache = globalScopedCache;
         this.resolver = resolver;
@@ -50,6 +53,7 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         this.cleanupActionFactory = cleanupActionFactory;
         this.fileAccessTimeJournal = fileAccessTimeJournal;
         this.temporaryFileProvider = temporaryFileProvider;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
     @Override
@@ -64,9 +68,11 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         checkDirectory(target);
 
         int removeUnusedEntriesAfterDays = configuration.getRemoveUnusedEntriesAfterDays();
+        long maxSizeInMB = configuration.getMaxSizeInMB();
         describer.type(DIRECTORY_BUILD_CACHE_TYPE).
             config("location", target.getAbsolutePath()).
-            config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
+            config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days").
+            config("maxSize", String.valueOf(maxSizeInMB) + " MB");
 
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
         PersistentCache persistentCache = cacheRepository
@@ -79,7 +85,8 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
         FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(target, fileStore, persistentCache, tempFileStore, fileAccessTracker, fileAccessTimeJournal, buildOperationExecutor,
+            FAILED_READ_SUFFIX, maxSizeInMB * 1024 * 1024, removeUnusedEntriesAfterDays);
     }
 
     private static void checkDirectory(File directory) {
@@ -0,0 +1,84 @@
+package org.gradle.caching.local.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class DirectoryBuildCacheStatistics implements DirectoryBuildCacheStatisticsBuildOperationType.Result {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong bytesStored = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesEvicted = new AtomicLong();
+    private volatile long totalSize;
+
+    void hit(long size) {
+        hits.incrementAndGet();
+        bytesServed.addAndGet(size);
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void stored(long size) {
+        stores.incrementAndGet();
+        bytesStored.addAndGet(size);
+    }
+
+    void evicted(long size) {
+        evictions.incrementAndGet();
+        bytesEvicted.addAndGet(size);
+    }
+
+    void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    @Override
+    public long getStores() {
+        return stores.get();
+    }
+
+    @Override
+    public long getBytesStored() {
+        return bytesStored.get();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getBytesEvicted() {
+        return bytesEvicted.get();
+    }
+
+    @Override
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    @Override
+    public String toString() {
+        return hits + " hits, " + misses + " misses, " + bytesServed + " bytes served, "
+            + stores + " stores, " + evictions + " evictions (" + bytesEvicted + " bytes)";
+    }
+}
@@ -0,0 +1,47 @@
+package org.gradle.caching.local.internal;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Reports how a directory build cache was used while it was open, when it is closed.
+ */
+public final class DirectoryBuildCacheStatisticsBuildOperationType implements BuildOperationType<DirectoryBuildCacheStatisticsBuildOperationType.Details, DirectoryBuildCacheStatisticsBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * The absolute path of the cache directory.
+         */
+        String getCacheDirectory();
+
+        long getMaxSize();
+
+    }
+
+    public interface Result {
+
+        long getHits();
+
+        long getMisses();
+
+        /**
+         * The number of bytes of the entries that were loaded.
+         */
+        long getBytesServed();
+
+        long getStores();
+
+        long getBytesStored();
+
+        long getEvictions();
+
+        long getBytesEvicted();
+
+        /**
+         * The size of the entries known to be in the cache when it was closed.
+         */
+        long getTotalSize();
+
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlockCompressedBuildCacheEntryPackerTest {
+
+    private static final int BLOCK_SIZE = 256 * 1024;
+    private static final OriginReader ORIGIN_READER = input -> new OriginMetadata("test", Duration.ZERO);
+    private static final OriginWriter ORIGIN_WRITER = output -> {};
+
+    private final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory();
+    private final PackerExecutor executor = new PackerExecutor(executorFactory);
+
+    @After
+    public void tearDown() {
+        executor.close();
+        executorFactory.stop();
+    }
+
+    @Test
+    public void emptyEntryRoundTrips() throws IOException {
+        assertRoundTrip(new byte[0]);
+    }
+
+    @Test
+    public void compressibleEntryRoundTrips() throws IOException {
+        byte[] contents = new byte[3 * BLOCK_SIZE + 17];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = (byte) ("build cache ".charAt(i % 12));
+        }
+        byte[] packed = pack(contents);
+
+        assertTrue(packed.length < contents.length / 10);
+        assertArrayEquals(contents, unpack(packed));
+    }
+
+    @Test
+    public void incompressibleEntryIsStoredAndRoundTrips() throws IOException {
+        byte[] contents = new byte[2 * BLOCK_SIZE];
+        new Random(42).nextBytes(contents);
+        byte[] packed = pack(contents);
+
+        // magic, two stored blocks with their headers and the end marker
+        assertEquals(4 + 2 * (8 + BLOCK_SIZE) + 8, packed.length);
+        assertArrayEquals(contents, unpack(packed));
+    }
+
+    @Test
+    public void blocksAreUnpackedInOrder() throws IOException {
+        // More blocks than are in flight at once, each one telling its index apart. Random
+        // blocks are stored and the others are compressed, so the blocks take different
+        // times to process and complete out of order on the executor.
+        int blockCount = executor.getParallelism() * 2 * 3 + 1;
+        byte[] contents = new byte[blockCount * BLOCK_SIZE];
+        Random random = new Random(7);
+        for (int block = 0; block < blockCount; block++) {
+            int offset = block * BLOCK_SIZE;
+            if (block % 3 == 0) {
+                byte[] noise = new byte[BLOCK_SIZE];
+                random.nextBytes(noise);
+                System.arraycopy(noise, 0, contents, offset, BLOCK_SIZE);
+            } else {
+                Arrays.fill(contents, offset, offset + BLOCK_SIZE, (byte) block);
+            }
+            ByteBuffer.wrap(contents, offset, 4).putInt(block);
+        }
+
+        byte[] unpacked = unpack(pack(contents));
+
+        for (int block = 0; block < blockCount; block++) {
+            assertEquals(block, ByteBuffer.wrap(unpacked, block * BLOCK_SIZE, 4).getInt());
+        }
+        assertArrayEquals(contents, unpacked);
+    }
+
+    @Test
+    public void entryOfAnotherFormatIsRejected() throws IOException {
+        byte[] gzip = {(byte) 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0};
+        try {
+            unpack(gzip);
+            fail();
+        } catch (IOException e) {
+            assertEquals("Cached entry format error, unknown compression", e.getMessage());
+        }
+    }
+
+    @Test
+    public void truncatedEntryIsRejected() throws IOException {
+        byte[] contents = new byte[BLOCK_SIZE + 1];
+        Arrays.fill(contents, (byte) 1);
+        byte[] packed = pack(contents);
+        try {
+            unpack(Arrays.copyOf(packed, packed.length - 12));
+            fail();
+        } catch (IOException expected) {
+            // the end marker and part of the last block are missing
+        }
+    }
+
+    private byte[] pack(byte[] contents) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BlockCompressedBuildCacheEntryPacker(new RawPacker(contents), executor).pack(null, ImmutableMap.of(), output, ORIGIN_WRITER);
+        return output.toByteArray();
+    }
+
+    private byte[] unpack(byte[] packed) throws IOException {
+        RawPacker delegate = new RawPacker(null);
+        new BlockCompressedBuildCacheEntryPacker(delegate, executor).unpack(null, new ByteArrayInputStream(packed), ORIGIN_READER);
+        return delegate.unpacked;
+    }
+
+    private void assertRoundTrip(byte[] contents) throws IOException {
+        assertArrayEquals(contents, unpack(pack(contents)));
+    }
+
+    /**
+     * Writes the given contents as they are and keeps what it reads back.
+     */
+    private static class RawPacker implements BuildCacheEntryPacker {
+        private final byte[] contents;
+        private byte[] unpacked;
+
+        RawPacker(byte[] contents) {
+            this.contents = contents;
+        }
+
+        @Override
+        public int getFormatVersion() {
+            return 1;
+        }
+
+        @Override
+        public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+            // written in uneven chunks to cross the block boundaries
+            int offset = 0;
+            while (offset < contents.length) {
+                int count = Math.min(contents.length - offset, 100_003);
+                output.write(contents, offset, count);
+                offset += count;
+            }
+            return new PackResult(1);
+        }
+
+        @Override
+        public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            unpacked = output.toByteArray();
+            return new UnpackResult(readOrigin.execute(input), 1, ImmutableMap.of());
+        }
+    }
+}
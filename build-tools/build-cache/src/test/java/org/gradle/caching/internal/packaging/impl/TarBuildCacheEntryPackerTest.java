@@ -0,0 +1,243 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.file.TreeType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.snapshot.DirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+import java.util.Set;
+
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT;
+import static org.gradle.internal.snapshot.DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TarBuildCacheEntryPackerTest {
+
+    private static final String TREE = "outputDir";
+    private static final long OLD_TIMESTAMP = 1_000_000_000L;
+    private static final OriginReader ORIGIN_READER = input -> new OriginMetadata("test", Duration.ZERO);
+    private static final OriginWriter ORIGIN_WRITER = output -> {};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final StreamHasher streamHasher = new DefaultStreamHasher();
+    private final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory();
+    private final PackerExecutor executor = new PackerExecutor(executorFactory);
+    private BuildCacheEntryPacker packer;
+
+    private File source;
+    private File target;
+
+    @Before
+    public void setup() throws IOException {
+        TarBuildCacheEntryPacker tarPacker = new TarBuildCacheEntryPacker(new TestFileSystemSupport(), new TestFilePermissionAccess(),
+            streamHasher, Interners.newStrongInterner(), executor);
+        packer = new BlockCompressedBuildCacheEntryPacker(tarPacker, executor);
+
+        source = temporaryFolder.newFolder("source");
+        target = new File(temporaryFolder.getRoot(), "target");
+        write(new File(source, "a.txt"), "a");
+        write(new File(source, "sub/b.txt"), "b");
+        // larger than the files that are written on the executor
+        byte[] large = new byte[2 * 1024 * 1024];
+        new Random(1).nextBytes(large);
+        FileUtils.writeByteArrayToFile(new File(source, "sub/large.bin"), large);
+    }
+
+    @After
+    public void tearDown() {
+        executor.close();
+        executorFactory.stop();
+    }
+
+    @Test
+    public void unpacksEntry() throws IOException {
+        FileSystemLocationSnapshot packed = snapshot(source);
+
+        FileSystemLocationSnapshot unpacked = unpack(pack(packed));
+
+        assertEquals(packed.getHash(), unpacked.getHash());
+        assertEquals("a", read(new File(target, "a.txt")));
+        assertEquals("b", read(new File(target, "sub/b.txt")));
+        assertArrayEquals(FileUtils.readFileToByteArray(new File(source, "sub/large.bin")),
+            FileUtils.readFileToByteArray(new File(target, "sub/large.bin")));
+    }
+
+    @Test
+    public void unpackIntoExistingTreeOnlyWritesChangedFiles() throws IOException {
+        FileSystemLocationSnapshot packed = snapshot(source);
+        byte[] entry = pack(packed);
+        unpack(entry);
+
+        File unchanged = new File(target, "a.txt");
+        File unchangedLarge = new File(target, "sub/large.bin");
+        File changed = new File(target, "sub/b.txt");
+        File unexpected = new File(target, "sub/extra.txt");
+        write(changed, "changed");
+        write(unexpected, "extra");
+        setLastModified(unchanged, unchangedLarge, changed);
+
+        FileSystemLocationSnapshot unpacked = unpack(entry);
+
+        assertEquals(packed.getHash(), unpacked.getHash());
+        assertEquals(OLD_TIMESTAMP, unchanged.lastModified());
+        assertEquals(OLD_TIMESTAMP, unchangedLarge.lastModified());
+        assertEquals("b", read(changed));
+        assertFalse(unexpected.exists());
+    }
+
+    @Test
+    public void unpackReplacesDirectoryWithFile() throws IOException {
+        byte[] entry = pack(snapshot(source));
+        FileUtils.forceMkdir(new File(target, "a.txt"));
+        write(new File(target, "a.txt/nested.txt"), "nested");
+
+        unpack(entry);
+
+        assertEquals("a", read(new File(target, "a.txt")));
+    }
+
+    private byte[] pack(FileSystemLocationSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        packer.pack(entity(source), ImmutableMap.of(TREE, snapshot), output, ORIGIN_WRITER);
+        return output.toByteArray();
+    }
+
+    private FileSystemLocationSnapshot unpack(byte[] entry) throws IOException {
+        BuildCacheEntryPacker.UnpackResult result = packer.unpack(entity(target), new ByteArrayInputStream(entry), ORIGIN_READER);
+        return result.getSnapshots().get(TREE);
+    }
+
+    private FileSystemLocationSnapshot snapshot(File root) throws IOException {
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+        snapshot(root, builder);
+        return builder.getResult();
+    }
+
+    private void snapshot(File directory, DirectorySnapshotBuilder builder) throws IOException {
+        builder.enterDirectory(DIRECT, directory.getAbsolutePath(), directory.getName(), INCLUDE_EMPTY_DIRS);
+        for (File child : directory.listFiles()) {
+            if (child.isDirectory()) {
+                snapshot(child, builder);
+            } else {
+                try (InputStream input = new FileInputStream(child)) {
+                    builder.visitLeafElement(new RegularFileSnapshot(child.getAbsolutePath(), child.getName(), streamHasher.hash(input),
+                        DefaultFileMetadata.file(child.lastModified(), child.length(), DIRECT)));
+                }
+            }
+        }
+        builder.leaveDirectory();
+    }
+
+    private static CacheableEntity entity(File root) {
+        return new CacheableEntity() {
+            @Override
+            public String getIdentity() {
+                return ":test";
+            }
+
+            @Override
+            public Class<?> getType() {
+                return CacheableEntity.class;
+            }
+
+            @Override
+            public String getDisplayName() {
+                return "test";
+            }
+
+            @Override
+            public void visitOutputTrees(CacheableTreeVisitor visitor) {
+                visitor.visitOutputTree(TREE, TreeType.DIRECTORY, root);
+            }
+        };
+    }
+
+    private static void setLastModified(File... files) throws IOException {
+        for (File file : files) {
+            if (!file.setLastModified(OLD_TIMESTAMP)) {
+                throw new IOException("Could not set the modification time of " + file);
+            }
+        }
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+    }
+
+    private static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+
+    private static class TestFileSystemSupport implements TarPackerFileSystemSupport {
+        @Override
+        public void ensureFileIsMissing(File entry) throws IOException {
+            FileUtils.forceMkdirParent(entry);
+            if (entry.exists()) {
+                FileUtils.forceDelete(entry);
+            }
+        }
+
+        @Override
+        public void ensureDirectoryForTree(TreeType type, File root) throws IOException {
+            if (type == TreeType.DIRECTORY) {
+                FileUtils.forceMkdir(root);
+                FileUtils.cleanDirectory(root);
+            } else {
+                ensureFileIsMissing(root);
+            }
+        }
+
+        @Override
+        public void removeUnexpectedFiles(File root, Set<File> expected) throws IOException {
+            for (File child : root.listFiles()) {
+                if (!expected.contains(child)) {
+                    FileUtils.forceDelete(child);
+                } else if (child.isDirectory()) {
+                    removeUnexpectedFiles(child, expected);
+                }
+            }
+        }
+    }
+
+    private static class TestFilePermissionAccess implements FilePermissionAccess {
+        @Override
+        public int getUnixMode(File f) {
+            return f.isDirectory() ? 0755 : 0644;
+        }
+
+        @Override
+        public void chmod(File file, int mode) {
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.gradle.caching.local.internal;
+
+import org.gradle.internal.file.FileAccessTimeJournal;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class DirectoryBuildCacheEntryIndexTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long NO_MAX_AGE = Long.MAX_VALUE / 2;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final TestFileAccessTimeJournal journal = new TestFileAccessTimeJournal();
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedUntilTargetSize() {
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("a1", 100, HOUR);
+        index.stored("b2", 100, 3 * HOUR);
+        index.stored("c3", 100, 2 * HOUR);
+        index.stored("d4", 100, 4 * HOUR);
+        assertEquals(400, index.getTotalSize());
+
+        assertEquals(Collections.emptyList(), index.evict(400, 200, NO_MAX_AGE, 5 * HOUR));
+        index.stored("e5", 100, 5 * HOUR);
+        assertEquals(Arrays.asList("a1", "c3", "b2"), index.evict(400, 200, NO_MAX_AGE, 5 * HOUR));
+        assertEquals(200, index.getTotalSize());
+    }
+
+    @Test
+    public void storingAnEntryAgainReplacesIt() {
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("a1", 100, HOUR);
+        index.stored("a1", 150, 2 * HOUR);
+        assertEquals(150, index.getTotalSize());
+
+        index.removed("a1");
+        assertEquals(0, index.getTotalSize());
+    }
+
+    @Test
+    public void missingEntryIsRemoved() {
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("a1", 100, HOUR);
+        index.stored("b2", 100, HOUR);
+
+        index.accessed("a1", -1, 2 * HOUR);
+        assertEquals(100, index.getTotalSize());
+
+        // An entry stored by another process is added when it is loaded
+        index.accessed("c3", 50, 2 * HOUR);
+        assertEquals(150, index.getTotalSize());
+    }
+
+    @Test
+    public void entriesOlderThanMaxAgeAreEvicted() {
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("a1", 100, DAY);
+        index.stored("b2", 100, 5 * DAY);
+        index.stored("c3", 100, 2 * DAY);
+        index.accessed("c3", 100, 4 * DAY);
+
+        assertEquals(Collections.singletonList("a1"), index.evict(1000, 1000, 3 * DAY, 6 * DAY));
+        assertEquals(200, index.getTotalSize());
+    }
+
+    @Test
+    public void staleEntriesAreLookedForAtMostHourlyUnlessOverSize() {
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("a1", 100, DAY);
+        index.stored("b2", 100, 2 * DAY);
+        assertEquals(Collections.emptyList(), index.evict(1000, 1000, DAY, 2 * DAY));
+
+        // a1 is stale now, but the last sweep was less than an hour ago
+        assertEquals(Collections.emptyList(), index.evict(1000, 1000, DAY, 2 * DAY + HOUR / 2));
+        assertEquals(Collections.singletonList("a1"), index.evict(1000, 1000, DAY, 2 * DAY + HOUR));
+
+        assertEquals(Collections.emptyList(), index.evict(1000, 1000, DAY, 3 * DAY));
+        assertEquals(Collections.emptyList(), index.evict(1000, 1000, DAY, 3 * DAY + HOUR / 2));
+        // b2 is stale as well, it is evicted before the hour is over because the cache is over its size limit
+        index.stored("c3", 950, 3 * DAY + HOUR / 2);
+        assertEquals(Collections.singletonList("b2"), index.evict(1000, 1000, DAY, 3 * DAY + HOUR / 2));
+        assertEquals(950, index.getTotalSize());
+    }
+
+    @Test
+    public void entriesThatAreHitOftenOutliveRecentEntries() {
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("a1", 100, 0);
+        for (int i = 0; i < 3; i++) {
+            index.accessed("a1", 100, 0);
+        }
+        index.stored("b2", 100, HOUR);
+        index.stored("c3", 100, 2 * HOUR);
+        // One hit counts as much as an hour of recency
+        index.stored("d4", 100, 2 * HOUR + HOUR / 2);
+
+        assertEquals(Arrays.asList("b2", "c3", "d4"), index.evict(300, 100, NO_MAX_AGE, 3 * HOUR));
+        assertEquals(100, index.getTotalSize());
+    }
+
+    @Test
+    public void hitsCountUpToADay() {
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("a1", 100, 0);
+        for (int i = 0; i < 100; i++) {
+            index.accessed("a1", 100, 0);
+        }
+        index.stored("b2", 100, DAY + HOUR);
+
+        assertEquals(Collections.singletonList("a1"), index.evict(100, 100, NO_MAX_AGE, DAY + HOUR));
+    }
+
+    @Test
+    public void indexIsLoadedFromDirectoryWhenFirstUsed() throws IOException {
+        File baseDir = temporaryFolder.getRoot();
+        writeEntry(baseDir, "0a1b", 10, 3 * HOUR);
+        writeEntry(baseDir, "ff", 20, HOUR);
+        writeEntry(baseDir, "c3", 30, 2 * HOUR);
+        writeEntry(baseDir, "not-an-entry", 40, 0);
+        writeEntry(baseDir, "0a1b.part", 50, 0);
+        Files.createDirectory(new File(baseDir, "ab").toPath());
+
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        // Doesn't list the directory
+        assertEquals(0, index.getTotalSize());
+
+        index.removed("dd");
+        assertEquals(60, index.getTotalSize());
+
+        // The access times are the ones of the journal
+        assertEquals(Arrays.asList("ff", "c3"), index.evict(50, 10, NO_MAX_AGE, 4 * HOUR));
+        assertEquals(10, index.getTotalSize());
+    }
+
+    @Test
+    public void indexIsOnlyLoadedOnce() throws IOException {
+        File baseDir = temporaryFolder.getRoot();
+        writeEntry(baseDir, "a1", 10, HOUR);
+
+        DirectoryBuildCacheEntryIndex index = createIndex();
+        index.stored("b2", 20, 2 * HOUR);
+        assertEquals(30, index.getTotalSize());
+
+        // Entries added by another process are not listed again
+        writeEntry(baseDir, "c3", 40, HOUR);
+        index.stored("d4", 5, 3 * HOUR);
+        assertEquals(35, index.getTotalSize());
+
+        // A new index only sees the files in the directory
+        DirectoryBuildCacheEntryIndex reloaded = createIndex();
+        reloaded.removed("b2");
+        assertEquals(50, reloaded.getTotalSize());
+    }
+
+    private DirectoryBuildCacheEntryIndex createIndex() {
+        return new DirectoryBuildCacheEntryIndex(temporaryFolder.getRoot(), journal);
+    }
+
+    private void writeEntry(File baseDir, String name, int size, long lastAccess) throws IOException {
+        File file = new File(baseDir, name);
+        Files.write(file.toPath(), new byte[size]);
+        journal.setLastAccessTime(file, lastAccess);
+    }
+
+    private static class TestFileAccessTimeJournal implements FileAccessTimeJournal {
+        private final Map<File, Long> accessTimes = new HashMap<>();
+
+        @Override
+        public long getLastAccessTime(File file) {
+            return accessTimes.getOrDefault(file, 0L);
+        }
+
+        @Override
+        public void setLastAccessTime(File file, long millis) {
+            accessTimes.put(file, millis);
+        }
+
+        @Override
+        public void deleteLastAccessTime(File file) {
+            accessTimes.remove(file);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.gradle.caching.http;
+
+import org.gradle.api.Action;
+import org.gradle.caching.configuration.AbstractBuildCache;
+
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Configuration object for the HTTP build cache.
+ *
+ * Cache entries are loaded via {@code GET} and stored via {@code PUT} requests.
+ * <p>
+ * For loading, any {@code 2xx} response will be considered a cache hit.
+ * A {@code 404} response will be considered a cache miss.
+ * Any other response will be considered an error.
+ * <p>
+ * For storing, any {@code 2xx} response will be considered a success.
+ * A {@code 413} response will be considered as the entry being too large for the server,
+ * it is not an error. Entries larger than {@link #getMaxEntrySize()} are never sent.
+ * <p>
+ * Redirect responses are followed, the credentials are only sent to the configured URL.
+ */
+public class HttpBuildCache extends AbstractBuildCache {
+    private final HttpBuildCacheCredentials credentials;
+    private URI url;
+    private boolean allowUntrustedServer;
+    private boolean allowInsecureProtocol;
+    private boolean useExpectContinue;
+    private long maxEntrySize = 100 * 1024 * 1024;
+
+    public HttpBuildCache() {
+        this.credentials = new HttpBuildCacheCredentials();
+    }
+
+    /**
+     * Returns the URI to the cache.
+     */
+    @Nullable
+    public URI getUrl() {
+        return url;
+    }
+
+    /**
+     * Sets the URL of the cache. The URL must end in a '/'.
+     */
+    public void setUrl(String url) throws URISyntaxException {
+        setUrl(new URI(url));
+    }
+
+    /**
+     * Sets the URL of the cache. The URL must end in a '/'.
+     */
+    public void setUrl(@Nullable URI url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the credentials used to access the HTTP cache backend.
+     */
+    public HttpBuildCacheCredentials getCredentials() {
+        return credentials;
+    }
+
+    /**
+     * Configures the credentials used to access the HTTP cache backend.
+     */
+    public void credentials(Action<? super HttpBuildCacheCredentials> configuration) {
+        configuration.execute(credentials);
+    }
+
+    /**
+     * Specifies whether it is acceptable to communicate with a HTTP build cache backend with an untrusted SSL certificate.
+     * <p>
+     * This should only be enabled for a local cache server, for example the one started for testing.
+     */
+    public boolean isAllowUntrustedServer() {
+        return allowUntrustedServer;
+    }
+
+    /**
+     * Specifies whether it is acceptable to communicate with a HTTP build cache backend with an untrusted SSL certificate.
+     */
+    public void setAllowUntrustedServer(boolean allowUntrustedServer) {
+        this.allowUntrustedServer = allowUntrustedServer;
+    }
+
+    /**
+     * Specifies whether it is acceptable to communicate with a build cache over an insecure HTTP connection.
+     */
+    public boolean isAllowInsecureProtocol() {
+        return allowInsecureProtocol;
+    }
+
+    /**
+     * Specifies whether it is acceptable to communicate with a build cache over an insecure HTTP connection.
+     */
+    public void setAllowInsecureProtocol(boolean allowInsecureProtocol) {
+        this.allowInsecureProtocol = allowInsecureProtocol;
+    }
+
+    /**
+     * Specifies whether HTTP expect-continue should be used for store requests.
+     * <p>
+     * This allows the server to reject a store before the entry has been uploaded,
+     * which saves bandwidth for large entries the server does not want.
+     */
+    public boolean isUseExpectContinue() {
+        return useExpectContinue;
+    }
+
+    /**
+     * Specifies whether HTTP expect-continue should be used for store requests.
+     */
+    public void setUseExpectContinue(boolean useExpectContinue) {
+        this.useExpectContinue = useExpectContinue;
+    }
+
+    /**
+     * Returns the size in bytes of the largest entry that is stored in the cache. Defaults to 100 MB.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Sets the size in bytes of the largest entry that is stored in the cache.
+     * Larger entries are skipped without contacting the server.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        if (maxEntrySize < 1) {
+            throw new IllegalArgumentException("The maximum entry size of the HTTP build cache must be positive.");
+        }
+        this.maxEntrySize = maxEntrySize;
+    }
+}
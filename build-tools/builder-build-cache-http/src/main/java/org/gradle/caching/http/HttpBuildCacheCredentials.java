@@ -0,0 +1,47 @@
+package org.gradle.caching.http;
+
+import org.gradle.api.credentials.PasswordCredentials;
+
+import javax.annotation.Nullable;
+
+/**
+ * Password credentials for a HTTP build cache backend.
+ */
+public class HttpBuildCacheCredentials implements PasswordCredentials {
+    private String username;
+    private String password;
+
+    /**
+     * Returns the username that will be used to access the HTTP build cache backend.
+     */
+    @Nullable
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Sets the username that will be used to access the HTTP build cache backend.
+     */
+    @Override
+    public void setUsername(@Nullable String username) {
+        this.username = username;
+    }
+
+    /**
+     * Returns the password that will be used to access the HTTP build cache backend.
+     */
+    @Nullable
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Sets the password that will be used to access the HTTP build cache backend.
+     */
+    @Override
+    public void setPassword(@Nullable String password) {
+        this.password = password;
+    }
+}
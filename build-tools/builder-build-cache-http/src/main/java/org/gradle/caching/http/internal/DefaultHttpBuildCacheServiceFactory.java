@@ -0,0 +1,129 @@
+package org.gradle.caching.http.internal;
+
+import org.gradle.authentication.Authentication;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.BuildCacheServiceFactory;
+import org.gradle.caching.http.HttpBuildCache;
+import org.gradle.caching.http.HttpBuildCacheCredentials;
+import org.gradle.internal.authentication.DefaultBasicAuthentication;
+import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
+import org.gradle.internal.resource.transport.http.HttpClientHelper;
+import org.gradle.internal.resource.transport.http.HttpSettings;
+import org.gradle.internal.resource.transport.http.SslContextFactory;
+import org.gradle.internal.verifier.HttpRedirectVerifier;
+import org.gradle.internal.verifier.HttpRedirectVerifierFactory;
+
+import javax.inject.Inject;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Build cache factory for HTTP backends.
+ */
+public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
+
+    private static final int MAX_REDIRECTS = Integer.getInteger("org.gradle.cache.http.max-redirects", 10);
+
+    private final SslContextFactory sslContextFactory;
+    private final HttpClientHelper.Factory httpClientHelperFactory;
+
+    @Inject
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpClientHelper.Factory httpClientHelperFactory) {
+        this.sslContextFactory = sslContextFactory;
+        this.httpClientHelperFactory = httpClientHelperFactory;
+    }
+
+    @Override
+    public BuildCacheService createBuildCacheService(HttpBuildCache configuration, Describer describer) {
+        URI url = configuration.getUrl();
+        if (url == null) {
+            throw new IllegalStateException("HTTP build cache has no URL configured");
+        }
+        URI noUserInfoUrl = stripUserInfo(url);
+
+        HttpBuildCacheCredentials credentials = configuration.getCredentials();
+        if (!credentialsPresent(credentials) && url.getUserInfo() != null) {
+            credentials = extractCredentialsFromUserInfo(url);
+        }
+
+        Collection<Authentication> authentications = Collections.emptyList();
+        if (credentialsPresent(credentials)) {
+            DefaultBasicAuthentication basicAuthentication = new DefaultBasicAuthentication("basic");
+            basicAuthentication.setCredentials(credentials);
+            basicAuthentication.addHost(url.getHost(), url.getPort());
+            authentications = Collections.singleton(basicAuthentication);
+        }
+
+        boolean authenticated = !authentications.isEmpty();
+        boolean allowUntrustedServer = configuration.isAllowUntrustedServer();
+        boolean allowInsecureProtocol = configuration.isAllowInsecureProtocol();
+        boolean useExpectContinue = configuration.isUseExpectContinue();
+        long maxEntrySize = configuration.getMaxEntrySize();
+
+        HttpRedirectVerifier redirectVerifier = createRedirectVerifier(noUserInfoUrl, allowInsecureProtocol);
+
+        DefaultHttpSettings.Builder builder = DefaultHttpSettings.builder()
+            .withAuthenticationSettings(authentications)
+            .maxRedirects(MAX_REDIRECTS)
+            .withRedirectMethodHandlingStrategy(HttpSettings.RedirectMethodHandlingStrategy.ALLOW_FOLLOW_FOR_MUTATIONS)
+            .withRedirectVerifier(redirectVerifier);
+        if (allowUntrustedServer) {
+            builder.allowUntrustedConnections();
+        } else {
+            builder.withSslContextFactory(sslContextFactory);
+        }
+
+        HttpClientHelper httpClientHelper = httpClientHelperFactory.create(builder.build());
+
+        describer.type("HTTP")
+            .config("url", noUserInfoUrl.toASCIIString())
+            .config("authenticated", Boolean.toString(authenticated))
+            .config("allowUntrustedServer", Boolean.toString(allowUntrustedServer))
+            .config("allowInsecureProtocol", Boolean.toString(allowInsecureProtocol))
+            .config("useExpectContinue", Boolean.toString(useExpectContinue))
+            .config("maxEntrySize", Long.toString(maxEntrySize));
+
+        return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, useExpectContinue, maxEntrySize);
+    }
+
+    private static HttpRedirectVerifier createRedirectVerifier(URI url, boolean allowInsecureProtocol) {
+        return HttpRedirectVerifierFactory.create(
+            url,
+            allowInsecureProtocol,
+            () -> {
+                throw new IllegalStateException(String.format(
+                    "Using insecure protocols with remote build cache, without explicit opt-in, is unsupported. " +
+                        "Switch remote build cache to a secure protocol (like HTTPS) or allow insecure protocols. URL: %s", url));
+            },
+            redirect -> {
+                throw new IllegalStateException("Redirecting an HTTP build cache request to an insecure protocol is not allowed: " + redirect);
+            });
+    }
+
+    private static URI stripUserInfo(URI uri) {
+        try {
+            return new URI(uri.getScheme(), null, uri.getHost(), uri.getPort(), uri.getPath(), uri.getQuery(), uri.getFragment());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean credentialsPresent(HttpBuildCacheCredentials credentials) {
+        return credentials.getUsername() != null && credentials.getPassword() != null;
+    }
+
+    private static HttpBuildCacheCredentials extractCredentialsFromUserInfo(URI url) {
+        HttpBuildCacheCredentials credentials = new HttpBuildCacheCredentials();
+        String userInfo = url.getUserInfo();
+        int indexOfSeparator = userInfo.indexOf(':');
+        if (indexOfSeparator > -1) {
+            String username = userInfo.substring(0, indexOfSeparator);
+            String password = userInfo.substring(indexOfSeparator + 1);
+            credentials.setUsername(username);
+            credentials.setPassword(password);
+        }
+        return credentials;
+    }
+}
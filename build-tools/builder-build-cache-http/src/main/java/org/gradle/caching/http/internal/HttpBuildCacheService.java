@@ -0,0 +1,159 @@
+package org.gradle.caching.http.internal;
+
+import com.google.common.collect.ImmutableSet;
+import cz.msebera.android.httpclient.HttpHeaders;
+import cz.msebera.android.httpclient.HttpStatus;
+import cz.msebera.android.httpclient.StatusLine;
+import cz.msebera.android.httpclient.client.methods.HttpGet;
+import cz.msebera.android.httpclient.client.methods.HttpPut;
+import cz.msebera.android.httpclient.entity.AbstractHttpEntity;
+import cz.msebera.android.httpclient.protocol.HTTP;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.resource.transport.http.HttpClientHelper;
+import org.gradle.internal.resource.transport.http.HttpClientResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Set;
+
+/**
+ * Build cache service that loads entries with {@code GET} and stores them with {@code PUT}
+ * requests against {@code <root>/<cache key>}.
+ *
+ * All requests share the connection pool of the {@link HttpClientHelper}, so loading the
+ * entries of many tasks does not open a connection per entry.
+ */
+public class HttpBuildCacheService implements BuildCacheService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheService.class);
+
+    static final String BUILD_CACHE_CONTENT_TYPE = "application/vnd.gradle.build-cache-artifact.v1";
+
+    private static final Set<Integer> FATAL_HTTP_ERROR_CODES = ImmutableSet.of(
+            HttpStatus.SC_USE_PROXY,
+            HttpStatus.SC_BAD_REQUEST,
+            HttpStatus.SC_UNAUTHORIZED, HttpStatus.SC_FORBIDDEN, HttpStatus.SC_PROXY_AUTHENTICATION_REQUIRED,
+            HttpStatus.SC_METHOD_NOT_ALLOWED,
+            HttpStatus.SC_NOT_ACCEPTABLE, HttpStatus.SC_LENGTH_REQUIRED, HttpStatus.SC_REQUEST_URI_TOO_LONG, HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE,
+            HttpStatus.SC_NOT_IMPLEMENTED,
+            HttpStatus.SC_HTTP_VERSION_NOT_SUPPORTED);
+
+    private final HttpClientHelper httpClientHelper;
+    private final URI root;
+    private final boolean useExpectContinue;
+    private final long maxEntrySize;
+
+    public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url, boolean useExpectContinue, long maxEntrySize) {
+        if (!url.getPath().endsWith("/")) {
+            throw new IllegalArgumentException("HTTP cache root URI must end with '/'");
+        }
+        this.root = url;
+        this.httpClientHelper = httpClientHelper;
+        this.useExpectContinue = useExpectContinue;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        URI uri = root.resolve("./" + key.getHashCode());
+        HttpGet httpGet = new HttpGet(uri);
+        httpGet.addHeader(HttpHeaders.ACCEPT, BUILD_CACHE_CONTENT_TYPE + ", */*");
+
+        LOGGER.debug("Loading entry {} from {}", key.getHashCode(), uri);
+        try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpGet)) {
+            StatusLine statusLine = response.getStatusLine();
+            int statusCode = statusLine.getStatusCode();
+            if (isHttpSuccess(statusCode)) {
+                reader.readFrom(response.getContent());
+                return true;
+            } else if (statusCode == HttpStatus.SC_NOT_FOUND) {
+                return false;
+            } else {
+                throw httpStatusCodeException(statusCode, String.format("Loading entry from '%s' response status %d: %s", uri, statusCode, statusLine.getReasonPhrase()));
+            }
+        } catch (IOException e) {
+            throw new BuildCacheException("Unable to load entry from '" + uri + "': " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void store(BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        long size = writer.getSize();
+        if (size > maxEntrySize) {
+            LOGGER.info("Skipping store of entry {} to the HTTP build cache, its size {} exceeds the maximum of {} bytes", key.getHashCode(), size, maxEntrySize);
+            return;
+        }
+
+        URI uri = root.resolve("./" + key.getHashCode());
+        HttpPut httpPut = new HttpPut(uri);
+        httpPut.addHeader(HttpHeaders.CONTENT_TYPE, BUILD_CACHE_CONTENT_TYPE);
+        if (useExpectContinue) {
+            // A header rather than a request config so the timeouts configured on the client are kept
+            httpPut.addHeader(HTTP.EXPECT_DIRECTIVE, HTTP.EXPECT_CONTINUE);
+        }
+        httpPut.setEntity(new AbstractHttpEntity() {
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+
+            @Override
+            public long getContentLength() {
+                return size;
+            }
+
+            @Override
+            public InputStream getContent() throws UnsupportedOperationException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void writeTo(OutputStream outstream) throws IOException {
+                writer.writeTo(outstream);
+            }
+
+            @Override
+            public boolean isStreaming() {
+                return false;
+            }
+        });
+
+        LOGGER.debug("Storing entry {} to {}", key.getHashCode(), uri);
+        try (HttpClientResponse response = httpClientHelper.performHttpRequest(httpPut)) {
+            StatusLine statusLine = response.getStatusLine();
+            int statusCode = statusLine.getStatusCode();
+            if (statusCode == HttpStatus.SC_REQUEST_TOO_LONG) {
+                LOGGER.info("The HTTP build cache rejected entry {} of {} bytes as too large", key.getHashCode(), size);
+            } else if (!isHttpSuccess(statusCode)) {
+                throw httpStatusCodeException(statusCode, String.format("Storing entry at '%s' response status %d: %s", uri, statusCode, statusLine.getReasonPhrase()));
+            }
+        } catch (IOException e) {
+            throw new BuildCacheException("Unable to store entry at '" + uri + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isHttpSuccess(int statusCode) {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    private static RuntimeException httpStatusCodeException(int statusCode, String message) {
+        if (FATAL_HTTP_ERROR_CODES.contains(statusCode)) {
+            return new UncheckedIOException(message);
+        }
+        return new BuildCacheException(message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClientHelper.close();
+    }
+}
@@ -0,0 +1,18 @@
+package org.gradle.caching.http.internal;
+
+import org.gradle.caching.configuration.internal.BuildCacheServiceRegistration;
+import org.gradle.caching.configuration.internal.DefaultBuildCacheServiceRegistration;
+import org.gradle.caching.http.HttpBuildCache;
+import org.gradle.internal.service.ServiceRegistration;
+import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
+
+public class HttpBuildCacheServiceServices extends AbstractPluginServiceRegistry {
+    @Override
+    public void registerBuildServices(ServiceRegistration registration) {
+        registration.addProvider(new Object() {
+            BuildCacheServiceRegistration createHttpBuildCacheServiceRegistration() {
+                return new DefaultBuildCacheServiceRegistration(HttpBuildCache.class, DefaultHttpBuildCacheServiceFactory.class);
+            }
+        });
+    }
+}
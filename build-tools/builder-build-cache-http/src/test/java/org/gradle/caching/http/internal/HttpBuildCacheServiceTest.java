@@ -0,0 +1,138 @@
+package org.gradle.caching.http.internal;
+
+import org.gradle.api.internal.DocumentationRegistry;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
+import org.gradle.internal.resource.transport.http.HttpClientHelper;
+import org.gradle.internal.verifier.HttpRedirectVerifierFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpBuildCacheServiceTest {
+
+    private static final long MAX_ENTRY_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpBuildCacheServer server;
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpBuildCacheServer.start(temporaryFolder.newFolder("server"), 0, MAX_ENTRY_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void storedEntryCanBeLoaded() throws IOException {
+        byte[] contents = "entry".getBytes(StandardCharsets.UTF_8);
+        try (HttpBuildCacheService service = createService(MAX_ENTRY_SIZE)) {
+            service.store(key("0a"), writer(contents));
+
+            assertArrayEquals(contents, load(service, key("0a")));
+        }
+    }
+
+    @Test
+    public void missingEntryIsNotLoaded() throws IOException {
+        try (HttpBuildCacheService service = createService(MAX_ENTRY_SIZE)) {
+            assertFalse(service.load(key("0b"), input -> {
+                throw new AssertionError("Missing entry was read");
+            }));
+        }
+    }
+
+    @Test
+    public void entryLargerThanMaxEntrySizeIsNotStored() throws IOException {
+        try (HttpBuildCacheService service = createService(4)) {
+            service.store(key("0c"), writer("too large".getBytes(StandardCharsets.UTF_8)));
+
+            assertFalse(service.load(key("0c"), input -> {
+                throw new AssertionError("Skipped entry was read");
+            }));
+        }
+    }
+
+    @Test
+    public void entryRejectedByServerIsNotStored() throws IOException {
+        try (HttpBuildCacheService service = createService(Long.MAX_VALUE)) {
+            service.store(key("0d"), writer(new byte[(int) MAX_ENTRY_SIZE + 1]));
+
+            assertFalse(service.load(key("0d"), input -> {
+                throw new AssertionError("Rejected entry was read");
+            }));
+        }
+    }
+
+    private HttpBuildCacheService createService(long maxEntrySize) {
+        HttpClientHelper httpClientHelper = HttpClientHelper.Factory.createFactory(new DocumentationRegistry())
+            .create(DefaultHttpSettings.builder()
+                .withAuthenticationSettings(Collections.emptyList())
+                .allowUntrustedConnections()
+                .withRedirectVerifier(HttpRedirectVerifierFactory.create(server.getUri(), true, () -> {}, uri -> {}))
+                .build());
+        return new HttpBuildCacheService(httpClientHelper, server.getUri(), false, maxEntrySize);
+    }
+
+    private static byte[] load(HttpBuildCacheService service, BuildCacheKey key) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(service.load(key, input -> {
+            try (InputStream in = input) {
+                in.transferTo(output);
+            }
+        }));
+        return output.toByteArray();
+    }
+
+    private static BuildCacheEntryWriter writer(byte[] contents) {
+        return new BuildCacheEntryWriter() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                output.write(contents);
+            }
+
+            @Override
+            public long getSize() {
+                return contents.length;
+            }
+        };
+    }
+
+    private static BuildCacheKey key(String hashCode) {
+        return new BuildCacheKey() {
+            @Override
+            public String getHashCode() {
+                return hashCode;
+            }
+
+            @Override
+            public byte[] toByteArray() {
+                return hashCode.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String getDisplayName() {
+                return hashCode;
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package org.gradle.caching.http.internal;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal build cache backend that speaks the protocol of {@link HttpBuildCacheService}
+ * and keeps its entries as files of a directory.
+ *
+ * It is meant for tests, it binds to the loopback address so the cache can be used over plain
+ * HTTP. The server uses the HTTP server of the JDK, so it is only part of the test fixtures
+ * and never ends up on the classpath of the app.
+ */
+public class HttpBuildCacheServer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpBuildCacheServer.class);
+
+    private static final String CONTEXT_PATH = "/cache/";
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-fA-F]+");
+    private static final int THREADS = 8;
+
+    private final File directory;
+    private final long maxEntrySize;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private HttpBuildCacheServer(File directory, long maxEntrySize, HttpServer server, ExecutorService executor) {
+        this.directory = directory;
+        this.maxEntrySize = maxEntrySize;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a server on the loopback address that stores its entries in the given directory.
+     *
+     * @param port The port to listen on, {@code 0} picks a free port
+     * @param maxEntrySize The size in bytes of the largest entry that is accepted
+     */
+    public static HttpBuildCacheServer start(File directory, int port, long maxEntrySize) throws IOException {
+        Files.createDirectories(directory.toPath());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        HttpBuildCacheServer cacheServer = new HttpBuildCacheServer(directory, maxEntrySize, server, executor);
+        server.createContext(CONTEXT_PATH, cacheServer::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.info("HTTP build cache server listening on {}", cacheServer.getUri());
+        return cacheServer;
+    }
+
+    /**
+     * @return The URI to configure as the {@code url} of the {@link org.gradle.caching.http.HttpBuildCache}
+     */
+    public URI getUri() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + CONTEXT_PATH);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String key = exchange.getRequestURI().getPath().substring(CONTEXT_PATH.length());
+            if (!KEY_PATTERN.matcher(key).matches()) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_REQUEST, -1);
+                return;
+            }
+            File entry = new File(directory, key);
+            switch (exchange.getRequestMethod()) {
+                case "GET":
+                    handleGet(exchange, entry);
+                    break;
+                case "PUT":
+                    handlePut(exchange, entry);
+                    break;
+                default:
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            throw e;
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void handleGet(HttpExchange exchange, File entry) throws IOException {
+        if (!entry.isFile()) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", HttpBuildCacheService.BUILD_CACHE_CONTENT_TYPE);
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, entry.length());
+        try (OutputStream output = exchange.getResponseBody()) {
+            Files.copy(entry.toPath(), output);
+        }
+    }
+
+    private void handlePut(HttpExchange exchange, File entry) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null && Long.parseLong(contentLength) > maxEntrySize) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, -1);
+            return;
+        }
+
+        // Written next to the entry and moved in place, so a concurrent GET never sees a partial entry
+        Path temp = Files.createTempFile(directory.toPath(), entry.getName(), ".part");
+        try {
+            try (InputStream input = exchange.getRequestBody()) {
+                Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (Files.size(temp) > maxEntrySize) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, -1);
+                return;
+            }
+            Files.move(temp, entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_CREATED, -1);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
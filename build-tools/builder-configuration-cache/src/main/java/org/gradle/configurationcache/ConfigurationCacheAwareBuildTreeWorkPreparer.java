@@ -0,0 +1,42 @@
+package org.gradle.configurationcache;
+
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.internal.buildtree.BuildTreeWorkGraph;
+import org.gradle.internal.buildtree.BuildTreeWorkPreparer;
+
+/**
+ * Schedules the tasks of the root build from the configuration cache when the cached entry can
+ * be reused, and stores a new entry once the tasks were scheduled otherwise.
+ */
+class ConfigurationCacheAwareBuildTreeWorkPreparer implements BuildTreeWorkPreparer {
+
+    private final BuildTreeWorkPreparer delegate;
+    private final GradleInternal gradle;
+    private final DefaultConfigurationCache cache;
+
+    ConfigurationCacheAwareBuildTreeWorkPreparer(BuildTreeWorkPreparer delegate, GradleInternal gradle, DefaultConfigurationCache cache) {
+        this.delegate = delegate;
+        this.gradle = gradle;
+        this.cache = cache;
+    }
+
+    @Override
+    public void scheduleRequestedTasks(BuildTreeWorkGraph graph) {
+        if (!cache.canLoad()) {
+            delegate.scheduleRequestedTasks(graph);
+            if (cache.isCacheable()) {
+                cache.store(gradle);
+            }
+            return;
+        }
+
+        cache.load(gradle);
+        try {
+            delegate.scheduleRequestedTasks(graph);
+        } catch (RuntimeException | Error e) {
+            // The cached tasks may no longer exist, the next build configures everything again
+            cache.invalidate();
+            throw e;
+        }
+    }
+}
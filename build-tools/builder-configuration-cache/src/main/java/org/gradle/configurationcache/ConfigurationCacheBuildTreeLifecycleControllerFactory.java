@@ -0,0 +1,51 @@
+package org.gradle.configurationcache;
+
+import org.gradle.composite.internal.BuildTreeWorkGraphController;
+import org.gradle.internal.build.BuildLifecycleController;
+import org.gradle.internal.buildtree.BuildModelParameters;
+import org.gradle.internal.buildtree.BuildTreeFinishExecutor;
+import org.gradle.internal.buildtree.BuildTreeLifecycleController;
+import org.gradle.internal.buildtree.BuildTreeLifecycleControllerFactory;
+import org.gradle.internal.buildtree.BuildTreeWorkExecutor;
+import org.gradle.internal.buildtree.BuildTreeWorkPreparer;
+import org.gradle.internal.buildtree.DefaultBuildTreeLifecycleController;
+import org.gradle.internal.model.StateTransitionControllerFactory;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.resources.ProjectLeaseRegistry;
+
+/**
+ * Creates the controller of the root build so that its work is prepared through the
+ * {@link DefaultConfigurationCache}. Other builds of the tree are controlled as usual.
+ */
+public class ConfigurationCacheBuildTreeLifecycleControllerFactory implements BuildTreeLifecycleControllerFactory {
+
+    private final VintageBuildTreeLifecycleControllerFactory vintageFactory;
+    private final BuildTreeWorkGraphController taskGraph;
+    private final StateTransitionControllerFactory stateTransitionControllerFactory;
+    private final DefaultConfigurationCache cache;
+
+    public ConfigurationCacheBuildTreeLifecycleControllerFactory(
+        BuildModelParameters buildModelParameters,
+        BuildTreeWorkGraphController taskGraph,
+        BuildOperationExecutor buildOperationExecutor,
+        ProjectLeaseRegistry projectLeaseRegistry,
+        StateTransitionControllerFactory stateTransitionControllerFactory,
+        DefaultConfigurationCache cache
+    ) {
+        this.vintageFactory = new VintageBuildTreeLifecycleControllerFactory(buildModelParameters, taskGraph, buildOperationExecutor, projectLeaseRegistry, stateTransitionControllerFactory);
+        this.taskGraph = taskGraph;
+        this.stateTransitionControllerFactory = stateTransitionControllerFactory;
+        this.cache = cache;
+    }
+
+    @Override
+    public BuildTreeLifecycleController createRootBuildController(BuildLifecycleController targetBuild, BuildTreeWorkExecutor workExecutor, BuildTreeFinishExecutor finishExecutor) {
+        BuildTreeWorkPreparer workPreparer = new ConfigurationCacheAwareBuildTreeWorkPreparer(vintageFactory.createWorkPreparer(targetBuild), targetBuild.getGradle(), cache);
+        return new DefaultBuildTreeLifecycleController(targetBuild, taskGraph, workPreparer, workExecutor, vintageFactory.createModelCreator(targetBuild), finishExecutor, stateTransitionControllerFactory);
+    }
+
+    @Override
+    public BuildTreeLifecycleController createController(BuildLifecycleController targetBuild, BuildTreeWorkExecutor workExecutor, BuildTreeFinishExecutor finishExecutor) {
+        return vintageFactory.createController(targetBuild, workExecutor, finishExecutor);
+    }
+}
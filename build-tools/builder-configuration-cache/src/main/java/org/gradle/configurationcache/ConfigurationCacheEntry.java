@@ -0,0 +1,50 @@
+package org.gradle.configurationcache;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * What is kept from a build to configure the next build with the same {@link ConfigurationCacheKey}:
+ * the paths of the tasks that the requested task names selected, and the fingerprint of the
+ * files the selection depends on.
+ */
+class ConfigurationCacheEntry {
+
+    private final ConfigurationCacheFingerprint fingerprint;
+    private final List<String> requestedTaskPaths;
+
+    ConfigurationCacheEntry(ConfigurationCacheFingerprint fingerprint, List<String> requestedTaskPaths) {
+        this.fingerprint = fingerprint;
+        this.requestedTaskPaths = requestedTaskPaths;
+    }
+
+    ConfigurationCacheFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    List<String> getRequestedTaskPaths() {
+        return requestedTaskPaths;
+    }
+
+    void write(Encoder encoder) throws IOException {
+        fingerprint.write(encoder);
+        encoder.writeSmallInt(requestedTaskPaths.size());
+        for (String path : requestedTaskPaths) {
+            encoder.writeString(path);
+        }
+    }
+
+    static ConfigurationCacheEntry read(Decoder decoder) throws IOException {
+        ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.read(decoder);
+        int count = decoder.readSmallInt();
+        ImmutableList.Builder<String> requestedTaskPaths = ImmutableList.builderWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            requestedTaskPaths.add(decoder.readString());
+        }
+        return new ConfigurationCacheEntry(fingerprint, requestedTaskPaths.build());
+    }
+}
@@ -0,0 +1,118 @@
+package org.gradle.configurationcache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import static org.gradle.util.internal.GFileUtils.relativePathOf;
+
+/**
+ * The files that were read while the build was configured, with their contents at that time.
+ *
+ * The length and modification time of every file are recorded too, so checking the fingerprint
+ * only hashes the files that were touched since the entry was stored.
+ */
+class ConfigurationCacheFingerprint {
+
+    private final List<InputFile> inputFiles;
+
+    private ConfigurationCacheFingerprint(List<InputFile> inputFiles) {
+        this.inputFiles = inputFiles;
+    }
+
+    /**
+     * Records the current state of the given files, files that do not exist are recorded as missing.
+     */
+    static ConfigurationCacheFingerprint capture(Collection<File> files, FileHasher fileHasher) {
+        ImmutableList.Builder<InputFile> inputFiles = ImmutableList.builder();
+        for (File file : files) {
+            if (file.isFile()) {
+                long length = file.length();
+                long lastModified = file.lastModified();
+                inputFiles.add(new InputFile(file.getAbsolutePath(), length, lastModified, fileHasher.hash(file, length, lastModified)));
+            } else {
+                inputFiles.add(new InputFile(file.getAbsolutePath(), 0, 0, null));
+            }
+        }
+        return new ConfigurationCacheFingerprint(inputFiles.build());
+    }
+
+    CheckedFingerprint check(FileHasher fileHasher, File rootDirectory) {
+        for (InputFile inputFile : inputFiles) {
+            File file = new File(inputFile.path);
+            boolean exists = file.isFile();
+            if (inputFile.hash == null) {
+                if (exists) {
+                    return new CheckedFingerprint.EntryInvalid("file '" + relativePathOf(file, rootDirectory) + "' has been created");
+                }
+                continue;
+            }
+            if (!exists) {
+                return new CheckedFingerprint.EntryInvalid("file '" + relativePathOf(file, rootDirectory) + "' has been removed");
+            }
+
+            long length = file.length();
+            long lastModified = file.lastModified();
+            if (length == inputFile.length && lastModified == inputFile.lastModified) {
+                continue;
+            }
+            if (!inputFile.hash.equals(fileHasher.hash(file, length, lastModified))) {
+                return new CheckedFingerprint.EntryInvalid("file '" + relativePathOf(file, rootDirectory) + "' has changed");
+            }
+        }
+        return CheckedFingerprint.Valid.INSTANCE;
+    }
+
+    void write(Encoder encoder) throws IOException {
+        encoder.writeSmallInt(inputFiles.size());
+        for (InputFile inputFile : inputFiles) {
+            encoder.writeString(inputFile.path);
+            encoder.writeBoolean(inputFile.hash != null);
+            if (inputFile.hash != null) {
+                encoder.writeLong(inputFile.length);
+                encoder.writeLong(inputFile.lastModified);
+                encoder.writeBinary(inputFile.hash.asBytes());
+            }
+        }
+    }
+
+    static ConfigurationCacheFingerprint read(Decoder decoder) throws IOException {
+        int count = decoder.readSmallInt();
+        ImmutableList.Builder<InputFile> inputFiles = ImmutableList.builderWithExpectedSize(count);
+        for (int i = 0; i < count; i++) {
+            String path = decoder.readString();
+            if (decoder.readBoolean()) {
+                long length = decoder.readLong();
+                long lastModified = decoder.readLong();
+                HashCode hash = HashCode.fromBytes(decoder.readBinary());
+                inputFiles.add(new InputFile(path, length, lastModified, hash));
+            } else {
+                inputFiles.add(new InputFile(path, 0, 0, null));
+            }
+        }
+        return new ConfigurationCacheFingerprint(inputFiles.build());
+    }
+
+    private static class InputFile {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+        @Nullable
+        private final HashCode hash;
+
+        InputFile(String path, long length, long lastModified, @Nullable HashCode hash) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
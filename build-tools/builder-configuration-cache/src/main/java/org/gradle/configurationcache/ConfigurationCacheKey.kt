@@ -59,6 +59,10 @@ class ConfigurationCacheKey(
         }
 
         putBoolean(startParameter.isOffline)
+
+        // Properties passed on the command line are read while the build is configured
+        putProperties(startParameter.gradleProperties)
+        putProperties(startParameter.systemPropertiesArgs)
     }
 
     private
@@ -94,6 +98,15 @@ class ConfigurationCacheKey(
         }
     }
 
+    private
+    fun Hasher.putProperties(properties: Map<String, Any?>) {
+        putInt(properties.size)
+        properties.entries.sortedBy { it.key }.forEach { (key, value) ->
+            putString(key, StandardCharsets.UTF_8)
+            putString(value?.toString() ?: "", StandardCharsets.UTF_8)
+        }
+    }
+
     private
     fun Hasher.putAll(list: Collection<String>) {
         putInt(list.size)
@@ -0,0 +1,85 @@
+package org.gradle.configurationcache;
+
+import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps the configuration cache entries of a build in the {@code .gradle/configuration-cache}
+ * directory of its root project, one file per {@link ConfigurationCacheKey}.
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public class ConfigurationCacheRepository {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationCacheRepository.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final File baseDir;
+
+    public ConfigurationCacheRepository(ConfigurationCacheStartParameter startParameter) {
+        this.baseDir = new File(startParameter.getRootDirectory(), ".gradle/configuration-cache");
+    }
+
+    /**
+     * Returns the entry stored for the given key, or null when there is none or it cannot be read.
+     */
+    @Nullable
+    ConfigurationCacheEntry load(ConfigurationCacheKey key) {
+        File entryFile = entryFile(key);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+        try (KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(entryFile))) {
+            if (decoder.readSmallInt() != FORMAT_VERSION) {
+                return null;
+            }
+            return ConfigurationCacheEntry.read(decoder);
+        } catch (IOException | RuntimeException e) {
+            // A damaged entry is stored again by this build
+            LOGGER.debug("Could not read configuration cache entry {}", entryFile, e);
+            return null;
+        }
+    }
+
+    void store(ConfigurationCacheKey key, ConfigurationCacheEntry entry) {
+        File entryFile = entryFile(key);
+        File tempFile = new File(baseDir, key + ".tmp");
+        try {
+            Files.createDirectories(baseDir.toPath());
+            try (KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(tempFile))) {
+                encoder.writeSmallInt(FORMAT_VERSION);
+                entry.write(encoder);
+            }
+            // Another build of the same project may be reading the entry
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store configuration cache entry " + entryFile, e);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    void invalidate(ConfigurationCacheKey key) {
+        //noinspection ResultOfMethodCallIgnored
+        entryFile(key).delete();
+    }
+
+    private File entryFile(ConfigurationCacheKey key) {
+        return new File(baseDir, key + ".bin");
+    }
+}
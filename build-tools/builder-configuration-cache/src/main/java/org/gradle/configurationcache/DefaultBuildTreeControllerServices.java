@@ -3,12 +3,14 @@ package org.gradle.configurationcache;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.BuildType;
 import org.gradle.api.internal.StartParameterInternal;
+import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter;
 import org.gradle.configurationcache.initialization.VintageInjectedClasspathInstrumentationStrategy;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.buildtree.BuildActionModelRequirements;
 import org.gradle.internal.buildtree.BuildModelParameters;
 import org.gradle.internal.buildtree.BuildTreeModelControllerServices;
 import org.gradle.internal.buildtree.RunTasksRequirements;
+import org.gradle.util.internal.IncubationLogger;
 
 public class DefaultBuildTreeControllerServices implements BuildTreeModelControllerServices {
     @Override
@@ -23,22 +25,45 @@ public class DefaultBuildTreeControllerServices implements BuildTreeModelControl
         }
 
         Boolean isolatedProjects = startParameter.getIsolatedProjects().get();
+        boolean configurationCache = startParameter.getConfigurationCache().get() && requirements.isRunsTasks() && !requirements.isCreatesModel();
+        if (configurationCache && !startParameter.isConfigurationCacheQuiet()) {
+            IncubationLogger.incubatingFeatureUsed("Configuration cache");
+        }
         return registration -> {
             registration.add(BuildType.class, BuildType.TASKS);
+            if (configurationCache) {
+                registerConfigurationCacheServices(registration, new RunTasksRequirements(startParameter));
+                return;
+            }
             BuildModelParameters buildModelParameters =
                     new BuildModelParameters(false, false, false, true, false, false, false);
             registerServices(registration, buildModelParameters, new RunTasksRequirements(startParameter));
         };
     }
 
+    private void registerConfigurationCacheServices(ServiceRegistration registration,
+                                                    BuildActionModelRequirements requirements) {
+        registration.add(BuildActionModelRequirements.class, requirements);
+        registration.add(ConfigurationCacheStartParameter.class);
+        registration.add(ConfigurationCacheKey.class);
+        registration.add(ConfigurationCacheRepository.class);
+        registration.add(DefaultConfigurationCache.class);
+        registration.addProvider(new Object() {
+            // Builds that reuse the cache request the tasks by path, so only the projects
+            // that own them and the projects they depend on need to be configured
+            BuildModelParameters createBuildModelParameters(DefaultConfigurationCache cache) {
+                return new BuildModelParameters(cache.canLoad(), true, false, true, false, false, false);
+            }
+        });
+        registration.add(VintageInjectedClasspathInstrumentationStrategy.class);
+        registration.add(ConfigurationCacheBuildTreeLifecycleControllerFactory.class);
+    }
+
     private void registerServices(ServiceRegistration registration,
                                   BuildModelParameters modelParameters,
                                   BuildActionModelRequirements requirements) {
         registration.add(BuildModelParameters.class, modelParameters);
         registration.add(BuildActionModelRequirements.class, requirements);
-        if (modelParameters.isConfigurationCache()) {
-
-        }
         registration.add(VintageInjectedClasspathInstrumentationStrategy.class);
         registration.add(VintageBuildTreeLifecycleControllerFactory.class);
     }
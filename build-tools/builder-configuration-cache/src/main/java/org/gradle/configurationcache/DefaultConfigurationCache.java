@@ -0,0 +1,231 @@
+package org.gradle.configurationcache;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.TaskExecutionRequest;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter;
+import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.internal.buildtree.BuildActionModelRequirements;
+import org.gradle.internal.event.ListenerManager;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.scripts.ScriptExecutionListener;
+import org.gradle.internal.service.scopes.Scopes;
+import org.gradle.internal.service.scopes.ServiceScope;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reuses the task selection of a previous build with the same {@link ConfigurationCacheKey}.
+ *
+ * A build that stores an entry configures the build as usual and records the paths of the
+ * tasks that the requested names selected, together with the scripts and properties files
+ * that were read. When none of these files changed, the next build requests the tasks by path
+ * and is configured on demand, so only the projects that own the tasks and the projects they
+ * depend on are configured instead of every project of the build.
+ *
+ * Builds with a {@code buildSrc} directory or included builds are not cached, the inputs of
+ * the build logic they contribute are not part of the fingerprint.
+ */
+@ServiceScope(Scopes.BuildTree.class)
+public class DefaultConfigurationCache implements ScriptExecutionListener {
+
+    private static final Logger LOGGER = Logging.getLogger(DefaultConfigurationCache.class);
+
+    private final ConfigurationCacheKey cacheKey;
+    private final ConfigurationCacheRepository repository;
+    private final ConfigurationCacheStartParameter startParameter;
+    private final BuildActionModelRequirements requirements;
+    private final FileHasher fileHasher;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final Set<File> scriptFiles = ConcurrentHashMap.newKeySet();
+
+    private boolean checked;
+    private List<String> cachedRequestedTaskPaths;
+
+    public DefaultConfigurationCache(
+        ConfigurationCacheKey cacheKey,
+        ConfigurationCacheRepository repository,
+        ConfigurationCacheStartParameter startParameter,
+        BuildActionModelRequirements requirements,
+        FileHasher fileHasher,
+        BuildOperationExecutor buildOperationExecutor,
+        ListenerManager listenerManager
+    ) {
+        this.cacheKey = cacheKey;
+        this.repository = repository;
+        this.startParameter = startParameter;
+        this.requirements = requirements;
+        this.fileHasher = fileHasher;
+        this.buildOperationExecutor = buildOperationExecutor;
+        listenerManager.addListener(this);
+    }
+
+    /**
+     * Whether this build can reuse the entry stored by a previous build.
+     */
+    public synchronized boolean canLoad() {
+        if (!checked) {
+            checked = true;
+            cachedRequestedTaskPaths = buildOperationExecutor.call(new CallableBuildOperation<Optional<List<String>>>() {
+                @Override
+                public Optional<List<String>> call(BuildOperationContext context) {
+                    return Optional.ofNullable(checkEntry());
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Load configuration cache state");
+                }
+            }).orElse(null);
+        }
+        return cachedRequestedTaskPaths != null;
+    }
+
+    /**
+     * Replaces the requested task names with the paths of the tasks they selected in the build that stored the entry.
+     */
+    public void load(GradleInternal gradle) {
+        if (!canLoad()) {
+            throw new IllegalStateException("No configuration cache entry to load.");
+        }
+        gradle.getStartParameter().setTaskNames(cachedRequestedTaskPaths);
+    }
+
+    /**
+     * Records the tasks that were selected by the requested names, once the work graph of the build has been scheduled.
+     */
+    public void store(GradleInternal gradle) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                List<String> requestedTaskPaths = requestedTaskPathsOf(gradle);
+                if (requestedTaskPaths.isEmpty()) {
+                    return;
+                }
+                if (!gradle.includedBuilds().isEmpty()) {
+                    LOGGER.lifecycle("Configuration cache entry not stored because the build includes other builds.");
+                    return;
+                }
+                ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.capture(inputFilesOf(gradle), fileHasher);
+                repository.store(cacheKey, new ConfigurationCacheEntry(fingerprint, requestedTaskPaths));
+                LOGGER.lifecycle("Configuration cache entry stored.");
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Store configuration cache state");
+            }
+        });
+    }
+
+    /**
+     * Discards the entry, when the tasks it refers to could not be scheduled.
+     */
+    public void invalidate() {
+        repository.invalidate(cacheKey);
+    }
+
+    /**
+     * Whether the work of this build can be stored in the cache at all.
+     */
+    public boolean isCacheable() {
+        if (new File(startParameter.getSettingsDirectory(), "buildSrc").isDirectory() ||
+            !startParameter.getIncludedBuilds().isEmpty()) {
+            return false;
+        }
+        for (TaskExecutionRequest request : requirements.getStartParameter().getTaskRequests()) {
+            // Requests from the tooling API can target a project and task options are
+            // parsed against the selected tasks, neither survives replacing names by paths
+            if (request.getProjectPath() != null || request.getRootDir() != null) {
+                return false;
+            }
+            for (String arg : request.getArgs()) {
+                if (arg.startsWith("-")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private List<String> checkEntry() {
+        if (!isCacheable()) {
+            return null;
+        }
+        if (startParameter.getRecreateCache()) {
+            LOGGER.lifecycle("Recreating configuration cache");
+            return null;
+        }
+
+        ConfigurationCacheEntry entry = repository.load(cacheKey);
+        if (entry == null) {
+            LOGGER.lifecycle("Calculating task graph as no configuration cache is available for tasks: {}", String.join(" ", startParameter.getRequestedTaskNames()));
+            return null;
+        }
+        CheckedFingerprint checkedFingerprint = entry.getFingerprint().check(fileHasher, startParameter.getRootDirectory());
+        if (checkedFingerprint instanceof CheckedFingerprint.EntryInvalid) {
+            LOGGER.lifecycle("Calculating task graph as configuration cache cannot be reused because {}.", ((CheckedFingerprint.EntryInvalid) checkedFingerprint).getReason());
+            return null;
+        }
+        LOGGER.lifecycle("Reusing configuration cache.");
+        return entry.getRequestedTaskPaths();
+    }
+
+    private static List<String> requestedTaskPathsOf(GradleInternal gradle) {
+        ImmutableList.Builder<String> paths = ImmutableList.builder();
+        for (Task task : gradle.getTaskGraph().getRequestedTasks()) {
+            paths.add(task.getPath());
+        }
+        return paths.build();
+    }
+
+    private Set<File> inputFilesOf(GradleInternal gradle) {
+        Set<File> inputFiles = new TreeSet<>(scriptFiles);
+        inputFiles.addAll(startParameter.getAllInitScripts());
+
+        // Files that do not exist are part of the fingerprint too, creating one invalidates the entry
+        File settingsDirectory = startParameter.getSettingsDirectory();
+        inputFiles.add(new File(settingsDirectory, "settings.gradle"));
+        inputFiles.add(new File(settingsDirectory, "settings.gradle.kts"));
+        File catalogDirectory = new File(settingsDirectory, "gradle");
+        inputFiles.add(new File(catalogDirectory, "libs.versions.toml"));
+        File[] catalogs = catalogDirectory.listFiles((dir, name) -> name.endsWith(".versions.toml"));
+        if (catalogs != null) {
+            inputFiles.addAll(Arrays.asList(catalogs));
+        }
+        for (Project project : gradle.getRootProject().getAllprojects()) {
+            inputFiles.add(project.getBuildFile());
+        }
+
+        File rootDirectory = startParameter.getRootDirectory();
+        inputFiles.add(new File(rootDirectory, "gradle.properties"));
+        inputFiles.add(new File(rootDirectory, "local.properties"));
+        inputFiles.add(new File(startParameter.getGradleUserHomeDir(), "gradle.properties"));
+        return inputFiles;
+    }
+
+    @Override
+    public void onScriptClassLoaded(ScriptSource source, Class<?> scriptClass) {
+        File file = source.getResource().getLocation().getFile();
+        if (file != null) {
+            scriptFiles.add(file);
+        }
+    }
+}
@@ -21,6 +21,9 @@ class ConfigurationCacheStartParameter(
     val gradleProperties: Map<String, Any?>
         get() = startParameter.projectProperties
 
+    val systemPropertiesArgs: Map<String, String>
+        get() = startParameter.systemPropertiesArgs
+
     val isQuiet: Boolean
         get() = startParameter.isConfigurationCacheQuiet
 
@@ -0,0 +1,139 @@
+package org.gradle.configurationcache;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationCacheFingerprintTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final CountingFileHasher fileHasher = new CountingFileHasher();
+
+    @Test
+    public void unchangedFilesAreNotHashedAgain() throws IOException {
+        File buildFile = write("build.gradle", "apply plugin: 'java'", 1_000_000);
+        File settingsFile = write("settings.gradle", "include ':app'", 1_000_000);
+        ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.capture(Arrays.asList(buildFile, settingsFile), fileHasher);
+        assertEquals(2, fileHasher.count);
+
+        assertSame(CheckedFingerprint.Valid.INSTANCE, fingerprint.check(fileHasher, temporaryFolder.getRoot()));
+        assertEquals(2, fileHasher.count);
+    }
+
+    @Test
+    public void touchedFileWithTheSameContentIsValid() throws IOException {
+        File buildFile = write("build.gradle", "apply plugin: 'java'", 1_000_000);
+        ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.capture(Arrays.asList(buildFile), fileHasher);
+
+        assertTrue(buildFile.setLastModified(2_000_000));
+        assertSame(CheckedFingerprint.Valid.INSTANCE, fingerprint.check(fileHasher, temporaryFolder.getRoot()));
+        assertEquals(2, fileHasher.count);
+    }
+
+    @Test
+    public void changedFileInvalidatesTheEntry() throws IOException {
+        File buildFile = write("build.gradle", "apply plugin: 'java'", 1_000_000);
+        ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.capture(Arrays.asList(buildFile), fileHasher);
+
+        write("build.gradle", "apply plugin: 'java-library'", 2_000_000);
+        assertInvalid("file 'build.gradle' has changed", fingerprint);
+    }
+
+    @Test
+    public void createdFileInvalidatesTheEntry() throws IOException {
+        File catalog = new File(temporaryFolder.newFolder("gradle"), "libs.versions.toml");
+        ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.capture(Arrays.asList(catalog), fileHasher);
+        assertEquals(0, fileHasher.count);
+        assertSame(CheckedFingerprint.Valid.INSTANCE, fingerprint.check(fileHasher, temporaryFolder.getRoot()));
+
+        write("gradle/libs.versions.toml", "[versions]", 1_000_000);
+        assertInvalid("file 'gradle/libs.versions.toml' has been created", fingerprint);
+    }
+
+    @Test
+    public void removedFileInvalidatesTheEntry() throws IOException {
+        File buildFile = write("build.gradle", "apply plugin: 'java'", 1_000_000);
+        ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.capture(Arrays.asList(buildFile), fileHasher);
+
+        assertTrue(buildFile.delete());
+        assertInvalid("file 'build.gradle' has been removed", fingerprint);
+    }
+
+    @Test
+    public void fingerprintIsTheSameAfterItIsWrittenAndRead() throws IOException {
+        File buildFile = write("build.gradle", "apply plugin: 'java'", 1_000_000);
+        File missing = new File(temporaryFolder.getRoot(), "settings.gradle");
+        ConfigurationCacheFingerprint fingerprint = readBack(ConfigurationCacheFingerprint.capture(Arrays.asList(buildFile, missing), fileHasher));
+        assertSame(CheckedFingerprint.Valid.INSTANCE, fingerprint.check(fileHasher, temporaryFolder.getRoot()));
+        assertEquals(1, fileHasher.count);
+
+        write("build.gradle", "apply plugin: 'java-library'", 1_000_000);
+        assertInvalid("file 'build.gradle' has changed", fingerprint);
+
+        write("build.gradle", "apply plugin: 'java'", 1_000_000);
+        write("settings.gradle", "include ':app'", 1_000_000);
+        assertInvalid("file 'settings.gradle' has been created", fingerprint);
+    }
+
+    private void assertInvalid(String reason, ConfigurationCacheFingerprint fingerprint) {
+        CheckedFingerprint checked = fingerprint.check(fileHasher, temporaryFolder.getRoot());
+        assertTrue(checked instanceof CheckedFingerprint.EntryInvalid);
+        assertEquals(reason, ((CheckedFingerprint.EntryInvalid) checked).getReason());
+    }
+
+    private File write(String path, String content, long lastModified) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), path);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private static ConfigurationCacheFingerprint readBack(ConfigurationCacheFingerprint fingerprint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (KryoBackedEncoder encoder = new KryoBackedEncoder(bytes)) {
+            fingerprint.write(encoder);
+        }
+        try (KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return ConfigurationCacheFingerprint.read(decoder);
+        }
+    }
+
+    private static class CountingFileHasher implements FileHasher {
+        private int count;
+
+        @Override
+        public HashCode hash(File file) {
+            count++;
+            try {
+                return Hashing.md5().hashBytes(Files.readAllBytes(file.toPath()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public HashCode hash(File file, long length, long lastModified) {
+            return hash(file);
+        }
+    }
+}
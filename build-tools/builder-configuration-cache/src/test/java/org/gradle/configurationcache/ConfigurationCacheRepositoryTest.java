@@ -0,0 +1,170 @@
+package org.gradle.configurationcache;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import org.gradle.api.internal.StartParameterInternal;
+import org.gradle.configurationcache.initialization.ConfigurationCacheStartParameter;
+import org.gradle.initialization.layout.BuildLayout;
+import org.gradle.internal.buildtree.RunTasksRequirements;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.scripts.ScriptFileResolver;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationCacheRepositoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File rootDirectory;
+    private File buildFile;
+
+    @Before
+    public void setUp() throws IOException {
+        rootDirectory = temporaryFolder.newFolder("project");
+        buildFile = new File(rootDirectory, "build.gradle");
+        Files.write(buildFile.toPath(), "apply plugin: 'java'".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void storedEntryIsLoadedWithTheSameKey() {
+        ConfigurationCacheRepository repository = new ConfigurationCacheRepository(startParameter("assemble"));
+        ConfigurationCacheKey key = key("assemble");
+        assertNull(repository.load(key));
+
+        repository.store(key, entry(":app:assemble", ":lib:assemble"));
+        ConfigurationCacheEntry loaded = repository.load(key("assemble"));
+        assertNotNull(loaded);
+        assertEquals(Arrays.asList(":app:assemble", ":lib:assemble"), loaded.getRequestedTaskPaths());
+        assertSame(CheckedFingerprint.Valid.INSTANCE, loaded.getFingerprint().check(new Md5FileHasher(), rootDirectory));
+
+        // A new repository of the same build reads the entry from disk
+        assertNotNull(new ConfigurationCacheRepository(startParameter("assemble")).load(key));
+    }
+
+    @Test
+    public void entriesOfOtherKeysAreNotLoaded() {
+        ConfigurationCacheRepository repository = new ConfigurationCacheRepository(startParameter("assemble"));
+        assertNotEquals(key("assemble"), key("test"));
+
+        repository.store(key("assemble"), entry(":app:assemble"));
+        assertNull(repository.load(key("test")));
+
+        repository.store(key("test"), entry(":app:test"));
+        assertEquals(Collections.singletonList(":app:assemble"), repository.load(key("assemble")).getRequestedTaskPaths());
+        assertEquals(Collections.singletonList(":app:test"), repository.load(key("test")).getRequestedTaskPaths());
+    }
+
+    @Test
+    public void storingAgainReplacesTheEntry() {
+        ConfigurationCacheRepository repository = new ConfigurationCacheRepository(startParameter("assemble"));
+        ConfigurationCacheKey key = key("assemble");
+        repository.store(key, entry(":app:assemble"));
+        repository.store(key, entry(":app:assemble", ":lib:assemble"));
+
+        assertEquals(Arrays.asList(":app:assemble", ":lib:assemble"), repository.load(key).getRequestedTaskPaths());
+        File[] files = new File(rootDirectory, ".gradle/configuration-cache").listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+    }
+
+    @Test
+    public void invalidatedEntryIsNotLoaded() {
+        ConfigurationCacheRepository repository = new ConfigurationCacheRepository(startParameter("assemble"));
+        ConfigurationCacheKey key = key("assemble");
+        repository.store(key, entry(":app:assemble"));
+        repository.store(key("test"), entry(":app:test"));
+
+        repository.invalidate(key);
+        assertNull(repository.load(key));
+        assertNotNull(repository.load(key("test")));
+    }
+
+    @Test
+    public void damagedEntryIsNotLoaded() throws IOException {
+        ConfigurationCacheRepository repository = new ConfigurationCacheRepository(startParameter("assemble"));
+        ConfigurationCacheKey key = key("assemble");
+        repository.store(key, entry(":app:assemble"));
+
+        File entryFile = new File(rootDirectory, ".gradle/configuration-cache/" + key + ".bin");
+        assertTrue(entryFile.isFile());
+        byte[] bytes = Files.readAllBytes(entryFile.toPath());
+        Files.write(entryFile.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+        assertNull(repository.load(key));
+
+        Files.write(entryFile.toPath(), new byte[]{42});
+        assertNull(repository.load(key));
+    }
+
+    private ConfigurationCacheEntry entry(String... requestedTaskPaths) {
+        ConfigurationCacheFingerprint fingerprint = ConfigurationCacheFingerprint.capture(Collections.singletonList(buildFile), new Md5FileHasher());
+        return new ConfigurationCacheEntry(fingerprint, Arrays.asList(requestedTaskPaths));
+    }
+
+    private ConfigurationCacheKey key(String... taskNames) {
+        StartParameterInternal startParameter = startParameterInternal(taskNames);
+        return new ConfigurationCacheKey(startParameter(startParameter), new RunTasksRequirements(startParameter));
+    }
+
+    private ConfigurationCacheStartParameter startParameter(String... taskNames) {
+        return startParameter(startParameterInternal(taskNames));
+    }
+
+    private ConfigurationCacheStartParameter startParameter(StartParameterInternal startParameter) {
+        BuildLayout buildLayout = new BuildLayout(rootDirectory, rootDirectory, null, new NoScriptFileResolver());
+        return new ConfigurationCacheStartParameter(buildLayout, startParameter);
+    }
+
+    private StartParameterInternal startParameterInternal(String... taskNames) {
+        StartParameterInternal startParameter = new StartParameterInternal();
+        startParameter.setCurrentDir(rootDirectory);
+        startParameter.setTaskNames(Arrays.asList(taskNames));
+        return startParameter;
+    }
+
+    private static class NoScriptFileResolver implements ScriptFileResolver {
+        @Override
+        public File resolveScriptFile(File dir, String basename) {
+            return null;
+        }
+
+        @Override
+        public List<File> findScriptsIn(File dir) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class Md5FileHasher implements FileHasher {
+        @Override
+        public HashCode hash(File file) {
+            try {
+                return Hashing.md5().hashBytes(Files.readAllBytes(file.toPath()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public HashCode hash(File file, long length, long lastModified) {
+            return hash(file);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.jetbrains.annotations.Nullable;
 public class DirectoryBuildCache extends AbstractBuildCache {
     private Object directory;
     private int removeUnusedEntriesAfterDays = 7;
+    private int maxSizeInMB = 5 * 1024;
 
     /**
      * Returns the directory to use to store the build cache.
@@ -53,4 +54,25 @@ public class DirectoryBuildCache extends AbstractBuildCache {
         }
         this.removeUnusedEntriesAfterDays = removeUnusedEntriesAfterDays;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the size in megabytes the cache is allowed to grow to before the least recently
+     * and least often used entries are removed. Defaults to 5 GB.
+     */
+    public int getMaxSizeInMB() {
+        return maxSizeInMB;
+    }
+
+    /**
+     * Sets the size in megabytes the cache is allowed to grow to before the least recently
+     * and least often used entries are removed. Defaults to 5 GB.
+     *
+     * Must be at least 1.
+     */
+    public void setMaxSizeInMB(int maxSizeInMB) {
+        if (maxSizeInMB < 1) {
+            throw new IllegalArgumentException("Directory build cache needs to be at least 1 MB.");
+        }
+        this.maxSizeInMB = maxSizeInMB;
+    }
+}
@@ -26,8 +26,10 @@ public class CrossBuildFileHashCache implements Closeable {
     }
 
     public <K, V> PersistentIndexedCache<K, V> createCache(PersistentIndexedCacheParameters<K, V> parameters, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+        // Hashes are looked up far more often than they change, which suits the log-structured store
         return cache.createCache(parameters
                 .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses))
+                .withStoreType(PersistentIndexedCacheParameters.StoreType.LOG_STRUCTURED)
         );
     }
 
@@ -12,9 +12,10 @@ import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.caching.internal.controller.RootBuildCacheControllerRef;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BlockCompressedBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.PackerExecutor;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -22,6 +23,7 @@ import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.file.Deleter;
 import org.gradle.internal.file.FileException;
 import org.gradle.internal.hash.ChecksumService;
@@ -96,14 +98,20 @@ public final class BuildCacheServices extends AbstractPluginServiceRegistry {
                 return new DefaultTarPackerFileSystemSupport(deleter);
             }
 
+            PackerExecutor createPackerExecutor(ExecutorFactory executorFactory) {
+                return new PackerExecutor(executorFactory);
+            }
+
             BuildCacheEntryPacker createResultPacker(
                     TarPackerFileSystemSupport fileSystemSupport,
                     FileSystem fileSystem,
                     StreamHasher fileHasher,
-                    StringInterner stringInterner
+                    StringInterner stringInterner,
+                    PackerExecutor packerExecutor
             ) {
-                return new GZipBuildCacheEntryPacker(
-                        new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                return new BlockCompressedBuildCacheEntryPacker(
+                        new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, packerExecutor),
+                        packerExecutor);
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
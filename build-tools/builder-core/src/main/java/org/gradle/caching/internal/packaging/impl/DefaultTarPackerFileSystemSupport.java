@@ -7,6 +7,7 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Set;
 
 public class DefaultTarPackerFileSystemSupport implements TarPackerFileSystemSupport {
     private final Deleter deleter;
@@ -41,6 +42,21 @@ public class DefaultTarPackerFileSystemSupport implements TarPackerFileSystemSup
         }
     }
 
+    @Override
+    public void removeUnexpectedFiles(File root, Set<File> expected) throws IOException {
+        File[] children = root.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (!expected.contains(child)) {
+                deleter.deleteRecursively(child);
+            } else if (child.isDirectory()) {
+                removeUnexpectedFiles(child, expected);
+            }
+        }
+    }
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     private boolean makeDirectory(File target) throws IOException {
         if (target.isDirectory()) {
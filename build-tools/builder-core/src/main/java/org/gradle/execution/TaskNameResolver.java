@@ -12,9 +12,7 @@ import org.gradle.api.tasks.TaskContainer;
 import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class TaskNameResolver {
 
@@ -24,10 +22,8 @@ public class TaskNameResolver {
     public boolean tryFindUnqualifiedTaskCheaply(String name, ProjectInternal project) {
         // don't evaluate children, see if we know it's without validating it
         for (Project project1 : project.getAllprojects()) {
-            for (Task task : project1.getTasks()) {
-                if (name.equals(task.getName())) {
-                    return true;
-                }
+            if (project1.getTasks().getNames().contains(name)) {
+                return true;
             }
         }
 
@@ -90,20 +86,20 @@ public class TaskNameResolver {
         }
     }
 
+    // The names include the tasks that are registered but not created yet, so that selecting
+    // a task only creates that task instead of every task of the project
     private static Set<String> getTaskNames(ProjectInternal project) {
-        return project.getTasks().stream().map(Task::getName)
-                .collect(Collectors.toSet());
+        return project.getTasks().getNames();
     }
 
     private static boolean hasTask(String taskName, ProjectInternal project) {
-        return project.getTasks().stream().map(Task::getName)
-                .anyMatch(taskName::equals);
+        return project.getTasks().getNames().contains(taskName)
+                || project.getTasks().findByName(taskName) != null;
     }
 
     private static TaskInternal getExistingTask(ProjectInternal project, String taskName) {
         try {
-            return (TaskInternal) getByName(project.getTasks(), taskName)
-                    .orElseThrow(RuntimeException::new);
+            return (TaskInternal) project.getTasks().getByName(taskName);
         } catch (Throwable e) {
             throw new ProjectConfigurationException(String.format("A problem occurred configuring %s.", project.getDisplayName()), e);
         }
@@ -130,11 +126,6 @@ public class TaskNameResolver {
         }
     }
 
-    private static Optional<? extends Task> getByName(Collection<? extends Task> tasks, String taskName) {
-        return tasks.stream().filter(it -> it.getName().equals(taskName))
-                .findAny();
-    }
-
     private static class SingleProjectTaskSelectionResult implements TaskSelectionResult {
         private final TaskContainer taskContainer;
         private final String taskName;
@@ -146,7 +137,10 @@ public class TaskNameResolver {
 
         @Override
         public void collectTasks(Collection<? super Task> tasks) {
-            getByName(taskContainer, taskName).ifPresent(tasks::add);
+            Task task = taskContainer.findByName(taskName);
+            if (task != null) {
+                tasks.add(task);
+            }
         }
     }
 
@@ -328,6 +328,11 @@ public class DefaultTaskExecutionGraph implements TaskExecutionGraphInternal {
         return executionPlan.getFilteredTasks();
     }
 
+    @Override
+    public Set<Task> getRequestedTasks() {
+        return executionPlan.getRequestedTasks();
+    }
+
     private void fireWhenReady() {
         // We know that we're running single-threaded here, so we can use coarse grained project locks
         gradleInternal.getOwner().getProjects().withMutableStateOfAllProjects(
@@ -32,6 +32,11 @@ public interface TaskExecutionGraphInternal extends TaskExecutionGraph {
      */
     Set<Task> getFilteredTasks();
 
+    /**
+     * Returns the tasks that were selected from the requested task names, without the tasks they depend on.
+     */
+    Set<Task> getRequestedTasks();
+
     /**
      * Returns the number of work items in this graph.
      */
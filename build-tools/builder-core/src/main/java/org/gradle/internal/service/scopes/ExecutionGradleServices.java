@@ -11,6 +11,7 @@ import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.scopes.BuildScopedCache;
 import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
 import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.internal.enterprise.core.GradleEnterprisePluginManager;
 import org.gradle.internal.event.ListenerManager;
@@ -109,6 +110,7 @@ public class ExecutionGradleServices {
 
     public ExecutionEngine createExecutionEngine(
             BuildCacheController buildCacheController,
+            BuildCacheEntryPacker buildCacheEntryPacker,
             BuildCancellationToken cancellationToken,
             BuildInvocationScopeId buildInvocationScopeId,
             BuildOperationExecutor buildOperationExecutor,
@@ -139,7 +141,7 @@ public class ExecutionGradleServices {
                                                                 new SkipEmptyWorkStep(outputChangeListener, workInputListeners, skipEmptyWorkOutputsCleanerSupplier,
                                                                         new CaptureStateBeforeExecutionStep<>(buildOperationExecutor, classLoaderHierarchyHasher, outputSnapshotter, overlappingOutputDetector,
                                                                                 new ValidateStep<>(virtualFileSystem, validationWarningRecorder,
-                                                                                        new ResolveCachingStateStep<>(buildCacheController, gradleEnterprisePluginManager.isPresent(),
+                                                                                        new ResolveCachingStateStep<>(buildCacheController, buildCacheEntryPacker.getFormatVersion(), gradleEnterprisePluginManager.isPresent(),
                                                                                                 new MarkSnapshottingInputsFinishedStep<>(
                                                                                                         new ResolveChangesStep<>(changeDetector,
                                                                                                                 new SkipUpToDateStep<>(
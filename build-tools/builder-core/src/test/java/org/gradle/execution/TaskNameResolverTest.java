@@ -0,0 +1,193 @@
+package org.gradle.execution;
+
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.UnknownTaskException;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.internal.tasks.TaskContainerInternal;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskNameResolverTest {
+
+    private final TaskNameResolver resolver = new TaskNameResolver();
+
+    @Test
+    public void selectingATaskOfAProjectOnlyCreatesThatTask() {
+        FakeProject root = new FakeProject(":", "assemble", "build", "test");
+
+        TaskSelectionResult result = resolver.selectWithName("build", root.project, false);
+        assertEquals(Collections.singletonList(":build"), collect(result));
+        assertEquals(Collections.singletonList("build"), root.createdTasks);
+
+        assertNull(resolver.selectWithName("missing", root.project, false));
+        assertEquals(Collections.singletonList("build"), root.createdTasks);
+    }
+
+    @Test
+    public void selectingATaskOfAllProjectsOnlyCreatesThatTask() {
+        FakeProject root = new FakeProject(":", "build");
+        FakeProject app = root.child(":app", "build", "test");
+        FakeProject lib = root.child(":lib", "assemble");
+
+        TaskSelectionResult result = resolver.selectWithName("build", root.project, true);
+        assertEquals(Arrays.asList(":build", ":app:build"), collect(result));
+        assertEquals(Collections.singletonList("build"), root.createdTasks);
+        assertEquals(Collections.singletonList("build"), app.createdTasks);
+        assertEquals(Collections.emptyList(), lib.createdTasks);
+    }
+
+    @Test
+    public void allTaskNamesAreSelectedWithoutCreatingTasks() {
+        FakeProject root = new FakeProject(":", "build", "clean");
+        FakeProject app = root.child(":app", "build", "test");
+
+        Map<String, TaskSelectionResult> selected = resolver.selectAll(app.project, false);
+        assertEquals(new TreeSet<>(Arrays.asList("build", "test")), selected.keySet());
+        assertEquals(Collections.emptyList(), app.createdTasks);
+
+        assertEquals(Collections.singletonList(":app:test"), collect(selected.get("test")));
+        assertEquals(Collections.singletonList("test"), app.createdTasks);
+
+        selected = resolver.selectAll(root.project, true);
+        assertEquals(new TreeSet<>(Arrays.asList("build", "clean", "test")), new TreeSet<>(selected.keySet()));
+        assertEquals(Collections.emptyList(), root.createdTasks);
+        assertEquals(Collections.singletonList("test"), app.createdTasks);
+
+        assertEquals(Arrays.asList(":build", ":app:build"), collect(selected.get("build")));
+        assertEquals(Collections.singletonList("build"), root.createdTasks);
+        assertEquals(Arrays.asList("test", "build"), app.createdTasks);
+    }
+
+    @Test
+    public void unqualifiedTaskIsFoundByItsName() {
+        FakeProject root = new FakeProject(":", "build");
+        root.child(":app", "test");
+
+        assertTrue(resolver.tryFindUnqualifiedTaskCheaply("test", root.project));
+        assertFalse(resolver.tryFindUnqualifiedTaskCheaply("missing", root.project));
+        assertEquals(Collections.emptyList(), root.createdTasks);
+    }
+
+    private static List<String> collect(TaskSelectionResult result) {
+        Set<Task> tasks = new LinkedHashSet<>();
+        result.collectTasks(tasks);
+        List<String> paths = new ArrayList<>();
+        for (Task task : tasks) {
+            paths.add(task.getPath());
+        }
+        return paths;
+    }
+
+    /**
+     * A project whose tasks are registered by name and created when they are looked up by name,
+     * any other access to the task container fails the test because it would create every task.
+     */
+    private static class FakeProject {
+        final String path;
+        final Set<String> registeredTasks;
+        final Map<String, Task> tasks = new LinkedHashMap<>();
+        final List<String> createdTasks = new ArrayList<>();
+        final Map<String, Project> childProjects = new LinkedHashMap<>();
+        final Set<Project> allProjects = new LinkedHashSet<>();
+        final ProjectInternal project;
+        final TaskContainerInternal taskContainer;
+
+        FakeProject(String path, String... registeredTasks) {
+            this.path = path;
+            this.registeredTasks = new TreeSet<>(Arrays.asList(registeredTasks));
+            this.taskContainer = fake(TaskContainerInternal.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getNames":
+                        return new TreeSet<>(this.registeredTasks);
+                    case "discoverTasks":
+                        return null;
+                    case "findByName":
+                        return findTask((String) args[0]);
+                    case "getByName":
+                        Task task = findTask((String) args[0]);
+                        if (task == null) {
+                            throw new UnknownTaskException("Task '" + args[0] + "' not found");
+                        }
+                        return task;
+                    default:
+                        throw new AssertionError("Unexpected call to TaskContainer." + method.getName());
+                }
+            });
+            this.project = fake(ProjectInternal.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getTasks":
+                        return taskContainer;
+                    case "getChildProjects":
+                        return childProjects;
+                    case "getAllprojects":
+                        return allProjects;
+                    case "getDisplayName":
+                    case "toString":
+                        return "project '" + path + "'";
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new AssertionError("Unexpected call to Project." + method.getName());
+                }
+            });
+            allProjects.add(project);
+        }
+
+        FakeProject child(String path, String... registeredTasks) {
+            FakeProject child = new FakeProject(path, registeredTasks);
+            childProjects.put(path.substring(path.lastIndexOf(':') + 1), child.project);
+            allProjects.add(child.project);
+            return child;
+        }
+
+        private Task findTask(String name) {
+            if (!registeredTasks.contains(name)) {
+                return null;
+            }
+            return tasks.computeIfAbsent(name, n -> {
+                createdTasks.add(n);
+                String taskPath = path.equals(":") ? ":" + n : path + ":" + n;
+                return fake(TaskInternal.class, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getName":
+                            return n;
+                        case "getPath":
+                        case "toString":
+                            return taskPath;
+                        case "getImpliesSubProjects":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new AssertionError("Unexpected call to Task." + method.getName());
+                    }
+                });
+            });
+        }
+    }
+
+    private static <T> T fake(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(TaskNameResolverTest.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
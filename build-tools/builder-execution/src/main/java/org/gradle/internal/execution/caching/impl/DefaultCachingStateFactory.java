@@ -17,14 +17,21 @@ import java.nio.charset.StandardCharsets;
 
 public class DefaultCachingStateFactory implements CachingStateFactory {
     private final Logger logger;
+    private final int entryFormatVersion;
 
-    public DefaultCachingStateFactory(Logger logger) {
+    /**
+     * @param entryFormatVersion The version of the format of the build cache entries, see
+     * {@link org.gradle.caching.internal.packaging.BuildCacheEntryPacker#getFormatVersion()}
+     */
+    public DefaultCachingStateFactory(Logger logger, int entryFormatVersion) {
         this.logger = logger;
+        this.entryFormatVersion = entryFormatVersion;
     }
 
     @Override
     public final CachingState createCachingState(BeforeExecutionState beforeExecutionState, ImmutableList<CachingDisabledReason> cachingDisabledReasons) {
         Hasher cacheKeyHasher = Hashing.md5().newHasher();
+        cacheKeyHasher.putInt(entryFormatVersion);
 
         logger.warn("Appending implementation to build cache key: " +
                        beforeExecutionState.getImplementation());
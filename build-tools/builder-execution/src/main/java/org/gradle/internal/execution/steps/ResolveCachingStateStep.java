@@ -41,15 +41,18 @@ public class ResolveCachingStateStep<C extends ValidationFinishedContext> implem
     private static final CachingState VALIDATION_FAILED_STATE = CachingState.disabledWithoutInputs(VALIDATION_FAILED_REASON);
 
     private final BuildCacheController buildCache;
+    private final int entryFormatVersion;
     private final boolean buildScansEnabled;
     private final Step<? super CachingContext, ? extends UpToDateResult> delegate;
 
     public ResolveCachingStateStep(
             BuildCacheController buildCache,
+            int entryFormatVersion,
             boolean buildScansEnabled,
             Step<? super CachingContext, ? extends UpToDateResult> delegate
     ) {
         this.buildCache = buildCache;
+        this.entryFormatVersion = entryFormatVersion;
         this.buildScansEnabled = buildScansEnabled;
         this.delegate = delegate;
     }
@@ -165,7 +168,7 @@ public class ResolveCachingStateStep<C extends ValidationFinishedContext> implem
         Logger logger = buildCache.isEmitDebugLogging()
                 ? LOGGER
                 : NOPLogger.NOP_LOGGER;
-        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger);
+        CachingStateFactory cachingStateFactory = new DefaultCachingStateFactory(logger, entryFormatVersion);
 
         ImmutableList.Builder<CachingDisabledReason> cachingDisabledReasonsBuilder = ImmutableList.builder();
         if (!buildCache.isEnabled()) {
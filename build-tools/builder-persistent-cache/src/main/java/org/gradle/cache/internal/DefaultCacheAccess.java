@@ -26,6 +26,7 @@ import org.gradle.cache.LockTimeoutException;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.logstore.LogStructuredPersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
 
 import org.slf4j.Logger;
@@ -269,7 +270,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for " + parameters.getCacheName() + ", path " + cacheFile + ", access " + this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<PersistentIndexedStore<K, V>> indexedCacheFactory = createStoreFactory(cacheFile, parameters);
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -294,9 +295,24 @@ public class DefaultCacheAccess implements CacheCoordinator {
     }
 
     private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> parameters) {
+        if (parameters.getStoreType() == PersistentIndexedCacheParameters.StoreType.LOG_STRUCTURED) {
+            return new File(baseDir, parameters.getCacheName() + ".log");
+        }
         return new File(baseDir, parameters.getCacheName() + ".bin");
     }
 
+    private <K, V> Factory<PersistentIndexedStore<K, V>> createStoreFactory(File cacheFile, PersistentIndexedCacheParameters<K, V> parameters) {
+        if (parameters.getStoreType() == PersistentIndexedCacheParameters.StoreType.LOG_STRUCTURED) {
+            // The same store is reopened every time, so its index does not have to be read again
+            LogStructuredPersistentIndexedCache<K, V> store = new LogStructuredPersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+            return () -> {
+                store.open();
+                return store;
+            };
+        }
+        return () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+    }
+
     @Override
     public <K, V> boolean cacheExists(PersistentIndexedCacheParameters<K, V> parameters) {
         return findCacheFile(parameters).exists();
@@ -469,6 +485,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStoreType(faultMessages, parameters.getStoreType());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = "\n";
@@ -504,6 +521,14 @@ public class DefaultCacheAccess implements CacheCoordinator {
             }
         }
 
+        private void checkCompatibleStoreType(Collection<String> faultMessages, PersistentIndexedCacheParameters.StoreType storeType) {
+            if (storeType != parameters.getStoreType()) {
+                faultMessages.add(
+                        String.format(" * Requested store type (%s) doesn't match current store type (%s)",
+                                storeType, parameters.getStoreType()));
+            }
+        }
+
         private void checkCompatibleCacheDecorator(Collection<String> faultMessages, CacheDecorator cacheDecorator) {
             if (!Objects.equal(cacheDecorator, parameters.getCacheDecorator())) {
                 faultMessages.add(
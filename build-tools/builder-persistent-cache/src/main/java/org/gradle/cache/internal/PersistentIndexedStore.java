@@ -0,0 +1,18 @@
+package org.gradle.cache.internal;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The file that backs a {@link DefaultMultiProcessSafePersistentIndexedCache}. Implementations
+ * are not thread safe and are only used while the cache's file lock is held.
+ */
+public interface PersistentIndexedStore<K, V> {
+    @Nullable
+    V get(K key);
+
+    void put(K key, V value);
+
+    void remove(K key);
+
+    void close();
+}
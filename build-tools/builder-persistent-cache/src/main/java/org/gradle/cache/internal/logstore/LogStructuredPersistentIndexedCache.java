@@ -0,0 +1,452 @@
+package org.gradle.cache.internal.logstore;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.PersistentIndexedStore;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent indexed cache that appends every update to a log file and keeps the position of
+ * the latest record of every key in memory. Reads go through a memory mapping of the file, so a
+ * lookup costs a hash map access and deserializing the value, instead of walking the blocks of a
+ * BTree.
+ *
+ * The file starts with a magic number, a format version and a generation, followed by records of
+ * {@code <length> <crc32> <kind> <key length> <key> <value>}. Removing an entry appends a record
+ * without a value. A record that is incomplete or does not match its checksum, because a process
+ * died while writing it, ends the log and is truncated away when the file is opened.
+ *
+ * The cache is opened and closed every time the file lock is acquired and released. The index is
+ * kept while the cache is closed, and only the records that other processes appended in the
+ * meantime are read when it is opened again. The memory mapping is kept as well, and is only
+ * replaced once the file grew past it by more than its own size, the records after the mapped part
+ * are read through the channel until then. When most of the log is taken up by records that were
+ * replaced or removed, the live records are copied to a new file with a new generation on close,
+ * which then replaces the log.
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements PersistentIndexedStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class.getSimpleName());
+
+    private static final int MAGIC = 0x474c4f47; // GLOG
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_PREFIX_SIZE = 8; // length and checksum
+    private static final int RECORD_BODY_PREFIX_SIZE = 5; // kind and key length
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private static final long MIN_DEAD_BYTES_TO_COMPACT = 1024 * 1024;
+    private static final long MAX_UNMAPPED_BYTES = 4 * 1024 * 1024;
+
+    private static final HashFunction KEY_HASH = Hashing.murmur3_128();
+    private static final long MISSING = -1;
+
+    private final File cacheFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final ToLongFunction<byte[]> keyHash;
+    private final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    private final KryoBackedEncoder encoder = new KryoBackedEncoder(serialized);
+
+    /**
+     * The position of the latest record of every key, by the hash of the serialized key.
+     */
+    private Long2LongOpenHashMap index = newIndex();
+    private long generation;
+    private long end;
+    private long deadBytes;
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheFile, keySerializer, valueSerializer, key -> KEY_HASH.hashBytes(key).asLong());
+    }
+
+    @VisibleForTesting
+    LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, ToLongFunction<byte[]> keyHash) {
+        this.cacheFile = cacheFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.keyHash = keyHash;
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    /**
+     * Opens the log, reading the records that were appended since it was last closed.
+     */
+    public void open() {
+        if (channel != null) {
+            return;
+        }
+        LOGGER.debug("Opening " + this);
+        try {
+            doOpen();
+        } catch (Exception e) {
+            closeQuietly();
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    private void doOpen() throws IOException {
+        channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        long size = channel.size();
+        long fileGeneration = readGeneration(size);
+        if (fileGeneration == 0) {
+            if (size > 0) {
+                LOGGER.warn(this + " is corrupt. Discarding.");
+            }
+            channel.truncate(0);
+            fileGeneration = newGeneration();
+            writeFully(channel, header(fileGeneration), 0);
+            size = HEADER_SIZE;
+        }
+        if (fileGeneration != generation || size < end) {
+            // The log was created or compacted by another process, all records are read again
+            index.clear();
+            generation = fileGeneration;
+            end = HEADER_SIZE;
+            deadBytes = 0;
+            mapped = null;
+        }
+        mapIfGrown(size);
+        long validEnd = readRecords(size);
+        if (validEnd < size) {
+            LOGGER.warn(this + " has an incomplete record at the end. Discarding it.");
+            channel.truncate(validEnd);
+        }
+    }
+
+    private long readGeneration(long size) throws IOException {
+        if (size < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            return 0;
+        }
+        return header.getLong();
+    }
+
+    /**
+     * Adds the records from the end of the index to the given size of the file to the index.
+     *
+     * @return The end of the last valid record
+     */
+    private long readRecords(long size) throws IOException {
+        CRC32 crc = new CRC32();
+        long position = end;
+        while (position + RECORD_PREFIX_SIZE + RECORD_BODY_PREFIX_SIZE <= size) {
+            ByteBuffer prefix = read(position, RECORD_PREFIX_SIZE);
+            int length = prefix.getInt();
+            int checksum = prefix.getInt();
+            if (length < RECORD_BODY_PREFIX_SIZE || position + RECORD_PREFIX_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer body = read(position + RECORD_PREFIX_SIZE, length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte kind = body.get();
+            int keyLength = body.getInt();
+            if ((kind != PUT && kind != REMOVE) || keyLength < 0 || keyLength > length - RECORD_BODY_PREFIX_SIZE) {
+                break;
+            }
+            byte[] key = new byte[keyLength];
+            body.get(key);
+
+            long recordSize = RECORD_PREFIX_SIZE + length;
+            if (kind == PUT) {
+                replace(hash(key), position);
+            } else {
+                removeFromIndex(hash(key));
+                deadBytes += recordSize;
+            }
+            position += recordSize;
+            end = position;
+        }
+        return position;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            long position = index.get(hash(keyBytes));
+            if (position == MISSING) {
+                return null;
+            }
+            ByteBuffer body = read(position + RECORD_PREFIX_SIZE, readLength(position));
+            body.get(); // kind, only puts are indexed
+            if (body.getInt() != keyBytes.length) {
+                return null;
+            }
+            byte[] recordKey = new byte[keyBytes.length];
+            body.get(recordKey);
+            if (!Arrays.equals(recordKey, keyBytes)) {
+                // Another key with the same hash replaced this one
+                return null;
+            }
+            byte[] value = new byte[body.remaining()];
+            body.get(value);
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(value)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            byte[] valueBytes = serialize(valueSerializer, value);
+            long position = append(PUT, keyBytes, valueBytes);
+            replace(hash(keyBytes), position);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            long hash = hash(keyBytes);
+            if (!index.containsKey(hash)) {
+                return;
+            }
+            long position = append(REMOVE, keyBytes, NO_VALUE);
+            removeFromIndex(hash);
+            deadBytes += end - position;
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        LOGGER.debug("Closing " + this);
+        try {
+            if (deadBytes >= MIN_DEAD_BYTES_TO_COMPACT && deadBytes * 2 > end - HEADER_SIZE) {
+                compact();
+            }
+        } catch (Exception e) {
+            // The index may not match the file anymore, read it again on the next open
+            generation = 0;
+            throw new UncheckedIOException(String.format("Could not compact %s.", this), e);
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Copies the live records to a new file in the order they were written, and replaces the log with it.
+     */
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting " + this + ", " + deadBytes + " of " + end + " bytes are unused");
+        long[] positions = new long[index.size()];
+        long[] hashes = new long[index.size()];
+        int live = 0;
+        for (Long2LongMap.Entry entry : index.long2LongEntrySet()) {
+            positions[live] = entry.getLongValue();
+            hashes[live] = entry.getLongKey();
+            live++;
+        }
+        LongArrays.quickSort(positions, hashes);
+
+        File compactedFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compacting");
+        long compactedGeneration = newGeneration();
+        Long2LongOpenHashMap compactedIndex = newIndex();
+        long position = HEADER_SIZE;
+        try (FileChannel compacted = FileChannel.open(compactedFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(compacted, header(compactedGeneration), 0);
+            for (int i = 0; i < live; i++) {
+                int recordSize = RECORD_PREFIX_SIZE + readLength(positions[i]);
+                writeFully(compacted, read(positions[i], recordSize), position);
+                compactedIndex.put(hashes[i], position);
+                position += recordSize;
+            }
+            compacted.force(false);
+        }
+
+        closeQuietly();
+        // The mapping belongs to the file that is replaced
+        mapped = null;
+        Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = compactedIndex;
+        generation = compactedGeneration;
+        end = position;
+        deadBytes = 0;
+    }
+
+    private long append(byte kind, byte[] key, byte[] value) throws IOException {
+        int length = RECORD_BODY_PREFIX_SIZE + key.length + value.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_PREFIX_SIZE + length);
+        record.position(RECORD_PREFIX_SIZE);
+        record.put(kind);
+        record.putInt(key.length);
+        record.put(key);
+        record.put(value);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_PREFIX_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        record.rewind();
+
+        long position = end;
+        writeFully(channel, record, position);
+        end = position + record.capacity();
+        mapIfGrown(end);
+        return position;
+    }
+
+    private void replace(long hash, long position) throws IOException {
+        long previous = index.put(hash, position);
+        if (previous != MISSING) {
+            deadBytes += RECORD_PREFIX_SIZE + readLength(previous);
+        }
+    }
+
+    private void removeFromIndex(long hash) throws IOException {
+        long previous = index.remove(hash);
+        if (previous != MISSING) {
+            deadBytes += RECORD_PREFIX_SIZE + readLength(previous);
+        }
+    }
+
+    private int readLength(long position) throws IOException {
+        return read(position, 4).getInt();
+    }
+
+    /**
+     * Reads from the memory mapping when it covers the given range, and from the file otherwise.
+     */
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (mapped != null && position + length <= mapped.limit()) {
+            ByteBuffer buffer = mapped.duplicate();
+            buffer.position((int) position);
+            buffer.limit((int) position + length);
+            return buffer.slice();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, position);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of " + cacheFile);
+            }
+            position += count;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Maps the file up to the given size when the part after the mapping outgrew the mapping. The
+     * mapping at least doubles every time, so a growing log is mapped a few times only, and the
+     * mappings that are replaced are released once they are garbage collected.
+     */
+    private void mapIfGrown(long size) throws IOException {
+        // Files larger than a mapping can hold are read through the channel past the mapped part
+        long mappableSize = Math.min(size, Integer.MAX_VALUE);
+        long mappedSize = mapped == null ? 0 : mapped.limit();
+        if (mappableSize - mappedSize > Math.max(mappedSize, MAX_UNMAPPED_BYTES)
+            || (mapped == null && mappableSize > HEADER_SIZE)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, mappableSize);
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close " + this, e);
+            }
+            channel = null;
+        }
+    }
+
+    private <T> byte[] serialize(Serializer<T> serializer, T value) throws Exception {
+        serialized.reset();
+        serializer.write(encoder, value);
+        encoder.flush();
+        return serialized.toByteArray();
+    }
+
+    private long hash(byte[] key) {
+        return keyHash.applyAsLong(key);
+    }
+
+    private static Long2LongOpenHashMap newIndex() {
+        Long2LongOpenHashMap index = new Long2LongOpenHashMap();
+        // Positions are never negative
+        index.defaultReturnValue(MISSING);
+        return index;
+    }
+
+    private static ByteBuffer header(long generation) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(generation);
+        header.flip();
+        return header;
+    }
+
+    private static long newGeneration() {
+        // Zero marks a log that has not been read yet
+        return ThreadLocalRandom.current().nextLong() | 1;
+    }
+}
@@ -0,0 +1,249 @@
+package org.gradle.cache.internal.logstore;
+
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogStructuredPersistentIndexedCacheTest {
+
+    private static final int HEADER_SIZE = 16;
+    private static final String LARGE_VALUE = "x".repeat(1000);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File cacheFile;
+
+    @Before
+    public void setup() {
+        cacheFile = new File(temporaryFolder.getRoot(), "cache.bin");
+    }
+
+    @Test
+    public void entriesAreKeptBetweenInstances() {
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("b", "3");
+        cache.remove("a");
+        assertNull(cache.get("a"));
+        assertEquals("3", cache.get("b"));
+        cache.close();
+
+        LogStructuredPersistentIndexedCache<String, String> reopened = createCache();
+        reopened.open();
+        assertNull(reopened.get("a"));
+        assertEquals("3", reopened.get("b"));
+        assertNull(reopened.get("c"));
+        reopened.close();
+    }
+
+    @Test
+    public void tornRecordIsTruncated() throws IOException {
+        long validLength = writeEntries("a", "b");
+        put("c", "3");
+        truncate(cacheFile.length() - 2);
+
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        assertEquals(validLength, cacheFile.length());
+        assertEquals("a", cache.get("a"));
+        assertEquals("b", cache.get("b"));
+        assertNull(cache.get("c"));
+
+        cache.put("c", "3");
+        cache.close();
+        assertEquals("3", get("c"));
+    }
+
+    @Test
+    public void recordWithWrongChecksumIsTruncated() throws IOException {
+        long validLength = writeEntries("a", "b");
+        put("c", "3");
+        long length = cacheFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.seek(length - 1);
+            int last = file.read();
+            file.seek(length - 1);
+            file.write(last ^ 0xff);
+        }
+
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        assertEquals(validLength, cacheFile.length());
+        assertEquals("a", cache.get("a"));
+        assertEquals("b", cache.get("b"));
+        assertNull(cache.get("c"));
+        cache.close();
+    }
+
+    @Test
+    public void corruptHeaderDiscardsLog() throws IOException {
+        writeEntries("a", "b");
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.writeInt(0);
+        }
+
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        assertEquals(HEADER_SIZE, cacheFile.length());
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+
+        cache.put("a", "1");
+        cache.close();
+        assertEquals("1", get("a"));
+    }
+
+    @Test
+    public void reopenedCacheSeesRecordsOfAnotherInstance() {
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.close();
+
+        LogStructuredPersistentIndexedCache<String, String> other = createCache();
+        other.open();
+        other.put("b", "3");
+        other.put("c", "4");
+        other.remove("a");
+        other.close();
+
+        cache.open();
+        assertNull(cache.get("a"));
+        assertEquals("3", cache.get("b"));
+        assertEquals("4", cache.get("c"));
+        cache.close();
+    }
+
+    @Test
+    public void reopenedCacheReadsLogCompactedByAnotherInstance() {
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.close();
+
+        LogStructuredPersistentIndexedCache<String, String> other = createCache();
+        other.open();
+        other.remove("a");
+        for (int i = 0; i < 2000; i++) {
+            other.put("large", LARGE_VALUE + i);
+        }
+        other.put("c", "3");
+        long beforeCompaction = cacheFile.length();
+        other.close();
+        assertTrue(cacheFile.length() < beforeCompaction);
+
+        // The records moved, positions from before the compaction would point into other records
+        cache.open();
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(LARGE_VALUE + 1999, cache.get("large"));
+        cache.close();
+    }
+
+    @Test
+    public void logIsCompactedOnCloseWhenMostOfItIsUnused() {
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        cache.put("a", "1");
+        for (int i = 0; i < 500; i++) {
+            cache.put("large", LARGE_VALUE + i);
+        }
+        cache.put("b", "2");
+        long length = cacheFile.length();
+        cache.close();
+        // less than the minimum of unused bytes to compact
+        assertEquals(length, cacheFile.length());
+
+        cache.open();
+        for (int i = 500; i < 1600; i++) {
+            cache.put("large", LARGE_VALUE + i);
+        }
+        cache.remove("b");
+        cache.close();
+        long compactedLength = cacheFile.length();
+        assertTrue(compactedLength < 3 * LARGE_VALUE.length());
+
+        // the index points at the records in the compacted log
+        cache.open();
+        assertEquals(compactedLength, cacheFile.length());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(LARGE_VALUE + 1599, cache.get("large"));
+        cache.put("c", "3");
+        assertEquals("3", cache.get("c"));
+        cache.close();
+
+        assertEquals("1", get("a"));
+        assertEquals("3", get("c"));
+        assertEquals(LARGE_VALUE + 1599, get("large"));
+    }
+
+    @Test
+    public void keyWithSameHashIsNotReturnedForAnotherKey() {
+        LogStructuredPersistentIndexedCache<String, String> cache = new LogStructuredPersistentIndexedCache<>(cacheFile,
+            BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER, key -> 42);
+        cache.open();
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        cache.close();
+    }
+
+    /**
+     * Writes each key as its own value and returns the length of the log.
+     */
+    private long writeEntries(String... keys) {
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        for (String key : keys) {
+            cache.put(key, key);
+        }
+        cache.close();
+        return cacheFile.length();
+    }
+
+    private void put(String key, String value) {
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        cache.put(key, value);
+        cache.close();
+    }
+
+    private String get(String key) {
+        LogStructuredPersistentIndexedCache<String, String> cache = createCache();
+        cache.open();
+        try {
+            return cache.get(key);
+        } finally {
+            cache.close();
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(length);
+        }
+    }
+
+    private LogStructuredPersistentIndexedCache<String, String> createCache() {
+        return new LogStructuredPersistentIndexedCache<>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER);
+    }
+}
@@ -4,7 +4,6 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.lint.api.Detector;
@@ -65,8 +64,7 @@ public class JavaVisitor {
 
     public void visitFile(JavaContext context) {
         try {
-            CompilerContainer container = mCompiler.compile(context.file.toPath());
-            container.run(task -> {
+            mCompiler.compile(context.file.toPath(), task -> {
                 Tree compilationUnit = task.root();
                 context.setCompileTask(task);
 
@@ -81,6 +79,7 @@ public class JavaVisitor {
                     JavaVoidVisitor visitor = new DispatchVisitor();
                     compilationUnit.accept(visitor, null);
                 }
+                return null;
             });
         } catch (Throwable e) {
             Log.e("Lint", "Failed to analyze file", e);
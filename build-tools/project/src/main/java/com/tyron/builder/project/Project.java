@@ -4,6 +4,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.eventbus.EventBus;
 import com.google.common.graph.ElementOrder;
 import com.google.common.graph.Graph;
@@ -34,6 +35,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 
 @SuppressWarnings("UnstableApiUsage")
 public class Project {
@@ -48,6 +50,15 @@ public class Project {
     private volatile boolean mCompiling;
     private volatile boolean mIndexing;
 
+    /**
+     * The modules as they were before indexing started, along with the modules that finished
+     * indexing since then. While the project is indexing, threads inside
+     * {@link #readCommitted(Supplier)} read from this snapshot instead of the modules that are
+     * still being built.
+     */
+    private volatile Map<String, Module> mCommittedModules = Collections.emptyMap();
+    private final ThreadLocal<Boolean> mReadCommitted = new ThreadLocal<>();
+
     private final EventManager eventManager;
 
     public Project(File root) {
@@ -76,8 +87,58 @@ public class Project {
         mCompiling = compiling;
     }
 
-    public void setIndexing(boolean indexing) {
+    public synchronized void setIndexing(boolean indexing) {
+        if (indexing && !mIndexing) {
+            mCommittedModules = ImmutableMap.copyOf(mModules);
+        }
         mIndexing = indexing;
+        if (!indexing) {
+            // the new modules are now visible to everyone, release the old generation
+            mCommittedModules = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Publishes a module that has finished indexing to the threads inside
+     * {@link #readCommitted(Supplier)}, replacing the module with the same name from before
+     * indexing started. This lets completion work on the modules that are ready while the
+     * rest of the project is indexed, including when the project is opened for the first
+     * time and there is nothing else to serve.
+     *
+     * The module must not be modified by the indexer after it is committed.
+     */
+    public synchronized void commitModule(Module module) {
+        if (!mIndexing) {
+            return;
+        }
+        Map<String, Module> committed = new LinkedHashMap<>(mCommittedModules);
+        committed.put(module.getName(), module);
+        mCommittedModules = ImmutableMap.copyOf(committed);
+    }
+
+    /**
+     * Runs the given action against the last committed generation of modules. While the
+     * project is indexing, the modules returned by this project on the calling thread are
+     * the ones from before indexing started, so callers such as code completion can keep
+     * working while the new modules are built in the background. Modules that finish
+     * indexing are made visible through {@link #commitModule(Module)}. Once indexing finishes,
+     * this is the same as calling the action directly.
+     */
+    public <T> T readCommitted(Supplier<T> action) {
+        Boolean previous = mReadCommitted.get();
+        mReadCommitted.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            mReadCommitted.set(previous);
+        }
+    }
+
+    private Map<String, Module> modules() {
+        if (mIndexing && Boolean.TRUE.equals(mReadCommitted.get())) {
+            return mCommittedModules;
+        }
+        return mModules;
     }
 
     public boolean isIndexing() {
@@ -95,15 +156,16 @@ public class Project {
      * @return All the modules from the main module, order is not guaranteed
      */
     public Collection<Module> getModules() {
-        return mModules.values();
+        return modules().values();
     }
 
     @NonNull
     public Module getMainModule() {
-        if (mModules.isEmpty()) {
+        Map<String, Module> modules = modules();
+        if (modules.isEmpty()) {
             return EMPTY;
         }
-        return mModules.values().iterator().next();
+        return modules.values().iterator().next();
     }
 
     public File getRootFile() {
@@ -115,7 +177,7 @@ public class Project {
     }
 
     public Module getModule(File file) {
-        for (Module value : mModules.values()) {
+        for (Module value : modules().values()) {
             for (ContentRoot contentRoot : value.getContentRoots()) {
                 for (File sourceDirectory : contentRoot.getSourceDirectories()) {
                     if (directoryContainsFile(sourceDirectory, file)) {
@@ -128,7 +190,7 @@ public class Project {
     }
 
     public Module getModuleByName(String name) {
-        return mModules.get(name);
+        return modules().get(name);
     }
 
     private boolean directoryContainsFile(File dir, File file) {
@@ -143,7 +205,7 @@ public class Project {
     }
 
     public List<Module> getDependencies(Module module) {
-        return ImmutableList.copyOf(mModules.values())
+        return ImmutableList.copyOf(modules().values())
                 .reverse();
     }
 
@@ -7,6 +7,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.model.CodeAssistLibrary;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.util.LibraryClassIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 
@@ -18,19 +19,17 @@ import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
-    // Map of fully qualified names and the jar they are contained in
-    private final Map<String, File> mClassFiles;
+    // the class names of each library jar, the names are read from the index when needed
+    private final Map<File, LibraryClassIndex> mLibraryIndexes;
     private final Map<String, File> mJavaFiles;
     private final Map<String, CodeAssistLibrary> mLibraryHashMap;
     private final Map<String, File> mInjectedClassesMap;
@@ -41,8 +40,8 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
     public JavaModuleImpl(File root) {
         super(root);
-        mJavaFiles = new HashMap<>();
-        mClassFiles = new HashMap<>();
+        mJavaFiles = new ConcurrentHashMap<>();
+        mLibraryIndexes = new ConcurrentHashMap<>();
         mLibraries = new HashSet<>();
         mInjectedClassesMap = new HashMap<>();
         mLibraryHashMap = new HashMap<>();
@@ -97,7 +96,9 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public Set<String> getAllClasses() {
         Set<String> classes = new HashSet<>();
         classes.addAll(mJavaFiles.keySet());
-        classes.addAll(mClassFiles.keySet());
+        for (LibraryClassIndex index : mLibraryIndexes.values()) {
+            index.forEach(classes::add);
+        }
         classes.addAll(mInjectedClassesMap.keySet());
         return classes;
     }
@@ -117,8 +118,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             return;
         }
         try {
-            // noinspection unused, used to check if jar is valid.
-            JarFile jarFile = new JarFile(jar);
+            // throws if the jar is not valid, the jar is only opened if it has not been indexed
             putJar(jar);
             mLibraries.add(jar);
         } catch (IOException e) {
@@ -130,28 +130,24 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         if (file == null) {
             return;
         }
-        try (JarFile jar = new JarFile(file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-
-                if (!entry.getName().endsWith(".class")) {
-                    continue;
-                }
-
-                // We only want top level classes, if it contains $ then
-                // its an inner class, we ignore it
-                if (entry.getName().contains("$")) {
-                    continue;
-                }
-
-                String packageName = entry.getName().replace("/", ".")
-                        .substring(0, entry.getName().length() - ".class".length());
-
-                mClassFiles.put(packageName, file);
-                mClassIndex.add(packageName);
-            }
+        LibraryClassIndex index;
+        if (getRootFile() == null) {
+            // nowhere to store the index, e.g. the module that holds the JDK classes
+            index = LibraryClassIndex.create(file);
+        } else {
+            index = LibraryClassIndex.open(file, getClassIndexFile(file));
         }
+        mLibraryIndexes.put(file, index);
+        mClassIndex.addLibraryIndex(index);
+    }
+
+    /**
+     * The index of a jar is only written once, afterwards it is mapped as long as the
+     * size and modification time of the jar stays the same.
+     */
+    private File getClassIndexFile(File jar) {
+        String name = jar.getName() + "-" + Integer.toHexString(jar.getAbsolutePath().hashCode());
+        return new File(getBuildDirectory(), "intermediate/class-index/" + name + ".idx");
     }
 
     @NonNull
@@ -254,6 +250,8 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public void clear() {
         mJavaFiles.clear();
         mLibraries.clear();
+        mLibraryIndexes.clear();
+        mClassIndex.removeLibraryIndexes();
         mLibraryHashMap.clear();
     }
 }
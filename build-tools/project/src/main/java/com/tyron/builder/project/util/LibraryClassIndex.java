@@ -0,0 +1,251 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The sorted names of the top level classes of a jar, stored in a file that is written once
+ * and memory mapped afterwards so the jar does not have to be opened again until it changes.
+ *
+ * Names are only decoded when they are asked for, lookups by package are a binary search
+ * over the sorted names.
+ *
+ * The file layout is:
+ * <pre>
+ *     int magic, int version, long jar length, long jar last modified,
+ *     int count, int[count + 1] offsets of the names, utf-8 bytes of the names
+ * </pre>
+ */
+public class LibraryClassIndex {
+
+    private static final int MAGIC = 0x434C4958;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+    private final File mJar;
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    private final int mDataStart;
+
+    private LibraryClassIndex(File jar, ByteBuffer buffer) {
+        mJar = jar;
+        mBuffer = buffer;
+        mSize = buffer.getInt(HEADER_SIZE - 4);
+        mDataStart = HEADER_SIZE + (mSize + 1) * 4;
+    }
+
+    /**
+     * Maps the index file of the given jar, the index file is written first if it does not
+     * exist or if it was written for an older version of the jar.
+     *
+     * @param jar the jar to index
+     * @param indexFile where the index of the jar is stored
+     */
+    @NonNull
+    public static LibraryClassIndex open(@NonNull File jar,
+                                         @NonNull File indexFile) throws IOException {
+        if (indexFile.exists()) {
+            LibraryClassIndex index = map(jar, indexFile);
+            if (index != null) {
+                return index;
+            }
+        }
+
+        File parent = indexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        // write to a temporary file first so a crash never leaves a partial index behind
+        File tempFile = new File(parent, indexFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            write(jar, outputStream);
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        LibraryClassIndex index = map(jar, indexFile);
+        if (index == null) {
+            throw new IOException("Corrupt class index " + indexFile + " of " + jar);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the jar into an index that is kept in memory, used when there is no place to
+     * store the index file.
+     */
+    @NonNull
+    public static LibraryClassIndex create(@NonNull File jar) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        write(jar, outputStream);
+        return new LibraryClassIndex(jar, ByteBuffer.wrap(outputStream.toByteArray()));
+    }
+
+    private static LibraryClassIndex map(File jar, File indexFile) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(),
+                StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION ||
+            buffer.getLong(8) != jar.length() || buffer.getLong(16) != jar.lastModified()) {
+            return null;
+        }
+        return new LibraryClassIndex(jar, buffer);
+    }
+
+    private static void write(File jar, OutputStream out) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(".class")) {
+                    continue;
+                }
+                // We only want top level classes, if it contains $ then
+                // its an inner class, we ignore it
+                if (name.contains("$")) {
+                    continue;
+                }
+                names.add(name.substring(0, name.length() - ".class".length())
+                        .replace('/', '.'));
+            }
+        }
+        Collections.sort(names);
+
+        List<byte[]> encoded = new ArrayList<>(names.size());
+        for (String name : names) {
+            encoded.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(jar.length());
+        data.writeLong(jar.lastModified());
+        data.writeInt(encoded.size());
+        int offset = 0;
+        for (byte[] bytes : encoded) {
+            data.writeInt(offset);
+            offset += bytes.length;
+        }
+        data.writeInt(offset);
+        for (byte[] bytes : encoded) {
+            data.write(bytes);
+        }
+        data.flush();
+    }
+
+    @NonNull
+    public File getJar() {
+        return mJar;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the fully qualified name at the given position of the sorted names
+     */
+    @NonNull
+    public String getName(int index) {
+        int start = mBuffer.getInt(HEADER_SIZE + index * 4);
+        int end = mBuffer.getInt(HEADER_SIZE + (index + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = mBuffer.get(mDataStart + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(@NonNull String fqn) {
+        int index = lowerBound(fqn);
+        return index < mSize && getName(index).equals(fqn);
+    }
+
+    public void forEach(@NonNull Consumer<String> consumer) {
+        for (int i = 0; i < mSize; i++) {
+            consumer.accept(getName(i));
+        }
+    }
+
+    /**
+     * Passes the classes inside the given package and its sub packages to the consumer
+     *
+     * @param packageName the package name, e.g. {@code java.util}
+     */
+    public void forEachInPackage(@NonNull String packageName, @NonNull Consumer<String> consumer) {
+        String prefix = packageName + ".";
+        for (int i = lowerBound(prefix); i < mSize; i++) {
+            String name = getName(i);
+            if (!name.startsWith(prefix)) {
+                break;
+            }
+            consumer.accept(name);
+        }
+    }
+
+    /**
+     * @return the first segments of the packages in this index, e.g. {@code java} and
+     * {@code android}
+     */
+    @NonNull
+    public Set<String> getTopLevelPackages() {
+        Set<String> packages = new HashSet<>();
+        int i = 0;
+        while (i < mSize) {
+            String name = getName(i);
+            int dot = name.indexOf('.');
+            if (dot == -1) {
+                i++;
+                continue;
+            }
+            String topLevel = name.substring(0, dot);
+            packages.add(topLevel);
+            // '/' sorts right after '.', so this skips every name in this package
+            i = lowerBound(topLevel + "/");
+        }
+        return packages;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getName(mid).compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
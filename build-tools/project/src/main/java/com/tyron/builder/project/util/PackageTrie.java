@@ -4,11 +4,12 @@ import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 /**
@@ -22,15 +23,28 @@ import java.util.function.Function;
  *     /  \
  * String Object
  * </p>
+ *
+ * The classes of libraries are not copied into the trie, their {@link LibraryClassIndex}
+ * is queried directly instead.
  */
 public class PackageTrie {
 
     private final Node mRoot;
+    private final List<LibraryClassIndex> mLibraryIndexes = new CopyOnWriteArrayList<>();
+    private volatile int mModificationCount;
 
     public PackageTrie() {
         mRoot = new Node();
     }
 
+    /**
+     * @return A number that changes every time a name is added or removed from this trie,
+     * callers can use this to know whether data derived from this trie is out of date.
+     */
+    public int getModificationCount() {
+        return mModificationCount;
+    }
+
     /**
      * Add the fully qualified name to the index.
      *
@@ -44,6 +58,26 @@ public class PackageTrie {
         }
         // this is the end node, so mark it as a leaf
         current.isLeaf = true;
+        mModificationCount++;
+    }
+
+    /**
+     * Adds the classes of a library to this trie, replacing the index of the same jar if it
+     * was added before. Classes of a library cannot be removed individually.
+     */
+    public void addLibraryIndex(@NonNull LibraryClassIndex index) {
+        for (LibraryClassIndex existing : mLibraryIndexes) {
+            if (existing.getJar().equals(index.getJar())) {
+                mLibraryIndexes.remove(existing);
+            }
+        }
+        mLibraryIndexes.add(index);
+        mModificationCount++;
+    }
+
+    public void removeLibraryIndexes() {
+        mLibraryIndexes.clear();
+        mModificationCount++;
     }
 
     public void remove(@NonNull String fqn) {
@@ -63,6 +97,7 @@ public class PackageTrie {
      * @param leafOnly Whether to delete the leaf only
      */
     public void remove(@NonNull String fqn, boolean leafOnly) {
+        mModificationCount++;
         String[] parts = getParts(fqn);
         Node current = mRoot;
         for (int i = 0; i < parts.length; i++) {
@@ -86,12 +121,20 @@ public class PackageTrie {
 
     public List<String> getMatchingPackages(String packageQuery) {
         List<String> result = new ArrayList<>();
+        addMatchingPackages(packageQuery, result);
+        for (LibraryClassIndex index : mLibraryIndexes) {
+            index.forEachInPackage(packageQuery, result::add);
+        }
+        return result;
+    }
+
+    private void addMatchingPackages(String packageQuery, List<String> result) {
         StringBuilder currentPackage = new StringBuilder();
         String[] parts = getParts(packageQuery);
         Node current = mRoot;
         for (String part : parts) {
             if (current == null || current.getChildren() == null || !current.getChildren().containsKey(part)) {
-                return result;
+                return;
             }
 
             if (current.isLeaf) {
@@ -115,20 +158,43 @@ public class PackageTrie {
                 recurse(node, currentPackage.toString(), result);
             }
         }
-
-        return result;
     }
 
     public Set<String> getTopLevelNonLeafNodes() {
-        if (mRoot.getChildren() == null) {
-            return Collections.emptySet();
+        Set<String> nodes = mRoot.getChildren() == null
+                ? Collections.emptySet()
+                : mRoot.getChildren().keySet();
+        if (mLibraryIndexes.isEmpty()) {
+            return nodes;
         }
 
-        return mRoot.getChildren().keySet();
+        Set<String> result = new HashSet<>(nodes);
+        for (LibraryClassIndex index : mLibraryIndexes) {
+            result.addAll(index.getTopLevelPackages());
+        }
+        return result;
     }
 
     public Set<String> getLeafNodes() {
-        return new HashSet<>(getLeafNodes("", mRoot));
+        Set<String> leafNodes = new HashSet<>(getLeafNodes("", mRoot));
+        for (LibraryClassIndex index : mLibraryIndexes) {
+            index.forEach(leafNodes::add);
+        }
+        return leafNodes;
+    }
+
+    /**
+     * @return The names added with {@link #add(String)}, without the classes of libraries
+     */
+    public Set<String> getNonLibraryLeafNodes() {
+        return getLeafNodes("", mRoot);
+    }
+
+    /**
+     * @return The indexes of the libraries added to this trie, they do not change once added
+     */
+    public List<LibraryClassIndex> getLibraryIndexes() {
+        return Collections.unmodifiableList(mLibraryIndexes);
     }
 
     private Set<String> getLeafNodes(String currentPackage, Node current) {
@@ -194,7 +260,8 @@ public class PackageTrie {
 
         public Node getOrCreateChild(String part) {
             if (mChildren == null) {
-                mChildren = new HashMap<>();
+                // concurrent so completion can read the trie while the module is being indexed
+                mChildren = new ConcurrentHashMap<>();
             }
 
             return mChildren.computeIfAbsent(part, Node::new);
@@ -0,0 +1,70 @@
+package com.tyron.builder.project.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class LibraryClassIndexTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testIndexIsWrittenOnceAndMapped() throws IOException {
+        File jar = createJar("a.jar", "java/lang/String.class", "java/lang/Object.class",
+                "java/util/List.class", "java/util/List$Inner.class", "android/app/Activity.class",
+                "META-INF/MANIFEST.MF");
+        File indexFile = new File(mFolder.getRoot(), "index/a.idx");
+
+        LibraryClassIndex index = LibraryClassIndex.open(jar, indexFile);
+        assertTrue(indexFile.exists());
+        assertEquals(4, index.size());
+        assertTrue(index.contains("java.util.List"));
+        assertFalse(index.contains("java.util.List$Inner"));
+
+        long lastModified = indexFile.lastModified();
+        LibraryClassIndex mapped = LibraryClassIndex.open(jar, indexFile);
+        assertEquals(lastModified, indexFile.lastModified());
+        assertEquals(new HashSet<>(Arrays.asList("java", "android")),
+                mapped.getTopLevelPackages());
+    }
+
+    @Test
+    public void testTrieQueriesLibraryIndex() throws IOException {
+        File jar = createJar("b.jar", "java/lang/String.class", "java/lang/Object.class",
+                "java/lang/reflect/Method.class", "java/util/List.class");
+        PackageTrie trie = new PackageTrie();
+        trie.add("com.example.Main");
+        trie.addLibraryIndex(LibraryClassIndex.create(jar));
+
+        List<String> names = trie.getMatchingPackages("java.lang");
+        assertEquals(3, names.size());
+        assertTrue(names.contains("java.lang.reflect.Method"));
+        assertEquals(new HashSet<>(Arrays.asList("java", "com")), trie.getTopLevelNonLeafNodes());
+        assertEquals(5, trie.getLeafNodes().size());
+    }
+
+    private File createJar(String name, String... entries) throws IOException {
+        File jar = mFolder.newFile(name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
@@ -23,4 +23,5 @@ public class SharedPreferenceKeys {
     public static final String GRADLE_LOG_LEVEL = "gradle_log_level";
     public static final String GRADLE_STACKTRACE_MODE = "gradle_stacktrace_mode";
     public static final String GRADLE_VERBOSE_VFS_LOGGING = "gradle_verbose_vfs_logging";
+    public static final String GRADLE_CONFIGURATION_CACHE = "gradle_configuration_cache";
 }
@@ -6,11 +6,26 @@ import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
-/** Cache maps a file + an arbitrary key to a value. When the file is modified, the mapping expires. */
+/**
+ * Cache maps a file + an arbitrary key to a value. When the file is modified, the mapping expires.
+ *
+ * By default the modification time of the file is checked on every lookup. Caches created with
+ * {@link Builder#setInvalidateOnFileEvents(boolean)} rely on the owner to call
+ * {@link #invalidate(Path)} when it is told that a file has changed, and only check the
+ * modification time once per {@link Builder#setModificationCheckInterval(long) interval} to
+ * catch the changes made outside of the editor.
+ *
+ * All operations are thread safe. If a maximum size or weight is set, the least recently used
+ * mappings are evicted first.
+ */
 public class Cache<K, V> {
     public static class Key<K> {
         public final Path file;
@@ -23,7 +38,7 @@ public class Cache<K, V> {
 
         @Override
         public boolean equals(Object other) {
-            if (other.getClass() != Cache.Key.class) return false;
+            if (other == null || other.getClass() != Cache.Key.class) return false;
             Cache.Key that = (Cache.Key) other;
             return Objects.equals(this.key, that.key) && Objects.equals(this.file, that.file);
         }
@@ -34,67 +49,297 @@ public class Cache<K, V> {
         }
     }
 
+    /**
+     * Computes the weight of a mapping, used to bound the cache by something other than
+     * the number of mappings.
+     */
+    public interface Weigher<K, V> {
+        int weigh(Key<K> key, V value);
+    }
+
+    public static class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final long evictionCount;
+        public final long invalidationCount;
+
+        Stats(long hitCount, long missCount, long evictionCount, long invalidationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.invalidationCount = invalidationCount;
+        }
+
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                   "hits=" + hitCount +
+                   ", misses=" + missCount +
+                   ", evictions=" + evictionCount +
+                   ", invalidations=" + invalidationCount +
+                   '}';
+        }
+    }
+
+    public static class Builder<K, V> {
+        private long maximumWeight = Long.MAX_VALUE;
+        private Weigher<K, V> weigher;
+        private boolean invalidateOnFileEvents;
+        private long modificationCheckInterval = Long.MAX_VALUE;
+
+        public Builder<K, V> setMaximumSize(long maximumSize) {
+            this.maximumWeight = maximumSize;
+            this.weigher = null;
+            return this;
+        }
+
+        public Builder<K, V> setMaximumWeight(long maximumWeight, Weigher<K, V> weigher) {
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * @param invalidateOnFileEvents whether the modification time of files is no longer
+         *                               checked on every lookup, the owner of the cache must
+         *                               call {@link Cache#invalidate(Path)} when a file changes
+         */
+        public Builder<K, V> setInvalidateOnFileEvents(boolean invalidateOnFileEvents) {
+            this.invalidateOnFileEvents = invalidateOnFileEvents;
+            return this;
+        }
+
+        /**
+         * @param modificationCheckInterval the time in milliseconds after which a mapping of a
+         *                                  cache that is invalidated on file events checks the
+         *                                  modification time of its file again. By default the
+         *                                  modification time is never checked.
+         */
+        public Builder<K, V> setModificationCheckInterval(long modificationCheckInterval) {
+            this.modificationCheckInterval = modificationCheckInterval;
+            return this;
+        }
+
+        public Cache<K, V> build() {
+            return new Cache<>(this);
+        }
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
     private class Value {
         final V value;
         final Instant created = Instant.now();
+        final int weight;
+        long checkedMillis = System.currentTimeMillis();
 
-        Value(V value) {
+        Value(V value, int weight) {
             this.value = value;
+            this.weight = weight;
         }
     }
 
-    private final Map<Key<K>, Value> map = new HashMap<>();
+    // access ordered so that the first entry is the least recently used one
+    private final LinkedHashMap<Key<K>, Value> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, Set<Key<K>>> fileKeys = new HashMap<>();
+
+    private final long maximumWeight;
+    private final Weigher<K, V> weigher;
+    private final boolean invalidateOnFileEvents;
+    private final long modificationCheckInterval;
+
+    private long totalWeight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    public Cache() {
+        this(new Builder<>());
+    }
+
+    private Cache(Builder<K, V> builder) {
+        maximumWeight = builder.maximumWeight;
+        weigher = builder.weigher;
+        invalidateOnFileEvents = builder.invalidateOnFileEvents;
+        modificationCheckInterval = builder.modificationCheckInterval;
+    }
 
     public boolean has(Path file, K k) {
         return !needs(file, k);
     }
 
-    public void clear() {
+    public synchronized void clear() {
         map.clear();
+        fileKeys.clear();
+        totalWeight = 0;
     }
 
-    public boolean needs(Path file, K k) {
+    public synchronized boolean needs(Path file, K k) {
         // If key is not in map, it needs to be loaded
         Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) return true;
+        Value value = map.get(key);
+        if (value == null) {
+            missCount++;
+            return true;
+        }
 
         // If key was loaded before file was last modified, it needs to be reloaded
-        Value value = map.get(key);
-        FileTime modified = null;
-        try {
-            modified = Files.getLastModifiedTime(file);
-        } catch (IOException e) {
-            modified = FileTime.from(Instant.now());
+        if (needsModificationCheck(value) && isModifiedSince(file, value.created)) {
+            // every other key of this file is stale as well
+            invalidate(file);
+            missCount++;
+            return true;
         }
-        // TODO remove all keys associated with file when file changes
-        boolean before = value.created.isBefore(modified.toInstant());
-        return before;
+        hitCount++;
+        return false;
     }
 
     @SafeVarargs
-    public final void remove(Path file, K... keys) {
+    public final synchronized void remove(Path file, K... keys) {
         for (K k : keys) {
-            Key<K> key = new Key<>(file, k);
-            map.remove(key);
+            removeKey(new Key<>(file, k));
+        }
+    }
+
+    /**
+     * Removes all the mappings associated with the given file.
+     */
+    public synchronized void invalidate(Path file) {
+        Set<Key<K>> keys = fileKeys.remove(file);
+        if (keys == null) {
+            return;
+        }
+        for (Key<K> key : keys) {
+            Value removed = map.remove(key);
+            if (removed != null) {
+                totalWeight -= removed.weight;
+                invalidationCount++;
+            }
         }
     }
 
-    public Set<Key<K>> getKeys() {
-        return map.keySet();
+    /**
+     * @return a snapshot of the keys currently in this cache
+     */
+    public synchronized Set<Key<K>> getKeys() {
+        return new HashSet<>(map.keySet());
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hitCount, missCount, evictionCount, invalidationCount);
     }
 
-    public void load(Path file, K k, V v) {
-        // TODO limit total size of cache
+    public synchronized void load(Path file, K k, V v) {
         Key<K> key = new Key<>(file, k);
-        Value value = new Value(v);
-        map.put(key, value);
+        Value value = new Value(v, weigher == null ? 1 : weigher.weigh(key, v));
+        Value previous = map.put(key, value);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        totalWeight += value.weight;
+
+        Set<Key<K>> keys = fileKeys.get(file);
+        if (keys == null) {
+            keys = new HashSet<>();
+            fileKeys.put(file, keys);
+        }
+        keys.add(key);
+
+        evict();
     }
 
-    public V get(Path file, K k) {
+    @SuppressWarnings("unchecked")
+    public synchronized V get(Path file, K k) {
         Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) {
+        Value value = map.get(key);
+        if (value == null) {
             throw new IllegalArgumentException(k + " is not in map " + map);
         }
-        return (V) map.get(key).value;
+        return (V) value.value;
+    }
+
+    /**
+     * Returns the cached value or computes it with the given loader. The loader is called
+     * without holding the lock of this cache, so it may be called more than once if several
+     * threads ask for the same missing key.
+     */
+    public V get(Path file, K k, Supplier<? extends V> loader) {
+        synchronized (this) {
+            if (!needs(file, k)) {
+                return get(file, k);
+            }
+        }
+        V value = loader.get();
+        load(file, k, value);
+        return value;
+    }
+
+    private void removeKey(Key<K> key) {
+        Value removed = map.remove(key);
+        if (removed == null) {
+            return;
+        }
+        totalWeight -= removed.weight;
+        Set<Key<K>> keys = fileKeys.get(key.file);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                fileKeys.remove(key.file);
+            }
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key<K>, Value>> iterator = map.entrySet().iterator();
+        // always keep the most recently loaded mapping even if it is too heavy by itself
+        while (totalWeight > maximumWeight && map.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Key<K>, Value> eldest = iterator.next();
+            iterator.remove();
+            totalWeight -= eldest.getValue().weight;
+            evictionCount++;
+
+            Key<K> key = eldest.getKey();
+            Set<Key<K>> keys = fileKeys.get(key.file);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    fileKeys.remove(key.file);
+                }
+            }
+        }
+    }
+
+    private boolean needsModificationCheck(Value value) {
+        if (!invalidateOnFileEvents) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - value.checkedMillis < modificationCheckInterval) {
+            return false;
+        }
+        value.checkedMillis = now;
+        return true;
+    }
+
+    private static boolean isModifiedSince(Path file, Instant instant) {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            modified = FileTime.from(Instant.now());
+        }
+        return instant.isBefore(modified.toInstant());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package com.tyron.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class CacheTest {
+
+    private static final Path FIRST = Paths.get("First.java");
+    private static final Path SECOND = Paths.get("Second.java");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        Cache<String, String> cache = Cache.<String, String>builder()
+                .setMaximumSize(2)
+                .setInvalidateOnFileEvents(true)
+                .build();
+        cache.load(FIRST, "a", "a");
+        cache.load(FIRST, "b", "b");
+        // touch a so that b becomes the eldest
+        assertTrue(cache.has(FIRST, "a"));
+        cache.load(SECOND, "c", "c");
+
+        assertTrue(cache.has(FIRST, "a"));
+        assertFalse(cache.has(FIRST, "b"));
+        assertTrue(cache.has(SECOND, "c"));
+        assertEquals(1, cache.getStats().evictionCount);
+    }
+
+    @Test
+    public void testInvalidateRemovesAllKeysOfFile() {
+        Cache<String, String> cache = Cache.<String, String>builder()
+                .setInvalidateOnFileEvents(true)
+                .build();
+        cache.load(FIRST, "a", "a");
+        cache.load(FIRST, "b", "b");
+        cache.load(SECOND, "a", "a");
+
+        cache.invalidate(FIRST);
+
+        assertEquals(1, cache.size());
+        assertTrue(cache.needs(FIRST, "a"));
+        assertTrue(cache.needs(FIRST, "b"));
+        assertEquals("a", cache.get(SECOND, "a"));
+        assertEquals(2, cache.getStats().invalidationCount);
+    }
+
+    @Test
+    public void testLoaderIsOnlyCalledOnMiss() {
+        Cache<String, Integer> cache = Cache.<String, Integer>builder()
+                .setInvalidateOnFileEvents(true)
+                .build();
+        int[] calls = new int[1];
+        for (int i = 0; i < 3; i++) {
+            assertEquals(42, (int) cache.get(FIRST, "a", () -> {
+                calls[0]++;
+                return 42;
+            }));
+        }
+        assertEquals(1, calls[0]);
+        assertEquals(2, cache.getStats().hitCount);
+        assertEquals(1, cache.getStats().missCount);
+    }
+
+    @Test
+    public void testModificationTimeIsCheckedAfterInterval() throws Exception {
+        File file = temporaryFolder.newFile("Changed.java");
+        Cache<String, String> cache = Cache.<String, String>builder()
+                .setInvalidateOnFileEvents(true)
+                .setModificationCheckInterval(0)
+                .build();
+        cache.load(file.toPath(), "a", "a");
+        assertTrue(cache.has(file.toPath(), "a"));
+
+        // changed on disk without an event
+        assertTrue(file.setLastModified(System.currentTimeMillis() + 60_000));
+        assertFalse(cache.has(file.toPath(), "a"));
+    }
+
+    @Test
+    public void testModificationTimeIsNotCheckedWithinInterval() throws Exception {
+        File file = temporaryFolder.newFile("Changed.java");
+        Cache<String, String> cache = Cache.<String, String>builder()
+                .setInvalidateOnFileEvents(true)
+                .setModificationCheckInterval(60_000)
+                .build();
+        cache.load(file.toPath(), "a", "a");
+
+        assertTrue(file.setLastModified(System.currentTimeMillis() + 60_000));
+        assertTrue(cache.has(file.toPath(), "a"));
+    }
+}
@@ -41,10 +41,68 @@ public class CompletionPrefixMatcher {
                     : MatchLevel.CASE_INSENSITIVE_PREFIX;
         }
 
-        int score = FuzzySearch.ratio(candidateName, completionPrefix);
-        if (score > MINIMUM_SCORE) {
+        if (matchesCamelHumps(candidateName, completionPrefix)) {
             return MatchLevel.PARTIAL_MATCH;
         }
+
+        if (canExceedMinimumScore(candidateName, completionPrefix)) {
+            int score = FuzzySearch.ratio(candidateName, completionPrefix);
+            if (score > MINIMUM_SCORE) {
+                return MatchLevel.PARTIAL_MATCH;
+            }
+        }
         return MatchLevel.NOT_MATCH;
     }
+
+    /**
+     * The ratio of two strings is twice the number of characters they have in common over the
+     * sum of their lengths, so it cannot be more than {@code 200 * shorter / (sum of lengths)}.
+     * Computing the ratio is quadratic in the lengths, candidates whose length is too far from
+     * the length of the prefix are rejected without computing it.
+     */
+    private static boolean canExceedMinimumScore(String candidateName, String completionPrefix) {
+        int shorter = Math.min(candidateName.length(), completionPrefix.length());
+        int total = candidateName.length() + completionPrefix.length();
+        return Math.round(200.0 * shorter / total) > MINIMUM_SCORE;
+    }
+
+    /**
+     * Checks whether the pattern matches the humps of a camel case name, for example
+     * {@code ArLi} and {@code AL} both match {@code ArrayList}. Every upper case character of
+     * the pattern starts a new hump and the following lower case characters must continue it.
+     * The first character is compared case insensitively.
+     *
+     * @param candidateName the name to match, e.g. a simple class name
+     * @param pattern the camel case pattern
+     * @return true if the pattern matches the humps of the name
+     */
+    public static boolean matchesCamelHumps(String candidateName, String pattern) {
+        if (pattern.isEmpty()) {
+            return true;
+        }
+        if (candidateName.isEmpty() ||
+            Character.toLowerCase(candidateName.charAt(0)) !=
+            Character.toLowerCase(pattern.charAt(0))) {
+            return false;
+        }
+
+        int n = 1;
+        for (int p = 1; p < pattern.length(); p++) {
+            char c = pattern.charAt(p);
+            if (Character.isUpperCase(c)) {
+                while (n < candidateName.length() &&
+                       !(candidateName.charAt(n) == c &&
+                         Character.isUpperCase(candidateName.charAt(n)))) {
+                    n++;
+                }
+                if (n == candidateName.length()) {
+                    return false;
+                }
+            } else if (n >= candidateName.length() || candidateName.charAt(n) != c) {
+                return false;
+            }
+            n++;
+        }
+        return true;
+    }
 }
@@ -45,9 +45,35 @@ public class CompletionEngine {
                                    int column,
                                    long index) {
         if (project.isCompiling() || project.isIndexing()) {
-            return CompletionList.EMPTY;
+            // serve completions from the last committed modules while the new ones are built
+            return project.readCommitted(() -> {
+                if (project.getModules().isEmpty()) {
+                    // no module has finished indexing yet, e.g. when the project is opened
+                    // for the first time, keep the old behavior of returning nothing
+                    return CompletionList.EMPTY;
+                }
+                Module committedModule = project.getModule(file);
+                if (committedModule == null) {
+                    // the file does not belong to any of the committed modules
+                    return CompletionList.EMPTY;
+                }
+                return completeInternal(project, committedModule, editor, file, contents,
+                        prefix, line, column, index);
+            });
         }
+        return completeInternal(project, module, editor, file, contents, prefix, line, column,
+                index);
+    }
 
+    private CompletionList completeInternal(Project project,
+                                            Module module,
+                                            Editor editor,
+                                            File file,
+                                            String contents,
+                                            String prefix,
+                                            int line,
+                                            int column,
+                                            long index) {
         CompletionList list = new CompletionList();
         list.items = new ArrayList<>();
 
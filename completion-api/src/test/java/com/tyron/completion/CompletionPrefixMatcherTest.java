@@ -0,0 +1,61 @@
+package com.tyron.completion;
+
+import static org.junit.Assert.assertEquals;
+
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+
+public class CompletionPrefixMatcherTest {
+
+    @Test
+    public void testMatchLevel() {
+        assertEquals(MatchLevel.CASE_SENSITIVE_EQUAL,
+                CompletionPrefixMatcher.computeMatchLevel("ArrayList", "ArrayList"));
+        assertEquals(MatchLevel.CASE_SENSITIVE_PREFIX,
+                CompletionPrefixMatcher.computeMatchLevel("ArrayList", "Array"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_PREFIX,
+                CompletionPrefixMatcher.computeMatchLevel("ArrayList", "array"));
+        assertEquals(MatchLevel.PARTIAL_MATCH,
+                CompletionPrefixMatcher.computeMatchLevel("ArrayList", "ArLi"));
+        assertEquals(MatchLevel.PARTIAL_MATCH,
+                CompletionPrefixMatcher.computeMatchLevel("ArrayList", "ArayList"));
+        assertEquals(MatchLevel.NOT_MATCH,
+                CompletionPrefixMatcher.computeMatchLevel("ArrayList", "String"));
+    }
+
+    /**
+     * Names whose length is too far from the prefix are rejected without computing their
+     * ratio, this must not change which names are partial matches.
+     */
+    @Test
+    public void testLengthBoundKeepsPartialMatches() {
+        Random random = new Random(0);
+        for (int i = 0; i < 20_000; i++) {
+            String candidate = randomName(random);
+            String prefix = randomName(random);
+            MatchLevel level = CompletionPrefixMatcher.computeMatchLevel(candidate, prefix);
+            if (level.compareTo(MatchLevel.PARTIAL_MATCH) > 0 ||
+                CompletionPrefixMatcher.matchesCamelHumps(candidate, prefix)) {
+                continue;
+            }
+            MatchLevel expected = FuzzySearch.ratio(candidate, prefix) > 70
+                    ? MatchLevel.PARTIAL_MATCH
+                    : MatchLevel.NOT_MATCH;
+            assertEquals(candidate + " " + prefix, expected, level);
+        }
+    }
+
+    private static String randomName(Random random) {
+        int length = 1 + random.nextInt(12);
+        StringBuilder name = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            name.append("abcAB".charAt(random.nextInt(5)));
+        }
+        return name.toString();
+    }
+}
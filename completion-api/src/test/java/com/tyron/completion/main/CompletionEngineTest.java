@@ -0,0 +1,152 @@
+package com.tyron.completion.main;
+
+import android.graphics.drawable.Drawable;
+
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.CompletionParameters;
+import com.tyron.completion.CompletionProvider;
+import com.tyron.completion.model.CompletionList;
+import com.tyron.language.api.Language;
+import com.tyron.language.fileTypes.FileTypeManager;
+import com.tyron.language.fileTypes.LanguageFileType;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CompletionEngineTest {
+
+    private static final String EXTENSION = "completionenginetest";
+
+    private static final RecordingProvider PROVIDER = new RecordingProvider();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void registerProvider() {
+        TestLanguage language = new TestLanguage();
+        FileTypeManager.getInstance().registerFileType(new TestFileType(language));
+        CompletionProvider.registerCompletionProvider(language, PROVIDER);
+    }
+
+    @Test
+    public void testCompletesWithCommittedModuleWhileIndexing() throws IOException {
+        Project project = new Project(temporaryFolder.newFolder("project"));
+        Module committed = createModule("committed");
+        project.addModule(committed);
+        project.setIndexing(true);
+
+        // the module that is still being indexed is not visible to completion
+        project.clear();
+        Module indexing = createModule("indexing");
+        project.addModule(indexing);
+
+        PROVIDER.module = null;
+        complete(project, indexing);
+        assertSame(committed, PROVIDER.module);
+    }
+
+    @Test
+    public void testFileOutsideOfCommittedModulesHasNoCompletions() throws IOException {
+        Project project = new Project(temporaryFolder.newFolder("project")) {
+            @Override
+            public Module getModule(File file) {
+                return null;
+            }
+        };
+        Module module = createModule("app");
+        project.addModule(module);
+        project.setIndexing(true);
+
+        PROVIDER.module = null;
+        assertSame(CompletionList.EMPTY, complete(project, module));
+        assertNull(PROVIDER.module);
+    }
+
+    private CompletionList complete(Project project, Module module) {
+        File file = new File(temporaryFolder.getRoot(), "Test." + EXTENSION);
+        return new CompletionEngine().complete(project, module, null, file, "", "", 0, 0, 0);
+    }
+
+    private Module createModule(String name) throws IOException {
+        File root = temporaryFolder.newFolder(name);
+        return new TestModule(root);
+    }
+
+    private static class TestModule extends MockAndroidModule {
+        private Project project;
+
+        TestModule(File root) {
+            super(root, new MockFileManager(root));
+        }
+
+        @Override
+        public Project getProject() {
+            return project;
+        }
+
+        @Override
+        public void setProject(Project project) {
+            this.project = project;
+        }
+    }
+
+    private static class RecordingProvider extends CompletionProvider {
+        private volatile Module module;
+
+        @Override
+        public boolean accept(File file) {
+            return true;
+        }
+
+        @Override
+        public CompletionList complete(CompletionParameters parameters) {
+            module = parameters.getModule();
+            return null;
+        }
+    }
+
+    private static class TestLanguage extends Language {
+        TestLanguage() {
+            super("completion-engine-test");
+        }
+    }
+
+    private static class TestFileType extends LanguageFileType {
+        TestFileType(Language language) {
+            super(language);
+        }
+
+        @Override
+        public @NotNull String getName() {
+            return "Test";
+        }
+
+        @Override
+        public @NotNull String getDescription() {
+            return "Test";
+        }
+
+        @Override
+        public @NotNull String getDefaultExtension() {
+            return EXTENSION;
+        }
+
+        @Override
+        public @NotNull Drawable getIcon() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -2,26 +2,53 @@ package com.tyron.resolver;
 
 import android.text.TextUtils;
 
+import androidx.annotation.Nullable;
+
 import com.tyron.resolver.model.Dependency;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.repository.RepositoryManager;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DependencyResolver {
 
+    private static final int DEFAULT_PARALLELISM = 8;
+
     private final RepositoryManager repository;
     private final Map<Pom, String> resolvedPoms;
+    private final int parallelism;
+
+    /**
+     * POM files fetched ahead of the resolution, keyed by their declaration
+     */
+    private final Map<String, Pom> fetchedPoms;
 
     private ResolveListener mListener;
 
     public DependencyResolver(RepositoryManager repository) {
+        this(repository, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param parallelism the maximum number of POM files that are fetched at the same time
+     */
+    public DependencyResolver(RepositoryManager repository, int parallelism) {
         this.repository = repository;
         this.resolvedPoms = new HashMap<>();
+        this.fetchedPoms = new ConcurrentHashMap<>();
+        this.parallelism = Math.max(1, parallelism);
     }
 
     public void setResolveListener(ResolveListener listener) {
@@ -60,12 +87,81 @@ public class DependencyResolver {
      * the conflicting libraries
      */
     public List<Pom> resolve(List<Pom> declaredDependencies) {
+        prefetch(declaredDependencies);
+
         for (Pom pom : declaredDependencies) {
             resolve(pom);
         }
+        repository.saveCache();
         return new ArrayList<>(resolvedPoms.keySet());
     }
 
+    /**
+     * Downloads and parses the POM files of the whole dependency graph in parallel, one
+     * level at a time. The conflict resolution that follows is still done sequentially in
+     * declaration order so the results are the same, it just no longer waits for the
+     * network on every edge.
+     */
+    private void prefetch(List<Pom> declaredDependencies) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            Set<String> visited = new HashSet<>();
+            List<Pom> level = new ArrayList<>(declaredDependencies);
+            while (!level.isEmpty()) {
+                Map<String, Future<Pom>> futures = new LinkedHashMap<>();
+                for (Pom pom : level) {
+                    List<Dependency> excludes = pom.getExcludes();
+                    for (Dependency dependency : pom.getDependencies()) {
+                        if ("test".equals(dependency.getScope())) {
+                            continue;
+                        }
+                        if (isExcluded(excludes, dependency)) {
+                            continue;
+                        }
+                        String declaration = dependency.toString();
+                        if (!visited.add(declaration)) {
+                            continue;
+                        }
+                        if (fetchedPoms.containsKey(declaration)) {
+                            continue;
+                        }
+                        futures.put(declaration, executor.submit(() ->
+                                repository.getPom(declaration)));
+                    }
+                }
+
+                List<Pom> next = new ArrayList<>();
+                for (Map.Entry<String, Future<Pom>> entry : futures.entrySet()) {
+                    Pom fetched;
+                    try {
+                        fetched = entry.getValue().get();
+                    } catch (ExecutionException e) {
+                        // the sequential resolution will retry and report it
+                        continue;
+                    }
+                    if (fetched != null) {
+                        fetchedPoms.put(entry.getKey(), fetched);
+                        next.add(fetched);
+                    }
+                }
+                level = next;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Nullable
+    private Pom getPom(String declaration) {
+        Pom pom = fetchedPoms.get(declaration);
+        if (pom != null) {
+            return pom;
+        }
+        return repository.getPom(declaration);
+    }
+
     private void resolve(Pom pom) {
         if (resolvedPoms.containsKey(pom)) {
             if (pom.isUserDefined()) {
@@ -96,35 +192,11 @@ public class DependencyResolver {
                 continue;
             }
 
-            boolean excluded = excludes.stream().filter(Objects::nonNull).anyMatch(ex -> {
-                if (ex == null) {
-                    return false;
-                }
-                if (ex.getGroupId() == null) {
-                    return false;
-                }
-                if (!ex.getGroupId().equals(dependency.getGroupId())) {
-                    return false;
-                }
-
-                if (ex.getArtifactId() == null) {
-                    return false;
-                }
-
-                if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
-                    return false;
-                }
-                if (TextUtils.isEmpty(ex.getVersionName())) {
-                    return true;
-                }
-                return ex.getVersionName().equals(dependency.getVersionName());
-            });
-
-            if (excluded) {
+            if (isExcluded(excludes, dependency)) {
                 continue;
             }
 
-            Pom resolvedPom = repository.getPom(dependency.toString());
+            Pom resolvedPom = getPom(dependency.toString());
             if (resolvedPom == null) {
                 if (mListener != null) {
                     mListener.onFailure("Failed to resolve " + dependency);
@@ -139,6 +211,29 @@ public class DependencyResolver {
         resolvedPoms.put(pom, pom.getVersionName());
     }
 
+    private static boolean isExcluded(List<Dependency> excludes, Dependency dependency) {
+        return excludes.stream().filter(Objects::nonNull).anyMatch(ex -> {
+            if (ex.getGroupId() == null) {
+                return false;
+            }
+            if (!ex.getGroupId().equals(dependency.getGroupId())) {
+                return false;
+            }
+
+            if (ex.getArtifactId() == null) {
+                return false;
+            }
+
+            if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
+                return false;
+            }
+            if (TextUtils.isEmpty(ex.getVersionName())) {
+                return true;
+            }
+            return ex.getVersionName().equals(dependency.getVersionName());
+        });
+    }
+
     private int getHigherVersion(String firstVersion, String secondVersion) {
         ComparableVersion firstComparableVersion = new ComparableVersion(firstVersion);
         ComparableVersion secondComparableVersion = new ComparableVersion(secondVersion);
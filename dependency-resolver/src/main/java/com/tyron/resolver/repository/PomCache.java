@@ -0,0 +1,193 @@
+package com.tyron.resolver.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.tyron.common.logging.IdeLog;
+import com.tyron.resolver.model.Dependency;
+import com.tyron.resolver.model.Pom;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Stores the parsed contents of POM files on disk so they are not parsed again on the next
+ * {@link RepositoryManager#initialize()}. Entries are keyed by the path of the POM file,
+ * which encodes its declaration, and are only reused if the file still has the same contents.
+ */
+public class PomCache {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(PomCache.class);
+
+    private static final int VERSION = 1;
+
+    /**
+     * An entry is not modified once it is in the cache, since {@link #get(File)} is called
+     * concurrently while the dependency graph is fetched. It is replaced instead.
+     */
+    private static class Entry {
+        final long length;
+        final long lastModified;
+        final String hash;
+
+        final String groupId;
+        final String artifactId;
+        final String versionName;
+        final String packaging;
+        final String parent;
+        final List<Dependency> dependencies;
+        final List<Dependency> managedDependencies;
+
+        Entry(long length, long lastModified, String hash, String groupId, String artifactId,
+              String versionName, String packaging, String parent,
+              List<Dependency> dependencies, List<Dependency> managedDependencies) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.versionName = versionName;
+            this.packaging = packaging;
+            this.parent = parent;
+            this.dependencies = dependencies;
+            this.managedDependencies = managedDependencies;
+        }
+
+        Entry withStamp(long length, long lastModified) {
+            return new Entry(length, lastModified, hash, groupId, artifactId, versionName,
+                    packaging, parent, dependencies, managedDependencies);
+        }
+    }
+
+    private static class Snapshot {
+        int version;
+        Map<String, Entry> entries;
+    }
+
+    private final File mFile;
+    private final Gson mGson = new Gson();
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    private volatile boolean mDirty;
+
+    public PomCache(@NonNull File file) {
+        mFile = file;
+    }
+
+    public void load() {
+        mEntries.clear();
+        if (!mFile.exists()) {
+            return;
+        }
+        try (Reader reader = Files.newReader(mFile, StandardCharsets.UTF_8)) {
+            Snapshot snapshot = mGson.fromJson(reader, Snapshot.class);
+            if (snapshot != null && snapshot.version == VERSION && snapshot.entries != null) {
+                mEntries.putAll(snapshot.entries);
+            }
+        } catch (IOException | JsonParseException e) {
+            sLogger.warning("Unable to read POM cache, it will be rebuilt.\n" +
+                            "Reason: " + e.getMessage());
+        }
+    }
+
+    public void save() {
+        if (!mDirty) {
+            return;
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.version = VERSION;
+        snapshot.entries = mEntries;
+
+        File temp = new File(mFile.getPath() + ".tmp");
+        try {
+            FileUtils.forceMkdirParent(mFile);
+            try (Writer writer = Files.newWriter(temp, StandardCharsets.UTF_8)) {
+                mGson.toJson(snapshot, Snapshot.class, writer);
+            }
+            FileUtils.deleteQuietly(mFile);
+            FileUtils.moveFile(temp, mFile);
+            mDirty = false;
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temp);
+            sLogger.warning("Unable to save POM cache.\n" +
+                            "Reason: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the cached POM of the given file without parsing it. The parent of the
+     * returned POM is not set, use {@link #getParentDeclaration(File)} to link it.
+     *
+     * @param file the POM file on disk
+     * @return null if the file is not cached or has changed since it was cached
+     */
+    @Nullable
+    public Pom get(@NonNull File file) {
+        String path = file.getAbsolutePath();
+        Entry entry = mEntries.get(path);
+        if (entry == null) {
+            return null;
+        }
+        long length = file.length();
+        long lastModified = file.lastModified();
+        if (entry.length != length || entry.lastModified != lastModified) {
+            String hash = hash(file);
+            if (hash == null || !hash.equals(entry.hash)) {
+                return null;
+            }
+            mEntries.replace(path, entry, entry.withStamp(length, lastModified));
+            mDirty = true;
+        }
+
+        Pom pom = Pom.valueOf(entry.groupId, entry.artifactId, entry.versionName);
+        pom.setPackaging(entry.packaging);
+        pom.setDependencies(entry.dependencies);
+        pom.setManagedDependencies(entry.managedDependencies);
+        return pom;
+    }
+
+    @Nullable
+    public String getParentDeclaration(@NonNull File file) {
+        Entry entry = mEntries.get(file.getAbsolutePath());
+        if (entry == null) {
+            return null;
+        }
+        return entry.parent;
+    }
+
+    public void put(@NonNull File file, @NonNull Pom pom) {
+        String hash = hash(file);
+        if (hash == null) {
+            return;
+        }
+        Pom parent = pom.getParent();
+        Entry entry = new Entry(file.length(), file.lastModified(), hash, pom.getGroupId(),
+                pom.getArtifactId(), pom.getVersionName(), pom.getPackaging(),
+                parent == null ? null : parent.getDeclarationString(), pom.getDependencies(),
+                pom.getManagedDependencies());
+        mEntries.put(file.getAbsolutePath(), entry);
+        mDirty = true;
+    }
+
+    @Nullable
+    private static String hash(File file) {
+        try {
+            return Files.asByteSource(file).hash(Hashing.murmur3_128()).toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -40,4 +40,12 @@ public interface RepositoryManager {
     void addRepository(@NonNull Repository repository);
 
     void initialize();
+
+    /**
+     * Persists any state that would speed up the next {@link #initialize()}, such as
+     * the parsed POM files. Does nothing by default.
+     */
+    default void saveCache() {
+
+    }
 }
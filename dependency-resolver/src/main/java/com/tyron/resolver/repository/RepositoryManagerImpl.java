@@ -20,10 +20,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.jar.JarFile;
 import java.util.logging.Logger;
 import java.util.zip.ZipFile;
@@ -36,11 +39,19 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
     private File cacheDir;
     private final List<Repository> repositories;
-    private final List<Pom> pomFiles;
+
+    /**
+     * Parsed POM files keyed by their declaration, this is accessed concurrently by
+     * {@link com.tyron.resolver.DependencyResolver} while it fetches the dependency graph.
+     */
+    private final Map<String, Pom> pomFiles;
+    private final Map<String, Object> pomLocks;
+    private PomCache pomCache;
 
     public RepositoryManagerImpl() {
-        this.repositories = new ArrayList<>();
-        this.pomFiles = new ArrayList<>();
+        this.repositories = new CopyOnWriteArrayList<>();
+        this.pomFiles = new ConcurrentHashMap<>();
+        this.pomLocks = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -50,32 +61,37 @@ public class RepositoryManagerImpl implements RepositoryManager {
         if (pomNames == null) {
             return null;
         }
-        for (Pom pom : pomFiles) {
-            if (!pomNames[0].equals(pom.getGroupId())) {
-                continue;
-            }
-            if (!pomNames[1].equals(pom.getArtifactId())) {
-                continue;
-            }
-            if (!pomNames[2].equals(pom.getVersionName())) {
-                continue;
-            }
+        String key = pomNames[0] + ":" + pomNames[1] + ":" + pomNames[2];
+        Pom pom = pomFiles.get(key);
+        if (pom != null) {
             return pom;
         }
-        return getPomFromUrls(pomNames);
+
+        // only one thread may download and parse a given POM, the others wait for its result
+        Object lock = pomLocks.computeIfAbsent(key, k -> new Object());
+        synchronized (lock) {
+            pom = pomFiles.get(key);
+            if (pom == null) {
+                pom = getPomFromUrls(pomNames);
+                if (pom != null) {
+                    pomFiles.put(key, pom);
+                }
+            }
+        }
+        return pom;
     }
 
     private Pom getPomFromUrls(String[] names) {
-        InputStream is = getFromUrls(getPathFromDeclaration(names) + ".pom");
-        if (is != null) {
-            String contents;
+        File file = getFromUrls(getPathFromDeclaration(names) + ".pom");
+        if (file != null) {
             try {
-                contents = CharStreams.toString(new InputStreamReader(is));
-                Pom parsed = new PomParser(this).parse(contents);
+                Pom parsed = new PomParser(this).parse(file);
                 parsed.setGroupId(names[0]);
                 parsed.setArtifactId(names[1]);
                 parsed.setVersionName(names[2]);
-                pomFiles.add(parsed);
+                if (pomCache != null) {
+                    pomCache.put(file, parsed);
+                }
                 return parsed;
             } catch (IOException | XmlPullParserException | SAXException e) {
                 String message = "Failed to parse input stream.\n" +
@@ -87,13 +103,13 @@ public class RepositoryManagerImpl implements RepositoryManager {
         return null;
     }
 
-    private InputStream getFromUrls(String appendUrl) {
+    private File getFromUrls(String appendUrl) {
         for (int i = 0; i < repositories.size(); i++) {
             Repository repository = repositories.get(i);
             try {
-                InputStream is = repository.getInputStream(appendUrl);
-                if (is != null) {
-                    return is;
+                File file = repository.getFile(appendUrl);
+                if (file != null && file.exists()) {
+                    return file;
                 }
             } catch (IOException e) {
                 if (i == repositories.size() - 1) {
@@ -203,6 +219,10 @@ public class RepositoryManagerImpl implements RepositoryManager {
             throw new IllegalStateException("Cache directory is not set.");
         }
 
+        pomCache = new PomCache(new File(cacheDir, "pom-cache.json"));
+        pomCache.load();
+
+        Map<Pom, File> cachedPoms = new HashMap<>();
         for (Repository repository : repositories) {
             repository.setCacheDirectory(cacheDir);
 
@@ -216,10 +236,18 @@ public class RepositoryManagerImpl implements RepositoryManager {
             // save pom files for later
             while (pomFiles.hasNext()) {
                 File pom = pomFiles.next();
+                Pom cached = pomCache.get(pom);
+                if (cached != null) {
+                    cachedPoms.put(cached, pom);
+                    addPom(cached);
+                    continue;
+                }
+
                 PomParser parser = new PomParser(this);
                 try {
                     Pom parsed = parser.parse(pom);
-                    this.pomFiles.add(parsed);
+                    pomCache.put(pom, parsed);
+                    addPom(parsed);
                 } catch (XmlPullParserException | IOException | SAXException e) {
                     // ignored
                     // TODO: should the file be deleted if its corrupt?
@@ -228,5 +256,29 @@ public class RepositoryManagerImpl implements RepositoryManager {
                 }
             }
         }
+
+        // the parents are linked after every cached POM is known so they resolve from memory
+        for (Map.Entry<Pom, File> entry : cachedPoms.entrySet()) {
+            String parent = pomCache.getParentDeclaration(entry.getValue());
+            if (parent != null) {
+                entry.getKey().setParent(getPom(parent));
+            }
+        }
+        pomCache.save();
+    }
+
+    @Override
+    public void saveCache() {
+        if (pomCache != null) {
+            pomCache.save();
+        }
+    }
+
+    private void addPom(Pom pom) {
+        if (pom.getGroupId() == null || pom.getArtifactId() == null ||
+            pom.getVersionName() == null) {
+            return;
+        }
+        pomFiles.putIfAbsent(pom.getDeclarationString(), pom);
     }
 }
@@ -3,18 +3,29 @@ package com.tyron.resolver;
 import com.google.common.collect.ImmutableList;
 import com.tyron.common.TestUtil;
 import com.tyron.resolver.model.Pom;
+import com.tyron.resolver.repository.LocalRepository;
 import com.tyron.resolver.repository.RepositoryManager;
 import com.tyron.resolver.repository.RepositoryManagerImpl;
 
 import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+
 public class DependencyResolverTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private final RepositoryManager repository = new RepositoryManagerImpl();
 
     @Test
@@ -60,4 +71,72 @@ public class DependencyResolverTest {
 
         FileUtils.forceDelete(cacheDir);
     }
+
+    @Test
+    public void testParallelResolutionMatchesSequential() throws IOException {
+        List<String> sequential = resolveLocally(temporaryFolder.newFolder("sequential"), 1);
+        List<String> parallel = resolveLocally(temporaryFolder.newFolder("parallel"), 8);
+
+        assertEquals(sequential, parallel);
+        assertEquals("[g:a:1, g:b:2, g:c:1, g:d:1, g:f:2, g:h:1]", sequential.toString());
+
+        // the second resolution reads the parsed POM files from the cache
+        assertEquals(sequential, resolveLocally(new File(temporaryFolder.getRoot(), "parallel"), 8));
+    }
+
+    private static List<String> resolveLocally(File cacheDir, int parallelism) throws IOException {
+        RepositoryManagerImpl repository = new RepositoryManagerImpl();
+        repository.addRepository(new LocalRepository("local"));
+        repository.setCacheDirectory(cacheDir);
+        repository.initialize();
+
+        // written after the repository is initialized, so they are parsed while resolving
+        File root = new File(cacheDir, "local");
+        writePom(root, "g:a:1", "g:b:1", "g:c:1", "g:g:1:test");
+        writePom(root, "g:b:1", "g:f:1");
+        writePom(root, "g:b:2", "g:f:2");
+        writePom(root, "g:c:1", "g:b:2", "g:d:1");
+        writePom(root, "g:d:1", "g:f:1", "g:h:1");
+        writePom(root, "g:f:1");
+        writePom(root, "g:f:2");
+        writePom(root, "g:g:1");
+        writePom(root, "g:h:1");
+
+        DependencyResolver resolver = new DependencyResolver(repository, parallelism);
+        List<String> resolved = new ArrayList<>();
+        for (Pom pom : resolver.resolve(Collections.singletonList(repository.getPom("g:a:1")))) {
+            resolved.add(pom.getDeclarationString());
+        }
+        Collections.sort(resolved);
+        return resolved;
+    }
+
+    private static void writePom(File root, String declaration, String... dependencies)
+            throws IOException {
+        String[] names = declaration.split(":");
+        StringBuilder pom = new StringBuilder();
+        pom.append("<project>")
+                .append("<groupId>").append(names[0]).append("</groupId>")
+                .append("<artifactId>").append(names[1]).append("</artifactId>")
+                .append("<version>").append(names[2]).append("</version>")
+                .append("<dependencies>");
+        for (String dependency : dependencies) {
+            String[] dependencyNames = dependency.split(":");
+            pom.append("<dependency>")
+                    .append("<groupId>").append(dependencyNames[0]).append("</groupId>")
+                    .append("<artifactId>").append(dependencyNames[1]).append("</artifactId>")
+                    .append("<version>").append(dependencyNames[2]).append("</version>");
+            if (dependencyNames.length > 3) {
+                pom.append("<scope>").append(dependencyNames[3]).append("</scope>");
+            }
+            pom.append("</dependency>");
+        }
+        pom.append("</dependencies></project>");
+
+        File file = new File(root, names[0] + "/" + names[1] + "/" + names[2] + "/" +
+                                   names[1] + "-" + names[2] + ".pom");
+        if (!file.exists()) {
+            FileUtils.writeStringToFile(file, pom.toString(), StandardCharsets.UTF_8);
+        }
+    }
 }
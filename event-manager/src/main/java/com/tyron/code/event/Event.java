@@ -63,4 +63,15 @@ public abstract class Event {
         return mIntercepted;
     }
 
+    /**
+     * Get the key of this event used by receivers that coalesce events. A pending event
+     * is replaced by a newer one with an equal key, for example the content changes of the
+     * same file. Null if this event should never be merged with another one.
+     *
+     * @see EventManager#subscribeEventAsync(Class, EventReceiver, boolean)
+     */
+    public Object getCoalescingKey() {
+        return null;
+    }
+
 }
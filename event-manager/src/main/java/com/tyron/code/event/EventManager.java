@@ -3,15 +3,23 @@ package com.tyron.code.event;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.tyron.common.logging.IdeLog;
+
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This class manages event dispatching in editor.
@@ -22,22 +30,65 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * will have it own EventManager and the editor also has a root event manager for external
  * listeners.
  * <p>
- * Note that the event type must be exact. That's to say, you need to use a terminal class instead
- * of using its parent classes. For instance, if you register a receiver with the event type
- * {@link Event},
- * no event will be sent to your receiver.
+ * A receiver registered for an event type also receives the events of its subclasses. The
+ * event types to look up for a dispatched class are computed once, and the receivers of each
+ * type are kept in an array that is replaced when a receiver is added or removed, so
+ * dispatching does not take any lock or allocate.
+ * <p>
+ * Receivers subscribed with {@link #subscribeEventAsync(Class, EventReceiver, boolean)} are
+ * called on the async executor instead of the dispatching thread, in the order the events
+ * were dispatched. They may ask for pending events with the same
+ * {@link Event#getCoalescingKey()} to be merged so only the latest one is delivered. An
+ * exception thrown by an async receiver is logged, and the receiver keeps receiving events.
  *
  * @author Rosemoe
  */
 public final class EventManager {
 
+    private static final Logger LOG = IdeLog.getCurrentLogger(EventManager.class);
+
+    private static final AtomicInteger sThreadCount = new AtomicInteger();
+
+    private static ExecutorService sDefaultExecutor;
+
+    private static synchronized Executor getDefaultExecutor() {
+        if (sDefaultExecutor == null) {
+            sDefaultExecutor = Executors.newFixedThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable,
+                        "EventManager-async-" + sThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sDefaultExecutor;
+    }
+
+    /**
+     * Event types of a dispatched class, from the class itself up to {@link Event}
+     */
+    private static final Map<Class<?>, Class<?>[]> sEventTypes = new ConcurrentHashMap<>();
+
+    private static Class<?>[] getEventTypes(Class<?> eventClass) {
+        Class<?>[] types = sEventTypes.get(eventClass);
+        if (types == null) {
+            List<Class<?>> list = new ArrayList<>();
+            for (Class<?> c = eventClass; c != null && Event.class.isAssignableFrom(c);
+                 c = c.getSuperclass()) {
+                list.add(c);
+            }
+            types = list.toArray(new Class<?>[0]);
+            sEventTypes.put(eventClass, types);
+        }
+        return types;
+    }
+
     @SuppressWarnings("rawtypes")
     private final Map<Class<?>, Receivers> receivers;
-    private final ReadWriteLock lock;
     private boolean enabled;
     private final EventManager parent;
     private final List<EventManager> children;
     private boolean detached = false;
+    private volatile Executor asyncExecutor;
 
     /**
      * Create an EventManager with no parent
@@ -51,10 +102,9 @@ public final class EventManager {
      * Null for no parent.
      */
     public EventManager(@Nullable EventManager parent) {
-        receivers = new HashMap<>();
+        receivers = new ConcurrentHashMap<>();
         this.parent = parent;
-        lock = new ReentrantReadWriteLock();
-        children = new Vector<>();
+        children = new CopyOnWriteArrayList<>();
         if (parent != null) {
             parent.children.add(this);
         }
@@ -80,6 +130,23 @@ public final class EventManager {
         return enabled;
     }
 
+    /**
+     * Set the executor that delivers events to async receivers subscribed after this call.
+     * Null to use the executor of the parent, or a shared one if this is the root manager.
+     */
+    public void setAsyncExecutor(@Nullable Executor executor) {
+        asyncExecutor = executor;
+    }
+
+    @NonNull
+    private Executor getAsyncExecutor() {
+        Executor executor = asyncExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        return parent == null ? getDefaultExecutor() : parent.getAsyncExecutor();
+    }
+
     /**
      * Get root node
      */
@@ -122,34 +189,16 @@ public final class EventManager {
     @NonNull
     @SuppressWarnings("unchecked")
     <T extends Event> Receivers<T> getReceivers(@NonNull Class<T> type) {
-        lock.readLock()
-                .lock();
-        Receivers<T> result;
-        try {
-            result = receivers.get(type);
-        } finally {
-            lock.readLock()
-                    .unlock();
-        }
+        Receivers<T> result = receivers.get(type);
         if (result == null) {
-            lock.writeLock()
-                    .lock();
-            try {
-                result = receivers.get(type);
-                if (result == null) {
-                    result = new Receivers<>();
-                    receivers.put(type, result);
-                }
-            } finally {
-                lock.writeLock()
-                        .unlock();
-            }
+            result = receivers.computeIfAbsent(type, t -> new Receivers<>());
         }
         return result;
     }
 
     /**
-     * Register a receiver of the given event.
+     * Register a receiver of the given event, the receiver is called on the thread that
+     * dispatches the event.
      *
      * @param eventType Event type to be received
      * @param receiver  Receiver of event
@@ -157,23 +206,37 @@ public final class EventManager {
      */
     public <T extends Event> SubscriptionReceipt<T> subscribeEvent(@NonNull Class<T> eventType,
                                                                    @NonNull EventReceiver<T> receiver) {
+        getReceivers(eventType).add(receiver);
+        return new SubscriptionReceipt<>(eventType, receiver, this);
+    }
+
+    /**
+     * Register a receiver of the given event that is called on the async executor, so
+     * a slow receiver does not block the thread that dispatches the event. Async receivers
+     * can not intercept events.
+     *
+     * @param eventType Event type to be received
+     * @param receiver  Receiver of event
+     * @param coalesce  Whether a pending event is replaced by a newer one with the same
+     *                  {@link Event#getCoalescingKey()} instead of delivering both
+     * @param <T>       Event type
+     */
+    public <T extends Event> SubscriptionReceipt<T> subscribeEventAsync(@NonNull Class<T> eventType,
+                                                                        @NonNull EventReceiver<T> receiver,
+                                                                        boolean coalesce) {
         Receivers<T> receivers = getReceivers(eventType);
-        receivers.lock.writeLock()
-                .lock();
-        try {
-            List<EventReceiver<T>> list = receivers.receivers;
-            if (list.contains(receiver)) {
-                throw new IllegalArgumentException(
-                        "the receiver is already registered for this type");
-            }
-            list.add(receiver);
-        } finally {
-            receivers.lock.writeLock()
-                    .unlock();
-        }
+        receivers.add(new AsyncReceiver<>(receivers, receiver, getAsyncExecutor(), coalesce));
         return new SubscriptionReceipt<>(eventType, receiver, this);
     }
 
+    /**
+     * @see #subscribeEventAsync(Class, EventReceiver, boolean)
+     */
+    public <T extends Event> SubscriptionReceipt<T> subscribeEventAsync(@NonNull Class<T> eventType,
+                                                                        @NonNull EventReceiver<T> receiver) {
+        return subscribeEventAsync(eventType, receiver, false);
+    }
+
     /**
      * Dispatch the given event to its receivers registered in this manager.
      *
@@ -181,48 +244,30 @@ public final class EventManager {
      * @param <T>   Event type
      * @return Whether the event's intercept flag is set
      */
-    @SuppressWarnings("unchecked")
+    @SuppressWarnings({"unchecked", "rawtypes"})
     public <T extends Event> boolean dispatchEvent(@NonNull T event) {
-        // Safe cast
-        Receivers<T> receivers = getReceivers((Class<T>) event.getClass());
-        receivers.lock.readLock()
-                .lock();
-        EventReceiver<T>[] receiverArr;
-        int count;
-        try {
-            count = receivers.receivers.size();
-            receiverArr = obtainBuffer(count);
-            receivers.receivers.toArray(receiverArr);
-        } finally {
-            receivers.lock.readLock()
-                    .unlock();
-        }
-        List<EventReceiver<T>> unsubscribedReceivers = null;
-        try {
-            Unsubscribe unsubscribe = new Unsubscribe();
-            for (int i = 0; i < count && !event.isIntercepted(); i++) {
+        Unsubscribe unsubscribe = null;
+        for (Class<?> type : getEventTypes(event.getClass())) {
+            Receivers typeReceivers = receivers.get(type);
+            if (typeReceivers == null) {
+                continue;
+            }
+            EventReceiver<T>[] receiverArr = typeReceivers.receivers;
+            for (int i = 0; i < receiverArr.length && !event.isIntercepted(); i++) {
                 EventReceiver<T> receiver = receiverArr[i];
+                if (receiver instanceof AsyncReceiver) {
+                    ((AsyncReceiver<T>) receiver).post(event);
+                    continue;
+                }
+                if (unsubscribe == null) {
+                    unsubscribe = new Unsubscribe();
+                }
                 receiver.onReceive(event, unsubscribe);
                 if (unsubscribe.isUnsubscribed()) {
-                    if (unsubscribedReceivers == null) {
-                        unsubscribedReceivers = new LinkedList<>();
-                    }
-                    unsubscribedReceivers.add(receiver);
+                    typeReceivers.remove(receiver);
                 }
                 unsubscribe.reset();
             }
-        } finally {
-            if (unsubscribedReceivers != null) {
-                receivers.lock.writeLock()
-                        .lock();
-                try {
-                    receivers.receivers.removeAll(unsubscribedReceivers);
-                } finally {
-                    receivers.lock.writeLock()
-                            .unlock();
-                }
-            }
-            recycleBuffer(receiverArr);
         }
         for (int i = 0; i < children.size() && !event.isIntercepted(); i++) {
             EventManager sub = null;
@@ -245,43 +290,137 @@ public final class EventManager {
      */
     static class Receivers<T extends Event> {
 
-        ReadWriteLock lock = new ReentrantReadWriteLock();
+        @SuppressWarnings("unchecked")
+        private static final EventReceiver[] EMPTY = new EventReceiver[0];
 
-        List<EventReceiver<T>> receivers = new ArrayList<>();
+        /**
+         * Replaced as a whole when modified so dispatching can read it without locking
+         */
+        @SuppressWarnings("unchecked")
+        volatile EventReceiver<T>[] receivers = EMPTY;
 
-    }
+        synchronized void add(@NonNull EventReceiver<T> receiver) {
+            if (indexOf(receiver) != -1) {
+                throw new IllegalArgumentException(
+                        "the receiver is already registered for this type");
+            }
+            EventReceiver<T>[] newReceivers = Arrays.copyOf(receivers, receivers.length + 1);
+            newReceivers[receivers.length] = receiver;
+            receivers = newReceivers;
+        }
 
-    private final EventReceiver<?>[][] caches = new EventReceiver[5][];
+        synchronized void remove(@NonNull EventReceiver<T> receiver) {
+            int index = indexOf(receiver);
+            if (index == -1) {
+                return;
+            }
+            EventReceiver<T>[] old = receivers;
+            if (old[index] instanceof AsyncReceiver) {
+                // do not deliver the events that are still pending
+                ((AsyncReceiver<T>) old[index]).unsubscribed = true;
+            }
+            @SuppressWarnings("unchecked")
+            EventReceiver<T>[] newReceivers = new EventReceiver[old.length - 1];
+            System.arraycopy(old, 0, newReceivers, 0, index);
+            System.arraycopy(old, index + 1, newReceivers, index, old.length - index - 1);
+            receivers = newReceivers;
+        }
 
-    @SuppressWarnings("unchecked")
-    private <V extends Event> EventReceiver<V>[] obtainBuffer(int size) {
-        EventReceiver<V>[] res = null;
-        synchronized (this) {
-            for (int i = 0; i < caches.length; i++) {
-                if (caches[i] != null && caches[i].length >= size) {
-                    res = (EventReceiver<V>[]) caches[i];
-                    caches[i] = null;
-                    break;
+        /**
+         * Finds the receiver, or the async receiver wrapping it
+         */
+        private int indexOf(EventReceiver<T> receiver) {
+            EventReceiver<T>[] current = receivers;
+            for (int i = 0; i < current.length; i++) {
+                EventReceiver<T> r = current[i];
+                if (r.equals(receiver) || (r instanceof AsyncReceiver &&
+                                           ((AsyncReceiver<T>) r).receiver.equals(receiver))) {
+                    return i;
                 }
             }
+            return -1;
         }
-        if (res == null) {
-            res = new EventReceiver[size];
-        }
-        return res;
     }
 
-    private synchronized void recycleBuffer(EventReceiver<?>[] array) {
-        if (array == null) {
-            return;
+    /**
+     * Queues the events of a receiver and delivers them one at a time on an executor
+     */
+    private static class AsyncReceiver<T extends Event> implements EventReceiver<T>, Runnable {
+
+        private final Receivers<T> owner;
+        private final EventReceiver<T> receiver;
+        private final Executor executor;
+        private final boolean coalesce;
+
+        /**
+         * Pending events by their coalescing key, or by themselves if they can not be merged
+         */
+        private final LinkedHashMap<Object, T> pending = new LinkedHashMap<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean unsubscribed;
+
+        AsyncReceiver(Receivers<T> owner, EventReceiver<T> receiver, Executor executor,
+                      boolean coalesce) {
+            this.owner = owner;
+            this.receiver = receiver;
+            this.executor = executor;
+            this.coalesce = coalesce;
         }
-        for (int i = 0; i < caches.length; i++) {
-            if (caches[i] == null) {
-                Arrays.fill(array, null);
-                caches[i] = array;
-                break;
+
+        void post(T event) {
+            Object key = coalesce ? event.getCoalescingKey() : null;
+            synchronized (pending) {
+                pending.put(key == null ? new Object() : key, event);
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                try {
+                    T event;
+                    while (!unsubscribed && (event = poll()) != null) {
+                        try {
+                            onReceive(event, new Unsubscribe());
+                        } catch (RuntimeException e) {
+                            // a failing event must not stop the delivery of the next ones
+                            LOG.log(Level.SEVERE, "Failed to deliver " + event + " to " + receiver, e);
+                        }
+                    }
+                } finally {
+                    scheduled.set(false);
+                }
+            } while (!unsubscribed && hasPending() && scheduled.compareAndSet(false, true));
+        }
+
+        @Override
+        public void onReceive(T event, Unsubscribe unsubscribe) {
+            receiver.onReceive(event, unsubscribe);
+            if (unsubscribe.isUnsubscribed()) {
+                unsubscribed = true;
+                owner.remove(receiver);
             }
         }
-    }
 
+        private T poll() {
+            synchronized (pending) {
+                Iterator<T> iterator = pending.values().iterator();
+                if (!iterator.hasNext()) {
+                    return null;
+                }
+                T event = iterator.next();
+                iterator.remove();
+                return event;
+            }
+        }
+
+        private boolean hasPending() {
+            synchronized (pending) {
+                return !pending.isEmpty();
+            }
+        }
+    }
 }
@@ -17,16 +17,9 @@ public class SubscriptionReceipt<R extends Event> {
     }
 
     public void unsubscribe() {
-        EventManager.Receivers<R> receivers = manager.getReceivers(clazz);
-        receivers.lock.writeLock().lock();
-        try {
-            EventReceiver<R> target = receiver.get();
-            if (target != null) {
-                receivers.receivers.remove(target);
-            }
-        } finally {
-            receivers.lock.writeLock().unlock();
+        EventReceiver<R> target = receiver.get();
+        if (target != null) {
+            manager.getReceivers(clazz).remove(target);
         }
-
     }
 }
@@ -0,0 +1,161 @@
+package com.tyron.completion.java.benchmark;
+
+import static com.tyron.completion.TestUtil.resolveBasePath;
+
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.java.JavaCompilerProvider;
+import com.tyron.completion.java.compiler.JavaCompilerService;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A synthetic multi module project used by the benchmarks. Every library module contains
+ * plain model classes and the app module contains a large activity that uses all of them.
+ */
+public class BenchmarkProject {
+
+    /**
+     * System property pointing to the android.jar used as the boot class path, set by the
+     * jmh gradle task. Falls back to the rt.jar of the test resources.
+     */
+    public static final String ANDROID_JAR_PROPERTY = "benchmark.androidJar";
+
+    public static final String APP_PACKAGE = "com.example.app";
+    public static final String ACTIVITY_NAME = "MainActivity";
+
+    private final File mRoot;
+    private final Project mProject;
+    private final MockAndroidModule mAppModule;
+    private final File mActivityFile;
+    private final String mActivityContents;
+
+    private BenchmarkProject(File root, Project project, MockAndroidModule appModule,
+                             File activityFile, String activityContents) {
+        mRoot = root;
+        mProject = project;
+        mAppModule = appModule;
+        mActivityFile = activityFile;
+        mActivityContents = activityContents;
+    }
+
+    /**
+     * @param libraryCount the number of library modules the app module depends on
+     * @param classesPerLibrary the number of model classes in each library module
+     * @param activityMethods the number of methods of the activity, about 12 lines each
+     */
+    public static BenchmarkProject create(int libraryCount,
+                                          int classesPerLibrary,
+                                          int activityMethods) throws IOException {
+        CompletionModule.setAndroidJar(getAndroidJar());
+        CompletionModule.setLambdaStubs(new File(resolveBasePath(),
+                "classpath/core-lambda-stubs.jar"));
+
+        File root = Files.createTempDirectory("completion-benchmark").toFile();
+        Project project = new Project(root);
+
+        List<String> models = new ArrayList<>();
+        for (int i = 0; i < libraryCount; i++) {
+            File moduleRoot = new File(root, "library" + i);
+            MockAndroidModule module = createModule(moduleRoot);
+            String packageName = "com.example.library" + i;
+            for (int j = 0; j < classesPerLibrary; j++) {
+                String name = "Model" + i + "_" + j;
+                File file = writeJavaFile(module, packageName, name,
+                        SyntheticSources.model(packageName, name, 8));
+                module.addJavaFile(file);
+                models.add(packageName + "." + name);
+            }
+            project.addModule(module);
+        }
+
+        MockAndroidModule app = createModule(new File(root, "app"));
+        String contents = SyntheticSources.activity(APP_PACKAGE, ACTIVITY_NAME, activityMethods,
+                models);
+        File activity = writeJavaFile(app, APP_PACKAGE, ACTIVITY_NAME, contents);
+        app.addJavaFile(activity);
+        project.addModule(app);
+
+        return new BenchmarkProject(root, project, app, activity, contents);
+    }
+
+    public Project getProject() {
+        return mProject;
+    }
+
+    public MockAndroidModule getAppModule() {
+        return mAppModule;
+    }
+
+    public File getActivityFile() {
+        return mActivityFile;
+    }
+
+    /**
+     * @return the contents of the activity, containing one {@link SyntheticSources#CARET}
+     */
+    public String getActivityContents() {
+        return mActivityContents;
+    }
+
+    public JavaCompilerService createCompiler() {
+        return new JavaCompilerProvider().get(mProject, mAppModule);
+    }
+
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(mRoot);
+    }
+
+    public static File getAndroidJar() {
+        String path = System.getProperty(ANDROID_JAR_PROPERTY);
+        if (path != null) {
+            return new File(path);
+        }
+        return new File(resolveBasePath(), "classpath/rt.jar");
+    }
+
+    /**
+     * @return the fully qualified names of the top level classes of the given jar
+     */
+    public static List<String> readClassNames(File jar) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(".class") || name.contains("$")) {
+                    continue;
+                }
+                names.add(name.substring(0, name.length() - ".class".length())
+                        .replace('/', '.'));
+            }
+        }
+        return names;
+    }
+
+    private static MockAndroidModule createModule(File root) throws IOException {
+        MockAndroidModule module = new MockAndroidModule(root, new MockFileManager(root));
+        module.open();
+        return module;
+    }
+
+    private static File writeJavaFile(MockAndroidModule module, String packageName,
+                                      String name, String contents) throws IOException {
+        File file = new File(module.getJavaDirectory(),
+                packageName.replace('.', '/') + "/" + name + ".java");
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        return file;
+    }
+}
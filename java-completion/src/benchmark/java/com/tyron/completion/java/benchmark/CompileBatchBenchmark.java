@@ -0,0 +1,101 @@
+package com.tyron.completion.java.benchmark;
+
+import com.tyron.builder.model.SourceFileObject;
+import com.tyron.completion.java.compiler.JavaCompilerService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and attributing the activity of a {@link BenchmarkProject} after an edit.
+ *
+ * {@link #reattributeMethodBody(Blackhole)} edits a statement inside a method body so only
+ * that method is parsed and attributed again, {@link #attributeFile(Blackhole)} edits a
+ * field so the whole file goes through the compiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class CompileBatchBenchmark {
+
+    @Param({"200", "800"})
+    public int activityMethods;
+
+    private BenchmarkProject mProject;
+    private JavaCompilerService mCompiler;
+    private Path mActivity;
+
+    private String[] mMethodEdits;
+    private String[] mFieldEdits;
+    private int mEditCount;
+
+    @Setup
+    public void setup() throws IOException {
+        mProject = BenchmarkProject.create(4, 25, activityMethods);
+        mCompiler = mProject.createCompiler();
+        mActivity = mProject.getActivityFile().toPath();
+
+        String contents = mProject.getActivityContents();
+        mMethodEdits = new String[]{
+                contents,
+                contents.replace(SyntheticSources.STATEMENT, "total += name.length() + 2;")
+        };
+        mFieldEdits = new String[]{
+                contents,
+                contents.replace(SyntheticSources.FIELD, "private int mCounter = 1;")
+        };
+
+        // the first compilation loads the class path, it is not what is being measured
+        compile(contents, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mCompiler.destroy();
+        mProject.delete();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        blackhole.consume(mCompiler.parse(mActivity, mProject.getActivityContents()).root);
+    }
+
+    @Benchmark
+    public void reattributeMethodBody(Blackhole blackhole) {
+        compile(mMethodEdits[mEditCount++ & 1], blackhole);
+    }
+
+    @Benchmark
+    public void attributeFile(Blackhole blackhole) {
+        compile(mFieldEdits[mEditCount++ & 1], blackhole);
+    }
+
+    private void compile(String contents, Blackhole blackhole) {
+        SourceFileObject source = new SourceFileObject(mActivity, contents, Instant.now());
+        mCompiler.compile(Collections.singletonList(source)).run(task -> {
+            if (blackhole != null) {
+                blackhole.consume(task.diagnostics);
+            }
+        });
+    }
+}
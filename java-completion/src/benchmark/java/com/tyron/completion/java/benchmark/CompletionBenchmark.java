@@ -0,0 +1,86 @@
+package com.tyron.completion.java.benchmark;
+
+import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.java.provider.Completions;
+import com.tyron.completion.model.CompletionList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole completion request in the activity of a {@link BenchmarkProject}, from
+ * pruning the file to building the sorted {@link CompletionList}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class CompletionBenchmark {
+
+    private BenchmarkProject mProject;
+    private JavaCompilerService mCompiler;
+    private File mActivity;
+
+    private String mIdentifierContents;
+    private int mIdentifierIndex;
+    private String mMemberSelectContents;
+    private int mMemberSelectIndex;
+
+    @Setup
+    public void setup() throws IOException {
+        mProject = BenchmarkProject.create(4, 25, 400);
+        mCompiler = mProject.createCompiler();
+        mActivity = mProject.getActivityFile();
+
+        String contents = mProject.getActivityContents();
+        int caret = contents.indexOf(SyntheticSources.CARET);
+
+        mIdentifierContents = contents.replace(SyntheticSources.CARET, "vi");
+        mIdentifierIndex = caret + "vi".length();
+        mMemberSelectContents = contents.replace(SyntheticSources.CARET, "view.set");
+        mMemberSelectIndex = caret + "view.set".length();
+
+        // the first completion loads the class path, it is not what is being measured
+        complete(mIdentifierContents, mIdentifierIndex);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mCompiler.destroy();
+        mProject.delete();
+    }
+
+    @Benchmark
+    public CompletionList completeIdentifier() {
+        return complete(mIdentifierContents, mIdentifierIndex);
+    }
+
+    @Benchmark
+    public CompletionList completeMemberSelect() {
+        return complete(mMemberSelectContents, mMemberSelectIndex);
+    }
+
+    private CompletionList complete(String contents, int index) {
+        CompletionList.Builder builder = new Completions(mCompiler)
+                .complete(mActivity, contents, index);
+        if (builder == null) {
+            throw new IllegalStateException("The compiler is busy");
+        }
+        return builder.build();
+    }
+}
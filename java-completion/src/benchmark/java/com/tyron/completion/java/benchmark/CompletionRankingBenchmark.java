@@ -0,0 +1,90 @@
+package com.tyron.completion.java.benchmark;
+
+import com.tyron.completion.CompletionPrefixMatcher;
+import com.tyron.completion.java.ClassNameIndex;
+import com.tyron.completion.model.CompletionItem;
+import com.tyron.completion.model.CompletionList;
+import com.tyron.completion.model.DrawableKind;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching and sorting the class names of the android.jar against a typed prefix,
+ * which is what every completion request that suggests classes goes through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CompletionRankingBenchmark {
+
+    @Param({"Te", "TeVi", "recyclr"})
+    public String prefix;
+
+    private List<String> mSimpleNames;
+    private List<CompletionItem> mItems;
+    private ClassNameIndex mIndex;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> classNames = BenchmarkProject.readClassNames(
+                BenchmarkProject.getAndroidJar());
+        mIndex = ClassNameIndex.create(classNames);
+
+        mSimpleNames = new ArrayList<>(classNames.size());
+        mItems = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            mSimpleNames.add(simpleName);
+            mItems.add(CompletionItem.create(simpleName, className, simpleName,
+                    DrawableKind.Class));
+        }
+    }
+
+    @Benchmark
+    public void computeMatchLevel(Blackhole blackhole) {
+        for (String name : mSimpleNames) {
+            blackhole.consume(CompletionPrefixMatcher.computeMatchLevel(name, prefix));
+        }
+    }
+
+    @Benchmark
+    public CompletionList buildCompletionList() {
+        return CompletionList.builder(prefix)
+                .addItems(mItems)
+                .build();
+    }
+
+    @Benchmark
+    public void findByPrefix(Blackhole blackhole) {
+        mIndex.findByPrefix(prefix, false, blackhole::consume);
+    }
+
+    @Benchmark
+    public void findByCamelHumps(Blackhole blackhole) {
+        mIndex.findByCamelHumps(prefix, false, blackhole::consume);
+    }
+
+    @Benchmark
+    public void findFuzzy(Blackhole blackhole) {
+        mIndex.findFuzzy(prefix, 50, blackhole::consume);
+    }
+}
@@ -0,0 +1,114 @@
+package com.tyron.completion.java.benchmark;
+
+import java.util.List;
+
+/**
+ * Generates Android style java sources for the benchmarks.
+ */
+public class SyntheticSources {
+
+    /**
+     * Marks the place in the activity where the benchmarks insert their edits
+     */
+    public static final String CARET = "/* caret */";
+
+    /**
+     * A field declaration outside of any method body, changing it requires the whole file
+     * to be attributed again
+     */
+    public static final String FIELD = "private int mCounter;";
+
+    /**
+     * A statement inside the body of the method that contains the {@link #CARET}
+     */
+    public static final String STATEMENT = "total += name.length() + 1;";
+
+    public static String model(String packageName, String name, int fields) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import java.util.ArrayList;\n");
+        sb.append("import java.util.List;\n\n");
+        sb.append("public class ").append(name).append(" {\n\n");
+        for (int i = 0; i < fields; i++) {
+            sb.append("    private String mField").append(i).append(";\n");
+        }
+        sb.append("    private final List<String> mTags = new ArrayList<>();\n\n");
+        for (int i = 0; i < fields; i++) {
+            sb.append("    public String getField").append(i).append("() {\n");
+            sb.append("        return mField").append(i).append(";\n");
+            sb.append("    }\n\n");
+            sb.append("    public void setField").append(i).append("(String value) {\n");
+            sb.append("        mField").append(i).append(" = value;\n");
+            sb.append("    }\n\n");
+        }
+        sb.append("    public List<String> getTags() {\n");
+        sb.append("        return mTags;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * @param models fully qualified names of classes created with
+     *               {@link #model(String, String, int)}, the methods of the activity use them
+     *               in turn
+     */
+    public static String activity(String packageName, String name, int methods,
+                                  List<String> models) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(packageName).append(";\n\n");
+        sb.append("import android.app.Activity;\n");
+        sb.append("import android.os.Bundle;\n");
+        sb.append("import android.view.View;\n");
+        sb.append("import android.widget.LinearLayout;\n");
+        sb.append("import android.widget.TextView;\n\n");
+        sb.append("import java.util.ArrayList;\n");
+        sb.append("import java.util.HashMap;\n");
+        sb.append("import java.util.List;\n");
+        sb.append("import java.util.Map;\n\n");
+        for (String model : models) {
+            sb.append("import ").append(model).append(";\n");
+        }
+        sb.append("\npublic class ").append(name).append(" extends Activity {\n\n");
+        sb.append("    ").append(FIELD).append("\n");
+        sb.append("    private final Map<String, View> mViews = new HashMap<>();\n");
+        sb.append("    private LinearLayout mRoot;\n\n");
+        sb.append("    @Override\n");
+        sb.append("    protected void onCreate(Bundle savedInstanceState) {\n");
+        sb.append("        super.onCreate(savedInstanceState);\n");
+        sb.append("        mRoot = new LinearLayout(this);\n");
+        sb.append("        mRoot.setOrientation(LinearLayout.VERTICAL);\n");
+        sb.append("        setContentView(mRoot);\n");
+        sb.append("    }\n\n");
+
+        for (int i = 0; i < methods; i++) {
+            String model = models.isEmpty() ? "Object" : simpleName(models.get(i % models.size()));
+            sb.append("    public int bind").append(i).append("(").append(model)
+                    .append(" model, List<String> names) {\n");
+            sb.append("        TextView view = new TextView(this);\n");
+            if (!models.isEmpty()) {
+                sb.append("        view.setText(model.getField0());\n");
+            }
+            sb.append("        mRoot.addView(view);\n");
+            sb.append("        mViews.put(\"bind").append(i).append("\", view);\n");
+            sb.append("        List<String> copy = new ArrayList<>(names);\n");
+            sb.append("        int total = 0;\n");
+            sb.append("        for (String name : copy) {\n");
+            if (i == methods / 2) {
+                sb.append("            ").append(STATEMENT).append("\n");
+                sb.append("            ").append(CARET).append("\n");
+            } else {
+                sb.append("            total += name.length();\n");
+            }
+            sb.append("        }\n");
+            sb.append("        return total + mCounter;\n");
+            sb.append("    }\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String simpleName(String className) {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+}
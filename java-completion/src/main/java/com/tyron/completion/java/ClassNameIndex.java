@@ -0,0 +1,236 @@
+package com.tyron.completion.java;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.completion.CompletionPrefixMatcher;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An immutable index of fully qualified class names that can be searched by their simple
+ * names without going through every name.
+ *
+ * The names are sorted by their lower case simple name so prefix queries are a binary
+ * search, camel hump queries only look at the names that start with the same character and
+ * fuzzy queries use a posting list of the trigrams of each simple name.
+ */
+public class ClassNameIndex {
+
+    public static final ClassNameIndex EMPTY = create(Collections.emptyList());
+
+    private static final int[] NO_POSTINGS = new int[0];
+
+    /**
+     * The fully qualified names, sorted by {@link #mLowerSimpleNames}
+     */
+    private final String[] mNames;
+    private final String[] mSimpleNames;
+    private final String[] mLowerSimpleNames;
+
+    /**
+     * Maps a trigram of a lower case simple name to the sorted positions of the names
+     * that contain it
+     */
+    private final Map<Integer, int[]> mTrigrams;
+
+    private ClassNameIndex(String[] names, String[] simpleNames, String[] lowerSimpleNames,
+                           Map<Integer, int[]> trigrams) {
+        mNames = names;
+        mSimpleNames = simpleNames;
+        mLowerSimpleNames = lowerSimpleNames;
+        mTrigrams = trigrams;
+    }
+
+    @NonNull
+    public static ClassNameIndex create(@NonNull Collection<String> classNames) {
+        String[] names = classNames.toArray(new String[0]);
+        String[] lowerSimpleNames = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            lowerSimpleNames[i] = getSimpleName(names[i]).toLowerCase();
+        }
+
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> lowerSimpleNames[i])
+                .thenComparing(i -> names[i]));
+
+        String[] sortedNames = new String[names.length];
+        String[] sortedSimpleNames = new String[names.length];
+        String[] sortedLowerSimpleNames = new String[names.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedNames[i] = names[order[i]];
+            sortedSimpleNames[i] = getSimpleName(sortedNames[i]);
+            sortedLowerSimpleNames[i] = lowerSimpleNames[order[i]];
+        }
+
+        // first pass counts the postings of each trigram so the arrays are allocated once
+        Map<Integer, int[]> counts = new HashMap<>();
+        for (String name : sortedLowerSimpleNames) {
+            for (int trigram : trigrams(name)) {
+                int[] count = counts.get(trigram);
+                if (count == null) {
+                    counts.put(trigram, new int[]{1});
+                } else {
+                    count[0]++;
+                }
+            }
+        }
+        Map<Integer, int[]> postings = new HashMap<>(counts.size());
+        for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+            postings.put(entry.getKey(), new int[entry.getValue()[0]]);
+            entry.getValue()[0] = 0;
+        }
+        for (int i = 0; i < sortedLowerSimpleNames.length; i++) {
+            for (int trigram : trigrams(sortedLowerSimpleNames[i])) {
+                int[] position = counts.get(trigram);
+                postings.get(trigram)[position[0]++] = i;
+            }
+        }
+
+        return new ClassNameIndex(sortedNames, sortedSimpleNames, sortedLowerSimpleNames,
+                postings);
+    }
+
+    public int size() {
+        return mNames.length;
+    }
+
+    /**
+     * Finds the classes whose simple name starts with the given prefix
+     *
+     * @param prefix the prefix of the simple name
+     * @param caseSensitive whether the case of the prefix must match
+     * @param consumer receives the fully qualified names of the matching classes
+     */
+    public void findByPrefix(@NonNull String prefix,
+                             boolean caseSensitive,
+                             @NonNull Consumer<String> consumer) {
+        String lowerPrefix = prefix.toLowerCase();
+        for (int i = lowerBound(lowerPrefix); i < mNames.length; i++) {
+            if (!mLowerSimpleNames[i].startsWith(lowerPrefix)) {
+                break;
+            }
+            if (caseSensitive && !mSimpleNames[i].startsWith(prefix)) {
+                continue;
+            }
+            consumer.accept(mNames[i]);
+        }
+    }
+
+    /**
+     * Finds the classes whose simple name matches the humps of the given pattern, see
+     * {@link CompletionPrefixMatcher#matchesCamelHumps(String, String)}
+     *
+     * @param pattern the camel case pattern
+     * @param caseSensitive whether the case of the first character of the pattern must match,
+     *                      the humps that follow are always matched by case
+     * @param consumer receives the fully qualified names of the matching classes
+     */
+    public void findByCamelHumps(@NonNull String pattern,
+                                 boolean caseSensitive,
+                                 @NonNull Consumer<String> consumer) {
+        if (pattern.isEmpty()) {
+            return;
+        }
+        String first = pattern.substring(0, 1).toLowerCase();
+        for (int i = lowerBound(first); i < mNames.length; i++) {
+            if (!mLowerSimpleNames[i].startsWith(first)) {
+                break;
+            }
+            if (caseSensitive && mSimpleNames[i].charAt(0) != pattern.charAt(0)) {
+                continue;
+            }
+            if (CompletionPrefixMatcher.matchesCamelHumps(mSimpleNames[i], pattern)) {
+                consumer.accept(mNames[i]);
+            }
+        }
+    }
+
+    /**
+     * Finds the classes whose simple name shares enough trigrams with the query, ignoring case.
+     * Queries shorter than 3 characters have no trigrams and find nothing, their matches are
+     * found by {@link #findByPrefix} and {@link #findByCamelHumps}.
+     *
+     * @param query the misspelled or partial name
+     * @param minimumScore the minimum similarity of the names from 0 to 100
+     * @param consumer receives the fully qualified names of the matching classes
+     */
+    public void findFuzzy(@NonNull String query, int minimumScore,
+                          @NonNull Consumer<String> consumer) {
+        int[] queryTrigrams = trigrams(query.toLowerCase());
+        if (queryTrigrams.length == 0) {
+            return;
+        }
+
+        int[] shared = new int[mNames.length];
+        for (int trigram : queryTrigrams) {
+            int[] posting = mTrigrams.get(trigram);
+            for (int position : posting == null ? NO_POSTINGS : posting) {
+                shared[position]++;
+            }
+        }
+        for (int i = 0; i < shared.length; i++) {
+            if (shared[i] == 0) {
+                continue;
+            }
+            int nameTrigrams = Math.max(1, mLowerSimpleNames[i].length() - 2);
+            int score = 200 * shared[i] / (queryTrigrams.length + nameTrigrams);
+            if (score >= minimumScore) {
+                consumer.accept(mNames[i]);
+            }
+        }
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = mLowerSimpleNames.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mLowerSimpleNames[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the distinct trigrams of the given string, each packed into an int
+     */
+    private static int[] trigrams(String name) {
+        if (name.length() < 3) {
+            return NO_POSTINGS;
+        }
+        int[] trigrams = new int[name.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((name.charAt(i) & 0x3FF) << 20) |
+                          ((name.charAt(i + 1) & 0x3FF) << 10) |
+                          (name.charAt(i + 2) & 0x3FF);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static String getSimpleName(String className) {
+        int dot = className.lastIndexOf('.');
+        if (dot == -1) {
+            return className;
+        }
+        return className.substring(dot + 1);
+    }
+}
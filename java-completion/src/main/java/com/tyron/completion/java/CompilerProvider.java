@@ -1,6 +1,7 @@
 package com.tyron.completion.java;
 
 
+import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.ParseTask;
 
@@ -13,6 +14,8 @@ import java.util.Set;
 
 import javax.tools.JavaFileObject;
 
+import kotlin.jvm.functions.Function1;
+
 public interface CompilerProvider {
 
     Set<String> imports();
@@ -39,5 +42,9 @@ public interface CompilerProvider {
 
     CompilerContainer compile(Collection<? extends JavaFileObject> sources);
 
+    <T> T compile(Path file, Function1<CompileTask, T> fun);
+
+    <T> T compile(Collection<? extends JavaFileObject> sources, Function1<CompileTask, T> fun);
+
     Path NOT_FOUND = Paths.get("");
 }
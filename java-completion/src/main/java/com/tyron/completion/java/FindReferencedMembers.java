@@ -0,0 +1,282 @@
+package com.tyron.completion.java;
+
+import com.sun.source.tree.AnnotatedTypeTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreeScanner;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the members that are referenced in a compilation unit together with the simple name
+ * of the class they are accessed through, as {@code Owner#member}.
+ *
+ * Only the parse tree is available, so the owner is the type that is written in the file: the
+ * declared type of a variable, a type name, the class of a {@code new} expression or the
+ * enclosing classes for unqualified names. Type names are told apart from fields by the Java
+ * naming conventions. When the type of the receiver is not written in the file, like for the
+ * result of a method call, the owner is {@link #UNKNOWN_OWNER}.
+ *
+ * The simple names of the classes declared in the unit are collected along with the simple
+ * names of the types they extend or implement, so members accessed through a subclass can be
+ * found.
+ */
+public class FindReferencedMembers extends TreeScanner<Void, Void> {
+
+    public static final String UNKNOWN_OWNER = "*";
+
+    private static final Set<String> UNKNOWN = Collections.singleton(UNKNOWN_OWNER);
+
+    private final Set<String> mMembers = new HashSet<>();
+    private final Map<String, Set<String>> mSupertypes = new HashMap<>();
+
+    private final Map<String, Set<String>> mVariableTypes = new HashMap<>();
+    private final Map<String, Set<String>> mStaticImports = new HashMap<>();
+    private final Set<String> mStaticWildcardImports = new HashSet<>();
+    private final Deque<String> mEnclosingClasses = new ArrayDeque<>();
+    private String mAnonymousClassOwner;
+
+    public static FindReferencedMembers scan(CompilationUnitTree root) {
+        FindReferencedMembers finder = new FindReferencedMembers();
+        finder.collectImports(root);
+        new VariableTypes(finder.mVariableTypes).scan(root, null);
+        finder.scan(root, null);
+        return finder;
+    }
+
+    private FindReferencedMembers() {
+
+    }
+
+    /**
+     * @return the referenced members as {@code Owner#member}
+     */
+    public Set<String> getMembers() {
+        return mMembers;
+    }
+
+    /**
+     * @return the simple names of the types each class of the unit extends or implements,
+     * by the simple name of the class
+     */
+    public Map<String, Set<String>> getSupertypes() {
+        return mSupertypes;
+    }
+
+    public static String key(String owner, String member) {
+        return owner + "#" + member;
+    }
+
+    private void collectImports(CompilationUnitTree root) {
+        for (ImportTree importTree : root.getImports()) {
+            if (!importTree.isStatic() ||
+                !(importTree.getQualifiedIdentifier() instanceof MemberSelectTree)) {
+                continue;
+            }
+            MemberSelectTree select = (MemberSelectTree) importTree.getQualifiedIdentifier();
+            String owner = simpleName(select.getExpression());
+            if (owner == null) {
+                continue;
+            }
+            String member = select.getIdentifier().toString();
+            if ("*".equals(member)) {
+                mStaticWildcardImports.add(owner);
+            } else {
+                mStaticImports.computeIfAbsent(member, it -> new HashSet<>()).add(owner);
+            }
+        }
+    }
+
+    @Override
+    public Void visitImport(ImportTree node, Void unused) {
+        // imports are not references to members
+        return null;
+    }
+
+    @Override
+    public Void visitClass(ClassTree node, Void unused) {
+        String name = node.getSimpleName().toString();
+        if (name.isEmpty()) {
+            name = mAnonymousClassOwner != null ? mAnonymousClassOwner : UNKNOWN_OWNER;
+            mAnonymousClassOwner = null;
+        } else {
+            Set<String> supertypes = mSupertypes.computeIfAbsent(name, it -> new HashSet<>());
+            addSimpleName(supertypes, node.getExtendsClause());
+            for (Tree tree : node.getImplementsClause()) {
+                addSimpleName(supertypes, tree);
+            }
+        }
+        mEnclosingClasses.push(name);
+        try {
+            return super.visitClass(node, unused);
+        } finally {
+            mEnclosingClasses.pop();
+        }
+    }
+
+    @Override
+    public Void visitNewClass(NewClassTree node, Void unused) {
+        scan(node.getEnclosingExpression(), unused);
+        scan(node.getIdentifier(), unused);
+        scan(node.getTypeArguments(), unused);
+        scan(node.getArguments(), unused);
+        if (node.getClassBody() != null) {
+            String owner = simpleName(node.getIdentifier());
+            mAnonymousClassOwner = owner != null ? owner : UNKNOWN_OWNER;
+            scan(node.getClassBody(), unused);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree node, Void unused) {
+        String name = node.getName().toString();
+        for (String owner : mEnclosingClasses) {
+            mMembers.add(key(owner, name));
+        }
+        for (String owner : mStaticImports.getOrDefault(name, Collections.emptySet())) {
+            mMembers.add(key(owner, name));
+        }
+        for (String owner : mStaticWildcardImports) {
+            mMembers.add(key(owner, name));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+        String name = node.getIdentifier().toString();
+        for (String owner : ownersOf(node.getExpression())) {
+            mMembers.add(key(owner, name));
+        }
+        return super.visitMemberSelect(node, unused);
+    }
+
+    @Override
+    public Void visitMemberReference(MemberReferenceTree node, Void unused) {
+        String name = node.getName().toString();
+        for (String owner : ownersOf(node.getQualifierExpression())) {
+            mMembers.add(key(owner, name));
+        }
+        return super.visitMemberReference(node, unused);
+    }
+
+    private Set<String> ownersOf(ExpressionTree receiver) {
+        switch (receiver.getKind()) {
+            case IDENTIFIER: {
+                String name = ((IdentifierTree) receiver).getName().toString();
+                if ("this".equals(name) || "super".equals(name)) {
+                    return new HashSet<>(mEnclosingClasses);
+                }
+                Set<String> owners = new HashSet<>(mVariableTypes.getOrDefault(name, Collections.emptySet()));
+                if (isTypeName(name)) {
+                    owners.add(name);
+                }
+                return owners.isEmpty() ? UNKNOWN : owners;
+            }
+            case MEMBER_SELECT: {
+                String name = ((MemberSelectTree) receiver).getIdentifier().toString();
+                if (isTypeName(name)) {
+                    return Collections.singleton(name);
+                }
+                // the field of another class, its type is not known
+                return UNKNOWN;
+            }
+            case NEW_CLASS: {
+                String owner = simpleName(((NewClassTree) receiver).getIdentifier());
+                return owner != null ? Collections.singleton(owner) : UNKNOWN;
+            }
+            case TYPE_CAST: {
+                String owner = simpleName(((TypeCastTree) receiver).getType());
+                return owner != null ? Collections.singleton(owner) : UNKNOWN;
+            }
+            case PARENTHESIZED:
+                return ownersOf(((ParenthesizedTree) receiver).getExpression());
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * Type names start with an upper case letter and are not all upper case like constants.
+     */
+    private static boolean isTypeName(String name) {
+        if (name.isEmpty() || !Character.isUpperCase(name.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (Character.isLowerCase(name.charAt(i))) {
+                return true;
+            }
+        }
+        return name.length() == 1;
+    }
+
+    private static void addSimpleName(Set<String> names, Tree type) {
+        String name = simpleName(type);
+        if (name != null) {
+            names.add(name);
+        }
+    }
+
+    /**
+     * @return the simple name of a type tree, or null if it is not a class type
+     */
+    private static String simpleName(Tree type) {
+        if (type == null) {
+            return null;
+        }
+        switch (type.getKind()) {
+            case IDENTIFIER:
+                return ((IdentifierTree) type).getName().toString();
+            case MEMBER_SELECT:
+                return ((MemberSelectTree) type).getIdentifier().toString();
+            case PARAMETERIZED_TYPE:
+                return simpleName(((ParameterizedTypeTree) type).getType());
+            case ANNOTATED_TYPE:
+                return simpleName(((AnnotatedTypeTree) type).getUnderlyingType());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Collects the declared types of the fields, parameters and local variables of the unit by
+     * name. Scopes are not tracked, a name that is declared more than once gets all the types.
+     */
+    private static class VariableTypes extends TreeScanner<Void, Void> {
+
+        private final Map<String, Set<String>> mTypes;
+
+        VariableTypes(Map<String, Set<String>> types) {
+            mTypes = types;
+        }
+
+        @Override
+        public Void visitVariable(VariableTree node, Void unused) {
+            String type = simpleName(node.getType());
+            if (type == null || "var".equals(type)) {
+                type = UNKNOWN_OWNER;
+            }
+            mTypes.computeIfAbsent(node.getName().toString(), it -> new HashSet<>()).add(type);
+            return super.visitVariable(node, unused);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.tyron.completion.java;
+
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.util.TreeScanner;
+
+import java.util.Set;
+
+/**
+ * Collects every simple name that is referenced in a compilation unit, this includes
+ * identifiers, the selected part of member selects and the names of method references.
+ */
+public class FindReferencedNames extends TreeScanner<Void, Set<String>> {
+
+    @Override
+    public Void visitIdentifier(IdentifierTree node, Set<String> found) {
+        found.add(node.getName().toString());
+        return super.visitIdentifier(node, found);
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree node, Set<String> found) {
+        found.add(node.getIdentifier().toString());
+        return super.visitMemberSelect(node, found);
+    }
+
+    @Override
+    public Void visitMemberReference(MemberReferenceTree node, Set<String> found) {
+        found.add(node.getName().toString());
+        return super.visitMemberReference(node, found);
+    }
+}
@@ -50,7 +50,7 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
 
     public void destroy() {
         mCachedPaths.clear();
-        mProvider = null;
+        releaseProvider();
     }
 
     public synchronized JavaCompilerService getCompiler(Project project, JavaModule module) {
@@ -71,6 +71,7 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
         }
 
         if (mProvider == null || changed(mCachedPaths, paths)) {
+            releaseProvider();
             mProvider = new JavaCompilerService(project, paths, Collections.emptySet(),
                                                 Collections.emptySet());
 
@@ -116,6 +117,14 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
     }
 
     public void clear() {
+        releaseProvider();
+    }
+
+    private void releaseProvider() {
+        JavaCompilerService provider = mProvider;
+        if (provider != null) {
+            provider.removeFileListeners();
+        }
         mProvider = null;
     }
 }
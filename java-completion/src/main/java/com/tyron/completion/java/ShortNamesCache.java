@@ -4,14 +4,19 @@ import com.tyron.builder.model.CodeAssistLibrary;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.JavaModuleImpl;
+import com.tyron.builder.project.util.LibraryClassIndex;
+import com.tyron.builder.project.util.PackageTrie;
 
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.function.Consumer;
 
 /**
  * Allows to retrieve java classes in a project by non-qualified names
@@ -37,6 +42,90 @@ public class ShortNamesCache {
         JDK_MODULE.addLibrary(CodeAssistLibrary.forJar(Objects.requireNonNull(CompletionModule.getAndroidJar())));
     }
 
+    /**
+     * The minimum trigram similarity of the names found by {@link ClassNameIndex#findFuzzy},
+     * it is lower than the score {@link com.tyron.completion.CompletionPrefixMatcher} needs
+     * for a partial match, which is what decides whether the name is shown.
+     */
+    private static final int FUZZY_MINIMUM_SCORE = 50;
+
+    private static ClassNameIndex sJdkIndex;
+
+    private static synchronized ClassNameIndex getJdkIndex() {
+        if (sJdkIndex == null) {
+            sJdkIndex = ClassNameIndex.create(JDK_MODULE.getClassIndex().getLeafNodes());
+        }
+        return sJdkIndex;
+    }
+
+    /**
+     * The class name index of the source classes of a module along with the state of the
+     * {@link PackageTrie} it was built from, and the indexes of the libraries of the module.
+     */
+    private static class ModuleIndex {
+        final PackageTrie trie;
+        final int modificationCount;
+        final List<ClassNameIndex> indexes;
+
+        ModuleIndex(PackageTrie trie, int modificationCount, List<ClassNameIndex> indexes) {
+            this.trie = trie;
+            this.modificationCount = modificationCount;
+            this.indexes = indexes;
+        }
+    }
+
+    private static final Map<JavaModule, ModuleIndex> sModuleIndexes = new WeakHashMap<>();
+
+    /**
+     * The class name indexes of the libraries, a library index never changes so they are
+     * only built once and shared by the modules that use the library.
+     */
+    private static final Map<LibraryClassIndex, ClassNameIndex> sLibraryIndexes =
+            new WeakHashMap<>();
+
+    /**
+     * Returns the indexes of the given module. When the class index of the module has changed
+     * since they were last built, only the index of the source classes is built again.
+     */
+    private static List<ClassNameIndex> getModuleIndexes(JavaModule module) {
+        PackageTrie trie = module.getClassIndex();
+        int modificationCount = trie.getModificationCount();
+        synchronized (sModuleIndexes) {
+            ModuleIndex cached = sModuleIndexes.get(module);
+            if (cached != null && cached.trie == trie &&
+                cached.modificationCount == modificationCount) {
+                return cached.indexes;
+            }
+        }
+
+        List<ClassNameIndex> indexes = new ArrayList<>();
+        indexes.add(ClassNameIndex.create(trie.getNonLibraryLeafNodes()));
+        for (LibraryClassIndex libraryIndex : trie.getLibraryIndexes()) {
+            indexes.add(getLibraryIndex(libraryIndex));
+        }
+        synchronized (sModuleIndexes) {
+            sModuleIndexes.put(module, new ModuleIndex(trie, modificationCount, indexes));
+        }
+        return indexes;
+    }
+
+    private static ClassNameIndex getLibraryIndex(LibraryClassIndex libraryIndex) {
+        synchronized (sLibraryIndexes) {
+            ClassNameIndex index = sLibraryIndexes.get(libraryIndex);
+            if (index != null) {
+                return index;
+            }
+        }
+
+        List<String> names = new ArrayList<>(libraryIndex.size());
+        libraryIndex.forEach(names::add);
+        ClassNameIndex index = ClassNameIndex.create(names);
+        synchronized (sLibraryIndexes) {
+            sLibraryIndexes.put(libraryIndex, index);
+        }
+        return index;
+    }
+
     private final Module module;
 
     public ShortNamesCache(Module module) {
@@ -44,16 +133,14 @@ public class ShortNamesCache {
     }
 
     /**
-     * Returns the list of fully qualified names of all classes in the project and (optionally)
-     * libraries.
+     * @return The class name indexes of this module, its dependencies and the JDK
      */
-    public String[] getAllClassNames() {
+    private List<ClassNameIndex> getIndexes() {
+        List<ClassNameIndex> indexes = new ArrayList<>();
         if (!(module instanceof JavaModule)) {
-            return new String[0];
+            return indexes;
         }
 
-        Set<String> classNames = new HashSet<>();
-
         Deque<Module> queue = new LinkedList<>();
         Set<Module> visitedModules = new HashSet<>();
         queue.addLast(module);
@@ -62,8 +149,7 @@ public class ShortNamesCache {
             Module current = queue.removeFirst();
 
             if (current instanceof JavaModule) {
-                JavaModule javaModule = (JavaModule) current;
-                classNames.addAll(javaModule.getClassIndex().getLeafNodes());
+                indexes.addAll(getModuleIndexes((JavaModule) current));
             }
 
             visitedModules.add(current);
@@ -75,7 +161,37 @@ public class ShortNamesCache {
             }
         }
 
-        classNames.addAll(JDK_MODULE.getClassIndex().getLeafNodes());
+        indexes.add(getJdkIndex());
+        return indexes;
+    }
+
+    /**
+     * Finds the classes whose simple names start with the given prefix, match its camel
+     * humps or are similar to it, without going through all the class names.
+     *
+     * @param prefix the partial simple name
+     * @param caseSensitive whether the case of the prefix must match, similar names are
+     *                      found regardless of their case
+     * @param consumer receives the fully qualified names, a name may be passed more than once
+     */
+    public void processClassNames(String prefix, boolean caseSensitive,
+                                  Consumer<String> consumer) {
+        for (ClassNameIndex index : getIndexes()) {
+            index.findByPrefix(prefix, caseSensitive, consumer);
+            index.findByCamelHumps(prefix, caseSensitive, consumer);
+            index.findFuzzy(prefix, FUZZY_MINIMUM_SCORE, consumer);
+        }
+    }
+
+    /**
+     * Returns the list of fully qualified names of all classes in the project and (optionally)
+     * libraries.
+     */
+    public String[] getAllClassNames() {
+        Set<String> classNames = new HashSet<>();
+        for (ClassNameIndex index : getIndexes()) {
+            index.findByPrefix("", false, classNames::add);
+        }
         return classNames.toArray(new String[0]);
     }
 }
@@ -34,7 +34,6 @@ import com.tyron.common.ApplicationProvider;
 import com.tyron.common.util.AndroidUtilities;
 import com.tyron.completion.java.R;
 import com.tyron.completion.java.action.CommonJavaContextKeys;
-import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.drawable.CircleDrawable;
 import com.tyron.completion.java.rewrite.JavaRewrite;
@@ -218,8 +217,7 @@ public class OverrideInheritedMethodsAction extends AnAction {
     private List<MethodPtr> performInternal(JavaCompilerService compiler,
                                             SourceFileObject file,
                                             TreePath currentPath) {
-        CompilerContainer container = compiler.compile(Collections.singletonList(file));
-        return container.get(task -> {
+        return compiler.compile(Collections.singletonList(file), task -> {
             Trees trees = Trees.instance(task.task);
             Element classElement = trees.getElement(currentPath);
             Elements elements = task.task.getElements();
@@ -8,7 +8,6 @@ import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
 import com.tyron.actions.Presentation;
 import com.tyron.completion.java.compiler.CompileTask;
-import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.R;
 import com.tyron.completion.java.action.CommonJavaContextKeys;
@@ -30,7 +29,6 @@ import com.sun.source.util.TreePath;
 
 import java.io.File;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class AddThrowsAction extends ExceptionsQuickFix {
 
@@ -79,11 +77,10 @@ public class AddThrowsAction extends ExceptionsQuickFix {
         String exceptionName = DiagnosticUtil.extractExceptionName(diagnostic.getMessage(Locale.ENGLISH));
 
         ThreadUtil.runOnBackgroundThread(() -> {
-            CompilerContainer container = compiler.getCachedContainer();
-            AtomicReference<JavaRewrite> rewrite = new AtomicReference<>();
-            container.run(task ->
-                    rewrite.set(performInternal(task, exceptionName, diagnostic)));
-            JavaRewrite r = rewrite.get();
+            // the file has not changed since the diagnostic was reported, the compilation
+            // that reported it is reused
+            JavaRewrite r = compiler.compile(file.toPath(), task ->
+                    performInternal(task, exceptionName, diagnostic));
             if (r != null) {
                 RewriteUtil.performRewrite(editor, file, compiler, r);
             }
@@ -3,10 +3,15 @@ package com.tyron.completion.java.compiler;
 import android.util.Log;
 
 import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import com.sun.tools.javac.api.JavacTaskImpl;
 
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.java.parse.DefaultPartialReparser;
 
 import org.apache.commons.io.FileUtils;
 import javax.lang.model.util.Elements;
@@ -21,6 +26,7 @@ import com.sun.tools.javac.util.JCDiagnostic;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -28,8 +34,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -50,10 +59,23 @@ public class CompileBatch implements AutoCloseable {
     public final Elements elements;
     public final Types types;
     public final List<CompilationUnitTree> roots;
+    /**
+     * The diagnostics reported while compiling this batch only
+     */
+    public final List<Diagnostic<? extends JavaFileObject>> diagnostics =
+            Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * The contents of each compilation unit as they were when they were last attributed,
+     * used to find which part of a file has been edited
+     */
+    private final Map<URI, String> mContents = new HashMap<>();
 
-    public CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files) {
+    public CompileBatch(JavaCompilerService parent,
+                        CompilerContainer container,
+                        Collection<? extends JavaFileObject> files) {
         this.parent = parent;
-        this.borrow = batchTask(parent, files);
+        this.borrow = batchTask(parent, container, files);
         this.task = borrow.task;
         this.trees = Trees.instance(borrow.task);
         this.elements = borrow.task.getElements();
@@ -63,6 +85,8 @@ public class CompileBatch implements AutoCloseable {
         try {
             for (CompilationUnitTree t : borrow.task.parse()) {
                 roots.add(t);
+                mContents.put(t.getSourceFile().toUri(),
+                        t.getSourceFile().getCharContent(true).toString());
             }
 
             // The results of borrow.task.analyze() are unreliable when errors are present
@@ -85,7 +109,7 @@ public class CompileBatch implements AutoCloseable {
         JavaModule module = parent.getCurrentModule();
         // Check for "class not found errors" that refer to package private classes
         Set<Path> addFiles = new HashSet<>();
-        for (Diagnostic<? extends JavaFileObject> err : parent.getDiagnostics()) {
+        for (Diagnostic<? extends JavaFileObject> err : getDiagnostics()) {
             if (!err.getCode().equals("compiler.err.cant.resolve.location")) {
                 continue;
             }
@@ -149,6 +173,152 @@ public class CompileBatch implements AutoCloseable {
         return StringSearch.packageName(file.toFile());
     }
 
+    /**
+     * Updates this batch with the new contents of a file that it has already compiled.
+     * If the edit is confined to the body of a single method, only that body is parsed and
+     * attributed again, the symbols of every other compilation unit are kept as is.
+     *
+     * @param file the file with its new contents
+     * @return false if the edit could not be applied incrementally, this batch must then be
+     * compiled again
+     */
+    public boolean reattribute(JavaFileObject file) {
+        if (borrow.closed) {
+            return false;
+        }
+        URI uri = file.toUri();
+        String oldContents = mContents.get(uri);
+        CompilationUnitTree root = null;
+        for (CompilationUnitTree r : roots) {
+            if (r.getSourceFile().toUri().equals(uri)) {
+                root = r;
+                break;
+            }
+        }
+        if (oldContents == null || root == null) {
+            return false;
+        }
+
+        String newContents;
+        try {
+            newContents = file.getCharContent(true).toString();
+        } catch (IOException e) {
+            return false;
+        }
+        if (newContents.equals(oldContents)) {
+            return true;
+        }
+
+        // the edited region is what is left after removing the common prefix and suffix
+        int prefix = 0;
+        int max = Math.min(oldContents.length(), newContents.length());
+        while (prefix < max && oldContents.charAt(prefix) == newContents.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix &&
+               oldContents.charAt(oldContents.length() - 1 - suffix) ==
+               newContents.charAt(newContents.length() - 1 - suffix)) {
+            suffix++;
+        }
+        int oldEnd = oldContents.length() - suffix;
+
+        SourcePositions positions = trees.getSourcePositions();
+        MethodTree method = findEnclosingMethod(root, positions, prefix, oldEnd);
+        if (method == null) {
+            // a declaration has changed, the files that depend on it have to be attributed again
+            return false;
+        }
+        int bodyStart = (int) positions.getStartPosition(root, method.getBody());
+        int bodyEnd = (int) positions.getEndPosition(root, method.getBody());
+        int delta = newContents.length() - oldContents.length();
+        String newBody = newContents.substring(bodyStart, bodyEnd + delta);
+
+        // the diagnostics of the old body are reported again while attributing the new one,
+        // the ones after it are moved along with the code. The positions are read before the
+        // trees they may point to are moved by the reparse.
+        int lineDelta = countLines(newContents, prefix, newContents.length() - suffix) -
+                        countLines(oldContents, prefix, oldEnd);
+        int endLine = countLines(oldContents, 0, bodyEnd) + 1;
+        int columnDelta = column(newContents, bodyEnd + delta) - column(oldContents, bodyEnd);
+        synchronized (diagnostics) {
+            diagnostics.removeIf(d -> isInFile(d, uri) &&
+                                      d.getStartPosition() >= bodyStart &&
+                                      d.getStartPosition() <= bodyEnd);
+            diagnostics.replaceAll(d -> {
+                if (!isInFile(d, uri) || d.getStartPosition() <= bodyEnd) {
+                    return d;
+                }
+                return new MovedDiagnostic(d, delta, lineDelta,
+                        d.getLineNumber() == endLine ? columnDelta : 0);
+            });
+        }
+        // javac reports an error only once per position, forget the ones of the old body
+        com.sun.tools.javac.util.Log log =
+                com.sun.tools.javac.util.Log.instance(((JavacTaskImpl) task).getContext());
+        if (log instanceof ReusableCompiler.ReusableContext.ReusableLog) {
+            ((ReusableCompiler.ReusableContext.ReusableLog) log)
+                    .reparse(file, bodyStart, bodyEnd, delta);
+        }
+
+        boolean success = new DefaultPartialReparser()
+                .reparseMethod((JavacTaskImpl) task, root, method, newBody);
+        if (success) {
+            mContents.put(uri, newContents);
+        }
+        return success;
+    }
+
+    private static boolean isInFile(Diagnostic<? extends JavaFileObject> d, URI uri) {
+        return d.getSource() != null && uri.equals(d.getSource().toUri());
+    }
+
+    private static int countLines(String contents, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            if (contents.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static int column(String contents, int position) {
+        return position - (contents.lastIndexOf('\n', position - 1) + 1);
+    }
+
+    /**
+     * @return the outermost method whose body strictly contains the given range
+     */
+    private static MethodTree findEnclosingMethod(CompilationUnitTree root,
+                                                  SourcePositions positions,
+                                                  int start,
+                                                  int end) {
+        MethodTree[] found = new MethodTree[1];
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitMethod(MethodTree method, Void unused) {
+                if (found[0] != null || method.getBody() == null) {
+                    return null;
+                }
+                long bodyStart = positions.getStartPosition(root, method.getBody());
+                long bodyEnd = positions.getEndPosition(root, method.getBody());
+                if (bodyStart >= 0 && bodyStart < start && end < bodyEnd) {
+                    found[0] = method;
+                    return null;
+                }
+                return super.visitMethod(method, unused);
+            }
+        }.scan(root, null);
+        return found[0];
+    }
+
+    public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+        synchronized (diagnostics) {
+            return new ArrayList<>(diagnostics);
+        }
+    }
+
     private static final Path FILE_NOT_FOUND = Paths.get("");
 
     @Override
@@ -156,12 +326,15 @@ public class CompileBatch implements AutoCloseable {
         closed = true;
     }
 
-    private static ReusableCompiler.Borrow batchTask(JavaCompilerService parent, Collection<?
-            extends JavaFileObject> sources) {
+    private ReusableCompiler.Borrow batchTask(JavaCompilerService parent,
+                                             CompilerContainer container,
+                                             Collection<? extends JavaFileObject> sources) {
         parent.clearDiagnostics();
         List<String> options = options(parent.classPath, parent.addExports);
-        return parent.compiler.getTask(parent.mSourceFileManager, parent::addDiagnostic, options,
-                Collections.emptyList(), sources);
+        return container.mCompiler.getTask(container.mFileManager, diagnostic -> {
+            diagnostics.add(diagnostic);
+            parent.addDiagnostic(diagnostic);
+        }, options, Collections.emptyList(), sources);
     }
 
     /**
@@ -197,4 +370,84 @@ public class CompileBatch implements AutoCloseable {
     private boolean isValidFileRange(Diagnostic<? extends JavaFileObject> d) {
         return d.getSource().toUri().getScheme().equals("file") && d.getStartPosition() >= 0 && d.getEndPosition() >= 0;
     }
+
+    /**
+     * A diagnostic reported after a method body that has been attributed again, with the
+     * positions it has in the new contents of the file
+     */
+    private static final class MovedDiagnostic implements Diagnostic<JavaFileObject> {
+
+        private final Diagnostic<? extends JavaFileObject> delegate;
+        private final long position;
+        private final long startPosition;
+        private final long endPosition;
+        private final long lineNumber;
+        private final long columnNumber;
+
+        MovedDiagnostic(Diagnostic<? extends JavaFileObject> delegate,
+                        int delta,
+                        int lineDelta,
+                        int columnDelta) {
+            this.delegate = delegate;
+            this.position = move(delegate.getPosition(), delta);
+            this.startPosition = move(delegate.getStartPosition(), delta);
+            this.endPosition = move(delegate.getEndPosition(), delta);
+            this.lineNumber = move(delegate.getLineNumber(), lineDelta);
+            this.columnNumber = move(delegate.getColumnNumber(), columnDelta);
+        }
+
+        private static long move(long value, int delta) {
+            return value == NOPOS ? NOPOS : value + delta;
+        }
+
+        @Override
+        public Kind getKind() {
+            return delegate.getKind();
+        }
+
+        @Override
+        public JavaFileObject getSource() {
+            return delegate.getSource();
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public long getStartPosition() {
+            return startPosition;
+        }
+
+        @Override
+        public long getEndPosition() {
+            return endPosition;
+        }
+
+        @Override
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public long getColumnNumber() {
+            return columnNumber;
+        }
+
+        @Override
+        public String getCode() {
+            return delegate.getCode();
+        }
+
+        @Override
+        public String getMessage(Locale locale) {
+            return delegate.getMessage(locale);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
 }
@@ -32,7 +32,7 @@ public class CompileTask implements AutoCloseable {
         this.trees = JavacTrees.instance(task);
 
         this.roots = batch.roots;
-        this.diagnostics = batch.parent.getDiagnostics();
+        this.diagnostics = batch.getDiagnostics();
     }
 
     public Trees getTrees() {
@@ -68,13 +68,14 @@ public class CompileTask implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Marks the compilation as no longer being read. The javac task is kept alive so that the
+     * next edit can be attributed incrementally, it is released when the files are compiled
+     * again.
+     */
     @Override
     public void close() {
         mCompileBatch.close();
-        ReusableCompiler.Borrow borrow = mCompileBatch.borrow;
-        if (borrow != null && !borrow.closed) {
-            borrow.close();
-        }
     }
 
     public boolean isClosed() {
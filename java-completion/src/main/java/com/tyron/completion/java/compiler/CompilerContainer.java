@@ -15,9 +15,13 @@ import com.tyron.completion.progress.ProgressManager;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
 
+import javax.tools.JavaFileObject;
+
 import kotlin.jvm.functions.Function1;
 
 /**
@@ -32,6 +36,11 @@ import kotlin.jvm.functions.Function1;
  *
  * Only one thread is allowed to write at a time, during a write operation all threads that
  * attempts to read will be blocked until the thread writing has finished.
+ *
+ * Each container owns its own {@link ReusableCompiler} and the files it has last compiled,
+ * {@link JavaCompilerService} keeps a small pool of them so that different files can be
+ * compiled and read at the same time. A container is reserved by a compilation until its
+ * result has been read, see {@link JavaCompilerService#compile(java.util.Collection, Function1)}.
  */
 public class CompilerContainer {
 
@@ -39,12 +48,58 @@ public class CompilerContainer {
 
     private volatile boolean mIsWriting;
 
-    private static final Semaphore semaphore = new Semaphore(1);
+    private final Semaphore semaphore = new Semaphore(1);
 
     private volatile CompileTask mCompileTask;
 
+    // the state of the last compilation done with this container, guarded by initialize()
+    volatile ReusableCompiler mCompiler = new ReusableCompiler();
+    volatile CompileBatch mCachedCompile;
+    final Map<JavaFileObject, Long> mCachedModified = new ConcurrentHashMap<>();
+    SourceFileManager mFileManager;
+
+    private volatile boolean mReserved;
+    private volatile long mLastUsed;
+    private Runnable mOnRelease;
+
     public CompilerContainer() {
-        System.out.println("New instance created - CompilerContainer");
+
+    }
+
+    /**
+     * @return whether the compilation of this container is going to be read, it must not be
+     * replaced until then
+     */
+    boolean isReserved() {
+        return mReserved;
+    }
+
+    void reserve() {
+        mReserved = true;
+        mLastUsed = System.nanoTime();
+    }
+
+    /**
+     * Called once the compilation of this container has been read, the container may then
+     * compile other files
+     */
+    void release() {
+        if (!mReserved) {
+            return;
+        }
+        mReserved = false;
+        mLastUsed = System.nanoTime();
+        if (mOnRelease != null) {
+            mOnRelease.run();
+        }
+    }
+
+    long getLastUsed() {
+        return mLastUsed;
+    }
+
+    void setOnReleaseListener(Runnable onRelease) {
+        mOnRelease = onRelease;
     }
 
     private void cancel() {
@@ -73,46 +128,38 @@ public class CompilerContainer {
      * are synchronized
      */
     public void run(Consumer<CompileTask> consumer) {
-        cancel();
-        semaphore.acquireUninterruptibly();
-        try {
-            consumer.accept(mCompileTask);
-        } finally {
-            mCompileTask.close();
-            semaphore.release();
-        }
+        get(task -> {
+            consumer.accept(task);
+            return null;
+        });
     }
 
+    /**
+     * Reads the compilation of this container, the reservation taken by the compilation is
+     * released afterwards even if reading it fails.
+     */
     public <T> T get(Function1<CompileTask, T> fun) {
         cancel();
-        try {
-            semaphore.acquire();
-        } catch (InterruptedException e) {
-            throw new ProcessCanceledException();
-        }
-
-        try {
-            return fun.invoke(mCompileTask);
-        } finally {
-            mCompileTask.close();
-            semaphore.release();
-        }
+        return getWithLock(fun);
     }
 
     public <T> T getWithLock(Function1<CompileTask, T> fun) {
         try {
-            semaphore.acquire();
-        } catch (InterruptedException e) {
-            throw new ProcessCanceledException();
-        }
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+                throw new ProcessCanceledException();
+            }
 
-        try {
-            return fun.invoke(mCompileTask);
+            try {
+                return fun.invoke(mCompileTask);
+            } finally {
+                mCompileTask.close();
+                semaphore.release();
+            }
         } finally {
-            mCompileTask.close();
-            semaphore.release();
+            release();
         }
-
     }
 
     public synchronized boolean isWriting() {
@@ -4,14 +4,17 @@ import android.annotation.SuppressLint;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.util.Context;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.FileManager;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.listener.FileListener;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.Cache;
 import com.tyron.common.util.StringSearch;
@@ -24,6 +27,8 @@ import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 
+import kotlin.jvm.functions.Function1;
+
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.tools.javac.file.PathFileObject;
 import com.tyron.completion.java.compiler.services.CancelAbort;
@@ -38,14 +43,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -56,18 +62,52 @@ public class JavaCompilerService implements CompilerProvider {
     private DiagnosticListener<? super JavaFileObject> mDiagnosticListener;
     public final SourceFileManager mSourceFileManager;
 
-    private final List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+    private final List<Diagnostic<? extends JavaFileObject>> diagnostics =
+            Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * The maximum number of javac contexts kept at the same time, each one can compile a
+     * different set of files while the others are being read.
+     */
+    private static final int MAX_CONTAINERS = 3;
+
+    /**
+     * The heap that a javac context with a module's class path may take, the pool does not
+     * keep more contexts than fit in the heap available to the app.
+     */
+    private static final long MEMORY_PER_CONTAINER = 192L * 1024 * 1024;
+
+    /**
+     * A context that has not compiled anything for this long is dropped to free its heap,
+     * the most recently used one is kept.
+     */
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * How long a compilation waits for a container to be released before it is canceled
+     */
+    private static final long RESERVE_TIMEOUT_MILLIS = 5_000;
+
+    /**
+     * The editor only reports the changes made through it, the files are still checked for
+     * changes on disk like regenerated sources or a checkout once this many milliseconds passed.
+     */
+    private static final long MODIFICATION_CHECK_INTERVAL_MILLIS = 1_000;
 
     private final Project mProject;
     private JavaModule mCurrentModule;
     public final Set<File> classPath, docPath;
     public final Set<String> addExports;
-    public ReusableCompiler compiler = new ReusableCompiler();
     private final Docs docs;
 
-    private final CompilerContainer mContainer = new CompilerContainer();
-    private CompileBatch cachedCompile;
-    private final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
+    private final int mMaxContainers = getMaxContainers(Runtime.getRuntime().maxMemory());
+    private final List<CompilerContainer> mContainers = new ArrayList<>();
+    private volatile CompilerContainer mLastContainer;
+    private final Map<File, ReferenceIndex> mReferenceIndexes = new ConcurrentHashMap<>();
+
+    // saving or changing a file through the file manager drops its cached parse results
+    private final FileListener mFileListener = (file, contents) -> invalidateCaches(file.toPath());
+    private final Set<FileManager> mListenedFileManagers = ConcurrentHashMap.newKeySet();
 
     public final ReentrantLock mLock = new ReentrantLock();
 
@@ -90,16 +130,50 @@ public class JavaCompilerService implements CompilerProvider {
     public void setCurrentModule(@NonNull JavaModule module) {
         mSourceFileManager.setCurrentModule(module);
         mCurrentModule = module;
+        synchronized (mContainers) {
+            for (CompilerContainer container : mContainers) {
+                container.mFileManager.setCurrentModule(module);
+            }
+        }
+
+        FileManager fileManager = module.getFileManager();
+        if (fileManager != null && mListenedFileManagers.add(fileManager)) {
+            fileManager.addSnapshotListener(mFileListener);
+        }
+    }
+
+    /**
+     * Stops listening for file changes, called when this compiler is no longer going to be used
+     */
+    public void removeFileListeners() {
+        for (FileManager fileManager : mListenedFileManagers) {
+            fileManager.removeSnapshotListener(mFileListener);
+        }
+        mListenedFileManagers.clear();
+    }
+
+    /**
+     * Removes the cached parse results of the given file
+     */
+    public void invalidateCaches(Path file) {
+        parseCache.invalidate(file);
+        cacheContainsWord.invalidate(file);
+        cacheContainsType.invalidate(file);
     }
 
     /**
      * Checks whether this list has been compiled before
      *
+     * @param container the container that may have compiled the sources
      * @param sources list of java files to compile
      * @return true if there's a valid cache for it, false otherwise
      */
-    private boolean needsCompile(Collection<? extends JavaFileObject> sources) {
-        if (cachedModified.size() != sources.size()) {
+    private boolean needsCompile(CompilerContainer container,
+                                 Collection<? extends JavaFileObject> sources) {
+        Map<JavaFileObject, Long> cachedModified = container.mCachedModified;
+        CompileBatch cachedCompile = container.mCachedCompile;
+        if (cachedCompile == null || cachedCompile.borrow.closed ||
+            cachedModified.size() != sources.size()) {
             return true;
         }
         for (JavaFileObject f : sources) {
@@ -117,18 +191,73 @@ public class JavaCompilerService implements CompilerProvider {
         return false;
     }
 
-    private synchronized void loadCompile(Collection<? extends JavaFileObject> sources) {
+    /**
+     * Tries to bring the last compilation of the container up to date without compiling
+     * every file again, see {@link CompileBatch#reattribute(JavaFileObject)}
+     *
+     * @return true if the compilation is now up to date with the given sources
+     */
+    private boolean reattribute(CompilerContainer container,
+                                Collection<? extends JavaFileObject> sources) {
+        CompileBatch cachedCompile = container.mCachedCompile;
+        Map<JavaFileObject, Long> cachedModified = container.mCachedModified;
+        if (cachedCompile == null || cachedCompile.borrow.closed ||
+            cachedModified.size() != sources.size()) {
+            return false;
+        }
+
+        List<JavaFileObject> changed = new ArrayList<>();
+        for (JavaFileObject f : sources) {
+            Long cached = cachedModified.get(f);
+            if (cached == null) {
+                return false;
+            }
+            if (cached != f.getLastModified()) {
+                changed.add(f);
+            }
+        }
+
+        for (JavaFileObject f : changed) {
+            if (f instanceof SourceFileObject) {
+                invalidateCaches(((SourceFileObject) f).mFile);
+            }
+            if (!cachedCompile.reattribute(f)) {
+                return false;
+            }
+            cachedModified.put(f, f.getLastModified());
+        }
+        return true;
+    }
+
+    private void loadCompile(CompilerContainer container,
+                             Collection<? extends JavaFileObject> sources) {
+        CompileBatch cachedCompile = container.mCachedCompile;
+        Map<JavaFileObject, Long> cachedModified = container.mCachedModified;
         if (cachedCompile != null) {
             if (!cachedCompile.closed) {
-                throw new RuntimeException("Compiler is still in-use!");
+                // the thread that reserved it moved on to another compilation without reading it
+                cachedCompile.close();
             }
             cachedCompile.borrow.close();
         }
-        cachedCompile = doCompile(sources);
+        // the caches are not checking the modification time of the files anymore, the
+        // time stamps read by needsCompile() tell which of them have changed
+        for (JavaFileObject f : sources) {
+            Long cached = cachedModified.get(f);
+            if (cached != null && cached != f.getLastModified() &&
+                f instanceof SourceFileObject) {
+                invalidateCaches(((SourceFileObject) f).mFile);
+            }
+        }
+        cachedCompile = doCompile(container, sources);
+        container.mCachedCompile = cachedCompile;
         cachedModified.clear();
         for (JavaFileObject f : sources) {
             cachedModified.put(f, f.getLastModified());
         }
+        if (mCurrentModule != null) {
+            getReferenceIndex(mCurrentModule).update(cachedCompile.roots);
+        }
     }
 
     public void invalidate(Path source) {
@@ -136,16 +265,26 @@ public class JavaCompilerService implements CompilerProvider {
     }
 
     public void invalidate(Collection<? extends JavaFileObject> sources) {
+        List<CompilerContainer> containers;
+        synchronized (mContainers) {
+            containers = new ArrayList<>(mContainers);
+        }
         for (JavaFileObject source : sources) {
-            cachedModified.remove(source);
+            for (CompilerContainer container : containers) {
+                container.mCachedModified.remove(source);
+            }
+            if (source instanceof SourceFileObject) {
+                invalidateCaches(((SourceFileObject) source).mFile);
+            }
         }
     }
 
-    private CompileBatch doCompile(Collection<? extends JavaFileObject> sources) {
+    private CompileBatch doCompile(CompilerContainer container,
+                                   Collection<? extends JavaFileObject> sources) {
         if (sources.isEmpty()) {
             throw new RuntimeException("empty sources");
         }
-        CompileBatch firstAttempt = new CompileBatch(this, sources);
+        CompileBatch firstAttempt = new CompileBatch(this, container, sources);
         Set<Path> addFiles = firstAttempt.needsAdditionalSources();
         if (addFiles.isEmpty()) {
             return firstAttempt;
@@ -159,7 +298,7 @@ public class JavaCompilerService implements CompilerProvider {
         for (Path add : addFiles) {
             moreSources.add(new SourceFileObject(add, mCurrentModule));
         }
-        return new CompileBatch(this, moreSources);
+        return new CompileBatch(this, container, moreSources);
     }
 
     /**
@@ -169,20 +308,20 @@ public class JavaCompilerService implements CompilerProvider {
      * @return CompileBatch for this compilation
      */
     private CompilerContainer compileBatch(Collection<? extends JavaFileObject> sources) {
+        CompilerContainer container = reserveContainer(sources);
         try {
-            mContainer.initialize(() -> {
-                if (needsCompile(sources)) {
-                    loadCompile(sources);
-                }
-                if (cachedCompile.task == null || ((JavacTaskImpl) cachedCompile.task).getContext() == null) {
-                    System.out.println();
+            container.initialize(() -> {
+                if (needsCompile(container, sources) && !reattribute(container, sources)) {
+                    loadCompile(container, sources);
                 }
-                CompileTask task = new CompileTask(cachedCompile);
-                mContainer.setCompileTask(task);
+                CompileTask task = new CompileTask(container.mCachedCompile);
+                container.setCompileTask(task);
             });
-            return mContainer;
+            return container;
         } catch (Throwable t) {
+            container.release();
             if (t instanceof CancelAbort || t.getCause() instanceof CancelAbort) {
+                CompileBatch cachedCompile = container.mCachedCompile;
                 if (cachedCompile != null) {
                     cachedCompile.borrow.close();
                 }
@@ -192,6 +331,125 @@ public class JavaCompilerService implements CompilerProvider {
         }
     }
 
+    private CompilerContainer newContainer() {
+        CompilerContainer container = new CompilerContainer();
+        // the first container shares the file manager that is exposed to other classes
+        if (mContainers.isEmpty()) {
+            container.mFileManager = mSourceFileManager;
+        } else {
+            container.mFileManager = new SourceFileManager(mProject);
+            if (mCurrentModule != null) {
+                container.mFileManager.setCurrentModule(mCurrentModule);
+            }
+        }
+        container.setOnReleaseListener(() -> {
+            synchronized (mContainers) {
+                mContainers.notifyAll();
+            }
+        });
+        return container;
+    }
+
+    /**
+     * Finds a container whose compilation is not going to be read, preferring the one that
+     * has already compiled the given sources, then the least recently used one. A new
+     * container is created if all of them are in use and the pool is not full yet. Otherwise
+     * this waits for a container to be released, the request is canceled if none is released
+     * in time.
+     */
+    private CompilerContainer reserveContainer(Collection<? extends JavaFileObject> sources) {
+        List<CompilerContainer> idle = new ArrayList<>();
+        synchronized (mContainers) {
+            removeIdleContainers(idle);
+        }
+        for (CompilerContainer container : idle) {
+            closeContainer(container);
+        }
+
+        synchronized (mContainers) {
+            long deadline = System.currentTimeMillis() + RESERVE_TIMEOUT_MILLIS;
+            while (true) {
+                CompilerContainer available = null;
+                for (CompilerContainer container : mContainers) {
+                    if (container.isReserved()) {
+                        continue;
+                    }
+                    if (!needsCompile(container, sources)) {
+                        available = container;
+                        break;
+                    }
+                    if (available == null || container.getLastUsed() < available.getLastUsed()) {
+                        available = container;
+                    }
+                }
+
+                if (available == null && mContainers.size() < mMaxContainers) {
+                    available = newContainer();
+                    mContainers.add(available);
+                }
+
+                if (available != null) {
+                    available.reserve();
+                    mLastContainer = available;
+                    return available;
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    // the containers may still be read, taking one would close a compilation
+                    // under its reader
+                    Log.w("JavaCompilerService", "All compilers are still in use");
+                    throw new ProcessCanceledException();
+                }
+                try {
+                    mContainers.wait(remaining);
+                } catch (InterruptedException e) {
+                    throw new ProcessCanceledException();
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the containers that have not been used for {@link #IDLE_TIMEOUT_NANOS} out of the
+     * pool, except for the most recently used one. Nothing reads them anymore, they are closed
+     * by the caller once it no longer holds the lock of the pool.
+     */
+    private void removeIdleContainers(List<CompilerContainer> removed) {
+        long now = System.nanoTime();
+        for (CompilerContainer container : mContainers) {
+            if (container != mLastContainer && !container.isReserved() &&
+                now - container.getLastUsed() > IDLE_TIMEOUT_NANOS) {
+                removed.add(container);
+            }
+        }
+        mContainers.removeAll(removed);
+    }
+
+    private static void closeContainer(CompilerContainer container) {
+        container.initialize(() -> {
+            CompileBatch cachedCompile = container.mCachedCompile;
+            if (cachedCompile != null) {
+                cachedCompile.close();
+                final ReusableCompiler.Borrow borrow = cachedCompile.borrow;
+                if (borrow != null) {
+                    borrow.close();
+                }
+            }
+            container.mCachedCompile = null;
+            container.mCachedModified.clear();
+            container.mCompiler = new ReusableCompiler();
+        });
+    }
+
+    /**
+     * @return how many javac contexts fit in the given maximum heap size, at least one and at
+     * most {@link #MAX_CONTAINERS}
+     */
+    static int getMaxContainers(long maxMemory) {
+        return (int) Math.max(1, Math.min(MAX_CONTAINERS, maxMemory / MEMORY_PER_CONTAINER));
+    }
+
     public void clearDiagnostics() {
         diagnostics.clear();
         if (mDiagnosticListener != null) {
@@ -330,25 +588,31 @@ public class JavaCompilerService implements CompilerProvider {
         return "";
     }
 
-    private static final Cache<String, Boolean> cacheContainsWord = new Cache<>();
+    private static final Cache<String, Boolean> cacheContainsWord =
+            Cache.<String, Boolean>builder()
+                    .setMaximumSize(10_000)
+                    .setInvalidateOnFileEvents(true)
+                    .setModificationCheckInterval(MODIFICATION_CHECK_INTERVAL_MILLIS)
+                    .build();
 
     private boolean containsWord(Path file, String word) {
-        if (cacheContainsWord.needs(file, word)) {
-            cacheContainsWord.load(file, word, StringSearch.containsWord(file, word));
-        }
-        return cacheContainsWord.get(file, word);
+        return cacheContainsWord.get(file, word, () -> StringSearch.containsWord(file, word));
     }
 
-    private static final Cache<Void, List<String>> cacheContainsType = new Cache<>();
+    private static final Cache<Void, List<String>> cacheContainsType =
+            Cache.<Void, List<String>>builder()
+                    .setMaximumSize(2_000)
+                    .setInvalidateOnFileEvents(true)
+                    .setModificationCheckInterval(MODIFICATION_CHECK_INTERVAL_MILLIS)
+                    .build();
 
     private boolean containsType(Path file, String className) {
-        if (cacheContainsType.needs(file, null)) {
+        return cacheContainsType.get(file, null, () -> {
             CompilationUnitTree root = parse(file).root;
             List<String> types = new ArrayList<>();
             new FindTypeDeclarations().scan(root, types);
-            cacheContainsType.load(file, null, types);
-        }
-        return cacheContainsType.get(file, null).contains(className);
+            return types;
+        }).contains(className);
     }
 
 
@@ -421,24 +685,74 @@ public class JavaCompilerService implements CompilerProvider {
         return Optional.ofNullable(source);
     }
 
+    /**
+     * Finds the files that may refer to the given class using the reference index of each
+     * module, only the files that have changed since the last query are parsed.
+     *
+     * @param className fully qualified name of the class
+     * @return the candidate files, callers should compile them to confirm the references
+     */
     @Override
     public Path[] findTypeReferences(String className) {
-        return null;
+        List<Path> references = new ArrayList<>();
+        for (ReferenceIndex index : updateReferenceIndexes()) {
+            Collections.addAll(references, index.findTypeReferences(className));
+        }
+        return references.toArray(new Path[0]);
     }
 
+    /**
+     * Finds the files that may refer to a member of the given class
+     *
+     * @param className fully qualified name of the class that declares the member
+     * @param memberName simple name of the field or method
+     * @return the candidate files, callers should compile them to confirm the references
+     */
     @Override
     public Path[] findMemberReferences(String className, String memberName) {
-        return null;
+        List<ReferenceIndex> indexes = updateReferenceIndexes();
+        Set<String> owners = ReferenceIndex.findOwners(indexes, className);
+        List<Path> references = new ArrayList<>();
+        for (ReferenceIndex index : indexes) {
+            Collections.addAll(references, index.findMemberReferences(owners, memberName));
+        }
+        return references.toArray(new Path[0]);
     }
 
-    private final Cache<String, ParseTask> parseCache = new Cache<>();
+    private List<ReferenceIndex> updateReferenceIndexes() {
+        List<ReferenceIndex> indexes = new ArrayList<>();
+        for (Module module : mProject.getDependencies(mCurrentModule)) {
+            if (module instanceof JavaModule) {
+                JavaModule javaModule = (JavaModule) module;
+                ReferenceIndex index = getReferenceIndex(javaModule);
+                index.update(javaModule.getJavaFiles().values(),
+                        (path, contents) -> parse(path, contents).root);
+                index.save();
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
+
+    private ReferenceIndex getReferenceIndex(JavaModule module) {
+        return mReferenceIndexes.computeIfAbsent(module.getRootFile(), root -> {
+            File indexFile = new File(module.getBuildDirectory(), "intermediate/references.idx");
+            return new ReferenceIndex(indexFile);
+        });
+    }
+
+    // each entry holds on to a javac task, keep only the recently used ones
+    private final Cache<String, ParseTask> parseCache = Cache.<String, ParseTask>builder()
+            .setMaximumSize(100)
+            .setInvalidateOnFileEvents(true)
+            .setModificationCheckInterval(MODIFICATION_CHECK_INTERVAL_MILLIS)
+            .build();
 
     private ParseTask cachedParse(Path file) {
-        if (parseCache.needs(file, file.toFile().getName())) {
+        return parseCache.get(file, file.toFile().getName(), () -> {
             Parser parser = Parser.parseFile(mProject, file);
-            parseCache.load(file, file.toFile().getName(), new ParseTask(parser.task, parser.root));
-        }
-        return parseCache.get(file, file.toFile().getName());
+            return new ParseTask(parser.task, parser.root);
+        });
     }
 
     private ParseTask cachedParse(JavaFileObject file) {
@@ -448,14 +762,10 @@ public class JavaCompilerService implements CompilerProvider {
                     file.toUri().toString().substring(4, file.toUri().toString().lastIndexOf("!"));
 
             Path parsedPath = new File(URI.create(path)).toPath();
-            if (parseCache.needs(parsedPath, file.getName())) {
+            return parseCache.get(parsedPath, file.getName(), () -> {
                 Parser parser = Parser.parseJavaFileObject(mProject, file);
-                parseCache
-                        .load(parsedPath, file.getName(), new ParseTask(parser.task, parser.root));
-            } else {
-                Log.d("JavaCompilerService", "Using cached parse for " + file.getName());
-            }
-            return parseCache.get(parsedPath, file.getName());
+                return new ParseTask(parser.task, parser.root);
+            });
         } else if (file instanceof SourceFileObject) {
             return cachedParse(((SourceFileObject) file).mFile);
         }
@@ -517,44 +827,105 @@ public class JavaCompilerService implements CompilerProvider {
      * @return a CompileTask for this compilation
      */
     @Override
-    public synchronized CompilerContainer compile(Collection<? extends JavaFileObject> sources) {
+    public CompilerContainer compile(Collection<? extends JavaFileObject> sources) {
         return compileBatch(sources);
     }
 
-    public synchronized void close() {
-        if (cachedCompile != null && !cachedCompile.closed) {
-            cachedCompile.close();
+    /**
+     * Compiles the given file and reads the compilation with the given function, see
+     * {@link #compile(Collection, Function1)}
+     */
+    @Override
+    public <T> T compile(Path file, Function1<CompileTask, T> fun) {
+        return compile(Collections.singletonList(new SourceFileObject(file, mCurrentModule)), fun);
+    }
+
+    /**
+     * Compiles the given sources and reads the compilation with the given function. The
+     * container that compiled them is released once the function returns or throws, so
+     * other compilations can use it.
+     *
+     * <p>If the compilation is canceled while it is read, the javac context may be left in
+     * an inconsistent state. It is closed so that the next compilation starts from a new one.
+     */
+    @Override
+    public <T> T compile(Collection<? extends JavaFileObject> sources,
+                         Function1<CompileTask, T> fun) {
+        CompilerContainer container = compileBatch(sources);
+        try {
+            return container.get(fun);
+        } catch (Throwable t) {
+            if (t instanceof CancelAbort || t.getCause() instanceof CancelAbort ||
+                t instanceof ProcessCanceledException) {
+                CompileBatch cachedCompile = container.mCachedCompile;
+                if (cachedCompile != null) {
+                    cachedCompile.close();
+                    cachedCompile.borrow.close();
+                }
+            }
+            throw t;
+        } finally {
+            container.release();
         }
+    }
+
+    public void close() {
         if (mLock.isHeldByCurrentThread() && mLock.isLocked()) {
             mLock.unlock();
         }
     }
 
+    /**
+     * @return whether every container is being used by another thread and the pool is full,
+     * compiling now would have to wait for one of them
+     */
+    public boolean isBusy() {
+        synchronized (mContainers) {
+            if (mContainers.size() < mMaxContainers) {
+                return false;
+            }
+            for (CompilerContainer container : mContainers) {
+                if (!container.isReserved() && !container.isWriting()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the javac context of the last compilation, may be used to look up names
+     * without compiling
+     */
+    @Nullable
+    public Context getCurrentContext() {
+        CompilerContainer container = mLastContainer;
+        if (container == null) {
+            return null;
+        }
+        return container.mCompiler.getCurrentContext();
+    }
+
     public JavaModule getCurrentModule() {
         return mCurrentModule;
     }
 
     public void destroy() {
-        mContainer.initialize(() -> {
-            close();
-            if (cachedCompile != null) {
-                final ReusableCompiler.Borrow borrow = cachedCompile.borrow;
-                if (borrow != null) {
-                    borrow.close();
-                }
-            }
-            cachedCompile = null;
-            cachedModified.clear();
-            compiler = new ReusableCompiler();
-        });
+        close();
+        List<CompilerContainer> containers;
+        synchronized (mContainers) {
+            containers = new ArrayList<>(mContainers);
+        }
+        for (CompilerContainer container : containers) {
+            closeContainer(container);
+        }
     }
 
+    /**
+     * @return the last compilation of any thread
+     */
     public CompileBatch getCompileBatch() {
-        return cachedCompile;
-    }
-
-    @NonNull
-    public CompilerContainer getCachedContainer() {
-        return mContainer;
+        CompilerContainer container = mLastContainer;
+        return container == null ? null : container.mCachedCompile;
     }
 }
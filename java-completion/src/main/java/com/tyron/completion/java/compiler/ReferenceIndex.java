@@ -0,0 +1,478 @@
+package com.tyron.completion.java.compiler;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.hash.Hashing;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ImportTree;
+import com.tyron.completion.java.FindReferencedMembers;
+import com.tyron.completion.java.FindReferencedNames;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * An on-disk index of the names referenced by each source file of a module, used to answer
+ * find usages queries without compiling the whole module.
+ *
+ * Each entry is keyed by the hash of the file contents so only files that have actually
+ * changed are parsed again. The results are candidates, the caller is expected to compile
+ * the returned files to confirm that they really refer to the given symbol.
+ */
+public class ReferenceIndex {
+
+    private static final String TAG = ReferenceIndex.class.getSimpleName();
+
+    private static final int VERSION = 2;
+
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+    private static class Entry {
+        final long modified;
+        final long length;
+        final String hash;
+        final String packageName;
+        final Set<String> imports;
+        final Set<String> names;
+        /**
+         * The referenced members as {@code Owner#member}, see {@link FindReferencedMembers}
+         */
+        final Set<String> members;
+        /**
+         * The simple names of the supertypes of the classes declared in the file
+         */
+        final Map<String, Set<String>> supertypes;
+
+        Entry(long modified, long length, String hash, String packageName,
+              Set<String> imports, Set<String> names, Set<String> members,
+              Map<String, Set<String>> supertypes) {
+            this.modified = modified;
+            this.length = length;
+            this.hash = hash;
+            this.packageName = packageName;
+            this.imports = imports;
+            this.names = names;
+            this.members = members;
+            this.supertypes = supertypes;
+        }
+
+        Entry withStamp(long modified, long length) {
+            return new Entry(modified, length, hash, packageName, imports, names, members,
+                    supertypes);
+        }
+    }
+
+    private final File mIndexFile;
+    private final Map<Path, Entry> mEntries = new ConcurrentHashMap<>();
+
+    private boolean mLoaded;
+    private volatile boolean mDirty;
+
+    public ReferenceIndex(@NonNull File indexFile) {
+        mIndexFile = indexFile;
+    }
+
+    /**
+     * Brings the index up to date with the given source files. Files that are no longer
+     * present are removed and files whose contents have changed are parsed again.
+     *
+     * @param files the source files of the module
+     * @param parser parses the given file with the given contents, used for the files that
+     *               need to be re-indexed
+     */
+    public synchronized void update(Collection<File> files,
+                                    BiFunction<Path, String, CompilationUnitTree> parser) {
+        load();
+
+        Set<Path> paths = new HashSet<>();
+        for (File file : files) {
+            Path path = file.toPath();
+            paths.add(path);
+
+            Entry entry = mEntries.get(path);
+            if (entry != null && entry.modified == file.lastModified() &&
+                entry.length == file.length()) {
+                continue;
+            }
+
+            String contents;
+            try {
+                contents = FileUtils.readFileToString(file, Charset.defaultCharset());
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to read " + file, e);
+                mEntries.remove(path);
+                mDirty = true;
+                continue;
+            }
+
+            String hash = hash(contents);
+            if (entry != null && entry.hash.equals(hash)) {
+                mEntries.put(path, entry.withStamp(file.lastModified(), file.length()));
+            } else {
+                CompilationUnitTree root = parser.apply(path, contents);
+                mEntries.put(path, createEntry(root, hash, file.lastModified(), file.length()));
+            }
+            mDirty = true;
+        }
+
+        Iterator<Path> iterator = mEntries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!paths.contains(iterator.next())) {
+                iterator.remove();
+                mDirty = true;
+            }
+        }
+    }
+
+    /**
+     * Re-index the compilation units of a {@link CompileBatch}. Since the trees have already
+     * been parsed, this only costs a hash of each file's contents.
+     */
+    public synchronized void update(Collection<CompilationUnitTree> roots) {
+        for (CompilationUnitTree root : roots) {
+            JavaFileObject source = root.getSourceFile();
+            if (source == null || !"file".equals(source.toUri().getScheme())) {
+                continue;
+            }
+            Path path = Paths.get(source.toUri());
+            if (!mEntries.containsKey(path)) {
+                // only files that belong to this module are tracked
+                continue;
+            }
+
+            CharSequence contents;
+            try {
+                contents = source.getCharContent(true);
+            } catch (IOException e) {
+                continue;
+            }
+            if (contents == null) {
+                continue;
+            }
+
+            String hash = hash(contents);
+            Entry entry = mEntries.get(path);
+            if (entry != null && entry.hash.equals(hash)) {
+                continue;
+            }
+            File file = path.toFile();
+            mEntries.put(path, createEntry(root, hash, file.lastModified(), file.length()));
+            mDirty = true;
+        }
+    }
+
+    /**
+     * @param className the fully qualified name of the class, nested classes are given by their
+     *                  binary name, e.g. {@code a.Outer$Inner}
+     * @return the files that may refer to the given class
+     */
+    public Path[] findTypeReferences(String className) {
+        // imports and qualified references name nested classes by their canonical name
+        String canonicalName = className.replace('$', '.');
+        int lastDot = canonicalName.lastIndexOf('.');
+        String enclosing = lastDot == -1 ? "" : canonicalName.substring(0, lastDot);
+        String simpleName = canonicalName.substring(lastDot + 1);
+        List<String> segments = enclosing.isEmpty()
+                ? Collections.<String>emptyList()
+                : Arrays.asList(enclosing.split("\\."));
+
+        int firstDollar = className.indexOf('$');
+        String topLevelName = firstDollar == -1 ? className : className.substring(0, firstDollar);
+        int packageEnd = topLevelName.lastIndexOf('.');
+        String packageName = packageEnd == -1 ? "" : topLevelName.substring(0, packageEnd);
+        // a nested class may be referenced through any of the classes that enclose it
+        List<String> enclosingClasses = new ArrayList<>();
+        for (int i = className.indexOf('$'); i != -1; i = className.indexOf('$', i + 1)) {
+            enclosingClasses.add(canonicalName.substring(0, i));
+        }
+
+        List<Path> candidates = new ArrayList<>();
+        for (Map.Entry<Path, Entry> e : mEntries.entrySet()) {
+            Entry entry = e.getValue();
+            if (!entry.names.contains(simpleName)) {
+                continue;
+            }
+            if (entry.packageName.equals(packageName) ||
+                entry.imports.contains(canonicalName) ||
+                entry.imports.contains(enclosing + ".*") ||
+                entry.names.containsAll(segments) ||
+                importsAny(entry, enclosingClasses, packageName)) {
+                candidates.add(e.getKey());
+            }
+        }
+        return candidates.toArray(new Path[0]);
+    }
+
+    private static boolean importsAny(Entry entry, List<String> enclosingClasses,
+                                      String packageName) {
+        for (String enclosingClass : enclosingClasses) {
+            if (entry.imports.contains(enclosingClass) ||
+                entry.imports.contains(enclosingClass + ".*")) {
+                return true;
+            }
+        }
+        return !enclosingClasses.isEmpty() && entry.imports.contains(packageName + ".*");
+    }
+
+    /**
+     * Finds the files that access the given member through one of the given owners, or through
+     * an expression whose type is not written in the file.
+     *
+     * @param owners the simple names of the classes the member may be accessed through, see
+     *               {@link #findOwners(Collection, String)}. If null, only the member name is
+     *               considered.
+     * @param memberName the simple name of the field or method
+     * @return the files that may refer to the given member
+     */
+    public Path[] findMemberReferences(@Nullable Set<String> owners, String memberName) {
+        String unknownOwner = FindReferencedMembers.key(FindReferencedMembers.UNKNOWN_OWNER,
+                memberName);
+        List<Path> candidates = new ArrayList<>();
+        for (Map.Entry<Path, Entry> e : mEntries.entrySet()) {
+            Entry entry = e.getValue();
+            if (!entry.names.contains(memberName)) {
+                continue;
+            }
+            if (owners == null || entry.members.contains(unknownOwner) ||
+                containsMember(entry, owners, memberName)) {
+                candidates.add(e.getKey());
+            }
+        }
+        return candidates.toArray(new Path[0]);
+    }
+
+    private static boolean containsMember(Entry entry, Set<String> owners, String memberName) {
+        for (String owner : owners) {
+            if (entry.members.contains(FindReferencedMembers.key(owner, memberName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A member of a class may be accessed through any of its subclasses. Since classes of
+     * libraries cannot extend classes of the project, only the subclasses that are declared in
+     * the indexes need to be considered.
+     *
+     * @param className the fully qualified name of the class that declares a member
+     * @return the simple names of the class and of the classes in the indexes that extend or
+     * implement it, or null if the class is not declared in any of the indexes
+     */
+    @Nullable
+    public static Set<String> findOwners(Collection<ReferenceIndex> indexes, String className) {
+        String simpleName = className.substring(
+                Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1);
+
+        Map<String, Set<String>> subtypes = new HashMap<>();
+        boolean declared = false;
+        for (ReferenceIndex index : indexes) {
+            for (Entry entry : index.mEntries.values()) {
+                for (Map.Entry<String, Set<String>> e : entry.supertypes.entrySet()) {
+                    declared |= e.getKey().equals(simpleName);
+                    for (String supertype : e.getValue()) {
+                        subtypes.computeIfAbsent(supertype, it -> new HashSet<>())
+                                .add(e.getKey());
+                    }
+                }
+            }
+        }
+        if (!declared) {
+            return null;
+        }
+
+        Set<String> owners = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(simpleName);
+        while (!queue.isEmpty()) {
+            String owner = queue.remove();
+            if (owners.add(owner)) {
+                queue.addAll(subtypes.getOrDefault(owner, Collections.emptySet()));
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Writes the index to disk if it has changed since it was last loaded or saved.
+     */
+    public synchronized void save() {
+        if (!mDirty) {
+            return;
+        }
+        File parent = mIndexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            Log.w(TAG, "Unable to create directory " + parent);
+            return;
+        }
+        File temp = new File(mIndexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            out.writeInt(mEntries.size());
+            for (Map.Entry<Path, Entry> e : mEntries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey().toString());
+                out.writeLong(entry.modified);
+                out.writeLong(entry.length);
+                out.writeUTF(entry.hash);
+                out.writeUTF(entry.packageName);
+                writeStrings(out, entry.imports);
+                writeStrings(out, entry.names);
+                writeStrings(out, entry.members);
+                out.writeInt(entry.supertypes.size());
+                for (Map.Entry<String, Set<String>> supertypes : entry.supertypes.entrySet()) {
+                    out.writeUTF(supertypes.getKey());
+                    writeStrings(out, supertypes.getValue());
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save reference index", e);
+            FileUtils.deleteQuietly(temp);
+            return;
+        }
+        if (!temp.renameTo(mIndexFile)) {
+            FileUtils.deleteQuietly(mIndexFile);
+            if (!temp.renameTo(mIndexFile)) {
+                Log.w(TAG, "Unable to replace " + mIndexFile);
+                return;
+            }
+        }
+        mDirty = false;
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mLoaded = true;
+        mDirty = false;
+        FileUtils.deleteQuietly(mIndexFile);
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+
+        if (!mIndexFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mIndexFile)))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Path path = Paths.get(in.readUTF());
+                long modified = in.readLong();
+                long length = in.readLong();
+                String hash = in.readUTF();
+                String packageName = NAMES.intern(in.readUTF());
+                Set<String> imports = readStrings(in);
+                Set<String> names = readStrings(in);
+                Set<String> members = readStrings(in);
+                int declarations = in.readInt();
+                Map<String, Set<String>> supertypes = new HashMap<>(declarations);
+                for (int j = 0; j < declarations; j++) {
+                    supertypes.put(NAMES.intern(in.readUTF()), readStrings(in));
+                }
+                mEntries.put(path, new Entry(modified, length, hash, packageName, imports, names,
+                        members, supertypes));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Reference index is corrupted, rebuilding.", e);
+            mEntries.clear();
+            mDirty = true;
+        }
+    }
+
+    private static Entry createEntry(CompilationUnitTree root, String hash, long modified,
+                                     long length) {
+        String packageName = NAMES.intern(Objects.toString(root.getPackageName(), ""));
+
+        ImmutableSet.Builder<String> imports = ImmutableSet.builder();
+        for (ImportTree importTree : root.getImports()) {
+            imports.add(NAMES.intern(importTree.getQualifiedIdentifier().toString()));
+        }
+
+        Set<String> found = new HashSet<>();
+        new FindReferencedNames().scan(root, found);
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        for (String name : found) {
+            names.add(NAMES.intern(name));
+        }
+
+        FindReferencedMembers referencedMembers = FindReferencedMembers.scan(root);
+        ImmutableSet.Builder<String> members = ImmutableSet.builder();
+        for (String member : referencedMembers.getMembers()) {
+            members.add(NAMES.intern(member));
+        }
+        Map<String, Set<String>> supertypes = new HashMap<>();
+        referencedMembers.getSupertypes().forEach((type, types) -> {
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (String supertype : types) {
+                builder.add(NAMES.intern(supertype));
+            }
+            supertypes.put(NAMES.intern(type), builder.build());
+        });
+        return new Entry(modified, length, hash, packageName, imports.build(), names.build(),
+                members.build(), supertypes);
+    }
+
+    private static String hash(CharSequence contents) {
+        return Hashing.murmur3_128().hashString(contents, Charsets.UTF_8).toString();
+    }
+
+    private static void writeStrings(DataOutputStream out, Set<String> strings)
+            throws IOException {
+        out.writeInt(strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (int i = 0; i < size; i++) {
+            builder.add(NAMES.intern(in.readUTF()));
+        }
+        return builder.build();
+    }
+}
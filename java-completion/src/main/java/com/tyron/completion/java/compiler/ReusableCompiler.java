@@ -23,6 +23,7 @@ import com.sun.tools.javac.model.JavacElements;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.DefinedBy;
 import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Pair;
 import com.tyron.common.logging.IdeLog;
 import com.tyron.completion.java.compiler.services.CancelService;
 import com.tyron.completion.java.compiler.services.NBAttr;
@@ -310,6 +311,25 @@ public class ReusableCompiler {
                 this.context = context;
             }
 
+            /**
+             * Forgets the errors recorded in the given range of a file so that they are
+             * reported again when that range is attributed again. The errors recorded after
+             * the range are moved by delta, the length the range has grown by.
+             */
+            void reparse(JavaFileObject file, int start, int end, int delta) {
+                Set<Pair<JavaFileObject, Integer>> moved = new HashSet<>();
+                recorded.removeIf(pair -> {
+                    if (!pair.fst.toUri().equals(file.toUri()) || pair.snd < start) {
+                        return false;
+                    }
+                    if (pair.snd > end) {
+                        moved.add(new Pair<>(pair.fst, pair.snd + delta));
+                    }
+                    return true;
+                });
+                recorded.addAll(moved);
+            }
+
             void clear() {
                 recorded.clear();
                 sourceMap.clear();
@@ -1,25 +1,53 @@
 package com.tyron.completion.java.diagnostics;
 
+import com.tyron.builder.model.SourceFileObject;
+import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
-import com.tyron.completion.java.compiler.services.NBLog;
-import com.tyron.completion.java.parse.CompilationInfo;
+import com.tyron.completion.java.JavaCompilerProvider;
+import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.progress.ProcessCanceledException;
 import com.tyron.diagnostics.DiagnosticProvider;
 
 import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
 
+/**
+ * Reports the diagnostics of a file from the compilers of {@link JavaCompilerService}, the
+ * compilation done for the diagnostics is reused by completions and quick fixes of the same file.
+ */
 public class JavaDiagnosticsProvider implements DiagnosticProvider {
     @Override
     public List<? extends Diagnostic<?>> getDiagnostics(Module module, File file) {
-        CompilationInfo compilationInfo = CompilationInfo.get(module.getProject(), file);
-        if (compilationInfo == null) {
+        if (!(module instanceof JavaModule) || !file.getName().endsWith(".java")) {
+            return Collections.emptyList();
+        }
+        JavaModule javaModule = (JavaModule) module;
+        JavaCompilerService compiler = JavaCompilerProvider.get(module.getProject(), javaModule);
+        if (compiler == null || compiler.isBusy()) {
             return Collections.emptyList();
         }
 
-        return NBLog.instance(compilationInfo.impl.getJavacTask().getContext())
-                .getDiagnostics(file.toURI());
+        URI uri = file.toURI();
+        SourceFileObject source = new SourceFileObject(file.toPath(), javaModule);
+        try {
+            return compiler.compile(Collections.singletonList(source), task -> {
+                List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+                for (Diagnostic<? extends JavaFileObject> diagnostic : task.diagnostics) {
+                    JavaFileObject diagnosticSource = diagnostic.getSource();
+                    if (diagnosticSource != null && uri.equals(diagnosticSource.toUri())) {
+                        diagnostics.add(diagnostic);
+                    }
+                }
+                return diagnostics;
+            });
+        } catch (ProcessCanceledException e) {
+            return Collections.emptyList();
+        }
     }
 }
@@ -7,7 +7,6 @@ import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 
 import com.tyron.completion.java.compiler.CompileTask;
-import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.provider.FindHelper;
 import com.tyron.completion.java.compiler.ParseTask;
@@ -37,8 +36,7 @@ public class HoverProvider {
     }
 
     public List<String> hover(Path file, int offset) {
-        CompilerContainer container = compiler.compile(file);
-        return container.get(task -> {
+        return compiler.compile(file, task -> {
             Element element = new FindHoverElement(task.task).scan(task.root(), (long) offset);
             if (element == null) {
                 return NOT_SUPPORTED;
@@ -60,11 +60,27 @@ public class DefaultPartialReparser implements PartialReparser {
                                  CompilationUnitTree cu,
                                  MethodTree orig,
                                  String newBody) throws IOException {
+        return reparseMethod(ci.getJavacTask(), cu, orig, newBody);
+    }
+
+    /**
+     * Replaces the body of the given method with the new body and attributes it again,
+     * without entering or attributing the rest of the compilation unit.
+     *
+     * @param task the task that has analyzed the compilation unit
+     * @param newBody the new text of the method body, including its braces
+     * @return false if the method could not be reparsed, the compilation unit must then be
+     * compiled again as the tree may have been modified
+     */
+    public boolean reparseMethod(JavacTaskImpl task,
+                                 CompilationUnitTree cu,
+                                 MethodTree orig,
+                                 String newBody) {
         if (cu == null || newBody == null || orig.getBody() == null) {
             return false;
         }
+        JavaFileObject ci = cu.getSourceFile();
 
-        JavacTaskImpl task = ci.getJavacTask();
         Trees trees = Trees.instance(task);
 
         TreePath methodPath = trees.getPath(cu, orig);
@@ -99,8 +115,11 @@ public class DefaultPartialReparser implements PartialReparser {
         final int noInner = fav.noInner;
         final Context ctx = task.getContext();
         try {
-            final NBLog l = NBLog.instance(ctx);
-            l.startPartialReparse(cu.getSourceFile());
+            // compilations made with the ReusableCompiler do not use the NBLog
+            final Log l = Log.instance(ctx);
+            if (l instanceof NBLog) {
+                ((NBLog) l).startPartialReparse(cu.getSourceFile());
+            }
             final JavaFileObject prevLogged = l.useSource(cu.getSourceFile());
 
             long start = System.currentTimeMillis();
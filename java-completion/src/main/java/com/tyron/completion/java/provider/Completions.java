@@ -15,7 +15,6 @@ import com.tyron.builder.model.SourceFileObject;
 import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.action.FindCurrentPath;
 import com.tyron.completion.java.compiler.CompileTask;
-import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.compiler.ParseTask;
 import com.tyron.completion.java.compiler.services.CancelAbort;
@@ -35,6 +34,7 @@ import com.sun.source.util.JavacTask;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
 
 import java.io.File;
 import java.nio.file.Path;
@@ -79,9 +79,9 @@ public class Completions {
             StringBuilder pruned = new PruneMethodBodies(task.task).scan(task.root, index);
             int end = StringSearch.endOfLine(pruned, (int) index);
             pruned.insert(end, ';');
-            if (compiler.compiler.getCurrentContext() != null) {
-                contents = new FileContentFixer(compiler.compiler.getCurrentContext()).fixFileContent(
-                        pruned);
+            Context context = compiler.getCurrentContext();
+            if (context != null) {
+                contents = new FileContentFixer(context).fixFileContent(pruned);
             } else {
                 contents = pruned.toString();
             }
@@ -101,14 +101,12 @@ public class Completions {
         boolean endsWithParen = endsWithParen(contents, (int) cursor);
 
         checkCanceled();
-        if (compiler.getCachedContainer().isWriting()) {
+        if (compiler.isBusy()) {
             return null;
         }
 
-        CompilerContainer container = compiler.compile(Collections.singletonList(source));
-
         try {
-            return container.get(task -> {
+            return compiler.compile(Collections.singletonList(source), task -> {
                 if (task == null || task.task == null) {
                     return null;
                 }
@@ -131,10 +129,6 @@ public class Completions {
             boolean cancelled = e instanceof CancelAbort || e.getCause() instanceof CancelAbort;
 
             if (cancelled || e instanceof ProcessCanceledException) {
-                compiler.close();
-                if (compiler.getCompileBatch() != null) {
-                    compiler.getCompileBatch().borrow.close();
-                }
                 throw e;
             }
 
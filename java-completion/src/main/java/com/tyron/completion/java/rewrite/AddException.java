@@ -1,7 +1,6 @@
 package com.tyron.completion.java.rewrite;
 
 import com.google.common.collect.ImmutableMap;
-import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.provider.FindHelper;
 import com.tyron.completion.model.Range;
@@ -38,8 +37,7 @@ public class AddException implements JavaRewrite {
         if (file == CompilerProvider.NOT_FOUND) {
             return CANCELLED;
         }
-        CompilerContainer container = compiler.compile(file);
-        return container.get(task -> {
+        return compiler.compile(file, task -> {
             CompilationUnitTree root = task.root(file);
             if (root == null) {
                 return CANCELLED;
@@ -5,7 +5,6 @@ import androidx.annotation.Nullable;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.google.common.base.Strings;
 import com.tyron.completion.java.compiler.CompileTask;
-import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.FindNewTypeDeclarationAt;
 import com.tyron.completion.java.FindTypeDeclarationAt;
@@ -87,8 +86,7 @@ public class ImplementAbstractMethods implements JavaRewrite {
             return Collections.emptyMap();
         }
 
-        CompilerContainer container = compiler.compile(file);
-        return container.get(task -> {
+        return compiler.compile(file, task -> {
             return rewriteInternal(compiler, task, file);
         });
     }
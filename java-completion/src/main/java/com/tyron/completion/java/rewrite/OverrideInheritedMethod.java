@@ -4,7 +4,7 @@ import com.github.javaparser.ast.body.MethodDeclaration;
 import com.google.common.base.Strings;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.completion.java.FindNewTypeDeclarationAt;
-import com.tyron.completion.java.compiler.CompilerContainer;
+import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.CompilerProvider;
 import com.tyron.completion.java.FindTypeDeclarationAt;
 import com.tyron.completion.java.compiler.ParseTask;
@@ -42,6 +42,8 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
+import kotlin.jvm.functions.Function1;
+
 public class OverrideInheritedMethod implements JavaRewrite {
 
     final String superClassName, methodName;
@@ -80,10 +82,7 @@ public class OverrideInheritedMethod implements JavaRewrite {
             return CANCELLED;
         }
 
-        CompilerContainer container = sourceFileObject == null
-                ? compiler.compile(file)
-                : compiler.compile(Collections.singletonList(sourceFileObject));
-        return container.get(task -> {
+        Function1<CompileTask, Map<Path, TextEdit[]>> rewrite = task -> {
             Types types = task.task.getTypes();
             Trees trees = Trees.instance(task.task);
             ExecutableElement superMethod = FindHelper.findMethod(task, superClassName,
@@ -143,7 +142,10 @@ public class OverrideInheritedMethod implements JavaRewrite {
                 }
             }
             return Collections.singletonMap(source.toPath(), edits.toArray(new TextEdit[0]));
-        });
+        };
+        return sourceFileObject == null
+                ? compiler.compile(file, rewrite)
+                : compiler.compile(Collections.singletonList(sourceFileObject), rewrite);
     }
 
     private Position insertNearCursor(CompilerProvider compiler) {
@@ -0,0 +1,68 @@
+package com.tyron.completion.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClassNameIndexTest {
+
+    private final ClassNameIndex index = ClassNameIndex.create(ImmutableList.of(
+            "java.util.ArrayList",
+            "java.util.ArrayDeque",
+            "java.util.Arrays",
+            "java.util.List",
+            "java.lang.String",
+            "java.lang.StringBuilder",
+            "android.widget.ArrayAdapter"
+    ));
+
+    @Test
+    public void testPrefix() {
+        List<String> result = new ArrayList<>();
+        index.findByPrefix("Array", true, result::add);
+        assertThat(result).containsExactly("java.util.ArrayList", "java.util.ArrayDeque",
+                "java.util.Arrays", "android.widget.ArrayAdapter");
+
+        result.clear();
+        index.findByPrefix("array", true, result::add);
+        assertThat(result).isEmpty();
+
+        index.findByPrefix("stringb", false, result::add);
+        assertThat(result).containsExactly("java.lang.StringBuilder");
+    }
+
+    @Test
+    public void testCamelHumps() {
+        List<String> result = new ArrayList<>();
+        index.findByCamelHumps("ArLi", true, result::add);
+        assertThat(result).containsExactly("java.util.ArrayList");
+
+        result.clear();
+        index.findByCamelHumps("SB", true, result::add);
+        assertThat(result).containsExactly("java.lang.StringBuilder");
+
+        result.clear();
+        index.findByCamelHumps("arLi", true, result::add);
+        assertThat(result).isEmpty();
+
+        index.findByCamelHumps("arLi", false, result::add);
+        assertThat(result).containsExactly("java.util.ArrayList");
+    }
+
+    @Test
+    public void testFuzzy() {
+        List<String> result = new ArrayList<>();
+        index.findFuzzy("ArayList", 60, result::add);
+        assertThat(result).contains("java.util.ArrayList");
+        assertThat(result).doesNotContain("java.lang.String");
+
+        result.clear();
+        index.findFuzzy("Ar", 0, result::add);
+        assertThat(result).isEmpty();
+    }
+}
@@ -0,0 +1,112 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.tyron.completion.TestUtil.resolveBasePath;
+import static org.junit.Assert.fail;
+
+import com.tyron.builder.model.SourceFileObject;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.java.CompletionModule;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+@RunWith(RobolectricTestRunner.class)
+public class CompilerPoolTest {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private File mRoot;
+    private JavaCompilerService mService;
+
+    @Before
+    public void setup() {
+        CompletionModule.setAndroidJar(new File(resolveBasePath(), "classpath/rt.jar"));
+        CompletionModule.setLambdaStubs(new File(resolveBasePath(),
+                "classpath/core-lambda-stubs" + ".jar"));
+
+        mRoot = new File(resolveBasePath(), "EmptyProject");
+        Project project = new Project(mRoot);
+        AndroidModule module = new MockAndroidModule(new File(mRoot, "app"),
+                new MockFileManager(mRoot));
+
+        mService = new JavaCompilerService(project, Collections.emptySet(),
+                Collections.emptySet(), Collections.emptySet());
+        mService.setCurrentModule(module);
+    }
+
+    @Test
+    public void testPoolSizeFollowsAvailableMemory() {
+        assertThat(JavaCompilerService.getMaxContainers(64 * MEGABYTE)).isEqualTo(1);
+        assertThat(JavaCompilerService.getMaxContainers(256 * MEGABYTE)).isEqualTo(1);
+        assertThat(JavaCompilerService.getMaxContainers(512 * MEGABYTE)).isEqualTo(2);
+        assertThat(JavaCompilerService.getMaxContainers(4096 * MEGABYTE)).isEqualTo(3);
+    }
+
+    @Test
+    public void testContainerIsReleasedWhenReadingFails() {
+        List<JavaFileObject> sources = source("First", 1);
+        try {
+            mService.compile(sources, task -> {
+                throw new IllegalStateException();
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // the container must still be released
+        }
+
+        CompilerContainer container = mService.compile(sources);
+        assertThat(container.isReserved()).isTrue();
+        container.run(task -> assertThat(task.roots).hasSize(1));
+        assertThat(container.isReserved()).isFalse();
+    }
+
+    @Test
+    public void testContainerIsReleasedByTheThreadThatReadsIt() throws InterruptedException {
+        CompilerContainer container = mService.compile(source("First", 1));
+        assertThat(container.isReserved()).isTrue();
+
+        Thread reader = new Thread(() -> container.run(task -> {}));
+        reader.start();
+        reader.join();
+        assertThat(container.isReserved()).isFalse();
+    }
+
+    @Test
+    public void testReservedCompilationIsNotReplaced() {
+        if (JavaCompilerService.getMaxContainers(Runtime.getRuntime().maxMemory()) < 2) {
+            return;
+        }
+        CompilerContainer first = mService.compile(source("First", 1));
+        CompileBatch firstBatch = first.mCachedCompile;
+
+        // the first compilation has not been read yet, another container compiles the second file
+        Object secondBatch = mService.compile(source("Second", 1), task -> task.roots.get(0));
+        assertThat(first.mCachedCompile).isSameInstanceAs(firstBatch);
+        assertThat(secondBatch).isNotNull();
+
+        first.run(task -> assertThat(task.root().getSourceFile().getName()).endsWith("First.java"));
+        assertThat(first.isReserved()).isFalse();
+    }
+
+    private List<JavaFileObject> source(String className, long modified) {
+        String contents = "package com.test;\n" +
+                          "public class " + className + " {\n" +
+                          "}";
+        return Collections.singletonList(new SourceFileObject(
+                new File(mRoot, "classes/" + className + ".java").toPath(), contents,
+                Instant.ofEpochMilli(modified)));
+    }
+}
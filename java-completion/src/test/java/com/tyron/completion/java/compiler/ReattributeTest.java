@@ -0,0 +1,113 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.tyron.completion.TestUtil.resolveBasePath;
+
+import com.tyron.builder.model.SourceFileObject;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.completion.java.CompletionModule;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+@RunWith(RobolectricTestRunner.class)
+public class ReattributeTest {
+
+    private static final String CONTENTS = "package com.test;\n" +
+                                           "public class Reattribute {\n" +
+                                           "    void first() {\n" +
+                                           "        int x = \"a\";\n" +
+                                           "    }\n" +
+                                           "    void second() {\n" +
+                                           "        int y = \"b\";\n" +
+                                           "    }\n" +
+                                           "}";
+
+    private Path mFile;
+    private JavaCompilerService mService;
+
+    @Before
+    public void setup() {
+        CompletionModule.setAndroidJar(new File(resolveBasePath(), "classpath/rt.jar"));
+        CompletionModule.setLambdaStubs(new File(resolveBasePath(),
+                "classpath/core-lambda-stubs" + ".jar"));
+
+        File root = new File(resolveBasePath(), "EmptyProject");
+        Project project = new Project(root);
+        AndroidModule module = new MockAndroidModule(new File(root, "app"),
+                new MockFileManager(root));
+        mFile = new File(root, "classes/Reattribute.java").toPath();
+
+        mService = new JavaCompilerService(project, Collections.emptySet(),
+                Collections.emptySet(), Collections.emptySet());
+        mService.setCurrentModule(module);
+    }
+
+    @Test
+    public void testErrorInEditedMethodIsReportedAgain() {
+        CompilerContainer container = compile(CONTENTS, 1);
+        CompileBatch batch = container.mCachedCompile;
+        List<Diagnostic<? extends JavaFileObject>> before = errors(container);
+        assertThat(before).hasSize(2);
+
+        // the error keeps its offset, the edit is after it
+        String edited = CONTENTS.replace("int x = \"a\";\n", "int x = \"a\";\n        int z = 0;\n");
+        container = compile(edited, 2);
+        assertThat(container.mCachedCompile).isSameInstanceAs(batch);
+
+        List<Diagnostic<? extends JavaFileObject>> after = errors(container);
+        assertThat(after).hasSize(2);
+        assertThat(after.get(0).getStartPosition()).isEqualTo(before.get(0).getStartPosition());
+    }
+
+    @Test
+    public void testErrorsAfterEditedMethodAreMoved() {
+        CompilerContainer container = compile(CONTENTS, 1);
+        CompileBatch batch = container.mCachedCompile;
+        List<Diagnostic<? extends JavaFileObject>> before = errors(container);
+        assertThat(before).hasSize(2);
+
+        String edited = CONTENTS.replace("int x = \"a\";\n", "int x = \"a\";\n        int z = 0;\n");
+        container = compile(edited, 2);
+        assertThat(container.mCachedCompile).isSameInstanceAs(batch);
+
+        List<Diagnostic<? extends JavaFileObject>> after = errors(container);
+        assertThat(after).hasSize(2);
+        Diagnostic<? extends JavaFileObject> moved = after.get(1);
+        assertThat(moved.getStartPosition()).isEqualTo(edited.indexOf("\"b\""));
+        assertThat(moved.getLineNumber()).isEqualTo(before.get(1).getLineNumber() + 1);
+    }
+
+    private CompilerContainer compile(String contents, long modified) {
+        return mService.compile(Collections.singletonList(
+                new SourceFileObject(mFile, contents, Instant.ofEpochMilli(modified))));
+    }
+
+    private static List<Diagnostic<? extends JavaFileObject>> errors(CompilerContainer container) {
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+        container.run(task -> {
+            for (Diagnostic<? extends JavaFileObject> diagnostic : task.diagnostics) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.add(diagnostic);
+                }
+            }
+        });
+        errors.sort((a, b) -> Long.compare(a.getStartPosition(), b.getStartPosition()));
+        return errors;
+    }
+}
@@ -0,0 +1,191 @@
+package com.tyron.completion.java.compiler;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.tyron.builder.model.SourceFileObject;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+@RunWith(RobolectricTestRunner.class)
+public class ReferenceIndexTest {
+
+    private static final BiFunction<Path, String, CompilationUnitTree> PARSER =
+            (path, contents) -> Parser.parseJavaFileObject(null,
+                    new SourceFileObject(path, contents, Instant.now())).root;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<File> files = new ArrayList<>();
+    private File indexFile;
+
+    @Before
+    public void setup() throws IOException {
+        indexFile = new File(temporaryFolder.getRoot(), "references.idx");
+
+        write("a/Foo.java", "package a;\n" +
+                            "public class Foo {\n" +
+                            "    public void bar() {}\n" +
+                            "}");
+        write("a/Sub.java", "package a;\n" +
+                            "public class Sub extends Foo {\n" +
+                            "    void test() { bar(); }\n" +
+                            "}");
+        write("b/Other.java", "package b;\n" +
+                              "public class Other {\n" +
+                              "    public void bar() {}\n" +
+                              "}");
+        write("c/UsesFoo.java", "package c;\n" +
+                                "import a.Foo;\n" +
+                                "class UsesFoo {\n" +
+                                "    void test(Foo foo) { foo.bar(); }\n" +
+                                "}");
+        write("c/UsesSub.java", "package c;\n" +
+                                "import a.Sub;\n" +
+                                "class UsesSub {\n" +
+                                "    void test() { new Sub().bar(); }\n" +
+                                "}");
+        write("c/UsesOther.java", "package c;\n" +
+                                  "import b.Other;\n" +
+                                  "class UsesOther {\n" +
+                                  "    void test() { Other other = new Other(); other.bar(); }\n" +
+                                  "}");
+        write("c/UsesUnknown.java", "package c;\n" +
+                                    "class UsesUnknown {\n" +
+                                    "    void test() { get().bar(); }\n" +
+                                    "    native Object get();\n" +
+                                    "}");
+    }
+
+    @Test
+    public void testMemberReferencesByOwner() {
+        ReferenceIndex index = new ReferenceIndex(indexFile);
+        index.update(files, PARSER);
+
+        assertThat(findMemberReferences(index, "a.Foo", "bar"))
+                .containsExactly("Sub.java", "UsesFoo.java", "UsesSub.java", "UsesUnknown.java");
+        assertThat(findMemberReferences(index, "b.Other", "bar"))
+                .containsExactly("UsesOther.java", "UsesUnknown.java");
+        assertThat(findMemberReferences(index, "a.Sub", "bar"))
+                .containsExactly("Sub.java", "UsesSub.java", "UsesUnknown.java");
+    }
+
+    @Test
+    public void testLibraryMembersMatchByName() {
+        ReferenceIndex index = new ReferenceIndex(indexFile);
+        index.update(files, PARSER);
+
+        assertThat(ReferenceIndex.findOwners(Collections.singletonList(index), "java.util.List"))
+                .isNull();
+        assertThat(findMemberReferences(index, "java.util.List", "bar"))
+                .containsExactly("Sub.java", "UsesFoo.java", "UsesSub.java", "UsesOther.java",
+                        "UsesUnknown.java");
+    }
+
+    @Test
+    public void testTypeReferences() {
+        ReferenceIndex index = new ReferenceIndex(indexFile);
+        index.update(files, PARSER);
+
+        assertThat(names(index.findTypeReferences("a.Foo"))).containsExactly("Sub.java",
+                "UsesFoo.java");
+    }
+
+    @Test
+    public void testNestedTypeReferences() throws IOException {
+        write("a/Outer.java", "package a;\n" +
+                              "public class Outer {\n" +
+                              "    public static class Inner {}\n" +
+                              "    Inner inner;\n" +
+                              "}");
+        write("c/UsesOuter.java", "package c;\n" +
+                                  "import a.Outer;\n" +
+                                  "class UsesOuter {\n" +
+                                  "    Outer.Inner inner;\n" +
+                                  "}");
+        write("c/UsesInner.java", "package c;\n" +
+                                  "import a.Outer.Inner;\n" +
+                                  "class UsesInner {\n" +
+                                  "    Inner inner;\n" +
+                                  "}");
+        write("c/UsesQualified.java", "package c;\n" +
+                                      "class UsesQualified {\n" +
+                                      "    a.Outer.Inner inner;\n" +
+                                      "}");
+        write("b/OtherInner.java", "package b;\n" +
+                                   "class OtherInner {\n" +
+                                   "    static class Inner {}\n" +
+                                   "    Inner inner;\n" +
+                                   "}");
+        ReferenceIndex index = new ReferenceIndex(indexFile);
+        index.update(files, PARSER);
+
+        assertThat(names(index.findTypeReferences("a.Outer$Inner"))).containsExactly(
+                "Outer.java", "UsesOuter.java", "UsesInner.java", "UsesQualified.java");
+    }
+
+    @Test
+    public void testLoadsSavedIndexWithoutParsing() throws IOException {
+        ReferenceIndex index = new ReferenceIndex(indexFile);
+        index.update(files, PARSER);
+        index.save();
+
+        ReferenceIndex loaded = new ReferenceIndex(indexFile);
+        loaded.update(files, (path, contents) -> {
+            throw new AssertionError("Unchanged file " + path + " was parsed again");
+        });
+        assertThat(findMemberReferences(loaded, "b.Other", "bar"))
+                .containsExactly("UsesOther.java", "UsesUnknown.java");
+
+        write("c/UsesFoo.java", "package c;\n" +
+                                "class UsesFoo {\n" +
+                                "    void test(b.Other other) { other.bar(); }\n" +
+                                "}");
+        loaded.update(files, PARSER);
+        assertThat(findMemberReferences(loaded, "b.Other", "bar"))
+                .containsExactly("UsesFoo.java", "UsesOther.java", "UsesUnknown.java");
+        assertThat(findMemberReferences(loaded, "a.Foo", "bar"))
+                .doesNotContain("UsesFoo.java");
+    }
+
+    private List<String> findMemberReferences(ReferenceIndex index, String className,
+                                              String memberName) {
+        Set<String> owners = ReferenceIndex.findOwners(Collections.singletonList(index),
+                className);
+        return names(index.findMemberReferences(owners, memberName));
+    }
+
+    private static List<String> names(Path[] paths) {
+        List<String> names = new ArrayList<>();
+        for (Path path : paths) {
+            names.add(path.getFileName().toString());
+        }
+        return names;
+    }
+
+    private void write(String path, String contents) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), path);
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        if (!files.contains(file)) {
+            files.add(file);
+        }
+    }
+}
@@ -93,6 +93,17 @@ public class CompilerClassPath implements Closeable {
         return compiler;
     }
 
+    /**
+     * @return the compiled jars of the class path
+     */
+    public Set<File> getClassPathJars() {
+        synchronized (mClassPath) {
+            return mClassPath.stream()
+                    .map(entry -> entry.getCompiledJar().toFile())
+                    .collect(Collectors.toSet());
+        }
+    }
+
     @Override
     public void close() throws IOException {
 
@@ -53,7 +53,8 @@ public class CompletionEngine {
     private CompletionEngine(AndroidModule project) {
         mProject = project;
         classPath = new CompilerClassPath(project);
-        sp = new SourcePath(classPath);
+        sp = new SourcePath(classPath, new File(project.getBuildDirectory(),
+                "intermediate/kotlin-symbol-index.bin"));
     }
 
     private static volatile CompletionEngine INSTANCE = null;
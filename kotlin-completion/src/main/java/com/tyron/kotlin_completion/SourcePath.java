@@ -14,6 +14,7 @@ import org.jetbrains.kotlin.com.intellij.psi.PsiFile;
 import org.jetbrains.kotlin.container.ComponentProvider;
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
+import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.psi.KtFile;
 import org.jetbrains.kotlin.resolve.BindingContext;
 import org.slf4j.Logger;
@@ -52,13 +53,22 @@ public class SourcePath {
     }
 
     private final AsyncExecutor indexAsync = new AsyncExecutor();
-    private final SymbolIndex index = new SymbolIndex();
+    private final SymbolIndex index;
     private boolean indexEnabled = false;
     private boolean indexInitialized;
 
 
     public SourcePath(CompilerClassPath classPath) {
+        this(classPath, null);
+    }
+
+    /**
+     * @param indexFile the file where the symbol index is persisted between sessions, or null
+     *                  to only keep it in memory
+     */
+    public SourcePath(CompilerClassPath classPath, File indexFile) {
         cp = classPath;
+        index = new SymbolIndex(indexFile);
     }
 
     public CompilerClassPath getCompilerClassPath() {
@@ -233,13 +243,24 @@ public class SourcePath {
         indexAsync.execute(() -> {
             if (indexEnabled && !indexInitialized) {
                 ModuleDescriptor module = (ModuleDescriptor) container.resolve(ModuleDescriptor.class).getValue();
-                index.refresh(module, true);
+                index.refresh(module, false, cp.getClassPathJars(), sourcePackages());
                 indexInitialized = true;
             }
         });
     }
 
 
+    private Map<File, FqName> sourcePackages() {
+        Map<File, FqName> packages = new HashMap<>();
+        for (SourceFile file : files.values()) {
+            if (!file.isTemporary) {
+                file.parseIfChanged();
+                packages.put(file.path.toFile(), file.parsed.getPackageFqName());
+            }
+        }
+        return packages;
+    }
+
     private BindingContext compileAndUpdate(Set<SourceFile> changed) {
         if (changed.isEmpty()) return null;
         Map<SourceFile, KtFile> parse = CollectionsKt.associateWith(changed, sourceFile -> {
@@ -2,129 +2,369 @@ package com.tyron.kotlin_completion.index
 
 import android.util.Log
 import com.tyron.kotlin_completion.util.PsiUtils
-import org.jetbrains.exposed.sql.*
-import org.jetbrains.exposed.sql.transactions.transaction
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
 import java.lang.IllegalStateException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
 import java.time.Duration
 import java.time.Instant
+import java.util.zip.ZipFile
 import kotlin.sequences.Sequence
 
-private const val MAX_FQNAME_LENGTH = 255
-private const val MAX_SHORT_NAME_LENGTH = 80
+private const val MAGIC = 0x4B534958
+private const val VERSION = 3
 
-private object Symbols : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH) references FqNames.fqName
-    val kind = integer("kind")
-    val visibility = integer("visibility")
-    val extensionReceiverType = varchar("extensionreceivertype", length = MAX_FQNAME_LENGTH).nullable()
+/**
+ * Index of the top level symbols of a module, used to complete symbols that are not imported yet.
+ *
+ * The symbols are grouped by package, each package is stamped with the source files and the
+ * libraries that declare it so that a refresh only resolves the packages whose files have
+ * changed. The symbols are searched by a table of short names sorted lexicographically. When a
+ * [cacheFile] is given, the index is written to it after each refresh and read back on the first
+ * refresh of the next session.
+ */
+class SymbolIndex(private val cacheFile: File? = null) {
 
-    override val primaryKey = PrimaryKey(fqName)
-}
+    @Volatile
+    var indexing: Boolean = false
 
-private object FqNames : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH)
-    val shortName = varchar("shortname", length = MAX_SHORT_NAME_LENGTH)
+    @Volatile
+    private var packages: Map<FqName, PackageSymbols> = emptyMap()
 
-    override val primaryKey = PrimaryKey(fqName)
-}
-class SymbolIndex {
-    private val db = Database.connect("jdbc:h2:mem:symbolindex;DB_CLOSE_DELAY=-1", "org.h2.Driver")
+    @Volatile
+    private var table: SymbolTable = SymbolTable.EMPTY
 
-    var indexing: Boolean = false
+    private var loadedFromCache = false
 
-    init {
-       transaction (db) {
-           SchemaUtils.create(Symbols, FqNames)
-       }
+    /**
+     * Updates the index with the symbols of the given module.
+     *
+     * @param forced whether every package should be indexed again, otherwise only the
+     * packages that are new or whose files have changed are resolved
+     * @param classPath the libraries of the module
+     * @param sources the source files of the module and the package each of them declares
+     */
+    fun refresh(
+        module: ModuleDescriptor,
+        forced: Boolean = true,
+        classPath: Collection<File> = emptyList(),
+        sources: Map<File, FqName> = emptyMap()
+    ) {
+        val stamps = packageStamps(sources, classPath)
+        val contents = allPackages(module).map { pkg ->
+            PackageContents(pkg, stamps[pkg] ?: 0L) { createEntries(module, pkg) }
+        }
+        update(contents, forced)
     }
 
-    fun refresh(module: ModuleDescriptor, forced: Boolean = true) {
+    internal fun update(contents: Sequence<PackageContents>, forced: Boolean) {
         val started = System.currentTimeMillis()
-        Log.d("SymbolIndex", "Updating symbol index...");
+        Log.d("SymbolIndex", "Updating symbol index...")
 
         indexing = true
         try {
-            transaction(db) {
-                if (forced) {
-                    Symbols.deleteAll()
+            if (!loadedFromCache) {
+                loadedFromCache = true
+                if (!forced) {
+                    loadFromCache()
                 }
-                for (descriptor in allDescriptors(module)) {
-                    val descriptorFqn = PsiUtils.getFqNameSafe(descriptor)
-                    val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
-
-                    if (canStoreFqName(descriptorFqn) && (extensionReceiverFqn?.let { canStoreFqName(it) } != false)) {
-
-                        for (fqn in listOfNotNull(descriptorFqn, extensionReceiverFqn)) {
-                            FqNames.replace {
-                                it[fqName] = fqn.toString()
-                                it[shortName] = fqn.shortName().toString()
-                            }
-                        }
-
-
-                        Symbols.replace {
-                            it[fqName] = descriptorFqn.toString()
-                            it[kind] = descriptor.accept(ExtractSymbolKind, Unit).rawValue
-                            it[visibility] = descriptor.accept(ExtractSymbolVisibility, Unit).rawValue
-                            it[extensionReceiverType] = extensionReceiverFqn?.toString()
-                        }
-                    } else {
-                        Log.w("SymbolIndex",
-                            "Excluding symbol $descriptorFqn from index since its name is too long"
-                        );
-                    }
+            }
+
+            val previous = packages
+            val updated = LinkedHashMap<FqName, PackageSymbols>()
+            var changed = 0
+            for (pkg in contents) {
+                val old = previous[pkg.name]
+                if (!forced && old != null && old.stamp == pkg.stamp) {
+                    updated[pkg.name] = old
+                } else {
+                    updated[pkg.name] = PackageSymbols(pkg.stamp, pkg.entries())
+                    changed++
                 }
+            }
+            val removed = previous.keys.count { it !in updated }
 
-                indexing = false
+            if (changed > 0 || removed > 0) {
+                packages = updated
+                table = SymbolTable.create(updated.values)
+                saveToCache(updated)
             }
+            Log.d("SymbolIndex", "Updated symbol index in " + (System.currentTimeMillis() - started) +
+                    " ms, " + changed + " of " + updated.size + " packages changed")
         } catch (e: Exception) {
-            Log.e("SymbolIndex", "Error while updating symbol index", e);
+            Log.e("SymbolIndex", "Error while updating symbol index", e)
+        } finally {
+            indexing = false
         }
     }
 
     fun query(prefix: String, receiverType: FqName? = null, limit: Int = 20): List<Symbol> {
         val start = Instant.now()
         try {
-            return transaction(db) {
-                (Symbols innerJoin FqNames)
-                    .select { FqNames.shortName.like("$prefix%") and (Symbols.extensionReceiverType eq receiverType?.toString()) }
-                    .limit(limit)
-                    .map {
-                        Symbol(
-                            fqName = FqName(it[Symbols.fqName]),
-                            kind = Symbol.Kind.fromRaw(it[Symbols.kind]),
-                            visibility = Symbol.Visibility.fromRaw(it[Symbols.visibility]),
-                            extensionReceiverType = it[Symbols.extensionReceiverType]?.let(::FqName)
-                        )
-                    }
-            }
+            return table.query(prefix, receiverType?.toString(), limit)
         } finally {
             Log.d("SymbolIndex", "Query took " + Duration.between(start, Instant.now()).toMillis() + " ms")
         }
     }
 
-    private fun canStoreFqName(fqName: FqName) =
-        fqName.toString().length <= MAX_FQNAME_LENGTH
-                && fqName.shortName().toString().length <= MAX_SHORT_NAME_LENGTH
+    private fun createEntries(module: ModuleDescriptor, pkg: FqName): List<Entry> {
+        val descriptors = try {
+            module.getPackage(pkg).memberScope
+                .getContributedDescriptors(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
+        } catch (e: IllegalStateException) {
+            Log.w("SymbolIndex", "Couldn't query descriptors in package $pkg")
+            return emptyList()
+        }
+        // overloads share the same fully qualified name, only one of them is kept
+        val entries = LinkedHashMap<String, Entry>()
+        for (descriptor in descriptors) {
+            val entry = createEntry(descriptor)
+            entries[entry.fqName] = entry
+        }
+        return entries.values.toList()
+    }
 
-    private fun allDescriptors(module: ModuleDescriptor) : Sequence<DeclarationDescriptor> = allPackages(module)
-        .map(module::getPackage)
-        .flatMap {
-            try {
-                it.memberScope.getContributedDescriptors(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
-            } catch (e: IllegalStateException) {
-                Log.w("SymbolIndex", "Couldn't query descriptors in package $it")
-                emptyList()
+    private fun createEntry(descriptor: DeclarationDescriptor): Entry {
+        val fqName = PsiUtils.getFqNameSafe(descriptor)
+        val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
+        val kind = descriptor.accept(ExtractSymbolKind, Unit).rawValue
+        val visibility = descriptor.accept(ExtractSymbolVisibility, Unit).rawValue
+        return Entry(
+            fqName.toString(),
+            fqName.shortName().toString(),
+            packFlags(kind, visibility),
+            extensionReceiverFqn?.toString()
+        )
+    }
+
+    private fun loadFromCache() {
+        val file = cacheFile ?: return
+        if (!file.exists()) {
+            return
+        }
+        try {
+            val loaded = readPackages(file) ?: return
+            packages = loaded
+            table = SymbolTable.create(loaded.values)
+            Log.d("SymbolIndex", "Loaded " + loaded.size + " packages from " + file)
+        } catch (e: IOException) {
+            Log.w("SymbolIndex", "Unable to read the symbol index cache", e)
+        }
+    }
+
+    private fun saveToCache(packages: Map<FqName, PackageSymbols>) {
+        val file = cacheFile ?: return
+        val parent = file.parentFile
+        if (parent == null || (!parent.exists() && !parent.mkdirs())) {
+            return
+        }
+        var tempFile: File? = null
+        // write to a temporary file first so a crash never leaves a partial file behind
+        try {
+            tempFile = File.createTempFile(file.name, ".tmp", parent)
+            writePackages(packages, tempFile)
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } catch (e: IOException) {
+            Log.w("SymbolIndex", "Unable to write the symbol index cache", e)
+            tempFile?.delete()
+        }
+    }
+
+    private fun readPackages(file: File): Map<FqName, PackageSymbols>? {
+        DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return null
+            }
+            val packageCount = input.readInt()
+            val packages = LinkedHashMap<FqName, PackageSymbols>(packageCount)
+            for (i in 0 until packageCount) {
+                val name = FqName(input.readUTF())
+                val stamp = input.readLong()
+                val entryCount = input.readInt()
+                val entries = ArrayList<Entry>(entryCount)
+                for (j in 0 until entryCount) {
+                    val fqName = input.readUTF()
+                    val shortName = input.readUTF()
+                    val flags = input.readInt()
+                    val receiver = input.readUTF()
+                    entries.add(Entry(fqName, shortName, flags, if (receiver.isEmpty()) null else receiver))
+                }
+                packages[name] = PackageSymbols(stamp, entries)
             }
+            return packages
         }
+    }
+
+    private fun writePackages(packages: Map<FqName, PackageSymbols>, file: File) {
+        DataOutputStream(BufferedOutputStream(FileOutputStream(file))).use { output ->
+            output.writeInt(MAGIC)
+            output.writeInt(VERSION)
+            output.writeInt(packages.size)
+            for ((name, symbols) in packages) {
+                output.writeUTF(name.asString())
+                output.writeLong(symbols.stamp)
+                output.writeInt(symbols.entries.size)
+                for (entry in symbols.entries) {
+                    output.writeUTF(entry.fqName)
+                    output.writeUTF(entry.shortName)
+                    output.writeInt(entry.flags)
+                    output.writeUTF(entry.receiverType ?: "")
+                }
+            }
+        }
+    }
 
     private fun allPackages(module: ModuleDescriptor, pkgName: FqName = FqName.ROOT) : Sequence<FqName> = module
         .getSubPackagesOf(pkgName) { it.toString()  != "META-INF"}
         .asSequence()
         .flatMap { sequenceOf(it) + allPackages(module, it) }
-}
\ No newline at end of file
+}
+
+/**
+ * Computes the stamp of every package declared by the given source files and libraries, from
+ * the paths, sizes and modification times of the files that declare it. Only the entry names of
+ * the libraries are read, nothing is resolved.
+ */
+internal fun packageStamps(sources: Map<File, FqName>, classPath: Collection<File>): Map<FqName, Long> {
+    val stamps = HashMap<FqName, Long>()
+    // a package may be declared by several files, their stamps are combined by addition so that
+    // the order in which they are visited doesn't matter
+    fun add(pkg: FqName, stamp: Long) {
+        stamps[pkg] = (stamps[pkg] ?: 0L) + stamp * -0x61c8864680b583ebL
+    }
+    for ((file, pkg) in sources) {
+        add(pkg, stampOf(file))
+    }
+    for (jar in classPath) {
+        val stamp = stampOf(jar)
+        for (pkg in packagesOf(jar)) {
+            add(pkg, stamp)
+        }
+    }
+    return stamps
+}
+
+private fun packagesOf(jar: File): Set<FqName> {
+    val packages = HashSet<FqName>()
+    try {
+        ZipFile(jar).use { zip ->
+            for (entry in zip.entries()) {
+                val name = entry.name
+                if (entry.isDirectory || name.startsWith("META-INF/")) {
+                    continue
+                }
+                val slash = name.lastIndexOf('/')
+                packages.add(if (slash == -1) FqName.ROOT else FqName(name.substring(0, slash).replace('/', '.')))
+            }
+        }
+    } catch (e: IOException) {
+        Log.w("SymbolIndex", "Unable to list the packages of $jar", e)
+    }
+    return packages
+}
+
+/**
+ * Computes a stamp of the path, size and modification time of the given file.
+ */
+private fun stampOf(file: File): Long {
+    var stamp = file.path.hashCode().toLong()
+    stamp = 31 * stamp + file.length()
+    stamp = 31 * stamp + file.lastModified()
+    return stamp
+}
+
+internal fun packFlags(kind: Int, visibility: Int) = (kind and 0xFF) or ((visibility and 0xFF) shl 8)
+
+private fun unpackKind(flags: Int) = flags and 0xFF
+
+private fun unpackVisibility(flags: Int) = (flags ushr 8) and 0xFF
+
+internal class Entry(
+    val fqName: String,
+    val shortName: String,
+    val flags: Int,
+    val receiverType: String?
+)
+
+private class PackageSymbols(val stamp: Long, val entries: List<Entry>)
+
+/**
+ * A package found by a refresh, its declarations are only resolved if the [stamp] differs from
+ * the one that is indexed.
+ */
+internal class PackageContents(val name: FqName, val stamp: Long, val entries: () -> List<Entry>)
+
+/**
+ * The symbols of every package, stored in parallel arrays sorted by their short name so that
+ * a prefix is found with a binary search.
+ */
+private class SymbolTable(
+    private val shortNames: Array<String>,
+    private val fqNames: Array<String>,
+    private val flags: IntArray,
+    private val receiverTypes: Array<String?>
+) {
+
+    fun query(prefix: String, receiverType: String?, limit: Int): List<Symbol> {
+        val result = ArrayList<Symbol>()
+        var i = lowerBound(prefix)
+        while (i < shortNames.size && result.size < limit && shortNames[i].startsWith(prefix)) {
+            if (receiverTypes[i] == receiverType) {
+                result.add(
+                    Symbol(
+                        fqName = FqName(fqNames[i]),
+                        kind = Symbol.Kind.fromRaw(unpackKind(flags[i])),
+                        visibility = Symbol.Visibility.fromRaw(unpackVisibility(flags[i])),
+                        extensionReceiverType = receiverTypes[i]?.let(::FqName)
+                    )
+                )
+            }
+            i++
+        }
+        return result
+    }
+
+    private fun lowerBound(prefix: String): Int {
+        var low = 0
+        var high = shortNames.size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (shortNames[mid] < prefix) {
+                low = mid + 1
+            } else {
+                high = mid
+            }
+        }
+        return low
+    }
+
+    companion object {
+        val EMPTY = SymbolTable(emptyArray(), emptyArray(), IntArray(0), emptyArray())
+
+        fun create(packages: Collection<PackageSymbols>): SymbolTable {
+            val entries = ArrayList<Entry>()
+            for (pkg in packages) {
+                entries.addAll(pkg.entries)
+            }
+            entries.sortBy { it.shortName }
+            return SymbolTable(
+                Array(entries.size) { entries[it].shortName },
+                Array(entries.size) { entries[it].fqName },
+                IntArray(entries.size) { entries[it].flags },
+                Array(entries.size) { entries[it].receiverType }
+            )
+        }
+    }
+}
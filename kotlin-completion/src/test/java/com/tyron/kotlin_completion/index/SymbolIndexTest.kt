@@ -0,0 +1,102 @@
+package com.tyron.kotlin_completion.index
+
+import org.jetbrains.kotlin.name.FqName
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+import java.io.FileOutputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+@RunWith(RobolectricTestRunner::class)
+class SymbolIndexTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private val indexed = mutableListOf<String>()
+
+    @Test
+    fun testUnchangedPackagesAreLoadedFromCache() {
+        val cacheFile = File(temporaryFolder.root, "symbols.idx")
+        SymbolIndex(cacheFile).update(packages("a" to 1L, "b" to 1L), false)
+        assertEquals(listOf("a", "b"), indexed)
+
+        indexed.clear()
+        val loaded = SymbolIndex(cacheFile)
+        loaded.update(packages("a" to 1L, "b" to 1L), false)
+        assertEquals(emptyList<String>(), indexed)
+        assertEquals(listOf(FqName("a.Foo")), loaded.query("Fo").map { it.fqName })
+    }
+
+    @Test
+    fun testChangedPackageIsIndexedAgain() {
+        val cacheFile = File(temporaryFolder.root, "symbols.idx")
+        SymbolIndex(cacheFile).update(packages("a" to 1L, "b" to 1L), false)
+
+        indexed.clear()
+        val loaded = SymbolIndex(cacheFile)
+        loaded.update(packages("a" to 1L, "b" to 2L), false)
+        assertEquals(listOf("b"), indexed)
+        assertEquals(Symbol.Kind.FUNCTION, loaded.query("Ba").single().kind)
+
+        // the new stamp has been written back
+        indexed.clear()
+        SymbolIndex(cacheFile).update(packages("a" to 1L, "b" to 2L), false)
+        assertEquals(emptyList<String>(), indexed)
+    }
+
+    @Test
+    fun testPackageStamps() {
+        val jar = temporaryFolder.newFile("library.jar")
+        writeJar(jar, "a/Foo.class", "b/Bar.class")
+        val source = temporaryFolder.newFile("Baz.kt")
+        source.writeText("package c")
+        val sources = mapOf(source to FqName("c"))
+
+        val stamps = packageStamps(sources, listOf(jar))
+        assertEquals(setOf(FqName("a"), FqName("b"), FqName("c")), stamps.keys)
+        assertEquals(stamps, packageStamps(sources, listOf(jar)))
+
+        // only the packages of the changed jar get a new stamp
+        writeJar(jar, "a/Foo.class", "b/Bar.class", "b/Qux.class")
+        val changedJar = packageStamps(sources, listOf(jar))
+        assertNotEquals(stamps[FqName("a")], changedJar[FqName("a")])
+        assertNotEquals(stamps[FqName("b")], changedJar[FqName("b")])
+        assertEquals(stamps[FqName("c")], changedJar[FqName("c")])
+
+        source.writeText("package c\n\nclass Baz")
+        val changedSource = packageStamps(sources, listOf(jar))
+        assertEquals(changedJar[FqName("a")], changedSource[FqName("a")])
+        assertNotEquals(changedJar[FqName("c")], changedSource[FqName("c")])
+    }
+
+    private fun writeJar(jar: File, vararg entries: String) {
+        ZipOutputStream(FileOutputStream(jar)).use { output ->
+            for (entry in entries) {
+                output.putNextEntry(ZipEntry(entry))
+                output.closeEntry()
+            }
+        }
+    }
+
+    /**
+     * Package "a" declares the class Foo, package "b" a class Bar at stamp 1 and a
+     * function Bar otherwise.
+     */
+    private fun packages(vararg stamps: Pair<String, Long>): Sequence<PackageContents> =
+        stamps.asSequence().map { (name, stamp) ->
+            PackageContents(FqName(name), stamp) {
+                indexed.add(name)
+                val shortName = if (name == "a") "Foo" else "Bar"
+                val kind = if (name == "b" && stamp != 1L) Symbol.Kind.FUNCTION else Symbol.Kind.CLASS
+                listOf(Entry("$name.$shortName", shortName,
+                    packFlags(kind.rawValue, Symbol.Visibility.PUBLIC.rawValue), null))
+            }
+        }
+}
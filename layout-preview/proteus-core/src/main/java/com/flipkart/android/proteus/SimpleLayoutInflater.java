@@ -177,7 +177,7 @@ public class SimpleLayoutInflater implements ProteusLayoutInflater {
     }
 
     private void applyStyle(View parent, String name, ProteusView view) {
-        Value value = AttributeProcessor.staticPreCompile(new Primitive(name), context, context.getFunctionManager());
+        Value value = AttributeProcessor.staticPreCompile(Primitive.valueOf(name), context, context.getFunctionManager());
         if (value != null) {
             applyStyle(parent, view, value);
         }
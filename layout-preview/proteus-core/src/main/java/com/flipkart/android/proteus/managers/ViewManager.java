@@ -323,11 +323,11 @@ public class ViewManager implements ProteusView.Manager {
     }
 
     public void updateAttribute(String name, String string) {
-        Primitive primitive = new Primitive(string);
+        Primitive primitive = Primitive.valueOf(string);
         Value value = AttributeProcessor.staticPreCompile(primitive, context,
                 context.getFunctionManager());
         if (value == null) {
-            value = new Primitive(string);
+            value = primitive;
         }
         updateAttribute(name, value);
     }
@@ -59,12 +59,12 @@ public abstract class AttributeProcessor<V extends View> {
 
       @Override
       public void handleResource(View parent, View view, Resource resource) {
-        output[0] = new Primitive(resource.getString(context));
+        output[0] = Primitive.valueOf(resource.getString(context));
       }
 
       @Override
       public void handleAttributeResource(View parent, View view, AttributeResource attribute) {
-        output[0] = new Primitive(attribute.apply(context).getString(0));
+        output[0] = Primitive.valueOf(attribute.apply(context).getString(0));
       }
 
       @Override
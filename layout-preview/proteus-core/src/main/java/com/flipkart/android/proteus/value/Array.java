@@ -68,7 +68,7 @@ public class Array extends Value {
    * @param bool the boolean that needs to be added to the array.
    */
   public void add(@Nullable Boolean bool) {
-    values.add(bool == null ? Null.INSTANCE : new Primitive(bool));
+    values.add(bool == null ? Null.INSTANCE : Primitive.valueOf(bool));
   }
 
   /**
@@ -95,7 +95,7 @@ public class Array extends Value {
    * @param string the string that needs to be added to the array.
    */
   public void add(@Nullable String string) {
-    values.add(string == null ? Null.INSTANCE : new Primitive(string));
+    values.add(string == null ? Null.INSTANCE : Primitive.valueOf(string));
   }
 
   /**
@@ -248,7 +248,7 @@ public abstract class Color extends Value {
   public abstract Result apply(Context context);
 
   private static class ColorCache {
-    static final LruCache<String, Color> cache = new LruCache<>(64);
+    static final LruCache<String, Color> cache = new LruCache<>(256);
   }
 
   public static class Int extends Color {
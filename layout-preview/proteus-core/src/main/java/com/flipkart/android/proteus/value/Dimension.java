@@ -175,6 +175,6 @@ public class Dimension extends Value {
   }
 
   private static class DimensionCache {
-    static final LruCache<String, Dimension> cache = new LruCache<>(64);
+    static final LruCache<String, Dimension> cache = new LruCache<>(256);
   }
 }
@@ -16,6 +16,8 @@
 
 package com.flipkart.android.proteus.value;
 
+import android.util.ArrayMap;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -27,12 +29,18 @@ import java.util.stream.Collectors;
 /**
  * ObjectValue
  *
+ * The members are stored in an {@link ArrayMap} while there are only a few of them, which is
+ * the case for most attribute sets and styles, and moved to a {@link HashMap} once the object
+ * grows larger than {@link #MAX_COMPACT_SIZE}.
+ *
  * @author aditya.sharat
  */
 
 public class ObjectValue extends Value {
 
-    private final HashMap<String, Value> members = new HashMap<>();
+    private static final int MAX_COMPACT_SIZE = 16;
+
+    private Map<String, Value> members = new ArrayMap<>();
 
     @Override
     public ObjectValue copy() {
@@ -55,6 +63,10 @@ public class ObjectValue extends Value {
         if (value == null) {
             value = Null.INSTANCE;
         }
+        if (members.size() >= MAX_COMPACT_SIZE && members instanceof ArrayMap &&
+                !members.containsKey(property)) {
+            members = new HashMap<>(members);
+        }
         members.put(property, value);
     }
 
@@ -120,6 +132,9 @@ public class ObjectValue extends Value {
      * @return a {@link Value} if the {@code value} is not null, otherwise a {@link Null}
      */
     private Value createValue(java.lang.Object value) {
+        if (value instanceof String) {
+            return Primitive.valueOf((String) value);
+        }
         return value == null ? Null.INSTANCE : new Primitive(value);
     }
 
@@ -16,6 +16,9 @@
 
 package com.flipkart.android.proteus.value;
 
+import android.util.LruCache;
+
+import com.flipkart.android.proteus.ProteusConstants;
 import com.flipkart.android.proteus.toolbox.LazilyParsedNumber;
 
 import java.math.BigInteger;
@@ -80,6 +83,26 @@ public class Primitive extends Value {
     setValue(primitive);
   }
 
+  /**
+   * Returns a primitive containing the given string. Primitives are immutable, so the same
+   * instance is shared by every attribute that has the same value instead of allocating a new
+   * primitive for each of them.
+   *
+   * @param string the value of the primitive.
+   */
+  public static Primitive valueOf(String string) {
+    Primitive primitive = PrimitiveCache.cache.get(string);
+    if (null == primitive) {
+      primitive = new Primitive(string);
+      PrimitiveCache.cache.put(string, primitive);
+    }
+    return primitive;
+  }
+
+  public static Primitive valueOf(boolean bool) {
+    return bool ? ProteusConstants.TRUE : ProteusConstants.FALSE;
+  }
+
   static boolean isPrimitiveOrString(java.lang.Object target) {
     if (target instanceof String) {
       return true;
@@ -303,4 +326,8 @@ public class Primitive extends Value {
   public String getAsDoubleQuotedString() {
     return '\"' + getAsString() + '\"';
   }
+
+  private static class PrimitiveCache {
+    static final LruCache<String, Primitive> cache = new LruCache<>(256);
+  }
 }
@@ -6,6 +6,7 @@ import com.flipkart.android.proteus.value.Layout;
 import com.flipkart.android.proteus.value.Value;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.FileManager;
+import com.tyron.layoutpreview.convert.LayoutCompiler;
 import com.tyron.layoutpreview.resource.ResourceDrawableParser;
 import com.tyron.layoutpreview.resource.ResourceLayoutParser;
 import com.tyron.layoutpreview.resource.ResourceStringParser;
@@ -56,7 +57,11 @@ public class ResourceManager {
     }
 
     public Map<String, Layout> getLayouts() {
-        ResourceLayoutParser parser = new ResourceLayoutParser(mContext, mAndroidModule.getAndroidResourcesDirectory(), mFileManager);
+        return getLayouts(new LayoutCompiler());
+    }
+
+    public Map<String, Layout> getLayouts(LayoutCompiler compiler) {
+        ResourceLayoutParser parser = new ResourceLayoutParser(mContext, mAndroidModule.getAndroidResourcesDirectory(), mFileManager, compiler);
         return parser.getLayouts();
     }
 
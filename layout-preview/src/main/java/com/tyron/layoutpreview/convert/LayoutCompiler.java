@@ -0,0 +1,421 @@
+package com.tyron.layoutpreview.convert;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.flipkart.android.proteus.FunctionManager;
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.ViewTypeParser;
+import com.flipkart.android.proteus.toolbox.Attributes;
+import com.flipkart.android.proteus.value.Array;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.ObjectValue;
+import com.flipkart.android.proteus.value.Value;
+import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Compiles layout XML files directly to Proteus {@link Layout}s, without converting them to
+ * JSON first like {@link XmlToJsonConverter} and {@link ProteusTypeAdapterFactory} do.
+ *
+ * The compiled layouts are cached per file. A file whose contents did not change is not
+ * parsed again, and when it did change, only the elements whose tag, attributes or children
+ * changed are compiled again, the rest of the tree is taken from the previous compilation.
+ * The names of the layouts included with {@code <include>} are also recorded so that the
+ * layouts that need to be inflated again after a layout has changed can be found.
+ *
+ * The compiler does not keep the context it compiles with, so the same compiler can be used by
+ * every preview of a module as long as their contexts come from the same {@link
+ * com.flipkart.android.proteus.Proteus} instance.
+ *
+ * The cached layouts are never handed out, callers get a copy of them since the layout
+ * editor modifies the layouts of the views it shows.
+ */
+public class LayoutCompiler {
+
+    private static final String INCLUDE = "include";
+    private static final String INCLUDE_LAYOUT = "layout";
+    private static final String LAYOUT_PREFIX = "@layout/";
+
+    private final Map<File, CompiledFile> mFiles = new HashMap<>();
+
+    private int mCompiledElements;
+
+    /**
+     * Compiles the given contents of a layout file
+     *
+     * @param context  The context whose parsers compile the attributes
+     * @param file     The layout file, used as the key of the cache
+     * @param contents The current contents of the file
+     * @return The compiled layout
+     * @throws IOException            if an error has occurred while reading the contents
+     * @throws XmlPullParserException if the XML content is malformed
+     * @throws ConvertException       if the XML does not have a root element
+     */
+    @NonNull
+    public synchronized Layout compile(@NonNull ProteusContext context, @NonNull File file,
+                                       @NonNull String contents)
+            throws IOException, XmlPullParserException, ConvertException {
+        mCompiledElements = 0;
+
+        CompiledFile previous = mFiles.get(file);
+        if (previous != null && previous.contents.equals(contents)) {
+            return copy(previous.layout);
+        }
+
+        Compilation compilation = new Compilation(context, previous);
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(new StringReader(contents));
+        advanceToRootNode(parser);
+        Layout layout = compileElement(parser, compilation);
+
+        mFiles.put(file, new CompiledFile(contents, layout, compilation));
+        return copy(layout);
+    }
+
+    /**
+     * Compiles layout XML that does not belong to a file, nothing is cached.
+     */
+    @NonNull
+    public synchronized Layout compile(@NonNull ProteusContext context, @NonNull String contents)
+            throws IOException, XmlPullParserException, ConvertException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(new StringReader(contents));
+        advanceToRootNode(parser);
+        return compileElement(parser, new Compilation(context, null));
+    }
+
+    /**
+     * Returns the names of the layouts that include the given layout, directly or through
+     * other layouts. These have to be inflated again when the given layout changes.
+     */
+    @NonNull
+    public synchronized Set<String> getDependents(@NonNull String layoutName) {
+        Set<String> dependents = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(layoutName);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            for (Entry<File, CompiledFile> entry : mFiles.entrySet()) {
+                String dependent = getLayoutName(entry.getKey());
+                if (entry.getValue().includes.contains(name) && dependents.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        dependents.remove(layoutName);
+        return dependents;
+    }
+
+    /**
+     * Drops the cached layouts of the files that are not in the given collection
+     */
+    public synchronized void retain(@NonNull Collection<File> files) {
+        mFiles.keySet().retainAll(new HashSet<>(files));
+    }
+
+    public synchronized void remove(@NonNull File file) {
+        mFiles.remove(file);
+    }
+
+    public synchronized void clear() {
+        mFiles.clear();
+    }
+
+    /**
+     * @return The number of elements that were compiled by the last call to
+     * {@link #compile(ProteusContext, File, String)}, elements taken from the cache are not counted
+     */
+    @VisibleForTesting
+    public synchronized int getCompiledElementCount() {
+        return mCompiledElements;
+    }
+
+    @NonNull
+    public static String getLayoutName(@NonNull File file) {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+        return index == -1 ? name : name.substring(0, index);
+    }
+
+    private Layout compileElement(XmlPullParser parser, Compilation compilation)
+            throws IOException, XmlPullParserException {
+        String type = parser.getName();
+        List<String> key = new ArrayList<>(1 + parser.getAttributeCount() * 2);
+        key.add(type);
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            key.add(parser.getAttributeName(i));
+            key.add(parser.getAttributeValue(i));
+        }
+
+        if (INCLUDE.equals(type)) {
+            String layout = parser.getAttributeValue(null, INCLUDE_LAYOUT);
+            if (layout != null && layout.startsWith(LAYOUT_PREFIX)) {
+                compilation.includes.add(layout.substring(LAYOUT_PREFIX.length()));
+            }
+        }
+
+        Element element = compilation.getElement(key);
+        if (element == null) {
+            element = compileAttributes(compilation.context, type, key);
+            mCompiledElements++;
+        }
+        compilation.elements.put(key, element);
+
+        List<Layout> children = new ArrayList<>();
+        final int depth = parser.getDepth();
+        int eventType;
+        while (((eventType = parser.next()) != XmlPullParser.END_TAG ||
+                parser.getDepth() > depth) && eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                children.add(compileElement(parser, compilation));
+            }
+        }
+
+        Subtree subtree = new Subtree(element, children);
+        Layout layout = compilation.getSubtree(subtree);
+        if (layout == null) {
+            layout = createLayout(compilation.context, element, children);
+        }
+        compilation.subtrees.put(subtree, layout);
+        return layout;
+    }
+
+    /**
+     * Compiles the attributes of an element the same way
+     * {@link ProteusTypeAdapterFactory.LayoutTypeAdapter} does, the attributes known by the
+     * parser of the view are precompiled and the rest are kept as extras.
+     */
+    private static Element compileAttributes(ProteusContext context, String type, List<String> key) {
+        ViewTypeParser<View> parser = context.getParser(type);
+        FunctionManager manager = context.getFunctionManager();
+        List<Layout.Attribute> attributes = new ArrayList<>();
+        ObjectValue extras = new ObjectValue();
+        for (int i = 1; i < key.size(); i += 2) {
+            String name = key.get(i);
+            Value value = ProteusTypeAdapterFactory.compileString(context, key.get(i + 1));
+            ViewTypeParser.AttributeSet.Attribute attribute =
+                    parser != null ? parser.getAttributeSet().getAttribute(name) : null;
+            if (attribute != null) {
+                attributes.add(new Layout.Attribute(attribute.id,
+                        attribute.processor.precompile(value, context, manager)));
+            } else {
+                extras.add(name, value);
+            }
+        }
+        return new Element(type, parser, attributes, extras);
+    }
+
+    private static Layout createLayout(ProteusContext context, Element element,
+                                       List<Layout> children) {
+        List<Layout.Attribute> attributes = element.attributes;
+        ObjectValue extras = element.extras;
+        if (!children.isEmpty()) {
+            Array value = new Array(children.size());
+            for (Layout child : children) {
+                value.add(child);
+            }
+            ViewTypeParser.AttributeSet.Attribute attribute = element.parser != null
+                    ? element.parser.getAttributeSet().getAttribute(Attributes.ViewGroup.Children)
+                    : null;
+            if (attribute != null) {
+                attributes = new ArrayList<>(attributes);
+                attributes.add(new Layout.Attribute(attribute.id, attribute.processor
+                        .precompile(value, context, context.getFunctionManager())));
+            } else {
+                extras = copy(extras);
+                extras.add(Attributes.ViewGroup.Children, value);
+            }
+        }
+        return new Layout(element.type, attributes.isEmpty() ? null : attributes, null,
+                extras.size() == 0 ? null : extras);
+    }
+
+    /**
+     * Copies the parts of a layout that are modified by the layout editor, the attribute lists,
+     * the extras and the arrays of children. Other values are shared.
+     */
+    private static Layout copy(Layout layout) {
+        List<Layout.Attribute> attributes = null;
+        if (layout.attributes != null) {
+            attributes = new ArrayList<>(layout.attributes.size());
+            for (Layout.Attribute attribute : layout.attributes) {
+                attributes.add(new Layout.Attribute(attribute.id, copyChildren(attribute.value)));
+            }
+        }
+        ObjectValue extras = null;
+        if (layout.extras != null) {
+            extras = copy(layout.extras);
+        }
+        return new Layout(layout.type, attributes, layout.data, extras);
+    }
+
+    private static ObjectValue copy(ObjectValue object) {
+        ObjectValue copy = new ObjectValue();
+        for (Entry<String, Value> entry : object.entrySet()) {
+            copy.add(entry.getKey(), copyChildren(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static Value copyChildren(Value value) {
+        if (!value.isArray()) {
+            return value;
+        }
+        Array array = value.getAsArray();
+        Array copy = new Array(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            Value child = array.get(i);
+            copy.add(child.isLayout() ? copy(child.getAsLayout()) : child);
+        }
+        return copy;
+    }
+
+    private static void advanceToRootNode(XmlPullParser parser)
+            throws IOException, XmlPullParserException, ConvertException {
+        int type;
+        while ((type = parser.next()) != XmlPullParser.START_TAG &&
+                type != XmlPullParser.END_DOCUMENT) {
+            // Empty
+        }
+
+        if (type != XmlPullParser.START_TAG) {
+            throw new ConvertException(parser.getPositionDescription()
+                    + ": No start tag found!");
+        }
+    }
+
+    /**
+     * The compiled attributes of an element, without its children
+     */
+    private static class Element {
+        final String type;
+        final ViewTypeParser<View> parser;
+        final List<Layout.Attribute> attributes;
+        final ObjectValue extras;
+
+        Element(String type, ViewTypeParser<View> parser, List<Layout.Attribute> attributes,
+                ObjectValue extras) {
+            this.type = type;
+            this.parser = parser;
+            this.attributes = attributes;
+            this.extras = extras;
+        }
+    }
+
+    /**
+     * Key of a compiled element together with its children. The elements and the children
+     * are compared by identity since both come from the cache.
+     */
+    private static class Subtree {
+        final Element element;
+        final List<Layout> children;
+        private final int hashCode;
+
+        Subtree(Element element, List<Layout> children) {
+            this.element = element;
+            this.children = children;
+            int hash = System.identityHashCode(element);
+            for (Layout child : children) {
+                hash = 31 * hash + System.identityHashCode(child);
+            }
+            hashCode = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Subtree)) return false;
+            Subtree subtree = (Subtree) o;
+            if (element != subtree.element || children.size() != subtree.children.size()) {
+                return false;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != subtree.children.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The state of compiling a file. Only the elements and subtrees used by this compilation
+     * are kept afterwards, so the cache of a file never grows beyond the size of the file.
+     */
+    private static class Compilation {
+        final Map<List<String>, Element> elements = new HashMap<>();
+        final Map<Subtree, Layout> subtrees = new HashMap<>();
+        final Set<String> includes = new HashSet<>();
+        final ProteusContext context;
+
+        @Nullable
+        private final CompiledFile previous;
+
+        Compilation(ProteusContext context, @Nullable CompiledFile previous) {
+            this.context = context;
+            this.previous = previous;
+        }
+
+        @Nullable
+        Element getElement(List<String> key) {
+            Element element = elements.get(key);
+            if (element == null && previous != null) {
+                element = previous.elements.get(key);
+            }
+            return element;
+        }
+
+        @Nullable
+        Layout getSubtree(Subtree subtree) {
+            Layout layout = subtrees.get(subtree);
+            if (layout == null && previous != null) {
+                layout = previous.subtrees.get(subtree);
+            }
+            return layout;
+        }
+    }
+
+    private static class CompiledFile {
+        final String contents;
+        final Layout layout;
+        final Map<List<String>, Element> elements;
+        final Map<Subtree, Layout> subtrees;
+        final Set<String> includes;
+
+        CompiledFile(String contents, Layout layout, Compilation compilation) {
+            this.contents = contents;
+            this.layout = layout;
+            this.elements = compilation.elements;
+            this.subtrees = compilation.subtrees;
+            this.includes = Collections.unmodifiableSet(compilation.includes);
+        }
+    }
+}
@@ -67,7 +67,7 @@ public class ProteusTypeAdapterFactory implements TypeAdapterFactory {
                     String number = in.nextString();
                     return new Primitive(new LazilyParsedNumber(number));
                 case BOOLEAN:
-                    return new Primitive(in.nextBoolean());
+                    return Primitive.valueOf(in.nextBoolean());
                 case NULL:
                     in.nextNull();
                     return Null.INSTANCE;
@@ -249,7 +249,7 @@ public class ProteusTypeAdapterFactory implements TypeAdapterFactory {
                     String number = in.nextString();
                     return new Primitive(new LazilyParsedNumber(number));
                 case BOOLEAN:
-                    return new Primitive(in.nextBoolean());
+                    return Primitive.valueOf(in.nextBoolean());
                 case NULL:
                     in.nextNull();
                     return Null.INSTANCE;
@@ -395,11 +395,11 @@ public class ProteusTypeAdapterFactory implements TypeAdapterFactory {
         return context;
     }
 
-    static Value compileString(ProteusContext context, String string) {
+    public static Value compileString(ProteusContext context, String string) {
         if (Binding.isBindingValue(string)) {
             return Binding.valueOf(string, context, PROTEUS_INSTANCE_HOLDER.getProteus().functions);
         } else {
-            return new Primitive(string);
+            return Primitive.valueOf(string);
         }
     }
 
@@ -33,16 +33,24 @@ import com.tyron.layout.appcompat.AppCompatModule;
 import com.tyron.layout.cardview.CardViewModule;
 import com.tyron.layout.constraintlayout.ConstraintLayoutModule;
 import com.tyron.layoutpreview.ResourceManager;
+import com.tyron.layoutpreview.convert.ConvertException;
+import com.tyron.layoutpreview.convert.LayoutCompiler;
 import com.tyron.layoutpreview.convert.XmlToJsonConverter;
 import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
 import com.tyron.layoutpreview.manager.ResourceDrawableManager;
 import com.tyron.layoutpreview.manager.ResourceLayoutManager;
 import com.tyron.layoutpreview.resource.ResourceValueParser;
 
+import org.xmlpull.v1.XmlPullParserException;
+
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
@@ -50,10 +58,18 @@ import dalvik.system.DexClassLoader;
 
 public class PreviewLayoutInflater {
 
+    /**
+     * The {@link Proteus} instance and the compiled layouts of each module, kept between the
+     * layout editor sessions so that opening the editor again only compiles the layouts that
+     * have changed since.
+     */
+    private static final Map<AndroidModule, ModulePreview> sModulePreviews = new WeakHashMap<>();
+
     private final Context mBaseContext;
     private final Proteus mProteus;
     private final AndroidModule mProject;
     private ProteusContext mContext;
+    private final LayoutCompiler mLayoutCompiler;
 
     private final ProteusLayoutInflater.Callback mCallback = new ProteusLayoutInflater.Callback() {
         @Override
@@ -139,12 +155,9 @@ public class PreviewLayoutInflater {
 
     public PreviewLayoutInflater(Context base, AndroidModule project) {
         mBaseContext = base;
-        ProteusBuilder builder = new ProteusBuilder();
-        builder.register(ConstraintLayoutModule.create());
-        builder.register(CardViewModule.create());
-        builder.register(AppCompatModule.create());
-        registerCustomViews(builder, project);
-        mProteus = builder.build();
+        ModulePreview preview = getModulePreview(project);
+        mProteus = preview.proteus;
+        mLayoutCompiler = preview.compiler;
         mProject = project;
 
         mContext = mProteus.createContextBuilder(base)
@@ -168,7 +181,7 @@ public class PreviewLayoutInflater {
             ResourceManager resourceManager = new ResourceManager(mContext,
                     mProject, mProject.getFileManager());
             mDrawableManager.setDrawables(resourceManager.getDrawables());
-            mLayoutManager.setLayouts(resourceManager.getLayouts());
+            mLayoutManager.setLayouts(resourceManager.getLayouts(mLayoutCompiler));
 
 
             mParser.parse(mProject);
@@ -205,6 +218,37 @@ public class PreviewLayoutInflater {
         return mContext;
     }
 
+    /**
+     * Compiles a layout file again after it has changed, only the elements that have changed
+     * are compiled and the other layouts are left as they are.
+     *
+     * @param file The layout file that has changed
+     * @return The names of the layouts that have to be inflated again, the changed layout
+     * and the layouts that include it
+     */
+    public Set<String> refreshLayout(@NonNull File file) {
+        String name = LayoutCompiler.getLayoutName(file);
+        Layout layout = null;
+        try {
+            Optional<CharSequence> contents = mProject.getFileManager().getFileContent(file);
+            if (contents.isPresent()) {
+                layout = mLayoutCompiler.compile(mContext, file, contents.get().toString());
+            }
+        } catch (IOException | XmlPullParserException | ConvertException e) {
+            // keep showing the last layout that could be compiled
+            return new LinkedHashSet<>();
+        }
+        if (layout == null) {
+            mLayoutCompiler.remove(file);
+        }
+        mLayoutManager.setLayout(name, layout);
+
+        Set<String> names = new LinkedHashSet<>();
+        names.add(name);
+        names.addAll(mLayoutCompiler.getDependents(name));
+        return names;
+    }
+
     public Optional<ProteusView> inflateLayout(@NonNull String name) {
         ProteusLayoutInflater inflater = mContext.getInflater();
         if (mContext.getLayout(name) == null) {
@@ -248,6 +292,22 @@ public class PreviewLayoutInflater {
         return mContext.getInflater().inflate(layout, new ObjectValue());
     }
 
+    private ModulePreview getModulePreview(AndroidModule module) {
+        synchronized (sModulePreviews) {
+            ModulePreview preview = sModulePreviews.get(module);
+            if (preview == null) {
+                ProteusBuilder builder = new ProteusBuilder();
+                builder.register(ConstraintLayoutModule.create());
+                builder.register(CardViewModule.create());
+                builder.register(AppCompatModule.create());
+                registerCustomViews(builder, module);
+                preview = new ModulePreview(builder.build());
+                sModulePreviews.put(module, preview);
+            }
+            return preview;
+        }
+    }
+
     public void registerCustomViews(ProteusBuilder builder, Module module) {
         File customViewsDir = new File(module.getBuildDirectory(), "custom_views");
         if (!customViewsDir.exists() && !customViewsDir.mkdirs()) {
@@ -270,4 +330,17 @@ public class PreviewLayoutInflater {
         }
         return destination;
     }
+
+    /**
+     * The layouts compiled by a {@link LayoutCompiler} are only valid for the {@link Proteus}
+     * instance whose parsers compiled them, so both are kept together.
+     */
+    private static class ModulePreview {
+        final Proteus proteus;
+        final LayoutCompiler compiler = new LayoutCompiler();
+
+        ModulePreview(Proteus proteus) {
+            this.proteus = proteus;
+        }
+    }
 }
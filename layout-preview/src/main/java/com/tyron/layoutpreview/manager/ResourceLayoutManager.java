@@ -22,4 +22,12 @@ public class ResourceLayoutManager extends LayoutManager {
         mLayouts.clear();
         mLayouts.putAll(map);
     }
+
+    public void setLayout(String name, @Nullable Layout layout) {
+        if (layout == null) {
+            mLayouts.remove(name);
+        } else {
+            mLayouts.put(name, layout);
+        }
+    }
 }
@@ -6,20 +6,16 @@ import androidx.annotation.Nullable;
 
 import com.flipkart.android.proteus.ProteusContext;
 import com.flipkart.android.proteus.value.Layout;
-import com.flipkart.android.proteus.value.Value;
-import com.google.gson.JsonObject;
-import com.google.gson.stream.JsonReader;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.layoutpreview.BuildConfig;
 import com.tyron.layoutpreview.convert.ConvertException;
-import com.tyron.layoutpreview.convert.XmlToJsonConverter;
-import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+import com.tyron.layoutpreview.convert.LayoutCompiler;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,13 +27,24 @@ public class ResourceLayoutParser {
     private final ProteusContext mContext;
     private final File mResourceDirectory;
     private final FileManager mFileManager;
+    private final LayoutCompiler mCompiler;
 
     private final Map<String, Layout> layoutMap = new HashMap<>();
 
     public ResourceLayoutParser(ProteusContext context, File dir, FileManager fileManager) {
+        this(context, dir, fileManager, new LayoutCompiler());
+    }
+
+    /**
+     * @param compiler The compiler used to compile the layouts, reusing the same compiler
+     *                 between parses only compiles the layouts that have changed
+     */
+    public ResourceLayoutParser(ProteusContext context, File dir, FileManager fileManager,
+                                LayoutCompiler compiler) {
         mContext = context;
         mResourceDirectory = dir;
         mFileManager = fileManager;
+        mCompiler = compiler;
 
         layoutMap.putAll(getDefaultLayouts());
     }
@@ -55,11 +62,12 @@ public class ResourceLayoutParser {
 
         Map<String, Layout> map = new HashMap<>();
 
+        mCompiler.retain(Arrays.asList(xmlFiles));
         for (File file : xmlFiles) {
             try {
-                Value layout = parseLayout(file);
-                if (layout != null && layout.isLayout()) {
-                    map.put(getName(file), layout.getAsLayout());
+                Layout layout = parseLayout(file);
+                if (layout != null) {
+                    map.put(LayoutCompiler.getLayoutName(file), layout);
                 }
             } catch (IOException | XmlPullParserException | ConvertException e) {
                 if (BuildConfig.DEBUG) {
@@ -72,19 +80,11 @@ public class ResourceLayoutParser {
     }
 
     @Nullable
-    private Value parseLayout(File file) throws ConvertException, XmlPullParserException, IOException {
+    private Layout parseLayout(File file) throws ConvertException, XmlPullParserException, IOException {
         Optional<CharSequence> fileContent = mFileManager.getFileContent(file);
         if (fileContent.isPresent()) {
-            String contents = fileContent.get().toString();
-            JsonObject jsonObject = new XmlToJsonConverter()
-                    .convert(contents);
-            return new ProteusTypeAdapterFactory(mContext).VALUE_TYPE_ADAPTER
-                    .read(new JsonReader(new StringReader(jsonObject.toString())), false);
+            return mCompiler.compile(mContext, file, fileContent.get().toString());
         }
         return null;
     }
-
-    private String getName(File file) {
-        return file.getName().substring(0, file.getName().lastIndexOf("."));
-    }
 }
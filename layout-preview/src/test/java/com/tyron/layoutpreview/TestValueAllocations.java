@@ -0,0 +1,147 @@
+package com.tyron.layoutpreview;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.flipkart.android.proteus.value.Dimension;
+import com.flipkart.android.proteus.value.ObjectValue;
+import com.flipkart.android.proteus.value.Primitive;
+import com.flipkart.android.proteus.value.Value;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.tyron.layoutpreview.convert.LayoutCompiler;
+import com.tyron.layoutpreview.convert.XmlToJsonConverter;
+import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares the number of bytes allocated by the proteus values against the representation
+ * they had before they were interned and made compact, and the bytes allocated by compiling
+ * a layout against converting it through JSON.
+ */
+public class TestValueAllocations extends BaseTest {
+
+    private static final int ITERATIONS = 10_000;
+
+    /**
+     * Keeps the values alive so the allocations are not optimized away
+     */
+    private static volatile Object sSink;
+
+    private static final String[][] ATTRIBUTES = {
+            {"android:layout_width", "match_parent"},
+            {"android:layout_height", "wrap_content"},
+            {"android:layout_margin", "16dp"},
+            {"android:padding", "8dp"},
+            {"android:textColor", "#FF000000"},
+            {"android:text", "@string/app_name"},
+    };
+
+    private static final String ITEM_LAYOUT = "<LinearLayout\n" +
+            "    xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"wrap_content\"\n" +
+            "    android:orientation=\"horizontal\"\n" +
+            "    android:padding=\"16dp\">\n" +
+            "\n" +
+            "    <ImageView\n" +
+            "        android:layout_width=\"48dp\"\n" +
+            "        android:layout_height=\"48dp\"\n" +
+            "        android:src=\"@drawable/ic_launcher\" />\n" +
+            "\n" +
+            "    <TextView\n" +
+            "        android:layout_width=\"0dp\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:layout_weight=\"1\"\n" +
+            "        android:layout_marginStart=\"16dp\"\n" +
+            "        android:text=\"@string/app_name\"\n" +
+            "        android:textColor=\"#FF000000\" />\n" +
+            "</LinearLayout>";
+
+    @Test
+    public void testInternedPrimitives() {
+        long interned = measure(() -> {
+            for (String[] attribute : ATTRIBUTES) {
+                sSink = Primitive.valueOf(attribute[1]);
+            }
+        });
+        long allocated = measure(() -> {
+            for (String[] attribute : ATTRIBUTES) {
+                sSink = new Primitive(attribute[1]);
+            }
+        });
+        assertThat(interned).isLessThan(allocated);
+
+        assertThat(Primitive.valueOf("match_parent")).isSameInstanceAs(Primitive.valueOf("match_parent"));
+        assertThat(Dimension.valueOf("16dp")).isSameInstanceAs(Dimension.valueOf("16dp"));
+    }
+
+    @Test
+    public void testCompactObjectValue() {
+        long compact = measure(() -> {
+            ObjectValue object = new ObjectValue();
+            for (String[] attribute : ATTRIBUTES) {
+                object.add(attribute[0], Primitive.valueOf(attribute[1]));
+            }
+            sSink = object;
+        });
+        long hashMap = measure(() -> {
+            Map<String, Value> map = new HashMap<>();
+            for (String[] attribute : ATTRIBUTES) {
+                map.put(attribute[0], Primitive.valueOf(attribute[1]));
+            }
+            sSink = map;
+        });
+        assertThat(compact).isLessThan(hashMap);
+    }
+
+    @Test
+    public void testCompileLayout() {
+        LayoutCompiler compiler = new LayoutCompiler();
+        long compiled = measure(() -> {
+            try {
+                sSink = compiler.compile(mInflater.getContext(), ITEM_LAYOUT);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        ProteusTypeAdapterFactory factory = new ProteusTypeAdapterFactory(mInflater.getContext());
+        long json = measure(() -> {
+            try {
+                JsonObject object = new XmlToJsonConverter().convert(ITEM_LAYOUT);
+                sSink = factory.VALUE_TYPE_ADAPTER.read(
+                        new JsonReader(new StringReader(object.toString())), false);
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertThat(compiled).isLessThan(json);
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread while running the given
+     * runnable {@link #ITERATIONS} times, after running it as many times to warm up
+     */
+    private static long measure(Runnable runnable) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        long before = threadBean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            runnable.run();
+        }
+        return threadBean.getThreadAllocatedBytes(thread) - before;
+    }
+}
@@ -0,0 +1,59 @@
+package com.tyron.layoutpreview.convert;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.flipkart.android.proteus.value.Layout;
+import com.tyron.layoutpreview.BaseTest;
+
+import org.junit.Test;
+
+import java.io.File;
+
+public class TestLayoutCompiler extends BaseTest {
+
+    private static final String TEST_LAYOUT = "<LinearLayout\n" +
+            "    xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"match_parent\"\n" +
+            "    android:orientation=\"vertical\">\n" +
+            "\n" +
+            "    <TextView\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:text=\"%s\" />\n" +
+            "\n" +
+            "    <Button\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:text=\"Button\" />\n" +
+            "\n" +
+            "    <include layout=\"@layout/toolbar\" />\n" +
+            "</LinearLayout>";
+
+    @Test
+    public void testCompile() throws Exception {
+        LayoutCompiler compiler = new LayoutCompiler();
+        Layout layout = compiler.compile(mInflater.getContext(), new File("main.xml"),
+                String.format(TEST_LAYOUT, "Text"));
+
+        assertThat(layout.type).isEqualTo("LinearLayout");
+        assertThat(layout.attributes).isNotNull();
+        assertThat(compiler.getCompiledElementCount()).isEqualTo(4);
+        assertThat(compiler.getDependents("toolbar")).containsExactly("main");
+    }
+
+    @Test
+    public void testOnlyChangedElementsAreCompiled() throws Exception {
+        LayoutCompiler compiler = new LayoutCompiler();
+        File file = new File("main.xml");
+        Layout first = compiler.compile(mInflater.getContext(), file, String.format(TEST_LAYOUT, "Text"));
+
+        Layout unchanged = compiler.compile(mInflater.getContext(), file, String.format(TEST_LAYOUT, "Text"));
+        assertThat(compiler.getCompiledElementCount()).isEqualTo(0);
+        // the cached layout is never handed out since the editor modifies it
+        assertThat(unchanged).isNotSameInstanceAs(first);
+
+        compiler.compile(mInflater.getContext(), file, String.format(TEST_LAYOUT, "Changed"));
+        assertThat(compiler.getCompiledElementCount()).isEqualTo(1);
+    }
+}
@@ -16,18 +16,17 @@ import com.tyron.vectorparser.model.GroupModel;
 import com.tyron.vectorparser.model.PathModel;
 import com.tyron.vectorparser.model.VectorModel;
 import com.tyron.vectorparser.util.Utils;
+import com.tyron.vectorparser.util.VectorCache;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.util.List;
 import java.util.Stack;
 
 public class DynamicVectorDrawable extends Drawable {
 
-    private XmlPullParser mParser;
     private VectorModel vectorModel;
     private Matrix scaleMatrix;
 
@@ -50,12 +49,18 @@ public class DynamicVectorDrawable extends Drawable {
     }
 
     public void setContents(String contents) throws XmlPullParserException {
-        mParser = XmlPullParserFactory.newInstance().newPullParser();
-        mParser.setInput(new StringReader(contents));
-        buildVectorModel();
+        try {
+            buildVectorModel(VectorCache.getElements(contents));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
-    private void buildVectorModel() {
+    /**
+     * Builds the model from the parsed elements of the file. The model is built again for
+     * each drawable since it is scaled to the bounds of the drawable.
+     */
+    private void buildVectorModel(List<VectorCache.Element> elements) {
 
         int tempPosition;
         PathModel pathModel = new PathModel();
@@ -64,186 +69,180 @@ public class DynamicVectorDrawable extends Drawable {
         ClipPathModel clipPathModel = new ClipPathModel();
         Stack<GroupModel> groupModelStack = new Stack<>();
 
-        try {
-            int event = mParser.getEventType();
-            while (event != XmlPullParser.END_DOCUMENT) {
-                String name = mParser.getName();
-                switch (event) {
-                    case XmlPullParser.START_TAG:
-                        switch (name) {
-                            case "vector":
-                                tempPosition = getAttrPosition(mParser, "android:viewportWidth");
-                                vectorModel.setViewportWidth((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.VECTOR_VIEWPORT_WIDTH);
-
-                                tempPosition = getAttrPosition(mParser, "android:viewportHeight");
-                                vectorModel.setViewportHeight((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.VECTOR_VIEWPORT_HEIGHT);
-
-                                tempPosition = getAttrPosition(mParser, "android:alpha");
-                                vectorModel.setAlpha((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.VECTOR_ALPHA);
-
-                                tempPosition = getAttrPosition(mParser, "android:name");
-                                vectorModel.setName((tempPosition != -1) ?
-                                        mParser.getAttributeValue(tempPosition) : null);
-
-                                tempPosition = getAttrPosition(mParser, "android:width");
-                                vectorModel.setWidth((tempPosition != -1) ?
-                                        Utils.getFloatFromDimensionString(mParser.getAttributeValue(tempPosition), mContext) : DefaultValues.VECTOR_WIDTH);
-
-                                tempPosition = getAttrPosition(mParser, "android:height");
-                                vectorModel.setHeight((tempPosition != -1) ?
-                                        Utils.getFloatFromDimensionString(mParser.getAttributeValue(tempPosition), mContext) : DefaultValues.VECTOR_HEIGHT);
-
-                                tempPosition = getAttrPosition(mParser, "android:tint");
-                                vectorModel.setTint((tempPosition != -1) ?
-                                        Utils.getColorFromString(mParser.getAttributeValue(tempPosition), mContext) : 0);
-                                break;
-                            case "path":
-                                pathModel = new PathModel();
-
-                                tempPosition = getAttrPosition(mParser, "android:name");
-                                pathModel.setName((tempPosition != -1) ?
-                                        mParser.getAttributeValue(tempPosition) : null);
-
-                                tempPosition = getAttrPosition(mParser, "android:fillAlpha");
-                                pathModel.setFillAlpha((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_FILL_ALPHA);
-
-                                tempPosition = getAttrPosition(mParser, "android:fillColor");
-                                pathModel.setFillColor((tempPosition != -1) ?
-                                        Utils.getColorFromString(mParser.getAttributeValue(tempPosition), mContext) : DefaultValues.PATH_FILL_COLOR);
-
-                                tempPosition = getAttrPosition(mParser, "android:fillType");
-                                pathModel.setFillType((tempPosition != -1) ?
-                                        Utils.getFillTypeFromString(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_FILL_TYPE);
-
-                                tempPosition = getAttrPosition(mParser, "android:pathData");
-                                pathModel.setPathData((tempPosition != -1) ?
-                                        mParser.getAttributeValue(tempPosition) : null);
-
-                                tempPosition = getAttrPosition(mParser, "android:strokeAlpha");
-                                pathModel.setStrokeAlpha((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_ALPHA);
-
-                                tempPosition = getAttrPosition(mParser, "android:strokeColor");
-                                pathModel.setStrokeColor((tempPosition != -1) ?
-                                        Utils.getColorFromString(mParser.getAttributeValue(tempPosition), mContext) : DefaultValues.PATH_STROKE_COLOR);
-
-                                tempPosition = getAttrPosition(mParser, "android:strokeLineCap");
-                                pathModel.setStrokeLineCap((tempPosition != -1) ?
-                                        Utils.getLineCapFromString(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_LINE_CAP);
-
-                                tempPosition = getAttrPosition(mParser, "android:strokeLineJoin");
-                                pathModel.setStrokeLineJoin((tempPosition != -1) ?
-                                        Utils.getLineJoinFromString(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_LINE_JOIN);
-
-                                tempPosition = getAttrPosition(mParser, "android:strokeMiterLimit");
-                                pathModel.setStrokeMiterLimit((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_MITER_LIMIT);
-
-                                tempPosition = getAttrPosition(mParser, "android:strokeWidth");
-                                pathModel.setStrokeWidth((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_WIDTH);
-
-                                tempPosition = getAttrPosition(mParser, "android:trimPathEnd");
-                                pathModel.setTrimPathEnd((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_TRIM_PATH_END);
-
-                                tempPosition = getAttrPosition(mParser, "android:trimPathOffset");
-                                pathModel.setTrimPathOffset((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_TRIM_PATH_OFFSET);
-
-                                tempPosition = getAttrPosition(mParser, "android:trimPathStart");
-                                pathModel.setTrimPathStart((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.PATH_TRIM_PATH_START);
-
-                                pathModel.buildPath(false);
-                                break;
-                            case "group":
-                                groupModel = new GroupModel();
-
-                                tempPosition = getAttrPosition(mParser, "android:name");
-                                groupModel.setName((tempPosition != -1) ?
-                                        mParser.getAttributeValue(tempPosition) : null);
-
-                                tempPosition = getAttrPosition(mParser, "android:pivotX");
-                                groupModel.setPivotX((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.GROUP_PIVOT_X);
-
-                                tempPosition = getAttrPosition(mParser, "android:pivotY");
-                                groupModel.setPivotY((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.GROUP_PIVOT_Y);
-
-                                tempPosition = getAttrPosition(mParser, "android:rotation");
-                                groupModel.setRotation((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.GROUP_ROTATION);
-
-                                tempPosition = getAttrPosition(mParser, "android:scaleX");
-                                groupModel.setScaleX((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.GROUP_SCALE_X);
-
-                                tempPosition = getAttrPosition(mParser, "android:scaleY");
-                                groupModel.setScaleY((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.GROUP_SCALE_Y);
-
-                                tempPosition = getAttrPosition(mParser, "android:translateX");
-                                groupModel.setTranslateX((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.GROUP_TRANSLATE_X);
-
-                                tempPosition = getAttrPosition(mParser, "android:translateY");
-                                groupModel.setTranslateY((tempPosition != -1) ?
-                                        Float.parseFloat(mParser.getAttributeValue(tempPosition)) : DefaultValues.GROUP_TRANSLATE_Y);
-
-                                groupModelStack.push(groupModel);
-                                break;
-                            case "clip-path":
-                                clipPathModel = new ClipPathModel();
-
-                                tempPosition = getAttrPosition(mParser, "android:name");
-                                clipPathModel.setName((tempPosition != -1) ? mParser.getAttributeValue(tempPosition) : null);
-
-                                tempPosition = getAttrPosition(mParser, "android:pathData");
-                                clipPathModel.setPathData((tempPosition != -1) ? mParser.getAttributeValue(tempPosition) : null);
-
-                                clipPathModel.buildPath(false);
-                                break;
+        for (VectorCache.Element element : elements) {
+            String name = element.getName();
+            switch (element.getEvent()) {
+                case XmlPullParser.START_TAG:
+                    switch (name) {
+                        case "vector":
+                            tempPosition = getAttrPosition(element, "android:viewportWidth");
+                            vectorModel.setViewportWidth((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.VECTOR_VIEWPORT_WIDTH);
+
+                            tempPosition = getAttrPosition(element, "android:viewportHeight");
+                            vectorModel.setViewportHeight((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.VECTOR_VIEWPORT_HEIGHT);
+
+                            tempPosition = getAttrPosition(element, "android:alpha");
+                            vectorModel.setAlpha((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.VECTOR_ALPHA);
+
+                            tempPosition = getAttrPosition(element, "android:name");
+                            vectorModel.setName((tempPosition != -1) ?
+                                    element.getAttributeValue(tempPosition) : null);
+
+                            tempPosition = getAttrPosition(element, "android:width");
+                            vectorModel.setWidth((tempPosition != -1) ?
+                                    Utils.getFloatFromDimensionString(element.getAttributeValue(tempPosition), mContext) : DefaultValues.VECTOR_WIDTH);
+
+                            tempPosition = getAttrPosition(element, "android:height");
+                            vectorModel.setHeight((tempPosition != -1) ?
+                                    Utils.getFloatFromDimensionString(element.getAttributeValue(tempPosition), mContext) : DefaultValues.VECTOR_HEIGHT);
+
+                            tempPosition = getAttrPosition(element, "android:tint");
+                            vectorModel.setTint((tempPosition != -1) ?
+                                    Utils.getColorFromString(element.getAttributeValue(tempPosition), mContext) : 0);
+                            break;
+                        case "path":
+                            pathModel = new PathModel();
+
+                            tempPosition = getAttrPosition(element, "android:name");
+                            pathModel.setName((tempPosition != -1) ?
+                                    element.getAttributeValue(tempPosition) : null);
+
+                            tempPosition = getAttrPosition(element, "android:fillAlpha");
+                            pathModel.setFillAlpha((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_FILL_ALPHA);
+
+                            tempPosition = getAttrPosition(element, "android:fillColor");
+                            pathModel.setFillColor((tempPosition != -1) ?
+                                    Utils.getColorFromString(element.getAttributeValue(tempPosition), mContext) : DefaultValues.PATH_FILL_COLOR);
+
+                            tempPosition = getAttrPosition(element, "android:fillType");
+                            pathModel.setFillType((tempPosition != -1) ?
+                                    Utils.getFillTypeFromString(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_FILL_TYPE);
+
+                            tempPosition = getAttrPosition(element, "android:pathData");
+                            pathModel.setPathData((tempPosition != -1) ?
+                                    element.getAttributeValue(tempPosition) : null);
+
+                            tempPosition = getAttrPosition(element, "android:strokeAlpha");
+                            pathModel.setStrokeAlpha((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_ALPHA);
+
+                            tempPosition = getAttrPosition(element, "android:strokeColor");
+                            pathModel.setStrokeColor((tempPosition != -1) ?
+                                    Utils.getColorFromString(element.getAttributeValue(tempPosition), mContext) : DefaultValues.PATH_STROKE_COLOR);
+
+                            tempPosition = getAttrPosition(element, "android:strokeLineCap");
+                            pathModel.setStrokeLineCap((tempPosition != -1) ?
+                                    Utils.getLineCapFromString(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_LINE_CAP);
+
+                            tempPosition = getAttrPosition(element, "android:strokeLineJoin");
+                            pathModel.setStrokeLineJoin((tempPosition != -1) ?
+                                    Utils.getLineJoinFromString(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_LINE_JOIN);
+
+                            tempPosition = getAttrPosition(element, "android:strokeMiterLimit");
+                            pathModel.setStrokeMiterLimit((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_MITER_LIMIT);
+
+                            tempPosition = getAttrPosition(element, "android:strokeWidth");
+                            pathModel.setStrokeWidth((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_STROKE_WIDTH);
+
+                            tempPosition = getAttrPosition(element, "android:trimPathEnd");
+                            pathModel.setTrimPathEnd((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_TRIM_PATH_END);
+
+                            tempPosition = getAttrPosition(element, "android:trimPathOffset");
+                            pathModel.setTrimPathOffset((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_TRIM_PATH_OFFSET);
+
+                            tempPosition = getAttrPosition(element, "android:trimPathStart");
+                            pathModel.setTrimPathStart((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.PATH_TRIM_PATH_START);
+
+                            pathModel.buildPath(false);
+                            break;
+                        case "group":
+                            groupModel = new GroupModel();
+
+                            tempPosition = getAttrPosition(element, "android:name");
+                            groupModel.setName((tempPosition != -1) ?
+                                    element.getAttributeValue(tempPosition) : null);
+
+                            tempPosition = getAttrPosition(element, "android:pivotX");
+                            groupModel.setPivotX((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.GROUP_PIVOT_X);
+
+                            tempPosition = getAttrPosition(element, "android:pivotY");
+                            groupModel.setPivotY((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.GROUP_PIVOT_Y);
+
+                            tempPosition = getAttrPosition(element, "android:rotation");
+                            groupModel.setRotation((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.GROUP_ROTATION);
+
+                            tempPosition = getAttrPosition(element, "android:scaleX");
+                            groupModel.setScaleX((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.GROUP_SCALE_X);
+
+                            tempPosition = getAttrPosition(element, "android:scaleY");
+                            groupModel.setScaleY((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.GROUP_SCALE_Y);
+
+                            tempPosition = getAttrPosition(element, "android:translateX");
+                            groupModel.setTranslateX((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.GROUP_TRANSLATE_X);
+
+                            tempPosition = getAttrPosition(element, "android:translateY");
+                            groupModel.setTranslateY((tempPosition != -1) ?
+                                    Float.parseFloat(element.getAttributeValue(tempPosition)) : DefaultValues.GROUP_TRANSLATE_Y);
+
+                            groupModelStack.push(groupModel);
+                            break;
+                        case "clip-path":
+                            clipPathModel = new ClipPathModel();
+
+                            tempPosition = getAttrPosition(element, "android:name");
+                            clipPathModel.setName((tempPosition != -1) ? element.getAttributeValue(tempPosition) : null);
+
+                            tempPosition = getAttrPosition(element, "android:pathData");
+                            clipPathModel.setPathData((tempPosition != -1) ? element.getAttributeValue(tempPosition) : null);
+
+                            clipPathModel.buildPath(false);
+                            break;
+                    }
+                    break;
+
+                case XmlPullParser.END_TAG:
+                    if (name.equals("path")) {
+                        if (groupModelStack.size() == 0) {
+                            vectorModel.addPathModel(pathModel);
+                        } else {
+                            groupModelStack.peek().addPathModel(pathModel);
+                        }
+                        vectorModel.getFullpath().addPath(pathModel.getPath());
+                    } else if (name.equals("clip-path")) {
+                        if (groupModelStack.size() == 0) {
+                            vectorModel.addClipPathModel(clipPathModel);
+                        } else {
+                            groupModelStack.peek().addClipPathModel(clipPathModel);
                         }
-                        break;
-
-                    case XmlPullParser.END_TAG:
-                        if (name.equals("path")) {
-                            if (groupModelStack.size() == 0) {
-                                vectorModel.addPathModel(pathModel);
-                            } else {
-                                groupModelStack.peek().addPathModel(pathModel);
-                            }
-                            vectorModel.getFullpath().addPath(pathModel.getPath());
-                        } else if (name.equals("clip-path")) {
-                            if (groupModelStack.size() == 0) {
-                                vectorModel.addClipPathModel(clipPathModel);
-                            } else {
-                                groupModelStack.peek().addClipPathModel(clipPathModel);
-                            }
-                        } else if (name.equals("group")) {
-                            GroupModel topGroupModel = groupModelStack.pop();
-                            if (groupModelStack.size() == 0) {
-                                topGroupModel.setParent(null);
-                                vectorModel.addGroupModel(topGroupModel);
-                            } else {
-                                topGroupModel.setParent(groupModelStack.peek());
-                                groupModelStack.peek().addGroupModel(topGroupModel);
-                            }
-                        } else if (name.equals("vector")) {
-                            vectorModel.buildTransformMatrices();
+                    } else if (name.equals("group")) {
+                        GroupModel topGroupModel = groupModelStack.pop();
+                        if (groupModelStack.size() == 0) {
+                            topGroupModel.setParent(null);
+                            vectorModel.addGroupModel(topGroupModel);
+                        } else {
+                            topGroupModel.setParent(groupModelStack.peek());
+                            groupModelStack.peek().addGroupModel(topGroupModel);
                         }
-                        break;
-                }
-                event = mParser.next();
+                    } else if (name.equals("vector")) {
+                        vectorModel.buildTransformMatrices();
+                    }
+                    break;
             }
-        } catch (XmlPullParserException | IOException e) {
-            e.printStackTrace();
         }
 
     }
@@ -321,9 +320,9 @@ public class DynamicVectorDrawable extends Drawable {
         vectorModel.scaleAllStrokeWidth(strokeRatio);
     }
 
-    private int getAttrPosition(XmlPullParser xpp, String attrName) {
-        for (int i = 0; i < xpp.getAttributeCount(); i++) {
-            if (xpp.getAttributeName(i).equals(attrName)) {
+    private int getAttrPosition(VectorCache.Element element, String attrName) {
+        for (int i = 0; i < element.getAttributeCount(); i++) {
+            if (element.getAttributeName(i).equals(attrName)) {
                 return i;
             }
         }
@@ -7,7 +7,7 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 
-import com.tyron.vectorparser.util.PathParser;
+import com.tyron.vectorparser.util.VectorCache;
 
 public class ClipPathModel {
     private String name;
@@ -27,7 +27,7 @@ public class ClipPathModel {
     }
 
     public void buildPath(boolean useLegacyParser) {
-        originalPath = PathParser.doPath(pathData);
+        originalPath = VectorCache.getPath(pathData);
         path = new Path(originalPath);
     }
 
@@ -8,7 +8,7 @@ import android.graphics.PathMeasure;
 import android.graphics.RectF;
 
 import com.tyron.vectorparser.DefaultValues;
-import com.tyron.vectorparser.util.PathParser;
+import com.tyron.vectorparser.util.VectorCache;
 import com.tyron.vectorparser.util.Utils;
 
 public class PathModel {
@@ -66,7 +66,7 @@ public class PathModel {
 
     public void buildPath(boolean useLegacyParser) {
 
-        originalPath = PathParser.doPath(pathData);
+        originalPath = VectorCache.getPath(pathData);
 
         if (originalPath != null) originalPath.setFillType(fillType);
 
@@ -44,7 +44,7 @@ public class Utils {
 
     }
     public static int getColorFromString(String value, ProteusContext context) {
-        Value staticValue = ColorResourceProcessor.staticCompile(new Primitive(value), context);
+        Value staticValue = ColorResourceProcessor.staticCompile(Primitive.valueOf(value), context);
         return getColor(staticValue, context);
     }
 
@@ -125,7 +125,7 @@ public class Utils {
         return 0;
     }
     public static float getFloatFromDimensionString(String value, ProteusContext context) {
-        return getDimension(new Primitive(value), context);
+        return getDimension(Primitive.valueOf(value), context);
     }
 
     public static boolean isEqual(Object a, Object b) {
@@ -0,0 +1,149 @@
+package com.tyron.vectorparser.util;
+
+import android.graphics.Path;
+import android.util.LruCache;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Process wide cache of the parsed path data and vector drawable files.
+ *
+ * Layouts usually show the same icons many times, and every inflation of a vector drawable
+ * used to parse its XML and all of its path data again. The entries are weighed by the length
+ * of the string they were parsed from, so a few large drawables can not push out all the small
+ * ones and the memory used stays bounded.
+ *
+ * Everything that is cached is independent of the context, the colors and dimensions of a
+ * drawable are resolved each time a drawable is built from the cached elements.
+ */
+public class VectorCache {
+
+    /**
+     * The maximum number of characters of path data whose parsed paths are kept
+     */
+    private static final int MAX_PATH_WEIGHT = 1024 * 1024;
+
+    /**
+     * The maximum number of characters of vector drawable files whose elements are kept
+     */
+    private static final int MAX_VECTOR_WEIGHT = 1024 * 1024;
+
+    private static final LruCache<String, Path> sPaths = new LruCache<String, Path>(MAX_PATH_WEIGHT) {
+        @Override
+        protected Path create(String key) {
+            return PathParser.doPath(key);
+        }
+
+        @Override
+        protected int sizeOf(String key, Path value) {
+            return Math.max(1, key.length());
+        }
+    };
+
+    private static final LruCache<String, List<Element>> sVectors = new LruCache<String, List<Element>>(MAX_VECTOR_WEIGHT) {
+        @Override
+        protected int sizeOf(String key, List<Element> value) {
+            return Math.max(1, key.length());
+        }
+    };
+
+    /**
+     * Returns the path described by the given path data. The path is a copy of the cached
+     * path so it is safe to modify.
+     */
+    public static Path getPath(String pathData) {
+        return new Path(sPaths.get(pathData));
+    }
+
+    /**
+     * Returns the start and end tags of the given vector drawable file, in document order
+     *
+     * @throws XmlPullParserException if the contents are not valid XML
+     */
+    public static List<Element> getElements(String contents) throws XmlPullParserException, IOException {
+        List<Element> elements = sVectors.get(contents);
+        if (elements == null) {
+            elements = parse(contents);
+            sVectors.put(contents, elements);
+        }
+        return elements;
+    }
+
+    public static void clear() {
+        sPaths.evictAll();
+        sVectors.evictAll();
+    }
+
+    private static List<Element> parse(String contents) throws XmlPullParserException, IOException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(new StringReader(contents));
+
+        List<Element> elements = new ArrayList<>();
+        int event = parser.getEventType();
+        while (event != XmlPullParser.END_DOCUMENT) {
+            if (event == XmlPullParser.START_TAG) {
+                int count = parser.getAttributeCount();
+                String[] names = new String[count];
+                String[] values = new String[count];
+                for (int i = 0; i < count; i++) {
+                    names[i] = parser.getAttributeName(i);
+                    values[i] = parser.getAttributeValue(i);
+                }
+                elements.add(new Element(event, parser.getName(), names, values));
+            } else if (event == XmlPullParser.END_TAG) {
+                elements.add(new Element(event, parser.getName(), new String[0], new String[0]));
+            }
+            event = parser.next();
+        }
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * A start or an end tag of a vector drawable file together with its attributes
+     */
+    public static class Element {
+
+        private final int event;
+        private final String name;
+        private final String[] attributeNames;
+        private final String[] attributeValues;
+
+        Element(int event, String name, String[] attributeNames, String[] attributeValues) {
+            this.event = event;
+            this.name = name;
+            this.attributeNames = attributeNames;
+            this.attributeValues = attributeValues;
+        }
+
+        /**
+         * @return Either {@link XmlPullParser#START_TAG} or {@link XmlPullParser#END_TAG}
+         */
+        public int getEvent() {
+            return event;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAttributeCount() {
+            return attributeNames.length;
+        }
+
+        public String getAttributeName(int index) {
+            return attributeNames[index];
+        }
+
+        public String getAttributeValue(int index) {
+            return attributeValues[index];
+        }
+    }
+}
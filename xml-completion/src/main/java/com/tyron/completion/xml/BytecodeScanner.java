@@ -1,188 +1,320 @@
 package com.tyron.completion.xml;
 
-import android.content.Context;
-import android.util.AttributeSet;
 import android.view.View;
-import android.view.ViewGroup;
 
-import com.google.common.collect.ImmutableSet;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.tyron.builder.BuildModule;
-import com.tyron.completion.xml.util.PartialClassParser;
+import com.tyron.completion.xml.model.ViewClass;
 
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.JavaClass;
-import org.apache.bcel.classfile.Method;
-import org.apache.bcel.generic.Type;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 /**
  * Scans jar files and saves all the class files that extends {@link View} and has the
  * appropriate constructors to be inflated in XML.
+ *
+ * Only the header of each class is read, its super class and the signatures of its
+ * constructors. Of these, only the headers of the classes that may be views are kept, in memory
+ * and in a file in the cache directory, so a jar is only read again once its size or
+ * modification time changes.
  */
 public class BytecodeScanner {
 
     private static final Predicate<String> CLASS_NAME_FILTER = s -> s.endsWith(".class");
 
-    private static final Set<String> sIgnoredPaths;
-
-    static {
-        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-        builder.add("android");
-        builder.add("android/util");
-        builder.add("android/os");
-        builder.add("android/os/health");
-        builder.add("android/os/strictmode");
-        builder.add("android/os/storage");
-        builder.add("android/graphics");
-        builder.add("android/graphics/drawable");
-        builder.add("android/graphics/fonts");
-        builder.add("android/graphics/pdf");
-        builder.add("android/graphics/text");
-        builder.add("android/system");
-        builder.add("android/content");
-        builder.add("android/content/res");
-        builder.add("android/content/pm");
-        sIgnoredPaths = builder.build();
-    }
-
-    public static void loadJar(File jar) throws IOException {
-        try (JarFile jarFile = new JarFile(jar)) {
-            iterateClasses(jarFile, element -> {
-                PartialClassParser classParser =
-                        new PartialClassParser(jar.getAbsolutePath(), element.getName());
-                try {
-                    Repository.addClass(classParser.parse());
-                } catch (IOException e) {
-                    // ignored, keep parsing other classes
-                }
-            });
+    private static final String VIEW = View.class.getName();
+
+    private static final String OBJECT = Object.class.getName();
+
+    /**
+     * The constructor used by the LayoutInflater, {@code (Context, AttributeSet)}
+     */
+    private static final String INFLATION_CONSTRUCTOR =
+            "(Landroid/content/Context;Landroid/util/AttributeSet;)V";
+
+    private static final int MAGIC = 0x56574358;
+    private static final int VERSION = 2;
+
+    private static final Map<File, JarHeaders> sHeaders = new ConcurrentHashMap<>();
+
+    /**
+     * Finds the inflatable view classes of the given libraries.
+     *
+     * @param libraries the jars to search for view classes
+     * @param classpath additional jars that are only used to resolve the super classes, the
+     *                  android.jar is always included
+     * @param cacheDir  where the headers of the jars are stored, or null to only keep them in
+     *                  memory
+     */
+    @NonNull
+    public static List<ViewClass> scan(@NonNull Collection<File> libraries,
+                                       @NonNull Collection<File> classpath,
+                                       @Nullable File cacheDir) {
+        Set<File> jars = new LinkedHashSet<>();
+        File androidJar = BuildModule.getAndroidJar();
+        if (androidJar != null && androidJar.exists()) {
+            jars.add(androidJar);
         }
-    }
+        jars.addAll(classpath);
+        jars.addAll(libraries);
 
-    public static List<JavaClass> scan(File file) throws IOException {
-        List<JavaClass> viewClasses = new ArrayList<>();
-        try (JarFile jarFile = new JarFile(file)) {
-            iterateClasses(jarFile, element -> {
-                String fqn = element.getName().replace('/', '.')
-                        .substring(0, element.getName().length() - ".class".length());
-                try {
-                    JavaClass javaClass = Repository.lookupClass(fqn);
-                    if (isViewClass(javaClass)) {
-                        viewClasses.add(javaClass);
-                    }
-                } catch (ClassNotFoundException e) {
-                    // should not happen, the class should already be loaded here.
+        // the jars are independent of each other, only resolving the super classes needs all
+        List<JarHeaders> scanned = jars.parallelStream()
+                .map(jar -> getHeaders(jar, cacheDir))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        Map<String, ClassHeader> headers = new HashMap<>();
+        for (JarHeaders jarHeaders : scanned) {
+            for (ClassHeader header : jarHeaders.classes) {
+                headers.putIfAbsent(header.name, header);
+            }
+        }
+
+        List<ViewClass> viewClasses = new ArrayList<>();
+        for (JarHeaders jarHeaders : scanned) {
+            if (!libraries.contains(jarHeaders.jar)) {
+                continue;
+            }
+            for (ClassHeader header : jarHeaders.classes) {
+                if (!header.inflatable) {
+                    continue;
                 }
-            });
+                List<String> superClasses = getSuperClasses(header, headers);
+                if (superClasses.contains(VIEW)) {
+                    viewClasses.add(new ViewClass(header.name, superClasses));
+                }
+            }
         }
         return viewClasses;
     }
 
-    public static boolean isViewGroup(JavaClass javaClass) {
-        JavaClass[] superClasses = getSuperClasses(javaClass);
-        return Arrays.stream(superClasses)
-                .anyMatch(it -> ViewGroup.class.getName().equals(it.getClassName()));
+    /**
+     * Get the names of the super classes that can be resolved, starting from the direct super
+     * class, even if the root class does not exist
+     */
+    private static List<String> getSuperClasses(ClassHeader header,
+                                                Map<String, ClassHeader> headers) {
+        List<String> superClasses = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        ClassHeader current = header;
+        while (current != null && current.superName != null && visited.add(current.name)) {
+            current = headers.get(current.superName);
+            if (current != null) {
+                superClasses.add(current.name);
+            }
+        }
+        return superClasses;
     }
 
-    public static void scanBootstrapIfNeeded() {
-        if (!needScanBootstrap()) {
-            return;
+    @Nullable
+    private static JarHeaders getHeaders(File jar, @Nullable File cacheDir) {
+        CacheKey key = CacheKey.of(jar);
+        JarHeaders headers = sHeaders.get(jar);
+        if (headers != null && headers.key.equals(key)) {
+            return headers;
+        }
+        // the headers of the previous version of the jar are not needed anymore
+        sHeaders.remove(jar);
+        if (!jar.isFile()) {
+            return null;
         }
 
-        File androidJar = BuildModule.getAndroidJar();
-        if (androidJar != null && androidJar.exists()) {
-            try (JarFile jarFile = new JarFile(androidJar)) {
-                iterateClasses(jarFile, element -> {
-                    String name = element.getName();
-                    String packagePath = name.substring(0, name.lastIndexOf('/'));
-                    if (sIgnoredPaths.contains(packagePath)) {
-                        return;
-                    }
-                    if (packagePath.startsWith("java/")) {
-                        return;
-                    }
-                    PartialClassParser classParser =
-                            new PartialClassParser(androidJar.getAbsolutePath(), name);
-                    try {
-                        Repository.addClass(classParser.parse());
-                    } catch (IOException e) {
-                        // ignored, keep parsing other classes
-                    }
-
-                });
+        File cacheFile = cacheDir == null ? null : new File(cacheDir, key.getCacheFileName());
+        headers = cacheFile == null ? null : readHeaders(jar, key, cacheFile);
+        if (headers == null) {
+            try {
+                headers = scanJar(jar, key);
             } catch (IOException e) {
-                // ignored
+                // ignored, the classes of this jar are not available
+                return null;
+            }
+            if (cacheFile != null) {
+                writeHeaders(headers, cacheFile);
             }
         }
+        sHeaders.put(jar, headers);
+        return headers;
     }
 
-    private static boolean needScanBootstrap() {
-        try {
-            Repository.getRepository().loadClass(View.class);
-            return false;
-        } catch (ClassNotFoundException e) {
-            return true;
+    private static JarHeaders scanJar(File jar, CacheKey key) throws IOException {
+        List<ClassHeader> classes = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            iterateClasses(jarFile, entry -> {
+                try (InputStream inputStream = jarFile.getInputStream(entry)) {
+                    classes.add(readHeader(inputStream));
+                } catch (IOException | RuntimeException e) {
+                    // ignored, keep parsing other classes
+                }
+            });
+        }
+        return new JarHeaders(jar, key, retainPossibleViews(classes));
+    }
+
+    /**
+     * Drops the classes that can't be views, those whose super classes in the same jar lead to
+     * {@code java.lang.Object} without passing {@link View}. A class whose super class is in
+     * another jar is kept, it is only resolved when scanning.
+     */
+    private static List<ClassHeader> retainPossibleViews(List<ClassHeader> classes) {
+        Map<String, ClassHeader> classesByName = new HashMap<>();
+        for (ClassHeader header : classes) {
+            classesByName.put(header.name, header);
+        }
+        Map<String, Boolean> possibleViews = new HashMap<>();
+        List<ClassHeader> retained = new ArrayList<>();
+        for (ClassHeader header : classes) {
+            if (isPossibleView(header, classesByName, possibleViews)) {
+                retained.add(header);
+            }
+        }
+        return retained;
+    }
+
+    private static boolean isPossibleView(ClassHeader header,
+                                          Map<String, ClassHeader> classesByName,
+                                          Map<String, Boolean> possibleViews) {
+        List<String> chain = new ArrayList<>();
+        boolean possibleView;
+        ClassHeader current = header;
+        while (true) {
+            Boolean known = possibleViews.get(current.name);
+            if (known != null) {
+                possibleView = known;
+                break;
+            }
+            chain.add(current.name);
+            if (VIEW.equals(current.name)) {
+                possibleView = true;
+                break;
+            }
+            if (current.superName == null || OBJECT.equals(current.superName)) {
+                possibleView = false;
+                break;
+            }
+            ClassHeader superHeader = classesByName.get(current.superName);
+            if (superHeader == null) {
+                possibleView = true;
+                break;
+            }
+            if (chain.contains(superHeader.name)) {
+                // a cycle, only found in broken jars
+                possibleView = false;
+                break;
+            }
+            current = superHeader;
         }
+        for (String name : chain) {
+            possibleViews.put(name, possibleView);
+        }
+        return possibleView;
     }
 
-    private static boolean isViewClass(JavaClass javaClass) {
-        JavaClass[] superClasses = getSuperClasses(javaClass);
-        return Arrays.stream(superClasses)
-                .anyMatch(it -> View.class.getName().equals(it.getClassName()));
+    private static ClassHeader readHeader(InputStream inputStream) throws IOException {
+        HeaderVisitor visitor = new HeaderVisitor();
+        new ClassReader(inputStream).accept(visitor,
+                ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return new ClassHeader(visitor.name, visitor.superName, visitor.inflatable);
     }
 
     /**
-     * Get the array of java classes even if the root class does not exist
-     *
-     * @param javaClass The java class
-     * @return array of super classes
+     * @return the headers stored in the cache file, or null if the file is missing, corrupt or
+     * was written for an older version of the jar
      */
-    public static JavaClass[] getSuperClasses(JavaClass javaClass) {
-        List<JavaClass> superClasses = new ArrayList<>();
-        JavaClass current = javaClass;
-        while (current != null && current.getSuperclassName() != null) {
-            JavaClass lookupClass;
-            try {
-                lookupClass = Repository.lookupClass(current.getSuperclassName());
-            } catch (ClassNotFoundException e) {
-                lookupClass = null;
+    @Nullable
+    private static JarHeaders readHeaders(File jar, CacheKey key, File cacheFile) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
             }
-
-            if (lookupClass != null) {
-                superClasses.add(lookupClass);
+            if (in.readLong() != key.length || in.readLong() != key.lastModified) {
+                return null;
             }
-            current = lookupClass;
+            int count = in.readInt();
+            List<ClassHeader> classes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String superName = in.readUTF();
+                boolean inflatable = in.readBoolean();
+                classes.add(new ClassHeader(name, superName.isEmpty() ? null : superName,
+                        inflatable));
+            }
+            return new JarHeaders(jar, key, classes);
+        } catch (IOException e) {
+            return null;
         }
-        return superClasses.toArray(new JavaClass[0]);
     }
 
-    private static boolean containsViewConstructors(Method[] methods) {
-        for (Method method : methods) {
-            if (!"<init>".equals(method.getName())) {
-                continue;
+    private static void writeHeaders(JarHeaders headers, File cacheFile) {
+        File parent = cacheFile.getParentFile();
+        if (parent == null || (!parent.exists() && !parent.mkdirs())) {
+            return;
+        }
+        File tempFile = null;
+        // write to a temporary file first so a crash never leaves a partial file behind
+        try {
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+            write(headers, tempFile);
+            Files.move(tempFile.toPath(), cacheFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // ignored, the jar is scanned again next time
+            if (tempFile != null) {
+                tempFile.delete();
             }
+        }
+    }
 
-            Type[] argumentTypes = method.getArgumentTypes();
-            if (argumentTypes.length == 2) {
-                if (Context.class.getName().equals(argumentTypes[0].toString())) {
-                    if (AttributeSet.class.getName().equals(argumentTypes[1].toString())) {
-                        return true;
-                    }
-                }
+    private static void write(JarHeaders headers, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(headers.key.length);
+            out.writeLong(headers.key.lastModified);
+            out.writeInt(headers.classes.size());
+            for (ClassHeader header : headers.classes) {
+                out.writeUTF(header.name);
+                out.writeUTF(header.superName == null ? "" : header.superName);
+                out.writeBoolean(header.inflatable);
             }
         }
-        return false;
     }
 
     public static void iterateClasses(JarFile jarFile, Consumer<JarEntry> consumer) {
@@ -200,4 +332,103 @@ public class BytecodeScanner {
             }
         }
     }
+
+    /**
+     * Reads the name, the super class and the constructors of a class, the bodies of the
+     * methods are skipped by the reader.
+     */
+    private static class HeaderVisitor extends ClassVisitor {
+
+        private String name;
+        private String superName;
+        private boolean inflatable;
+
+        HeaderVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature,
+                          String superName, String[] interfaces) {
+            this.name = name.replace('/', '.');
+            this.superName = superName == null ? null : superName.replace('/', '.');
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                         String signature, String[] exceptions) {
+            if ("<init>".equals(name) && INFLATION_CONSTRUCTOR.equals(descriptor)) {
+                inflatable = true;
+            }
+            return null;
+        }
+    }
+
+    private static class ClassHeader {
+        final String name;
+        final String superName;
+        final boolean inflatable;
+
+        ClassHeader(String name, String superName, boolean inflatable) {
+            this.name = name;
+            this.superName = superName;
+            this.inflatable = inflatable;
+        }
+    }
+
+    private static class JarHeaders {
+        final File jar;
+        final CacheKey key;
+        final List<ClassHeader> classes;
+
+        JarHeaders(File jar, CacheKey key, List<ClassHeader> classes) {
+            this.jar = jar;
+            this.key = key;
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * Identifies a version of a jar. The headers of a jar are read again once its key changes,
+     * the cache file of a jar only depends on its path so that it is replaced.
+     */
+    static final class CacheKey {
+        private final String fileName;
+        final long length;
+        final long lastModified;
+
+        private CacheKey(String fileName, long length, long lastModified) {
+            this.fileName = fileName;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        static CacheKey of(File jar) {
+            String fileName = jar.getName() + "-" +
+                    Integer.toHexString(jar.getAbsolutePath().hashCode());
+            return new CacheKey(fileName, jar.length(), jar.lastModified());
+        }
+
+        String getCacheFileName() {
+            return fileName + ".headers";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return length == that.length && lastModified == that.lastModified &&
+                   fileName.equals(that.fileName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileName, length, lastModified);
+        }
+    }
 }
@@ -28,11 +28,10 @@ import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.xml.model.AttributeInfo;
 import com.tyron.completion.xml.model.DeclareStyleable;
 import com.tyron.completion.xml.model.Format;
+import com.tyron.completion.xml.model.ViewClass;
 import com.tyron.completion.xml.util.StyleUtils;
 import com.tyron.xml.completion.repository.ResourceRepository;
 
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.JavaClass;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
@@ -42,6 +41,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,7 +52,7 @@ public class XmlRepository {
     private final Map<String, DeclareStyleable> mDeclareStyleables = new TreeMap<>();
     private final Map<String, DeclareStyleable> mManifestAttrs = new TreeMap<>();
     private final Map<String, AttributeInfo> mExtraAttributes = new TreeMap<>();
-    private final Map<String, JavaClass> mJavaViewClasses = new TreeMap<>();
+    private final Map<String, ViewClass> mJavaViewClasses = new TreeMap<>();
 
     private boolean mInitialized = false;
     private ResourceRepository mRepository;
@@ -71,7 +71,7 @@ public class XmlRepository {
         return mDeclareStyleables;
     }
 
-    public Map<String, JavaClass> getJavaViewClasses() {
+    public Map<String, ViewClass> getJavaViewClasses() {
         return mJavaViewClasses;
     }
 
@@ -84,11 +84,10 @@ public class XmlRepository {
         if (mInitialized) {
             return;
         }
-        BytecodeScanner.scanBootstrapIfNeeded();
-
         mRepository = new ResourceRepository(module);
         mRepository.initialize();
 
+        Set<File> classpath = new LinkedHashSet<>();
         for (File library : module.getLibraries()) {
             File parent = library.getParentFile();
             if (parent == null) {
@@ -96,31 +95,20 @@ public class XmlRepository {
             }
             File classesFile = new File(parent, "classes.jar");
             if (classesFile.exists()) {
-                try {
-                    BytecodeScanner.loadJar(classesFile);
-                } catch (IOException ignored) {
-
-                }
+                classpath.add(classesFile);
             }
         }
 
-        for (File library : module.getLibraries()) {
-            try {
-                List<JavaClass> scan =
-                        BytecodeScanner.scan(library);
-                for (JavaClass javaClass : scan) {
-                    StyleUtils.putStyles(javaClass);
-                    mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        File cacheDir = new File(module.getBuildDirectory(), "intermediate/view-classes");
+        List<ViewClass> viewClasses =
+                BytecodeScanner.scan(module.getLibraries(), classpath, cacheDir);
+        for (ViewClass viewClass : viewClasses) {
+            StyleUtils.putStyles(viewClass);
+            mJavaViewClasses.put(viewClass.getClassName(), viewClass);
         }
 
         addFrameworkViews();
 
-        Repository.clearCache();
-
         mInitialized = true;
     }
 
@@ -148,15 +136,13 @@ public class XmlRepository {
     }
 
     private void addFrameworkView(Class<? extends View> viewClass) {
-        org.apache.bcel.util.Repository repository = Repository.getRepository();
-        try {
-            JavaClass javaClass = repository.loadClass(viewClass);
-            if (javaClass != null) {
-                mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-            }
-        } catch (ClassNotFoundException e) {
-            // ignored
+        List<String> superClasses = new ArrayList<>();
+        Class<?> current = viewClass.getSuperclass();
+        while (current != null) {
+            superClasses.add(current.getName());
+            current = current.getSuperclass();
         }
+        mJavaViewClasses.put(viewClass.getName(), new ViewClass(viewClass.getName(), superClasses));
     }
 
     private Map<String, DeclareStyleable> parse(Reader reader, String namespace) throws XmlPullParserException, IOException {
@@ -0,0 +1,43 @@
+package com.tyron.completion.xml.model;
+
+import java.util.List;
+
+/**
+ * A class that extends {@code android.view.View} and can be inflated in XML. Only the names
+ * of the class and its super classes are kept, not the class file itself.
+ */
+public class ViewClass {
+
+    private static final String VIEW_GROUP = "android.view.ViewGroup";
+
+    private final String className;
+
+    private final List<String> superClassNames;
+
+    /**
+     * @param className       the fully qualified name of the class
+     * @param superClassNames the fully qualified names of the super classes, starting from the
+     *                        direct super class
+     */
+    public ViewClass(String className, List<String> superClassNames) {
+        this.className = className;
+        this.superClassNames = superClassNames;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getPackageName() {
+        int index = className.lastIndexOf('.');
+        return index == -1 ? "" : className.substring(0, index);
+    }
+
+    public List<String> getSuperClassNames() {
+        return superClassNames;
+    }
+
+    public boolean isViewGroup() {
+        return superClassNames.contains(VIEW_GROUP);
+    }
+}
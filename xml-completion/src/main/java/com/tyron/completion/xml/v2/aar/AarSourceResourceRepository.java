@@ -19,7 +19,6 @@ import com.android.utils.Base128InputStream;
 import com.android.utils.Base128OutputStream;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
 import com.tyron.common.logging.IdeLog;
 import com.tyron.completion.progress.ProcessCanceledException;
 import com.tyron.completion.xml.v2.base.BasicFileResourceItem;
@@ -30,6 +29,7 @@ import com.tyron.completion.xml.v2.base.RepositoryLoader;
 import com.tyron.completion.xml.v2.base.ResourceSerializationUtil;
 import com.tyron.completion.xml.v2.base.ResourceSourceFile;
 import com.tyron.completion.xml.v2.base.ResourceSourceFileImpl;
+import com.tyron.completion.xml.v2.base.ResourceStringPool;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
@@ -256,7 +256,8 @@ public class AarSourceResourceRepository extends AbstractAarResourceRepository {
       if (!stream.validateContents(fileHeader)) {
         return false; // Cache file header doesn't match.
       }
-      loadFromStream(stream, Maps.newHashMapWithExpectedSize(1000), null);
+      ResourceStringPool pool = ResourceStringPool.getInstance();
+      loadFromStream(stream, pool.newStringCache(), pool.newNamespaceResolverCache());
 
       populatePublicResourcesMap();
       freezeResources();
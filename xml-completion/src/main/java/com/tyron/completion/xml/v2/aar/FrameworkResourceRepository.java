@@ -17,7 +17,6 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.tyron.completion.progress.ProcessCanceledException;
 import com.tyron.completion.xml.v2.base.BasicResourceItem;
@@ -27,13 +26,13 @@ import com.tyron.completion.xml.v2.base.NamespaceResolver;
 import com.tyron.completion.xml.v2.base.RepositoryConfiguration;
 import com.tyron.completion.xml.v2.base.RepositoryLoader;
 import com.tyron.completion.xml.v2.base.ResourceSerializationUtil;
+import com.tyron.completion.xml.v2.base.ResourceStringPool;
 
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -168,8 +167,8 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
                     @NotNull Loader loader,
                     @Nullable Set<String> languageGroups,
                     @NotNull Set<String> languageGroupsLoadedFromSourceRepositoryOrCache) {
-    Map<String, String> stringCache = Maps.newHashMapWithExpectedSize(10000);
-    Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = new HashMap<>();
+    Map<String, String> stringCache = ResourceStringPool.getInstance().newStringCache();
+    Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = ResourceStringPool.getInstance().newNamespaceResolverCache();
     Set<RepositoryConfiguration> configurationsToTakeOver =
         sourceRepository == null ? ImmutableSet.of() : copyFromRepository(sourceRepository, stringCache, namespaceResolverCache);
 
@@ -238,10 +237,10 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
           ResourceNamespace.Resolver resolver = ((BasicValueResourceItemBase)item).getNamespaceResolver();
           NamespaceResolver namespaceResolver =
               resolver == ResourceNamespace.Resolver.EMPTY_RESOLVER ? NamespaceResolver.EMPTY : (NamespaceResolver)resolver;
-          namespaceResolverCache.put(namespaceResolver, namespaceResolver);
+          namespaceResolverCache.putIfAbsent(namespaceResolver, namespaceResolver);
         }
         String name = item.getName();
-        stringCache.put(name, name);
+        stringCache.putIfAbsent(name, name);
       }
     }
 
@@ -429,8 +428,8 @@ public final class FrameworkResourceRepository extends AarSourceResourceReposito
           myLanguageGroups = readLanguageGroups(zipFile);
         }
 
-        Map<String, String> stringCache = Maps.newHashMapWithExpectedSize(10000);
-        Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = new HashMap<>();
+        Map<String, String> stringCache = ResourceStringPool.getInstance().newStringCache();
+        Map<NamespaceResolver, NamespaceResolver> namespaceResolverCache = ResourceStringPool.getInstance().newNamespaceResolverCache();
 
         for (String language : myLanguageGroups) {
           if (!myLoadedLanguageGroups.contains(language)) {
@@ -91,10 +91,14 @@ import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -120,7 +124,7 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   private final PatternBasedFileFilter myFileFilter
     = new PatternBasedFileFilter(new AndroidAaptIgnore(System.getenv(ANDROID_AAPT_IGNORE)));
 
-  @NotNull private final Map<ResourceType, Set<String>> myPublicResources = new EnumMap<>(ResourceType.class);
+  @NotNull private final Map<ResourceType, Set<String>> myPublicResources;
   @NotNull private final ListMultimap<String, BasicAttrResourceItem> myAttrs = ArrayListMultimap.create();
   @NotNull private final ListMultimap<String, BasicAttrResourceItem> myAttrCandidates = ArrayListMultimap.create();
   @NotNull private final ListMultimap<String, BasicStyleableResourceItem> myStyleables = ArrayListMultimap.create();
@@ -141,6 +145,10 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   @NotNull private final ResourceNamespace myNamespace;
   @Nullable private final Collection<PathString> myResourceFilesAndFolders;
   @Nullable protected ZipFile myZipFile;
+  // Resources of the file being parsed if this loader is a fork used by loadInParallel, null otherwise.
+  @Nullable private final List<BasicResourceItemBase> myParsedItems;
+  // IDs created for "@+id/" attributes of the file being parsed by a fork, they are dropped when merging if already defined.
+  @Nullable private final Set<BasicResourceItemBase> myParsedIds;
 
   public RepositoryLoader(@NotNull Path resourceDirectoryOrFile, @Nullable Collection<PathString> resourceFilesAndFolders,
                           @NotNull ResourceNamespace namespace) {
@@ -149,6 +157,26 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     myLoadingFromZipArchive = isZipArchive(resourceDirectoryOrFile);
     myNamespace = namespace;
     myResourceFilesAndFolders = resourceFilesAndFolders;
+    myPublicResources = new EnumMap<>(ResourceType.class);
+    myParsedItems = null;
+    myParsedIds = null;
+  }
+
+  /**
+   * Creates a loader that parses files on behalf of the given one, see {@link #loadInParallel}.
+   * The names of the public resources are shared with the parent, they are not modified while files are parsed.
+   */
+  protected RepositoryLoader(@NotNull RepositoryLoader<T> parent) {
+    myResourceDirectoryOrFile = parent.myResourceDirectoryOrFile;
+    myResourceDirectoryOrFilePath = parent.myResourceDirectoryOrFilePath;
+    myLoadingFromZipArchive = parent.myLoadingFromZipArchive;
+    myNamespace = parent.myNamespace;
+    myResourceFilesAndFolders = parent.myResourceFilesAndFolders;
+    myPublicResources = parent.myPublicResources;
+    myDefaultVisibility = parent.myDefaultVisibility;
+    myZipFile = parent.myZipFile;
+    myParsedItems = new ArrayList<>();
+    myParsedIds = Collections.newSetFromMap(new IdentityHashMap<>());
   }
 
   @NotNull
@@ -246,6 +274,127 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     processAttrsAndStyleables();
   }
 
+  /**
+   * Parses the given files on the given pool, one task per file, and merges the resources into this loader
+   * in the order of the files, which gives the same result as parsing the files one after another.
+   *
+   * <p>The tasks don't share any mutable state. Each of them runs on a fork of this loader returned by
+   * {@link #forkForParsing()}, one per thread, which collects the resources of a file into an immutable batch
+   * instead of adding them. The batches are merged on the calling thread while the remaining files are parsed.
+   * Loaders that can't be forked parse the files one after another on the calling thread.
+   *
+   * @param files the files to parse
+   * @param pool the pool to parse the files on
+   * @param parser parses a single file using the given fork of this loader
+   * @param errorHandler called on the calling thread for the files whose parser threw an exception,
+   *     e.g. from {@link #handleParsingError}; resources of these files are dropped
+   */
+  protected final <F> void loadInParallel(@NotNull List<F> files,
+                                          @NotNull ForkJoinPool pool,
+                                          @NotNull BiConsumer<RepositoryLoader<T>, F> parser,
+                                          @NotNull BiConsumer<F, RuntimeException> errorHandler) {
+    if (forkForParsing() == null) {
+      for (F file : files) {
+        try {
+          parser.accept(this, file);
+        }
+        catch (ProcessCanceledException e) {
+          throw e;
+        }
+        catch (RuntimeException e) {
+          errorHandler.accept(file, e);
+        }
+      }
+      return;
+    }
+
+    ThreadLocal<RepositoryLoader<T>> forks = ThreadLocal.withInitial(this::forkForParsing);
+    List<ForkJoinTask<ParsedFile>> tasks = new ArrayList<>(files.size());
+    for (F file : files) {
+      tasks.add(pool.submit(() -> {
+        RepositoryLoader<T> fork = forks.get();
+        RuntimeException error = null;
+        try {
+          parser.accept(fork, file);
+        }
+        catch (ProcessCanceledException e) {
+          fork.takeParsedFile(null);
+          throw e;
+        }
+        catch (RuntimeException e) {
+          error = e;
+        }
+        return fork.takeParsedFile(error);
+      }));
+    }
+
+    try {
+      for (int i = 0; i < tasks.size(); i++) {
+        ParsedFile parsedFile = tasks.get(i).join();
+        if (parsedFile.error == null) {
+          mergeParsedFile(parsedFile);
+        }
+        else {
+          errorHandler.accept(files.get(i), parsedFile.error);
+        }
+      }
+    }
+    finally {
+      // Only has an effect if merging failed or was canceled.
+      for (ForkJoinTask<ParsedFile> task : tasks) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Returns a loader that parses files for {@link #loadInParallel}, created with {@link #RepositoryLoader(RepositoryLoader)},
+   * or null if this loader doesn't support loading in parallel.
+   */
+  @Nullable
+  protected RepositoryLoader<T> forkForParsing() {
+    return null;
+  }
+
+  /**
+   * Returns the resources collected by this fork since the previous call and resets the fork for the next file.
+   */
+  @NotNull
+  private ParsedFile takeParsedFile(@Nullable RuntimeException error) {
+    assert myParsedItems != null && myParsedIds != null;
+    Set<BasicResourceItemBase> ids = Collections.newSetFromMap(new IdentityHashMap<>());
+    ids.addAll(myParsedIds);
+    ParsedFile parsedFile = new ParsedFile(ImmutableList.copyOf(myParsedItems), ids, ImmutableList.copyOf(myAttrs.values()),
+                                           ImmutableList.copyOf(myAttrCandidates.values()),
+                                           ImmutableList.copyOf(myStyleables.values()), error);
+    myParsedItems.clear();
+    myParsedIds.clear();
+    myAttrs.clear();
+    myAttrCandidates.clear();
+    myStyleables.clear();
+    myValueFileResources.clear();
+    return parsedFile;
+  }
+
+  private void mergeParsedFile(@NotNull ParsedFile parsedFile) {
+    for (BasicAttrResourceItem attr : parsedFile.attrs) {
+      addAttr(attr, myAttrs);
+    }
+    for (BasicAttrResourceItem attr : parsedFile.attrCandidates) {
+      addAttr(attr, myAttrCandidates);
+    }
+    for (BasicStyleableResourceItem styleable : parsedFile.styleables) {
+      myStyleables.put(styleable.getName(), styleable);
+    }
+    for (BasicResourceItemBase item : parsedFile.items) {
+      // Same check as in addIdResourceItem, which the fork couldn't do without the resources of the preceding files.
+      if (parsedFile.ids.contains(item) && resourceAlreadyDefined(item)) {
+        continue;
+      }
+      addResourceItem(item);
+    }
+  }
+
   @NotNull
   public final String getSourceFileProtocol() {
     if (myLoadingFromZipArchive) {
@@ -472,7 +621,11 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   }
 
   @SuppressWarnings("unchecked")
-  private void addResourceItem(@NotNull BasicResourceItemBase item) {
+  protected final void addResourceItem(@NotNull BasicResourceItemBase item) {
+    if (myParsedItems != null) {
+      myParsedItems.add(item);
+      return;
+    }
     addResourceItem(item, (T)item.getRepository());
   }
 
@@ -616,7 +769,14 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
   protected final void addIdResourceItem(@NotNull String resourceName, @NotNull ResourceSourceFile sourceFile) {
     ResourceVisibility visibility = getVisibility(ResourceType.ID, resourceName);
     BasicValueResourceItem item = new BasicValueResourceItem(ResourceType.ID, resourceName, sourceFile, visibility, null);
-    if (!resourceAlreadyDefined(item)) { // Don't create duplicate ID resources.
+    // Don't create duplicate ID resources. A fork doesn't look at the repository, which only receives resources
+    // when the parsed files are merged, to stay clear of the repository lock while parsing. The duplicates are
+    // dropped when the parsed file is merged instead.
+    if (myParsedIds != null) {
+      myParsedIds.add(item);
+      addValueResourceItem(item);
+    }
+    else if (!resourceAlreadyDefined(item)) {
       addValueResourceItem(item);
     }
   }
@@ -1152,6 +1312,32 @@ public abstract class RepositoryLoader<T extends LoadableResourceRepository> imp
     void visitTag() throws IOException, XmlPullParserException;
   }
 
+  /**
+   * Resources of a single file collected by a fork of a loader, see {@link #loadInParallel}.
+   */
+  private static final class ParsedFile {
+    @NotNull final List<BasicResourceItemBase> items;
+    @NotNull final Set<BasicResourceItemBase> ids;
+    @NotNull final List<BasicAttrResourceItem> attrs;
+    @NotNull final List<BasicAttrResourceItem> attrCandidates;
+    @NotNull final List<BasicStyleableResourceItem> styleables;
+    @Nullable final RuntimeException error;
+
+    ParsedFile(@NotNull List<BasicResourceItemBase> items,
+               @NotNull Set<BasicResourceItemBase> ids,
+               @NotNull List<BasicAttrResourceItem> attrs,
+               @NotNull List<BasicAttrResourceItem> attrCandidates,
+               @NotNull List<BasicStyleableResourceItem> styleables,
+               @Nullable RuntimeException error) {
+      this.items = items;
+      this.ids = ids;
+      this.attrs = attrs;
+      this.attrCandidates = attrCandidates;
+      this.styleables = styleables;
+      this.error = error;
+    }
+  }
+
   /**
    * Information about a resource folder.
    */
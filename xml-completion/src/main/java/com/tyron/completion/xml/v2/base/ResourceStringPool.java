@@ -0,0 +1,106 @@
+package com.tyron.completion.xml.v2.base;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Deduplicating pool of the strings and namespace resolvers read by resource repositories.
+ *
+ * <p>Resource names, qualifiers and values are largely the same between libraries, e.g. the
+ * translations of appcompat and material or the attribute names used by their styles. Sharing
+ * one pool between all the repositories keeps a single instance of each of them on the heap
+ * regardless of how many repositories are loaded, and the pool is safe to use from repositories
+ * that are loaded in parallel. The instances are only weakly referenced by the pool, they are
+ * dropped from it once no repository uses them anymore.
+ *
+ * <p>{@link ResourceSerializationUtil#readResourcesFromStream} takes its caches as maps, a load
+ * gets them from {@link #newStringCache()} and {@link #newNamespaceResolverCache()}. These are
+ * plain maps owned by the load, which add the instances taken from the pool.
+ */
+public final class ResourceStringPool {
+  private static final ResourceStringPool INSTANCE = new ResourceStringPool();
+
+  @NotNull private volatile Interner<String> myStrings = Interners.newWeakInterner();
+  @NotNull private volatile Interner<NamespaceResolver> myNamespaceResolvers = Interners.newWeakInterner();
+
+  @NotNull
+  public static ResourceStringPool getInstance() {
+    return INSTANCE;
+  }
+
+  private ResourceStringPool() {
+  }
+
+  /**
+   * Returns the shared string interner, the interner is thread safe.
+   */
+  @NotNull
+  public Interner<String> getStrings() {
+    return myStrings;
+  }
+
+  /**
+   * Returns the shared namespace resolver interner, the interner is thread safe.
+   */
+  @NotNull
+  public Interner<NamespaceResolver> getNamespaceResolvers() {
+    return myNamespaceResolvers;
+  }
+
+  /**
+   * Returns a string cache for a single load, which is not thread safe. The strings it adds are
+   * the pooled ones.
+   */
+  @NotNull
+  public Map<String, String> newStringCache() {
+    return new PooledCache<>(myStrings);
+  }
+
+  /**
+   * Returns a namespace resolver cache for a single load, which is not thread safe. The namespace
+   * resolvers it adds are the pooled ones.
+   */
+  @NotNull
+  public Map<NamespaceResolver, NamespaceResolver> newNamespaceResolverCache() {
+    return new PooledCache<>(myNamespaceResolvers);
+  }
+
+  /**
+   * Drops the pooled instances. Repositories that are still loaded keep the instances they
+   * already use, only new repositories stop sharing them.
+   */
+  public void clear() {
+    myStrings = Interners.newWeakInterner();
+    myNamespaceResolvers = Interners.newWeakInterner();
+  }
+
+  /**
+   * A map of each instance to itself that takes the instances it adds through
+   * {@link #computeIfAbsent} and {@link #putIfAbsent} from an interner. The map keeps the
+   * instances of one load, the interner keeps them between loads.
+   */
+  private static final class PooledCache<T> extends HashMap<T, T> {
+    private final Interner<T> myInterner;
+
+    PooledCache(@NotNull Interner<T> interner) {
+      myInterner = interner;
+    }
+
+    @Override
+    public T computeIfAbsent(T key, @NotNull Function<? super T, ? extends T> mappingFunction) {
+      return super.computeIfAbsent(key, k -> {
+        T value = mappingFunction.apply(k);
+        return value == null ? null : myInterner.intern(value);
+      });
+    }
+
+    @Override
+    public T putIfAbsent(T key, T value) {
+      return super.putIfAbsent(key, value == null ? null : myInterner.intern(value));
+    }
+  }
+}
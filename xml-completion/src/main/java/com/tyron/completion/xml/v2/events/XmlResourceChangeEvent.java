@@ -1,25 +1,36 @@
 package com.tyron.completion.xml.v2.events;
 
 import com.tyron.code.event.Event;
-import com.tyron.editor.Content;
 
 import java.io.File;
 
 public class XmlResourceChangeEvent extends Event {
 
     private final File file;
-    private final Content newContent;
+    private final CharSequence newContent;
 
-    public XmlResourceChangeEvent(File file, Content newContent) {
+    /**
+     * @param newContent a snapshot of the contents of the file, receivers may read it on
+     *                   another thread while the file is still being edited
+     */
+    public XmlResourceChangeEvent(File file, CharSequence newContent) {
         this.file = file;
         this.newContent = newContent;
     }
 
-    public Content getNewContent() {
+    public CharSequence getNewContent() {
         return newContent;
     }
 
     public File getFile() {
         return file;
     }
+
+    /**
+     * Only the latest content of a file needs to be scanned
+     */
+    @Override
+    public Object getCoalescingKey() {
+        return file;
+    }
 }
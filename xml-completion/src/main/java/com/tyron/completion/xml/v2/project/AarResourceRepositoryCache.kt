@@ -8,6 +8,7 @@ import com.google.common.hash.Hashing
 import com.tyron.builder.project.ExternalAndroidLibrary
 import com.tyron.common.ApplicationPaths
 import com.tyron.completion.xml.v2.aar.*
+import com.tyron.completion.xml.v2.base.ResourceStringPool
 import org.jetbrains.kotlin.utils.ThreadSafe
 import java.nio.file.Files
 import java.nio.file.Path
@@ -67,6 +68,7 @@ class AarResourceRepositoryCache private constructor() {
     fun clear() {
         myProtoRepositories.invalidateAll()
         mySourceRepositories.invalidateAll()
+        ResourceStringPool.getInstance().clear()
     }
 
     private fun createCachingData(library: ExternalAndroidLibrary): CachingData? {
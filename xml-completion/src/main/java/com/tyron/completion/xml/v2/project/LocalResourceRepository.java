@@ -10,6 +10,7 @@ import com.android.ide.common.resources.ResourceVisitor;
 import com.android.ide.common.resources.SingleNamespaceResourceRepository;
 import com.android.resources.ResourceType;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -179,6 +180,20 @@ public abstract class LocalResourceRepository extends AbstractResourceRepository
     }
   }
 
+  /**
+   * Notifies the parents that only the resources with the given types and names have changed in
+   * the given repository.
+   */
+  @GuardedBy("ITEM_MAP_LOCK")
+  protected void invalidateParentCaches(@NotNull SingleNamespaceResourceRepository repository,
+                                        @NotNull SetMultimap<ResourceType, String> names) {
+    if (myParents != null) {
+      for (MultiResourceRepository parent : myParents) {
+        parent.invalidateCache(repository, names);
+      }
+    }
+  }
+
   // ---- Implements ModificationCount ----
 
   /**
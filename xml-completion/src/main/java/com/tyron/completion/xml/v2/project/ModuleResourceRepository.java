@@ -9,6 +9,7 @@ import com.android.resources.ResourceType;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ListMultimap;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.project.api.AndroidContentRoot;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.completion.xml.v2.aar.FrameworkResourceRepository;
@@ -17,10 +18,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class ModuleResourceRepository extends MultiResourceRepository implements SingleNamespaceResourceRepository {
@@ -32,6 +36,15 @@ public class ModuleResourceRepository extends MultiResourceRepository implements
 
     private enum SourceSet { MAIN, TEST }
 
+    /**
+     * Writes the resource cache files off the thread that creates the repositories.
+     */
+    private static final Executor CACHE_CREATION_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ResourceFolderRepository-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     /**
      * Creates a new resource repository for the given module, <b>not</b> including its dependent
      * modules.
@@ -91,11 +104,25 @@ public class ModuleResourceRepository extends MultiResourceRepository implements
                     facet,
                     resourceDirectory,
                     ResourceRepositoryManager.getInstance(facet).getNamespace(),
-                    null);
+                    createCachingData(facet, resourceDirectory));
             childRepositories.add(resourceFolderRepository);
         }
     }
 
+    /**
+     * Returns the caching data of the repository of the given resource directory, the cache
+     * files are kept in the build directory of the module, one per resource directory.
+     */
+    @NotNull
+    private static ResourceFolderRepositoryCachingData createCachingData(@NotNull AndroidModule facet,
+                                                                         @NotNull File resourceDirectory) {
+        String pathHash = Hashing.farmHashFingerprint64()
+                .hashUnencodedChars(resourceDirectory.getAbsolutePath()).toString();
+        String fileName = String.format("%s_%s.dat", resourceDirectory.getName(), pathHash);
+        Path cacheFile = new File(facet.getBuildDirectory(), "intermediate/resource-cache/" + fileName).toPath();
+        return new ResourceFolderRepositoryCachingData(cacheFile, false, "7.4", CACHE_CREATION_EXECUTOR);
+    }
+
     private ModuleResourceRepository(@NotNull AndroidModule facet,
                                      @NotNull ResourceNamespace namespace,
                                      @NotNull List<? extends LocalResourceRepository> delegates,
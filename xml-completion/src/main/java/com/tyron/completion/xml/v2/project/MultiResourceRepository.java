@@ -15,11 +15,11 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
 import com.tyron.completion.xml.v2.aar.AarResourceRepository;
@@ -95,9 +95,13 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
   private final Table<SingleNamespaceResourceRepository, ResourceType, Set<String>> myResourceNames =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
-  /** Describes groups of resources that are out of date in {@link #myCachedMaps}. */
+  /**
+   * Describes groups of resources that are out of date in {@link #myCachedMaps}. For each
+   * repository the names of the out of date resources are kept, a null set means that all
+   * resources of the type are out of date.
+   */
   @GuardedBy("ITEM_MAP_LOCK")
-  private final Table<ResourceNamespace, ResourceType, Set<SingleNamespaceResourceRepository>> myUnreconciledResources =
+  private final Table<ResourceNamespace, ResourceType, Map<SingleNamespaceResourceRepository, Set<String>>> myUnreconciledResources =
       Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
 
   MultiResourceRepository(@NotNull String displayName) {
@@ -285,7 +289,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     }
 
     ListMultimap<String, ResourceItem> map = myCachedMaps.get(namespace, type);
-    Set<SingleNamespaceResourceRepository> unreconciledRepositories = null;
+    Map<SingleNamespaceResourceRepository, Set<String>> unreconciledRepositories = null;
     if (map != null) {
       unreconciledRepositories = myUnreconciledResources.get(namespace, type);
       if (unreconciledRepositories == null) {
@@ -312,38 +316,40 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
           map.putAll(items);
 
           if (repository instanceof LocalResourceRepository) {
-            myResourceNames.put(repository, type, ImmutableSet.copyOf(items.keySet()));
+            myResourceNames.put(repository, type, new HashSet<>(items.keySet()));
           }
         }
       }
     }
     else {
       // Update a partially out of date map.
-      for (SingleNamespaceResourceRepository unreconciledRepository : unreconciledRepositories) {
-        // Delete all resources that belonged to unreconciledRepository.
-        Predicate<ResourceItem> filter = item -> item.getRepository().equals(unreconciledRepository);
+      for (Map.Entry<SingleNamespaceResourceRepository, Set<String>> entry : unreconciledRepositories.entrySet()) {
+        SingleNamespaceResourceRepository unreconciledRepository = entry.getKey();
+        Set<String> changedNames = entry.getValue();
+        ListMultimap<String, ResourceItem> unreconciledResources = getResourcesUnderLock(unreconciledRepository, namespace, type);
         Set<String> names = myResourceNames.get(unreconciledRepository, type);
-        if (names != null) {
-          PerConfigResourceMap perConfigMap = map instanceof PerConfigResourceMap ? (PerConfigResourceMap)map : null;
-          for (String name : names) {
-            if (perConfigMap != null) {
-              perConfigMap.removeIf(name, filter);
-            }
-            else {
-              List<ResourceItem> items = map.get(name);
-              items.removeIf(filter);
-              if (items.isEmpty()) {
-                map.removeAll(name);
-              }
-            }
+        if (names == null) {
+          names = new HashSet<>();
+          myResourceNames.put(unreconciledRepository, type, names);
+        }
+
+        if (changedNames == null) {
+          // All resources of unreconciledRepository are out of date, both the names it had and the ones it has now.
+          changedNames = new HashSet<>(names);
+          changedNames.addAll(unreconciledResources.keySet());
+        }
+        // Only merge the resources with the changed names again.
+        for (String name : changedNames) {
+          mergeResources(map, name, repositoriesForNamespace, namespace, type);
+          if (unreconciledResources.containsKey(name)) {
+            names.add(name);
+          }
+          else {
+            names.remove(name);
           }
         }
-        // Add all resources from unreconciledRepository.
-        ListMultimap<String, ResourceItem> unreconciledResources = getResourcesUnderLock(unreconciledRepository, namespace, type);
-        map.putAll(unreconciledResources);
 
         assert unreconciledRepository instanceof LocalResourceRepository;
-        myResourceNames.put(unreconciledRepository, type, ImmutableSet.copyOf(unreconciledResources.keySet()));
         if (map.isEmpty()) {
           myCachedMaps.remove(namespace, type);
         }
@@ -364,6 +370,26 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     return map;
   }
 
+  /**
+   * Replaces the resources with the given name in a merged map by the ones of the given repositories. The resources
+   * are added in the order of the repositories, like when all resources of the type are merged, so that the order
+   * of the ID and styleable resources, which are kept for every repository, doesn't depend on the order of edits.
+   */
+  @GuardedBy("ITEM_MAP_LOCK")
+  private static void mergeResources(@NotNull ListMultimap<String, ResourceItem> map,
+                                     @NotNull String name,
+                                     @NotNull List<SingleNamespaceResourceRepository> repositories,
+                                     @NotNull ResourceNamespace namespace,
+                                     @NotNull ResourceType type) {
+    map.removeAll(name);
+    for (SingleNamespaceResourceRepository repository : repositories) {
+      List<ResourceItem> items = getResourcesUnderLock(repository, namespace, type).get(name);
+      if (!items.isEmpty()) {
+        map.putAll(name, items);
+      }
+    }
+  }
+
   @GuardedBy("ITEM_MAP_LOCK")
   @NotNull
   private static ListMultimap<String, ResourceItem> getResourcesUnderLock(@NotNull SingleNamespaceResourceRepository repository,
@@ -428,12 +454,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
       if (leafs.size() != 1) {
         for (ResourceType type : types) {
           if (myCachedMaps.get(namespace, type) != null) {
-            Set<SingleNamespaceResourceRepository> repositories = myUnreconciledResources.get(namespace, type);
-            if (repositories == null) {
-              repositories = new HashSet<>();
-              myUnreconciledResources.put(namespace, type, repositories);
-            }
-            repositories.add(repository);
+            getUnreconciledRepositories(namespace, type).put(repository, null);
           }
         }
 
@@ -444,6 +465,52 @@ public abstract class MultiResourceRepository extends LocalResourceRepository im
     }
   }
 
+  /**
+   * Notifies this delegating repository that the given dependent repository has invalidated
+   * only the resources with the given types and names. Only these names are merged again on the
+   * next lookup of their type.
+   */
+  @GuardedBy("ITEM_MAP_LOCK")
+  public void invalidateCache(@NotNull SingleNamespaceResourceRepository repository, @NotNull SetMultimap<ResourceType, String> names) {
+    ResourceNamespace namespace = repository.getNamespace();
+
+    ImmutableList<SingleNamespaceResourceRepository> leafs = myLeafsByNamespace.get(namespace);
+    if (leafs.contains(repository)) {
+      if (leafs.size() != 1) {
+        for (ResourceType type : names.keySet()) {
+          if (myCachedMaps.get(namespace, type) != null) {
+            Map<SingleNamespaceResourceRepository, Set<String>> repositories = getUnreconciledRepositories(namespace, type);
+            if (repositories.containsKey(repository)) {
+              Set<String> changedNames = repositories.get(repository);
+              if (changedNames != null) {
+                changedNames.addAll(names.get(type));
+              }
+            }
+            else {
+              repositories.put(repository, new HashSet<>(names.get(type)));
+            }
+          }
+        }
+
+        setModificationCount(ourModificationCounter.incrementAndGet());
+      }
+
+      invalidateParentCaches(repository, names);
+    }
+  }
+
+  @GuardedBy("ITEM_MAP_LOCK")
+  @NotNull
+  private Map<SingleNamespaceResourceRepository, Set<String>> getUnreconciledRepositories(@NotNull ResourceNamespace namespace,
+                                                                                          @NotNull ResourceType type) {
+    Map<SingleNamespaceResourceRepository, Set<String>> repositories = myUnreconciledResources.get(namespace, type);
+    if (repositories == null) {
+      repositories = new HashMap<>();
+      myUnreconciledResources.put(namespace, type, repositories);
+    }
+    return repositories;
+  }
+
   @Override
   public void invokeAfterPendingUpdatesFinish(@NotNull Executor executor, @NotNull Runnable callback) {
     List<LocalResourceRepository> repositories = getLocalResources();
@@ -10,6 +10,10 @@ import static com.android.SdkConstants.TOOLS_URI;
 import static com.android.ide.common.util.PathStringUtil.toPathString;
 import static com.android.resources.ResourceFolderType.VALUES;
 import static com.android.utils.TraceUtils.getSimpleId;
+import static com.tyron.completion.xml.v2.base.ResourceSerializationUtil.createPersistentCache;
+import static com.tyron.completion.xml.v2.base.ResourceSerializationUtil.getCacheFileHeader;
+import static com.tyron.completion.xml.v2.base.ResourceSerializationUtil.readResourcesFromStream;
+import static com.tyron.completion.xml.v2.base.ResourceSerializationUtil.writeResourcesToStream;
 import static com.tyron.completion.xml.v2.project.ResourceUpdateTracer.pathForLogging;
 import static org.jetbrains.kotlin.com.intellij.openapi.util.io.FileUtil.isAncestor;
 
@@ -28,12 +32,17 @@ import com.android.resources.FolderTypeRelationship;
 import com.android.resources.ResourceFolderType;
 import com.android.resources.ResourceType;
 import com.android.resources.ResourceVisibility;
+import com.android.utils.Base128InputStream;
+import com.android.utils.Base128OutputStream;
 import com.android.utils.SdkUtils;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.completion.progress.ProcessCanceledException;
 import com.tyron.completion.progress.ProgressManager;
+import com.tyron.completion.xml.v2.base.BasicDensityBasedFileResourceItem;
 import com.tyron.completion.xml.v2.base.BasicFileResourceItem;
 import com.tyron.completion.xml.v2.base.BasicResourceItem;
 import com.tyron.completion.xml.v2.base.BasicValueResourceItemBase;
@@ -41,6 +50,7 @@ import com.tyron.completion.xml.v2.base.LoadableResourceRepository;
 import com.tyron.completion.xml.v2.base.RepositoryConfiguration;
 import com.tyron.completion.xml.v2.base.RepositoryLoader;
 import com.tyron.completion.xml.v2.base.ResourceSourceFile;
+import com.tyron.completion.xml.v2.base.ResourceStringPool;
 import com.tyron.completion.xml.v2.events.XmlReparsedEvent;
 import com.tyron.completion.xml.v2.events.XmlResourceChangeEvent;
 import com.tyron.xml.completion.util.DOMUtils;
@@ -60,6 +70,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -75,6 +87,8 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.lang.model.SourceVersion;
 
@@ -83,6 +97,13 @@ import kotlin.io.FilesKt;
 
 public final class ResourceFolderRepository extends LocalResourceRepository implements LoadableResourceRepository {
 
+    /**
+     * Increment when making changes that may affect content of repository cache files.
+     * Used together with {@link ResourceFolderRepositoryCachingData#getCodeVersion()}.
+     */
+    static final String CACHE_FILE_FORMAT_VERSION = "1";
+    private static final byte[] CACHE_FILE_HEADER = "Project resource cache".getBytes(StandardCharsets.UTF_8);
+
     @NotNull
     private final ConcurrentMap<File, ResourceItemSource<?>> mySources = new ConcurrentHashMap<>();
     @SuppressWarnings("InstanceGuardedByStatic")
@@ -136,11 +157,12 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         Loader loader = new Loader(this, cachingData);
         loader.load();
 
+        // scanning is slow, so it is done off the editor thread and only for the latest content
         facet.getProject()
                 .getEventManager()
-                .subscribeEvent(XmlResourceChangeEvent.class, (event, unsubscribe) -> {
+                .subscribeEventAsync(XmlResourceChangeEvent.class, (event, unsubscribe) -> {
                     scan(event.getFile(), event.getNewContent());
-                });
+                }, true);
     }
 
     private static void addToResult(@NotNull ResourceItem item,
@@ -217,6 +239,73 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         return true;
     }
 
+    /**
+     * Reads a {@link VfsResourceFile} written by {@link VfsResourceFile#serialize}. The file is
+     * left out (its virtual file is null) if its time stamp or size changed since the cache was
+     * written, so that its resources are not loaded from the cache.
+     */
+    @Override
+    @NotNull
+    public ResourceSourceFile deserializeResourceSourceFile(@NotNull Base128InputStream stream,
+                                                            @NotNull List<RepositoryConfiguration> configurations) throws IOException {
+        String relativePath = stream.readString();
+        if (relativePath == null) {
+            throw Base128InputStream.StreamFormatException.invalidFormat();
+        }
+        RepositoryConfiguration configuration = configurations.get(stream.readInt());
+        File virtualFile = new File(myResourceDir, relativePath);
+        if (!stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile))) {
+            virtualFile = null;
+        }
+        return new VfsResourceFile(virtualFile, configuration);
+    }
+
+    /**
+     * Reads a file resource item written by {@link BasicFileResourceItem#serialize}. Items of
+     * id generating folders were written by {@link VfsFileResourceItem#serialize} and are only
+     * valid if the file did not change since the cache was written.
+     */
+    @Override
+    @NotNull
+    public BasicFileResourceItem deserializeFileResourceItem(@NotNull Base128InputStream stream,
+                                                             @NotNull ResourceType resourceType,
+                                                             @NotNull String name,
+                                                             @NotNull ResourceVisibility visibility,
+                                                             @NotNull List<RepositoryConfiguration> configurations) throws IOException {
+        String relativePath = stream.readString();
+        if (relativePath == null) {
+            throw Base128InputStream.StreamFormatException.invalidFormat();
+        }
+        RepositoryConfiguration configuration = configurations.get(stream.readInt());
+        int encodedDensity = stream.readInt();
+        Density density = encodedDensity == 0 ? null : Density.values()[encodedDensity - 1];
+
+        boolean idGenerating = false;
+        String parentDirName = new PathString(relativePath).getParentFileName();
+        if (parentDirName != null) {
+            ResourceFolderType folderType = ResourceFolderType.getFolderType(parentDirName);
+            idGenerating = folderType != null &&
+                           FolderTypeRelationship.isIdGeneratingFolderType(folderType);
+        }
+
+        if (idGenerating) {
+            File virtualFile = new File(myResourceDir, relativePath);
+            if (!stream.validateContents(FileTimeStampLengthHasher.hash(virtualFile))) {
+                virtualFile = null;
+            }
+            return density == null
+                    ? new VfsFileResourceItem(resourceType, name, configuration, visibility,
+                    relativePath, virtualFile)
+                    : new VfsDensityBasedFileResourceItem(resourceType, name, configuration,
+                            visibility, relativePath, virtualFile, density);
+        }
+        return density == null
+                ? new BasicFileResourceItem(resourceType, name, configuration, visibility,
+                relativePath)
+                : new BasicDensityBasedFileResourceItem(resourceType, name, configuration,
+                        visibility, relativePath, density);
+    }
+
     @Override
     public ResourceNamespace getNamespace() {
         return myNamespace;
@@ -330,10 +419,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                        ".onSourceRemoved " +
                                        pathForLogging(file));
 
+        SetMultimap<ResourceType, String> names = HashMultimap.create();
+        addResourceNames(source, names);
         boolean removed = removeItemsFromSource(source);
         if (removed) {
             setModificationCount(ourModificationCounter.incrementAndGet());
-            invalidateParentCaches(this, ResourceType.values());
+            synchronized (ITEM_MAP_LOCK) {
+                invalidateParentCaches(this, names);
+            }
         }
 
         ResourceFolderType folderType = IdeResourcesUtil.getFolderType(file);
@@ -385,6 +478,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             return;
         }
         Map<ResourceType, ListMultimap<String, ResourceItem>> result = new HashMap<>();
+        // The names of the resources that were removed, the added ones are taken from the result
+        SetMultimap<ResourceType, String> changedNames = null;
 
         System.out.println("Scanning " + file.getName());
 
@@ -393,7 +488,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             // First delete out the previous items.
             ResourceItemSource<?> source = mySources.remove(file);
             boolean removed = false;
+            SetMultimap<ResourceType, String> removedNames = HashMultimap.create();
             if (source != null) {
+                addResourceNames(source, removedNames);
                 removed = removeItemsFromSource(source);
             }
 
@@ -410,7 +507,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 // TODO: Consider doing a deeper diff of the changes to the resource items
                 //       to determine if the removed and added items actually differ.
                 setModificationCount(ourModificationCounter.incrementAndGet());
-                invalidateParentCaches(this, ResourceType.values());
+                changedNames = removedNames;
             }
         } else if (checkResourceFilename(toPathString(file), folderType)) {
             ResourceItemSource<?> source = mySources.get(file);
@@ -480,7 +577,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
                     // Identities may have changed even if the ids are the same, so update maps.
                     setModificationCount(ourModificationCounter.incrementAndGet());
-                    invalidateParentCaches(this, ResourceType.ID);
+                    changedNames = HashMultimap.create();
+                    changedNames.putAll(ResourceType.ID, idsBefore);
                 }
             } else {
                 // Either we're switching to PSI or the file is not XML (image or font), which is
@@ -488,7 +586,9 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 // Remove old items first, rescan below to add back, but with a possibly
                 // different multimap list order.
 
+                changedNames = HashMultimap.create();
                 if (source != null) {
+                    addResourceNames(source, changedNames);
                     removeItemsFromSource(source);
                 }
 
@@ -515,12 +615,28 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     }
                 }
                 setModificationCount(ourModificationCounter.incrementAndGet());
-                invalidateParentCaches(this, ResourceType.values());
             }
         }
 
         myFacet.getProject().getEventManager().dispatchEvent(new XmlReparsedEvent(file));
         commitToRepository(result);
+
+        if (changedNames != null) {
+            // Invalidate after committing so that the parents never merge the old resources
+            for (Map.Entry<ResourceType, ListMultimap<String, ResourceItem>> entry : result.entrySet()) {
+                changedNames.putAll(entry.getKey(), entry.getValue().keySet());
+            }
+            synchronized (ITEM_MAP_LOCK) {
+                invalidateParentCaches(this, changedNames);
+            }
+        }
+    }
+
+    private static void addResourceNames(@NotNull Iterable<? extends ResourceItem> items,
+                                         @NotNull SetMultimap<ResourceType, String> names) {
+        for (ResourceItem item : items) {
+            names.put(item.getType(), item.getName());
+        }
     }
 
 
@@ -724,34 +840,130 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         @NotNull
         private final Map<File, BasicFileResourceItem> myFileResources = new HashMap<>();
 
-        // The following two fields are used as a cache of size one for quick conversion from a
-        // PathString to a VirtualFile.
-        @Nullable
-        private File myLastVirtualFile;
-        @Nullable
-        private PathString myLastPathString;
-
         @NotNull Set<File> myFilesToReparseAsPsi = new HashSet<>();
         private static final Logger LOG = Logger.getInstance(ResourceFolderRepository.class);
 
+        @Nullable
+        private final ResourceFolderRepositoryCachingData myCachingData;
+        /**
+         * True if the cache file is missing or does not match the contents of the resource
+         * directory anymore, e.g. because a file was added, changed or deleted.
+         */
+        private boolean myCacheIsStale = true;
+
         Loader(@NotNull ResourceFolderRepository repository,
                @Nullable ResourceFolderRepositoryCachingData cachingData) {
             super(repository.myResourceDir.toPath(), null, repository.getNamespace());
             myRepository = repository;
             myResourceDir = repository.myResourceDir;
+            myCachingData = cachingData;
             myDefaultVisibility = ResourceVisibility.UNDEFINED;
         }
 
+        /**
+         * Creates a loader that parses files for the given one on another thread.
+         */
+        private Loader(@NotNull Loader parent) {
+            super(parent);
+            myRepository = parent.myRepository;
+            myResourceDir = parent.myResourceDir;
+            myCachingData = null;
+        }
+
+        @Override
+        @NotNull
+        protected Loader forkForParsing() {
+            return new Loader(this);
+        }
+
         public void load() {
             if (!myResourceDir.exists()) {
                 return;
             }
 
+            if (myCachingData != null && !myCachingData.getCacheIsInvalidated()) {
+                loadFromPersistentCache();
+            }
+
+            // Only the files that are not in the cache or changed since it was written are parsed.
             scanResFolder();
 
             populateRepository();
 
             scanQueuedPsiResources();
+
+            if (myCachingData != null && myCacheIsStale) {
+                Executor executor = myCachingData.getCacheCreationExecutor();
+                if (executor != null) {
+                    executor.execute(this::createCacheFile);
+                }
+            }
+        }
+
+        /**
+         * Loads the resources of the files that did not change since the cache file was written.
+         * Resources of changed or deleted files are dropped by {@link #addResourceItem} because
+         * their virtual files are null.
+         *
+         * @see #createCacheFile()
+         */
+        private void loadFromPersistentCache() {
+            assert myCachingData != null;
+            byte[] header = getCacheFileHeader(this::writeCacheHeaderContent);
+            try (Base128InputStream stream = new Base128InputStream(myCachingData.getCacheFile())) {
+                if (!stream.validateContents(header)) {
+                    return; // Cache file header doesn't match.
+                }
+                myCacheIsStale = false;
+                ResourceStringPool pool = ResourceStringPool.getInstance();
+                readResourcesFromStream(stream, pool.newStringCache(), pool.newNamespaceResolverCache(),
+                        myRepository, item -> addResourceItem(item, myRepository));
+            } catch (NoSuchFileException ignored) {
+                // Cache file does not exist.
+            } catch (ProcessCanceledException e) {
+                cleanupAfterFailedLoadingFromCache();
+                throw e;
+            } catch (Throwable e) {
+                cleanupAfterFailedLoadingFromCache();
+                LOG.warn("Failed to load resources from cache file " +
+                         myCachingData.getCacheFile(), e);
+            }
+        }
+
+        /**
+         * Called when an attempt to load from persistent cache fails after some data may have
+         * already been loaded.
+         */
+        private void cleanupAfterFailedLoadingFromCache() {
+            mySources.clear();
+            myFileResources.clear();
+            myCacheIsStale = true;
+        }
+
+        /**
+         * Writes the resources found by the initial scan to the cache file. Called on the
+         * cache creation executor, the scan results are not modified after loading finishes.
+         */
+        private void createCacheFile() {
+            assert myCachingData != null;
+            Path cacheFile = myCachingData.getCacheFile();
+            try {
+                Files.createDirectories(cacheFile.getParent());
+            } catch (IOException e) {
+                LOG.warn("Unable to create directory for " + cacheFile, e);
+                return;
+            }
+            byte[] header = getCacheFileHeader(this::writeCacheHeaderContent);
+            createPersistentCache(cacheFile, header,
+                    stream -> writeResourcesToStream(myResources, stream, config -> true));
+        }
+
+        private void writeCacheHeaderContent(@NotNull Base128OutputStream stream) throws IOException {
+            assert myCachingData != null;
+            stream.write(CACHE_FILE_HEADER);
+            stream.writeString(CACHE_FILE_FORMAT_VERSION);
+            stream.writeString(myResourceDir.getPath());
+            stream.writeString(myCachingData.getCodeVersion());
         }
 
         /**
@@ -769,6 +981,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 if (files == null) {
                     return;
                 }
+                List<FileToLoad> filesToLoad = new ArrayList<>();
                 for (File subDir : files) {
                     String folderName = subDir.getName();
                     FolderInfo folderInfo = FolderInfo.create(folderName, myFolderConfigCache);
@@ -789,24 +1002,30 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                 continue;
                             }
 
-                            PathString pathString = toPathString(file);
-                            myLastVirtualFile = file;
-                            myLastPathString = pathString;
-                            try {
-                                loadResourceFile(pathString, folderInfo, configuration);
-                                if (isParsableFile(file, folderInfo)) {
-                                    countCacheMiss();
-                                }
-                            } catch (ParsingException e) {
-                                // Reparse the file as PSI. The PSI parser is more forgiving than
-                                // KXmlParser because
-                                // it is designed to work with potentially malformed files in the
-                                // middle of editing.
-                                myFilesToReparseAsPsi.add(file);
+                            myCacheIsStale = true;
+                            if (isParsableFile(file, folderInfo)) {
+                                countCacheMiss();
                             }
+                            filesToLoad.add(new FileToLoad(file, folderInfo, configuration));
                         }
                     }
                 }
+
+                // Parsing is CPU bound, the files are parsed in parallel and the resources are
+                // merged in the order of the files.
+                loadInParallel(filesToLoad, ForkJoinPool.commonPool(),
+                        (fork, toLoad) -> ((Loader) fork).loadResourceFile(
+                                toPathString(toLoad.file), toLoad.folderInfo, toLoad.configuration),
+                        (toLoad, e) -> {
+                            if (!(e instanceof ParsingException)) {
+                                throw e;
+                            }
+                            // Reparse the file as PSI. The PSI parser is more forgiving than
+                            // KXmlParser because
+                            // it is designed to work with potentially malformed files in the
+                            // middle of editing.
+                            myFilesToReparseAsPsi.add(toLoad.file);
+                        });
             } catch (ProcessCanceledException e) {
                 throw e;
             } catch (Exception e) {
@@ -856,7 +1075,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                         folderInfo.resourceType,
                         configuration,
                         folderInfo.isIdGenerating);
-                addResourceItem(item, (ResourceFolderRepository) item.getRepository());
+                addResourceItem(item);
             }
         }
 
@@ -961,24 +1180,50 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 if (virtualFile != null && virtualFile.exists() && !virtualFile.isDirectory()) {
                     sourceFile.addItem(item);
                     mySources.put(virtualFile, sourceFile);
+                } else {
+                    myCacheIsStale = true;
                 }
             } else if (item instanceof VfsFileResourceItem) {
                 VfsFileResourceItem fileResourceItem = (VfsFileResourceItem) item;
                 File virtualFile = fileResourceItem.getVirtualFile();
                 if (virtualFile != null && virtualFile.exists() && !virtualFile.isDirectory()) {
                     myFileResources.put(virtualFile, fileResourceItem);
+                } else {
+                    myCacheIsStale = true;
                 }
             } else if (item instanceof BasicFileResourceItem) {
                 BasicFileResourceItem fileResourceItem = (BasicFileResourceItem) item;
                 File file = fileResourceItem.getSource().toFile();
                 if (file != null && file.exists() && !file.isDirectory()) {
                     myFileResources.put(file, fileResourceItem);
+                } else {
+                    myCacheIsStale = true;
                 }
             } else {
                 throw new IllegalArgumentException("Unexpected type: " + item.getClass().getName());
             }
         }
 
+        /**
+         * A file found by the initial scan that is not in the cache and has to be parsed.
+         */
+        private static class FileToLoad {
+            @NotNull
+            final File file;
+            @NotNull
+            final FolderInfo folderInfo;
+            @NotNull
+            final RepositoryConfiguration configuration;
+
+            FileToLoad(@NotNull File file,
+                       @NotNull FolderInfo folderInfo,
+                       @NotNull RepositoryConfiguration configuration) {
+                this.file = file;
+                this.folderInfo = folderInfo;
+                this.configuration = configuration;
+            }
+        }
+
         private void countCacheHit() {
             ++myRepository.myNumXmlFilesLoadedInitially;
         }
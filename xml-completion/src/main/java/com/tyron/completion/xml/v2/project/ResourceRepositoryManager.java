@@ -37,6 +37,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -51,6 +52,13 @@ public class ResourceRepositoryManager {
     private static final Object MODULE_RESOURCES_LOCK = new Object();
     private static final Object TEST_RESOURCES_LOCK = new Object();
 
+    /**
+     * Loads the resource repositories of the libraries in parallel. The number of threads is
+     * bounded so that only a few repositories are being parsed, and hold their temporary
+     * parsing state, at the same time.
+     */
+    private static final ExecutorService LIBRARY_LOADING_EXECUTOR = createLibraryLoadingExecutor();
+
     @NotNull private final AndroidModule myFacet;
     @NotNull private final Namespacing myNamespacing;
 
@@ -342,8 +350,6 @@ public class ResourceRepositoryManager {
                 aarResourceRepositoryCache::getSourceRepository :
                 aarResourceRepositoryCache::getProtoRepository;
 
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-
         // Construct the repositories in parallel.
         Map<ExternalAndroidLibrary, Future<AarResourceRepository>> futures = Maps.newHashMapWithExpectedSize(codeAssistLibraries.size());
         for (CodeAssistAndroidLibrary library : codeAssistLibraries) {
@@ -359,7 +365,7 @@ public class ResourceRepositoryManager {
                     toPathString(library.getSymbolFile()),
                     library.getResStaticLibrary() == null ? null : toPathString(library.getResStaticLibrary())
             );
-            futures.put(externalLibrary, executor.submit(() -> factory.apply(externalLibrary)));
+            futures.put(externalLibrary, LIBRARY_LOADING_EXECUTOR.submit(() -> factory.apply(externalLibrary)));
         }
 
         // Gather all the results.
@@ -379,6 +385,16 @@ public class ResourceRepositoryManager {
         return map.build();
     }
 
+    private static ExecutorService createLibraryLoadingExecutor() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "AarResourceRepository-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     private static void cancelPendingTasks(Collection<Future<AarResourceRepository>> futures) {
         futures.forEach(f -> f.cancel(true));
     }
@@ -0,0 +1,162 @@
+package com.tyron.completion.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.completion.xml.model.ViewClass;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+public class BytecodeScannerTest {
+
+    private static final String INFLATION_CONSTRUCTOR =
+            "(Landroid/content/Context;Landroid/util/AttributeSet;)V";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCacheKey() throws IOException {
+        File jar = temporaryFolder.newFile("lib.jar");
+        Files.write(jar.toPath(), new byte[]{1, 2, 3});
+        assertTrue(jar.setLastModified(1_000_000));
+        BytecodeScanner.CacheKey key = BytecodeScanner.CacheKey.of(jar);
+        assertEquals(key, BytecodeScanner.CacheKey.of(jar));
+
+        assertTrue(jar.setLastModified(2_000_000));
+        BytecodeScanner.CacheKey modified = BytecodeScanner.CacheKey.of(jar);
+        assertNotEquals(key, modified);
+        // a new version of the jar replaces the cache file of the previous one
+        assertEquals(key.getCacheFileName(), modified.getCacheFileName());
+
+        Files.write(jar.toPath(), new byte[]{1, 2, 3, 4});
+        assertTrue(jar.setLastModified(2_000_000));
+        BytecodeScanner.CacheKey resized = BytecodeScanner.CacheKey.of(jar);
+        assertNotEquals(modified, resized);
+        assertEquals(key.getCacheFileName(), resized.getCacheFileName());
+
+        File other = new File(temporaryFolder.newFolder("other"), "lib.jar");
+        Files.copy(jar.toPath(), other.toPath());
+        assertTrue(other.setLastModified(2_000_000));
+        BytecodeScanner.CacheKey otherKey = BytecodeScanner.CacheKey.of(other);
+        assertNotEquals(resized, otherKey);
+        assertNotEquals(resized.getCacheFileName(), otherKey.getCacheFileName());
+    }
+
+    @Test
+    public void testScanResolvesSuperClassesOfOtherJars() throws IOException {
+        File framework = temporaryFolder.newFile("framework.jar");
+        writeJar(framework,
+                classFile("java/lang/Object", null, false),
+                classFile("android/view/View", "java/lang/Object", true),
+                classFile("android/view/ViewGroup", "android/view/View", false),
+                classFile("android/os/Bundle", "java/lang/Object", false));
+        File library = temporaryFolder.newFile("library.jar");
+        writeJar(library,
+                classFile("com/lib/CustomView", "android/view/ViewGroup", true),
+                classFile("com/lib/Model", "java/lang/Object", true),
+                classFile("com/lib/External", "com/other/Missing", true));
+        File cacheDir = temporaryFolder.newFolder("cache");
+
+        List<ViewClass> viewClasses = BytecodeScanner.scan(Collections.singletonList(library),
+                Collections.singletonList(framework), cacheDir);
+        assertEquals(1, viewClasses.size());
+        assertEquals("com.lib.CustomView", viewClasses.get(0).getClassName());
+        assertEquals(Arrays.asList("android.view.ViewGroup", "android.view.View"),
+                viewClasses.get(0).getSuperClassNames());
+
+        // only the classes that may be views are kept
+        String frameworkCache = readCacheFile(cacheDir, framework);
+        assertTrue(frameworkCache.contains("android.view.ViewGroup"));
+        assertFalse(frameworkCache.contains("android.os.Bundle"));
+        String libraryCache = readCacheFile(cacheDir, library);
+        assertTrue(libraryCache.contains("com.lib.CustomView"));
+        assertTrue(libraryCache.contains("com.lib.External"));
+        assertFalse(libraryCache.contains("com.lib.Model"));
+    }
+
+    @Test
+    public void testChangedJarIsScannedAgain() throws IOException {
+        File framework = temporaryFolder.newFile("framework.jar");
+        writeJar(framework, classFile("android/view/View", "java/lang/Object", true));
+        File library = temporaryFolder.newFile("library.jar");
+        writeJar(library, classFile("com/lib/First", "android/view/View", true));
+        assertTrue(library.setLastModified(1_000_000));
+
+        List<ViewClass> viewClasses = BytecodeScanner.scan(Collections.singletonList(library),
+                Collections.singletonList(framework), null);
+        assertEquals(Collections.singletonList("com.lib.First"), getClassNames(viewClasses));
+
+        writeJar(library,
+                classFile("com/lib/First", "android/view/View", true),
+                classFile("com/lib/Second", "android/view/View", true));
+        assertTrue(library.setLastModified(2_000_000));
+        viewClasses = BytecodeScanner.scan(Collections.singletonList(library),
+                Collections.singletonList(framework), null);
+        assertEquals(Arrays.asList("com.lib.First", "com.lib.Second"),
+                getClassNames(viewClasses));
+    }
+
+    private static List<String> getClassNames(List<ViewClass> viewClasses) {
+        return viewClasses.stream()
+                .map(ViewClass::getClassName)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private static String readCacheFile(File cacheDir, File jar) throws IOException {
+        File cacheFile = new File(cacheDir, BytecodeScanner.CacheKey.of(jar).getCacheFileName());
+        return new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.ISO_8859_1);
+    }
+
+    private static void writeJar(File jar, ClassFile... classes) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (ClassFile classFile : classes) {
+                out.putNextEntry(new JarEntry(classFile.name + ".class"));
+                out.write(classFile.bytes);
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static ClassFile classFile(String name, String superName, boolean inflatable) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+        if (inflatable) {
+            MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+                    INFLATION_CONSTRUCTOR, null, null);
+            constructor.visitEnd();
+        }
+        writer.visitEnd();
+        return new ClassFile(name, writer.toByteArray());
+    }
+
+    private static class ClassFile {
+        final String name;
+        final byte[] bytes;
+
+        ClassFile(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.tyron.completion.xml.v2.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.android.ide.common.rendering.api.AttrResourceValue;
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.util.PathString;
+import com.android.resources.ResourceType;
+import com.tyron.completion.xml.v2.aar.AarSourceResourceRepository;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RepositoryLoaderTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void parallelLoadingMatchesSequentialLoading() throws IOException {
+    Path resDir = temporaryFolder.newFolder("res").toPath();
+    write(resDir, "layout/activity_main.xml",
+          "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "  <Button android:id=\"@+id/button\"/>\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "</LinearLayout>\n");
+    write(resDir, "layout/fragment_list.xml",
+          "<FrameLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "  <ListView android:id=\"@+id/list\"/>\n" +
+          "</FrameLayout>\n");
+    write(resDir, "layout-land/activity_main.xml",
+          "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "</LinearLayout>\n");
+    // Enough files to have several of them parsed at the same time.
+    for (int i = 0; i < 32; i++) {
+      write(resDir, "layout/item_" + i + ".xml",
+            "<FrameLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+            "  <TextView android:id=\"@+id/title\"/>\n" +
+            "  <TextView android:id=\"@+id/item_" + i + "\"/>\n" +
+            "  <TextView android:id=\"@+id/item_" + (i + 1) + "\"/>\n" +
+            "</FrameLayout>\n");
+    }
+    write(resDir, "menu/main.xml",
+          "<menu xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+          "  <item android:id=\"@+id/button\"/>\n" +
+          "</menu>\n");
+    write(resDir, "drawable/icon.xml", "<vector/>\n");
+    write(resDir, "values/values.xml",
+          "<resources>\n" +
+          "  <string name=\"app_name\">Test</string>\n" +
+          "  <string name=\"title\">First</string>\n" +
+          "  <string name=\"title\">Second</string>\n" +
+          "  <item type=\"id\" name=\"list\"/>\n" +
+          "  <attr name=\"shared\" format=\"string\"/>\n" +
+          "  <declare-styleable name=\"First\">\n" +
+          "    <attr name=\"shared\"/>\n" +
+          "    <attr name=\"first\" format=\"boolean\"/>\n" +
+          "  </declare-styleable>\n" +
+          "</resources>\n");
+    write(resDir, "values/styleables.xml",
+          "<resources>\n" +
+          "  <declare-styleable name=\"Second\">\n" +
+          "    <attr name=\"shared\"/>\n" +
+          "    <attr name=\"second\">\n" +
+          "      <enum name=\"one\" value=\"1\"/>\n" +
+          "    </attr>\n" +
+          "  </declare-styleable>\n" +
+          "</resources>\n");
+    write(resDir, "values-de/values.xml",
+          "<resources>\n" +
+          "  <string name=\"app_name\">Test (de)</string>\n" +
+          "</resources>\n");
+
+    List<String> sequential = describe(load(resDir, false));
+    List<String> parallel = describe(load(resDir, true));
+
+    assertFalse(sequential.isEmpty());
+    assertEquals(String.join("\n", sequential), String.join("\n", parallel));
+  }
+
+  @Test
+  public void duplicateIdsAreDroppedInBothModes() throws IOException {
+    Path resDir = temporaryFolder.newFolder("res").toPath();
+    write(resDir, "layout/first.xml",
+          "<FrameLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "</FrameLayout>\n");
+    write(resDir, "layout/second.xml",
+          "<FrameLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "</FrameLayout>\n");
+    write(resDir, "layout-land/first.xml",
+          "<FrameLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+          "  <TextView android:id=\"@+id/title\"/>\n" +
+          "</FrameLayout>\n");
+    write(resDir, "values/ids.xml",
+          "<resources>\n" +
+          "  <item type=\"id\" name=\"title\"/>\n" +
+          "</resources>\n");
+
+    for (boolean parallel : new boolean[] {false, true}) {
+      TestRepository repository = load(resDir, parallel);
+      List<String> titles = repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.ID, "title").stream()
+        .map(item -> item.getConfiguration().getQualifierString() + " " + item.getSource().getFileName())
+        .collect(Collectors.toList());
+      // One ID per configuration for the layouts, the one declared in values is kept as is.
+      assertEquals("parallel: " + parallel, Arrays.asList(" first.xml", "land first.xml", " ids.xml"), titles);
+    }
+  }
+
+  @NotNull
+  private static TestRepository load(@NotNull Path resDir, boolean parallel) {
+    TestLoader loader = new TestLoader(resDir, parallel);
+    TestRepository repository = new TestRepository(loader);
+    loader.loadRepositoryContents(repository);
+    return repository;
+  }
+
+  /**
+   * Returns a description of each resource of the repository in the order of the repository.
+   */
+  @NotNull
+  private static List<String> describe(@NotNull TestRepository repository) {
+    List<String> descriptions = new ArrayList<>();
+    for (ResourceType type : ResourceType.values()) {
+      for (Map.Entry<String, ResourceItem> entry :
+          repository.getResources(ResourceNamespace.RES_AUTO, type).entries()) {
+        ResourceItem item = entry.getValue();
+        StringBuilder description = new StringBuilder()
+          .append(type.getName()).append('/').append(item.getName())
+          .append(" [").append(item.getConfiguration().getQualifierString()).append("] ")
+          .append(item.getSource()).append(' ')
+          .append(item.getResourceValue());
+        if (item instanceof BasicStyleableResourceItem) {
+          for (AttrResourceValue attr : ((BasicStyleableResourceItem)item).getAllAttributes()) {
+            description.append(' ').append(attr.getName()).append(attr.getFormats());
+          }
+        }
+        descriptions.add(description.toString());
+      }
+    }
+    return descriptions;
+  }
+
+  private static void write(@NotNull Path resDir, @NotNull String relativePath, @NotNull String content) throws IOException {
+    Path file = resDir.resolve(relativePath);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static class TestRepository extends AarSourceResourceRepository {
+    TestRepository(@NotNull TestLoader loader) {
+      super(loader, "test");
+    }
+
+    void add(@NotNull ResourceItem item) {
+      addResourceItem(item);
+    }
+  }
+
+  /**
+   * Loads the files of a resource folder with {@link #loadInParallel}, the files are parsed in parallel
+   * if {@code parallel} is true and one after another otherwise.
+   */
+  private static class TestLoader extends RepositoryLoader<TestRepository> {
+    private final boolean myParallel;
+
+    TestLoader(@NotNull Path resDir, boolean parallel) {
+      super(resDir, null, ResourceNamespace.RES_AUTO);
+      myParallel = parallel;
+    }
+
+    private TestLoader(@NotNull TestLoader parent) {
+      super(parent);
+      myParallel = true;
+    }
+
+    @Override
+    @Nullable
+    protected RepositoryLoader<TestRepository> forkForParsing() {
+      return myParallel ? new TestLoader(this) : null;
+    }
+
+    @Override
+    protected void loadFromResFolder(@NotNull TestRepository repository) {
+      List<PathString> files = new ArrayList<>();
+      File[] folders = myResourceDirectoryOrFile.toFile().listFiles();
+      assert folders != null;
+      Arrays.sort(folders);
+      for (File folder : folders) {
+        File[] folderFiles = folder.listFiles();
+        assert folderFiles != null;
+        Arrays.sort(folderFiles);
+        for (File file : folderFiles) {
+          files.add(new PathString(file));
+        }
+      }
+
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try {
+        loadInParallel(files, pool, (fork, file) -> fork.loadResourceFile(file, repository, true), (file, e) -> {
+          throw e;
+        });
+      }
+      finally {
+        pool.shutdown();
+      }
+      finishLoading(repository);
+    }
+
+    @Override
+    protected void addResourceItem(@NotNull BasicResourceItem item, @NotNull TestRepository repository) {
+      repository.add(item);
+    }
+  }
+}
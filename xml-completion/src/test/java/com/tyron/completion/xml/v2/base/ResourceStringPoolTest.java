@@ -0,0 +1,45 @@
+package com.tyron.completion.xml.v2.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.Test;
+
+public class ResourceStringPoolTest {
+
+  @Test
+  public void equalStringsOfDifferentLoadsAreTheSameInstance() {
+    ResourceStringPool pool = ResourceStringPool.getInstance();
+    String first = new String("colorPrimary");
+    String second = new String("colorPrimary");
+    assertNotSame(first, second);
+
+    String pooled = pool.newStringCache().computeIfAbsent(first, Function.identity());
+    assertSame(pooled, pool.newStringCache().computeIfAbsent(second, Function.identity()));
+
+    Map<String, String> copied = pool.newStringCache();
+    copied.putIfAbsent(new String("colorPrimary"), new String("colorPrimary"));
+    assertSame(pooled, copied.get("colorPrimary"));
+  }
+
+  @Test
+  public void cacheIsAMap() {
+    Map<String, String> cache = ResourceStringPool.getInstance().newStringCache();
+    assertTrue(cache.isEmpty());
+    assertFalse(cache.containsKey("textColor"));
+
+    String value = cache.computeIfAbsent(new String("textColor"), Function.identity());
+    assertEquals(1, cache.size());
+    assertTrue(cache.containsKey("textColor"));
+    assertSame(value, cache.get("textColor"));
+    assertEquals(Collections.singletonMap("textColor", "textColor"), cache);
+    assertEquals(Collections.singletonMap("textColor", "textColor").hashCode(), cache.hashCode());
+    assertEquals("{textColor=textColor}", cache.toString());
+  }
+}
@@ -0,0 +1,268 @@
+package com.tyron.completion.xml.v2.project;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.resources.ResourceItem;
+import com.android.ide.common.resources.ResourceVisitor;
+import com.android.ide.common.resources.configuration.FolderConfiguration;
+import com.android.ide.common.util.PathString;
+import com.android.resources.ResourceType;
+import com.android.resources.ResourceVisibility;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.SetMultimap;
+import com.tyron.completion.xml.v2.base.BasicValueResourceItem;
+import com.tyron.completion.xml.v2.base.LoadableResourceRepository;
+import com.tyron.completion.xml.v2.base.RepositoryConfiguration;
+import com.tyron.completion.xml.v2.base.ResourceSourceFileImpl;
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+public class MultiResourceRepositoryTest {
+  private static final ResourceNamespace NAMESPACE = ResourceNamespace.RES_AUTO;
+  private static final ResourceType[] TYPES = {ResourceType.STRING, ResourceType.ID, ResourceType.BOOL};
+
+  @Test
+  public void changedNamesMatchFullMerge() {
+    TestRepository first = new TestRepository("first");
+    TestRepository second = new TestRepository("second");
+    TestRepository third = new TestRepository("third");
+    List<TestRepository> children = ImmutableList.of(first, second, third);
+    first.add(ResourceType.STRING, "app_name", "", "first app_name");
+    first.add(ResourceType.STRING, "title", "", "first title");
+    first.add(ResourceType.STRING, "title", "de", "first title (de)");
+    first.add(ResourceType.ID, "button", "", null);
+    first.add(ResourceType.BOOL, "enabled", "", "true");
+    second.add(ResourceType.STRING, "title", "", "second title");
+    second.add(ResourceType.ID, "list", "", null);
+
+    TestMultiRepository repository = new TestMultiRepository(children);
+    // Merge all types so that the changes below are reconciled by name.
+    assertMatchesFullMerge(repository, children);
+
+    // A name is added to a repository, the ID is also defined by a repository before it.
+    second.add(ResourceType.STRING, "added", "", "second added");
+    second.add(ResourceType.ID, "button", "", null);
+    second.notifyChanged(ResourceType.STRING, "added");
+    second.notifyChanged(ResourceType.ID, "button");
+    assertMatchesFullMerge(repository, children);
+
+    // A name is removed from the repository that takes precedence.
+    first.remove(ResourceType.STRING, "title");
+    first.remove(ResourceType.ID, "button");
+    first.notifyChanged(ResourceType.STRING, "title");
+    first.notifyChanged(ResourceType.ID, "button");
+    assertMatchesFullMerge(repository, children);
+
+    // A name of another repository is overridden in the same and in a new configuration, by a repository
+    // that didn't have any resource of these types before.
+    third.add(ResourceType.STRING, "app_name", "", "third app_name");
+    third.add(ResourceType.STRING, "app_name", "de", "third app_name (de)");
+    third.add(ResourceType.ID, "list", "", null);
+    third.notifyChanged(ResourceType.STRING, "app_name");
+    third.notifyChanged(ResourceType.ID, "list");
+    assertMatchesFullMerge(repository, children);
+
+    // The name added first is added back to the first repository.
+    first.add(ResourceType.ID, "button", "", null);
+    first.notifyChanged(ResourceType.ID, "button");
+    assertMatchesFullMerge(repository, children);
+
+    // The last resource of a type is removed.
+    first.remove(ResourceType.BOOL, "enabled");
+    first.notifyChanged(ResourceType.BOOL, "enabled");
+    assertMatchesFullMerge(repository, children);
+    assertTrue(repository.getResources(NAMESPACE, ResourceType.BOOL).isEmpty());
+
+    repository.dispose();
+  }
+
+  @Test
+  public void changedTypesMatchFullMerge() {
+    TestRepository first = new TestRepository("first");
+    TestRepository second = new TestRepository("second");
+    List<TestRepository> children = ImmutableList.of(first, second);
+    first.add(ResourceType.STRING, "title", "", "first title");
+    first.add(ResourceType.ID, "button", "", null);
+    second.add(ResourceType.STRING, "title", "", "second title");
+    second.add(ResourceType.ID, "button", "", null);
+
+    TestMultiRepository repository = new TestMultiRepository(children);
+    assertMatchesFullMerge(repository, children);
+
+    // Names changed by a repository and then all resources of their types.
+    first.remove(ResourceType.STRING, "title");
+    first.add(ResourceType.STRING, "subtitle", "", "first subtitle");
+    first.notifyChanged(ResourceType.STRING, "subtitle");
+    first.remove(ResourceType.ID, "button");
+    first.add(ResourceType.ID, "list", "", null);
+    first.add(ResourceType.ID, "button", "", null);
+    first.notifyChanged(ResourceType.STRING, ResourceType.ID);
+    assertMatchesFullMerge(repository, children);
+
+    repository.dispose();
+  }
+
+  /**
+   * Checks that the resources of the given repository are the same as the ones of a repository
+   * that merges all resources of the given children.
+   */
+  private static void assertMatchesFullMerge(@NotNull TestMultiRepository repository, @NotNull List<TestRepository> children) {
+    TestMultiRepository fullMerge = new TestMultiRepository(children);
+    try {
+      for (ResourceType type : TYPES) {
+        assertEquals(type.getName(),
+                     describe(fullMerge.getResources(NAMESPACE, type)),
+                     describe(repository.getResources(NAMESPACE, type)));
+      }
+    }
+    finally {
+      fullMerge.dispose();
+    }
+  }
+
+  @NotNull
+  private static Map<String, List<String>> describe(@NotNull ListMultimap<String, ResourceItem> resources) {
+    Map<String, List<String>> descriptions = new TreeMap<>();
+    for (String name : resources.keySet()) {
+      List<String> items = new ArrayList<>();
+      for (ResourceItem item : resources.get(name)) {
+        items.add(item.getConfiguration().getQualifierString() + " " + item.getSource() + " " +
+                  item.getResourceValue().getValue());
+      }
+      descriptions.put(name, items);
+    }
+    return descriptions;
+  }
+
+  private static class TestMultiRepository extends MultiResourceRepository {
+    TestMultiRepository(@NotNull List<TestRepository> children) {
+      super("test");
+      setChildren(children, ImmutableList.of(), ImmutableList.of());
+    }
+  }
+
+  /**
+   * A leaf repository whose value resources are added and removed by the test, which notifies
+   * the parents like {@link ResourceFolderRepository} does.
+   */
+  private static class TestRepository extends LocalResourceRepository implements LoadableResourceRepository {
+    private final Map<ResourceType, ListMultimap<String, ResourceItem>> myResources = new EnumMap<>(ResourceType.class);
+
+    TestRepository(@NotNull String displayName) {
+      super(displayName);
+    }
+
+    void add(@NotNull ResourceType type, @NotNull String name, @NotNull String qualifiers, @Nullable String value) {
+      FolderConfiguration folderConfiguration = FolderConfiguration.getConfigForQualifierString(qualifiers);
+      assert folderConfiguration != null;
+      String folder = qualifiers.isEmpty() ? "values" : "values-" + qualifiers;
+      ResourceSourceFileImpl sourceFile =
+        new ResourceSourceFileImpl(folder + "/values.xml", new RepositoryConfiguration(this, folderConfiguration));
+      BasicValueResourceItem item = new BasicValueResourceItem(type, name, sourceFile, ResourceVisibility.PUBLIC, value);
+      synchronized (ITEM_MAP_LOCK) {
+        myResources.computeIfAbsent(type, t -> ArrayListMultimap.create()).put(name, item);
+      }
+    }
+
+    void remove(@NotNull ResourceType type, @NotNull String name) {
+      synchronized (ITEM_MAP_LOCK) {
+        ListMultimap<String, ResourceItem> resources = myResources.get(type);
+        if (resources != null) {
+          resources.removeAll(name);
+        }
+      }
+    }
+
+    void notifyChanged(@NotNull ResourceType type, @NotNull String... names) {
+      SetMultimap<ResourceType, String> changedNames = HashMultimap.create();
+      for (String name : names) {
+        changedNames.put(type, name);
+      }
+      setModificationCount(ourModificationCounter.incrementAndGet());
+      synchronized (ITEM_MAP_LOCK) {
+        invalidateParentCaches(this, changedNames);
+      }
+    }
+
+    void notifyChanged(@NotNull ResourceType... types) {
+      setModificationCount(ourModificationCounter.incrementAndGet());
+      synchronized (ITEM_MAP_LOCK) {
+        invalidateParentCaches(this, types);
+      }
+    }
+
+    @Override
+    @Nullable
+    protected ListMultimap<String, ResourceItem> getMap(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+      return namespace.equals(NAMESPACE) ? myResources.get(type) : null;
+    }
+
+    @Override
+    @NotNull
+    protected Set<File> computeResourceDirs() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    @NotNull
+    public ResourceVisitor.VisitResult accept(@NotNull ResourceVisitor visitor) {
+      if (visitor.shouldVisitNamespace(NAMESPACE)) {
+        synchronized (ITEM_MAP_LOCK) {
+          return acceptByResources(myResources, visitor);
+        }
+      }
+      return ResourceVisitor.VisitResult.CONTINUE;
+    }
+
+    @Override
+    @NotNull
+    public ResourceNamespace getNamespace() {
+      return NAMESPACE;
+    }
+
+    @Override
+    @Nullable
+    public String getPackageName() {
+      return null;
+    }
+
+    @Override
+    @NotNull
+    public Path getOrigin() {
+      return Paths.get(getDisplayName());
+    }
+
+    @Override
+    @NotNull
+    public String getResourceUrl(@NotNull String relativeResourcePath) {
+      return getDisplayName() + '/' + relativeResourcePath;
+    }
+
+    @Override
+    @NotNull
+    public PathString getSourceFile(@NotNull String relativeResourcePath, boolean forFileResource) {
+      return new PathString(getDisplayName() + '/' + relativeResourcePath);
+    }
+
+    @Override
+    public boolean containsUserDefinedResources() {
+      return true;
+    }
+  }
+}